@@ -23,8 +23,12 @@ import static org.yamcs.tests.RefMdbPacketGenerator.pTerminatedStringPara1_3_3;
 import static org.yamcs.tests.RefMdbPacketGenerator.pTerminatedStringPara1_3_4;
 
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
@@ -758,6 +762,94 @@ public class XtceTmExtractorTest {
         assertEquals(99, pv.getEngValue().getUint32Value());
     }
 
+    @Test
+    public void testSubscriptionChangeAfterProcessing() {
+        RefMdbPacketGenerator tmGenerator = new RefMdbPacketGenerator();
+        XtceTmExtractor tmExtractor = new XtceTmExtractor(mdb);
+        Parameter p1 = mdb.getParameter("/REFMDB/SUBSYS1/IntegerPara1_1_6");
+        Parameter p2 = mdb.getParameter("/REFMDB/SUBSYS1/IntegerPara1_1_7");
+
+        tmExtractor.startProviding(p1);
+        ParameterValueList received = processTm(tmExtractor, tmGenerator.generate_PKT1_1());
+        assertNotNull(received.getLastInserted(p1));
+        assertNull(received.getLastInserted(p2));
+
+        tmExtractor.startProviding(p2);
+        received = processTm(tmExtractor, tmGenerator.generate_PKT1_1());
+        assertEquals(tmGenerator.pIntegerPara1_1_6, received.getLastInserted(p1).getEngValue().getUint32Value());
+        assertEquals(tmGenerator.pIntegerPara1_1_7, received.getLastInserted(p2).getEngValue().getUint32Value());
+    }
+
+    @Test
+    public void testParallelProcessing() throws Exception {
+        RefMdbPacketGenerator tmGenerator = new RefMdbPacketGenerator();
+        XtceTmExtractor tmExtractor = new XtceTmExtractor(mdb);
+        Parameter p1 = mdb.getParameter("/REFMDB/SUBSYS1/IntegerPara1_1_6");
+        Parameter p2 = mdb.getParameter("/REFMDB/SUBSYS1/LEIntegerPara1_2_1");
+        byte[] pkt1 = tmGenerator.generate_PKT1_1();
+        byte[] pkt2 = tmGenerator.generate_PKT1_2();
+        tmExtractor.startProviding(p1);
+
+        int numThreads = 4;
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < numThreads; i++) {
+                int k = i;
+                futures.add(executor.submit(() -> {
+                    for (int j = 0; j < 1000; j++) {
+                        if (j == 10 && k == 0) {
+                            // change the subscription while the other threads are processing
+                            tmExtractor.startProviding(p2);
+                        }
+                        ParameterValueList received = processTm(tmExtractor, pkt1);
+                        assertEquals(tmGenerator.pIntegerPara1_1_6,
+                                received.getLastInserted(p1).getEngValue().getUint32Value());
+                    }
+                }));
+            }
+            for (Future<?> f : futures) {
+                f.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        ParameterValueList received = processTm(tmExtractor, pkt2);
+        assertEquals(tmGenerator.pLEIntegerPara1_2_1, received.getLastInserted(p2).getEngValue().getUint32Value());
+    }
+
+    @Test
+    public void testFixedLayoutDecoder() {
+        RefMdbPacketGenerator tmGenerator = new RefMdbPacketGenerator();
+        XtceTmExtractor tmExtractor = new XtceTmExtractor(mdb);
+        tmExtractor.provideAll();
+
+        for (byte[] pkt : List.of(tmGenerator.generate_PKT1_1(), tmGenerator.generate_PKT1_2(),
+                tmGenerator.generate_PKT1_9())) {
+            ParameterValueList received = processTm(tmExtractor, pkt);
+
+            // process the same packet with the generic decoder
+            Subscription subscription = tmExtractor.getSubscription();
+            ContainerProcessingResult result = new ContainerProcessingResult(0, 0, 0,
+                    tmExtractor.pdata.getLastValueCache());
+            ContainerProcessingContext cpc = new ContainerProcessingContext(tmExtractor.pdata, new BitBuffer(pkt),
+                    result, subscription, tmExtractor.getOptions(), true);
+            cpc.sequenceContainerProcessor
+                    .extract(subscription.getSubscribedContainer(mdb.getRootSequenceContainer()));
+            ParameterValueList expected = result.getParameterResult();
+
+            assertEquals(expected.size(), received.size());
+            for (ParameterValue pv : expected) {
+                ParameterValue pv1 = received.getLastInserted(pv.getParameter());
+                assertEquals(pv.getRawValue(), pv1.getRawValue());
+                assertEquals(pv.getEngValue(), pv1.getEngValue());
+            }
+        }
+        Subscription snapshot = tmExtractor.getSubscription().copy();
+        assertNotNull(snapshot.getSubscribedContainer(mdb.getSequenceContainer("/REFMDB/SUBSYS1/PKT1_2"))
+                .fixedLayoutDecoder);
+    }
+
     private ParameterValueList extractParameters(byte[] pkt) {
         XtceTmExtractor tmExtractor = new XtceTmExtractor(mdb);
         tmExtractor.provideAll();
@@ -2,6 +2,7 @@ package org.yamcs.tests;
 
 import static io.netty.handler.codec.http.HttpHeaderNames.IF_MODIFIED_SINCE;
 import static io.netty.handler.codec.http.HttpMethod.GET;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
@@ -9,9 +10,15 @@ import static org.junit.jupiter.api.Assertions.assertTrue;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Base64;
 import java.util.Random;
 import java.util.concurrent.ExecutionException;
 
@@ -83,4 +90,34 @@ public class HttpServerTest extends AbstractIntegrationTest {
         file1.delete();
         file2.delete();
     }
+
+    @Test
+    public void testBucketObjectDownload() throws Exception {
+        var storageClient = yamcsClient.createStorageClient();
+        var bucket = storageClient.createBucket("httpservertest").get();
+
+        byte[] objectData = new byte[3 * 1024 * 1024 + 17];
+        new Random().nextBytes(objectData);
+        bucket.uploadObject("obj1", objectData).get();
+        assertArrayEquals(objectData, bucket.downloadObject("obj1").get());
+
+        var url = "http://localhost:9190/api/storage/buckets/httpservertest/objects/obj1";
+        var client = java.net.http.HttpClient.newHttpClient();
+        var authorization = "Basic " + Base64.getEncoder()
+                .encodeToString((adminUsername + ":" + new String(adminPassword)).getBytes(StandardCharsets.UTF_8));
+        var request = HttpRequest.newBuilder(URI.create(url)).header("Authorization", authorization)
+                .header("Range", "bytes=1048570-1048600").build();
+        var response = client.send(request, BodyHandlers.ofByteArray());
+        assertEquals(206, response.statusCode());
+        assertEquals("bytes 1048570-1048600/" + objectData.length,
+                response.headers().firstValue("Content-Range").get());
+        assertArrayEquals(Arrays.copyOfRange(objectData, 1048570, 1048601), response.body());
+
+        request = HttpRequest.newBuilder(URI.create(url)).header("Authorization", authorization)
+                .header("Range", "bytes=" + objectData.length + "-").build();
+        response = client.send(request, BodyHandlers.ofByteArray());
+        assertEquals(416, response.statusCode());
+
+        bucket.deleteObject("obj1").get();
+    }
 }
@@ -0,0 +1,26 @@
+package org.yamcs.benchmarks;
+
+import org.yamcs.YConfiguration;
+import org.yamcs.events.EventProducerFactory;
+import org.yamcs.mdb.Mdb;
+import org.yamcs.mdb.MdbFactory;
+
+/**
+ * Common setup for the benchmarks.
+ * <p>
+ * The configuration is read from the classpath (yamcs.yaml and yamcs.refmdb.yaml) and the MDB is loaded from
+ * {@code mdb/refmdb.xls} relative to the working directory, so the benchmarks have to be run from the
+ * yamcs-benchmarks directory.
+ */
+public class BenchmarkSetup {
+    public static final String INSTANCE = "refmdb";
+
+    /**
+     * Sets up the configuration and returns the refmdb.
+     */
+    public static synchronized Mdb setupRefMdb() {
+        YConfiguration.setupTest(null);
+        EventProducerFactory.setMockup(false);
+        return MdbFactory.getInstance(INSTANCE);
+    }
+}
@@ -0,0 +1,115 @@
+package org.yamcs.mdb;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.yamcs.benchmarks.BenchmarkSetup;
+import org.yamcs.xtce.IntegerDataEncoding;
+import org.yamcs.xtce.IntegerParameterType;
+import org.yamcs.xtce.Parameter;
+import org.yamcs.xtce.SpaceSystem;
+import org.yamcs.xtce.UnitType;
+
+/**
+ * Compares the loading of a cached MDB from a {@link MdbSnapshot} with the plain Java serialization used before.
+ * <p>
+ * The {@code synthetic} MDB contains {@value #NUM_SUBSYSTEMS} SpaceSystems of {@value #NUM_PARAMETERS} parameters
+ * each, every parameter having its own type, as produced by the spreadsheet loader.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MdbSnapshotBenchmark {
+    static final int NUM_SUBSYSTEMS = 20;
+    static final int NUM_PARAMETERS = 2500;
+    static final String[] UNITS = { "V", "A", "degC", "rpm", "%" };
+
+    @Param({ "refmdb", "synthetic" })
+    String mdb;
+
+    File plainFile;
+    File snapshotFile;
+
+    @Setup
+    public void setup() throws IOException {
+        Object obj = "refmdb".equals(mdb) ? BenchmarkSetup.setupRefMdb() : createSpaceSystem();
+
+        File dir = Files.createTempDirectory("MdbSnapshotBenchmark").toFile();
+        plainFile = new File(dir, "plain.serialized");
+        try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(plainFile))) {
+            out.writeObject(obj);
+        }
+        snapshotFile = new File(dir, "snapshot.serialized");
+        MdbSnapshot.write(obj, snapshotFile);
+    }
+
+    @TearDown
+    public void tearDown() {
+        plainFile.delete();
+        snapshotFile.delete();
+        plainFile.getParentFile().delete();
+    }
+
+    @Benchmark
+    public Object readPlain() throws IOException, ClassNotFoundException {
+        try (ObjectInputStream in = new ObjectInputStream(new FileInputStream(plainFile))) {
+            return in.readObject();
+        }
+    }
+
+    @Benchmark
+    public Object readSnapshot() throws IOException, ClassNotFoundException {
+        return MdbSnapshot.read(snapshotFile);
+    }
+
+    static SpaceSystem createSpaceSystem() {
+        SpaceSystem root = new SpaceSystem("BENCH");
+        root.setQualifiedName("/BENCH");
+        for (int i = 0; i < NUM_SUBSYSTEMS; i++) {
+            SpaceSystem ss = new SpaceSystem("SS" + i);
+            ss.setQualifiedName(root.getQualifiedName() + "/" + ss.getName());
+            for (int j = 0; j < NUM_PARAMETERS; j++) {
+                String name = "para" + j;
+                // new strings for each parameter, as read from the spreadsheet cells
+                IntegerParameterType ptype = new IntegerParameterType.Builder()
+                        .setName(name)
+                        .setQualifiedName(ss.getQualifiedName() + "/" + name)
+                        .setSizeInBits(32)
+                        .setSigned(false)
+                        .setEncoding(new IntegerDataEncoding.Builder().setSizeInBits(16))
+                        .addUnit(new UnitType(new String(UNITS[j % UNITS.length])))
+                        .build();
+                ss.addParameterType(ptype);
+
+                Parameter p = new Parameter(name);
+                p.setQualifiedName(ss.getQualifiedName() + "/" + name);
+                p.setShortDescription(new String("Parameter of subsystem " + ss.getName()));
+                p.setParameterType(ptype);
+                ss.addParameter(p);
+            }
+            root.addSpaceSystem(ss);
+        }
+        return root;
+    }
+}
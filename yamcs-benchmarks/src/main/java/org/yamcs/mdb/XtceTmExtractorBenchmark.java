@@ -0,0 +1,62 @@
+package org.yamcs.mdb;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.yamcs.benchmarks.BenchmarkSetup;
+import org.yamcs.tests.RefMdbPacketGenerator;
+import org.yamcs.utils.TimeEncoding;
+
+/**
+ * Measures {@link XtceTmExtractor#processPacket(byte[], long, long, int)} on packets of the refmdb.
+ * <p>
+ * The extractor subscribes to all the containers and parameters, similar to a realtime processor with
+ * {@code subscribeAll: true}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class XtceTmExtractorBenchmark {
+
+    @Param({ "PKT1_1", "PKT1_2", "PKT1_3", "PKT3" })
+    String packet;
+
+    XtceTmExtractor tmExtractor;
+    byte[] pkt;
+    long now;
+
+    @Setup
+    public void setup() {
+        Mdb mdb = BenchmarkSetup.setupRefMdb();
+        tmExtractor = new XtceTmExtractor(mdb);
+        tmExtractor.provideAll();
+
+        RefMdbPacketGenerator tmGenerator = new RefMdbPacketGenerator();
+        pkt = switch (packet) {
+        case "PKT1_1" -> tmGenerator.generate_PKT1_1();
+        case "PKT1_2" -> tmGenerator.generate_PKT1_2();
+        case "PKT1_3" -> tmGenerator.generate_PKT1_3();
+        case "PKT3" -> tmGenerator.generate_PKT3();
+        default -> throw new IllegalArgumentException("Unknown packet " + packet);
+        };
+        now = TimeEncoding.getWallclockTime();
+    }
+
+    @Benchmark
+    public ContainerProcessingResult processPacket() {
+        return tmExtractor.processPacket(pkt, now, now, 0);
+    }
+}
@@ -0,0 +1,101 @@
+package org.yamcs.parameter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.yamcs.benchmarks.BenchmarkSetup;
+import org.yamcs.mdb.Mdb;
+import org.yamcs.mdb.XtceTmExtractor;
+import org.yamcs.tests.RefMdbPacketGenerator;
+import org.yamcs.utils.TimeEncoding;
+import org.yamcs.xtce.Parameter;
+
+/**
+ * Measures the update and the retrieval of the {@link LastValueCache} and of the {@link ArrayParameterCache}.
+ * <p>
+ * Each update contains the parameters extracted from a few refmdb packets; the generation time is incremented with
+ * each invocation such that the {@link ArrayParameterCache} keeps on adding new rows.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParameterCacheBenchmark {
+    @Param({ "false", "true" })
+    boolean offHeap;
+
+    LastValueCache lastValueCache;
+    ArrayParameterCache arrayParameterCache;
+    ParameterValueList delivery;
+    List<Parameter> params;
+    long genTime;
+
+    @Setup
+    public void setup() {
+        Mdb mdb = BenchmarkSetup.setupRefMdb();
+        RefMdbPacketGenerator tmGenerator = new RefMdbPacketGenerator();
+        XtceTmExtractor tmExtractor = new XtceTmExtractor(mdb);
+        tmExtractor.provideAll();
+        genTime = TimeEncoding.getWallclockTime();
+        delivery = new ParameterValueList();
+        for (byte[] pkt : List.of(tmGenerator.generate_PKT1_1(), tmGenerator.generate_PKT1_2(),
+                tmGenerator.generate_PKT1_3())) {
+            delivery.addAll(tmExtractor.processPacket(pkt, genTime, genTime, 0).getParameterResult());
+        }
+        params = new ArrayList<>();
+        for (ParameterValue pv : delivery) {
+            params.add(pv.getParameter());
+        }
+
+        lastValueCache = new LastValueCache();
+        lastValueCache.addAll(delivery);
+
+        arrayParameterCache = new ArrayParameterCache(BenchmarkSetup.INSTANCE,
+                new ParameterCacheConfig(true, true, 600_000, 4096, offHeap));
+        arrayParameterCache.update(delivery);
+    }
+
+    @Benchmark
+    public LastValueCache lastValueCacheUpdate() {
+        lastValueCache.addAll(delivery);
+        return lastValueCache;
+    }
+
+    @Benchmark
+    public ParameterValue lastValueCacheGet() {
+        ParameterValue last = null;
+        for (int i = 0; i < params.size(); i++) {
+            last = lastValueCache.getValue(params.get(i));
+        }
+        return last;
+    }
+
+    @Benchmark
+    public ArrayParameterCache arrayParameterCacheUpdate() {
+        genTime += 1000;
+        for (ParameterValue pv : delivery) {
+            pv.setGenerationTime(genTime);
+        }
+        arrayParameterCache.update(delivery);
+        return arrayParameterCache;
+    }
+
+    @Benchmark
+    public List<ParameterValue> arrayParameterCacheGetValues() {
+        return arrayParameterCache.getValues(params);
+    }
+}
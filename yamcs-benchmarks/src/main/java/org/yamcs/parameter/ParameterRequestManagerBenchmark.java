@@ -0,0 +1,108 @@
+package org.yamcs.parameter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.yamcs.Processor;
+import org.yamcs.ProcessorFactory;
+import org.yamcs.benchmarks.BenchmarkSetup;
+import org.yamcs.mdb.Mdb;
+import org.yamcs.mdb.XtceTmExtractor;
+import org.yamcs.tests.RefMdbPacketGenerator;
+import org.yamcs.utils.TimeEncoding;
+import org.yamcs.xtce.Parameter;
+
+/**
+ * Measures the fan-out of a parameter delivery to the subscribers in {@link ParameterRequestManager#update}.
+ * <p>
+ * The delivery consists of the parameters extracted from a few refmdb packets; each subscription is made of a random
+ * (but reproducible) subset of those parameters.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParameterRequestManagerBenchmark {
+
+    @Param({ "1", "10", "100" })
+    int numSubscriptions;
+
+    @Param({ "5", "20" })
+    int paramsPerSubscription;
+
+    Processor processor;
+    ParameterRequestManager prm;
+    ParameterValueList delivery;
+    long numDelivered;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        Mdb mdb = BenchmarkSetup.setupRefMdb();
+        RefMdbPacketGenerator tmGenerator = new RefMdbPacketGenerator();
+        processor = ProcessorFactory.create(BenchmarkSetup.INSTANCE, "ParameterRequestManagerBenchmark",
+                tmGenerator);
+        prm = processor.getParameterRequestManager();
+
+        XtceTmExtractor tmExtractor = new XtceTmExtractor(mdb);
+        tmExtractor.provideAll();
+        long now = TimeEncoding.getWallclockTime();
+        delivery = new ParameterValueList();
+        for (byte[] pkt : List.of(tmGenerator.generate_PKT1_1(), tmGenerator.generate_PKT1_2(),
+                tmGenerator.generate_PKT1_3())) {
+            delivery.addAll(tmExtractor.processPacket(pkt, now, now, 0).getParameterResult());
+        }
+
+        List<Parameter> params = new ArrayList<>();
+        for (ParameterValue pv : delivery) {
+            if (!params.contains(pv.getParameter())) {
+                params.add(pv.getParameter());
+            }
+        }
+
+        Random random = new Random(0);
+        ParameterConsumer consumer = new ParameterConsumer() {
+            @Override
+            public void updateItems(int subscriptionId, List<ParameterValue> items) {
+                numDelivered += items.size();
+            }
+
+            @Override
+            public boolean acceptsReusedList() {
+                return true;
+            }
+        };
+        for (int i = 0; i < numSubscriptions; i++) {
+            Collections.shuffle(params, random);
+            prm.addRequest(params.subList(0, Math.min(paramsPerSubscription, params.size())), consumer);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        processor.quit();
+    }
+
+    @Benchmark
+    public long update() {
+        prm.update(delivery);
+        return numDelivered;
+    }
+}
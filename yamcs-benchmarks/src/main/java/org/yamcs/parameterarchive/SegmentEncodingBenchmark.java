@@ -0,0 +1,108 @@
+package org.yamcs.parameterarchive;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.yamcs.parameter.BasicParameterValue;
+import org.yamcs.parameter.ParameterValue;
+import org.yamcs.parameter.Value;
+import org.yamcs.protobuf.Yamcs.Value.Type;
+import org.yamcs.utils.IntArray;
+import org.yamcs.utils.TimeEncoding;
+import org.yamcs.utils.ValueUtility;
+
+/**
+ * Measures the buildup of a parameter group segment followed by the consolidation and encoding of all its segments
+ * (time, engineering, raw and status) as done by {@link ParameterArchive#writeToArchive(PGSegment)}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SegmentEncodingBenchmark {
+
+    @Param({ "UINT32", "SINT64", "FLOAT", "DOUBLE" })
+    Type type;
+
+    @Param({ "10", "100" })
+    int numParameters;
+
+    @Param({ "1000" })
+    int numRecords;
+
+    IntArray pids;
+    long[] times;
+    List<List<BasicParameterValue>> records;
+    long interval;
+
+    @Setup
+    public void setup() {
+        TimeEncoding.setUp();
+        long t0 = ParameterArchive.getIntervalStart(TimeEncoding.parse("2024-01-01T00:00:00"));
+        interval = ParameterArchive.getInterval(t0);
+
+        pids = new IntArray();
+        for (int i = 0; i < numParameters; i++) {
+            pids.add(i);
+        }
+
+        times = new long[numRecords];
+        records = new ArrayList<>(numRecords);
+        for (int k = 0; k < numRecords; k++) {
+            times[k] = t0 + k * 1000L;
+            List<BasicParameterValue> record = new ArrayList<>(numParameters);
+            for (int i = 0; i < numParameters; i++) {
+                ParameterValue pv = new ParameterValue("/bench/p" + i);
+                // the raw values are slowly increasing counters, the engineering values are (calibrated) sine waves
+                pv.setRawValue(getValue(k + i));
+                pv.setEngValue(getValue(100 * Math.sin((k + i) / 100.0)));
+                record.add(pv);
+            }
+            records.add(record);
+        }
+    }
+
+    private Value getValue(double x) {
+        return switch (type) {
+        case UINT32 -> ValueUtility.getUint32Value((int) x);
+        case SINT64 -> ValueUtility.getSint64Value((long) x);
+        case FLOAT -> ValueUtility.getFloatValue((float) x);
+        case DOUBLE -> ValueUtility.getDoubleValue(x);
+        default -> throw new IllegalArgumentException("Unsupported type " + type);
+        };
+    }
+
+    @Benchmark
+    public long buildAndEncode() {
+        PGSegment pgs = new PGSegment(1, interval, numParameters);
+        for (int k = 0; k < numRecords; k++) {
+            pgs.addRecord(times[k], pids, records.get(k));
+        }
+        pgs.consolidate();
+
+        long size = SegmentEncoderDecoder.encode(pgs.getTimeSegment()).length;
+        for (ParameterValueSegment pvs : pgs.pvSegments) {
+            size += SegmentEncoderDecoder.encode(pvs.getConsolidatedEngValueSegment()).length;
+            BaseSegment rvs = pvs.getConsolidatedRawValueSegment();
+            if (rvs != null) {
+                size += SegmentEncoderDecoder.encode(rvs).length;
+            }
+            size += SegmentEncoderDecoder.encode(pvs.getConsolidatedParmeterStatusSegment()).length;
+        }
+        return size;
+    }
+}
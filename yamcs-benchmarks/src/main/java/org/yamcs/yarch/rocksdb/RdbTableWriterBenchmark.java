@@ -0,0 +1,121 @@
+package org.yamcs.yarch.rocksdb;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.yamcs.StandardTupleDefinitions;
+import org.yamcs.archive.XtceTmRecorder;
+import org.yamcs.benchmarks.BenchmarkSetup;
+import org.yamcs.tests.RefMdbPacketGenerator;
+import org.yamcs.utils.FileUtils;
+import org.yamcs.utils.TimeEncoding;
+import org.yamcs.yarch.DataType;
+import org.yamcs.yarch.PartitioningSpec;
+import org.yamcs.yarch.TableDefinition;
+import org.yamcs.yarch.TableWriter.InsertMode;
+import org.yamcs.yarch.Tuple;
+import org.yamcs.yarch.TupleDefinition;
+import org.yamcs.yarch.YarchDatabase;
+import org.yamcs.yarch.YarchDatabaseInstance;
+
+/**
+ * Measures {@link RdbTableWriter#onTuple} writing packets into a table defined like the tm table (primary key
+ * gentime,seqNum, partitioned and with a histogram on pname).
+ * <p>
+ * The database is created from scratch in the yamcs data directory (by default in the java temporary directory) for
+ * each trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RdbTableWriterBenchmark {
+    static final String INSTANCE = "rdbbench";
+    static final String TABLE_NAME = "tm";
+
+    @Param({ "INSERT", "UPSERT" })
+    InsertMode insertMode;
+
+    @Param({ "1", "16" })
+    int numPacketNames;
+
+    YarchDatabaseInstance ydb;
+    RdbTableWriter tableWriter;
+    TupleDefinition tdef;
+    String[] pnames;
+    byte[] packet;
+    long genTime;
+    int seqNum;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        BenchmarkSetup.setupRefMdb();
+        Path dir = Path.of(YarchDatabase.getDataDir());
+        FileUtils.deleteRecursivelyIfExists(dir.resolve(INSTANCE));
+        FileUtils.deleteRecursivelyIfExists(dir.resolve(INSTANCE + ".rdb"));
+
+        RdbStorageEngine rse = RdbStorageEngine.getInstance();
+        if (rse.getTablespace(INSTANCE) != null) {
+            rse.dropTablespace(INSTANCE);
+        }
+        rse.createTablespace(INSTANCE);
+        ydb = YarchDatabase.getInstance(INSTANCE);
+
+        tdef = XtceTmRecorder.RECORDED_TM_TUPLE_DEFINITION;
+        TableDefinition tblDef = new TableDefinition(TABLE_NAME, tdef,
+                Arrays.asList(StandardTupleDefinitions.GENTIME_COLUMN, StandardTupleDefinitions.SEQNUM_COLUMN));
+        tblDef.setHistogramColumns(Arrays.asList(XtceTmRecorder.PNAME_COLUMN));
+        PartitioningSpec pspec = PartitioningSpec.timeAndValueSpec(StandardTupleDefinitions.GENTIME_COLUMN,
+                XtceTmRecorder.PNAME_COLUMN, "YYYY");
+        pspec.setValueColumnType(DataType.ENUM);
+        tblDef.setPartitioningSpec(pspec);
+        tblDef.setStorageEngineName(YarchDatabase.RDB_ENGINE_NAME);
+        ydb.createTable(tblDef);
+
+        tableWriter = rse.newTableWriter(ydb, tblDef, insertMode);
+
+        pnames = new String[numPacketNames];
+        for (int i = 0; i < numPacketNames; i++) {
+            pnames[i] = "/REFMDB/SUBSYS1/PKT1_" + i;
+        }
+        packet = new RefMdbPacketGenerator().generate_PKT1_1();
+        genTime = TimeEncoding.parse("2024-01-01T00:00:00");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        tableWriter.close();
+        YarchDatabase.removeInstance(INSTANCE);
+        RdbStorageEngine rse = RdbStorageEngine.getInstance();
+        Tablespace tablespace = rse.getTablespace(INSTANCE);
+        rse.dropTablespace(INSTANCE);
+        // the tablespace executor is not stopped when dropping the tablespace; it would keep the forked VM alive
+        tablespace.getExecutor().shutdown();
+    }
+
+    @Benchmark
+    public int onTuple() {
+        genTime += 10;
+        seqNum++;
+        Tuple t = new Tuple(tdef, new Object[] { genTime, seqNum, genTime, 0, packet, null, null, null,
+                pnames[seqNum % pnames.length] });
+        tableWriter.onTuple(null, t);
+        return seqNum;
+    }
+}
@@ -104,6 +104,8 @@ public class AlgorithmManager extends AbstractProcessorService
         registerAlgorithmEngine("Java", jae);
         registerAlgorithmEngine("java", jae);
         registerAlgorithmEngine("java-expression", jae);
+        registerAlgorithmEngine("expression", jae);
+        registerAlgorithmEngine("Expression", jae);
     }
 
     int maxErrCount;
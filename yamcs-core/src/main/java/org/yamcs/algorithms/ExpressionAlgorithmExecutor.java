@@ -0,0 +1,95 @@
+package org.yamcs.algorithms;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.yamcs.mdb.ParameterTypeUtils;
+import org.yamcs.mdb.ProcessingContext;
+import org.yamcs.parameter.ParameterValue;
+import org.yamcs.parameter.Value;
+import org.yamcs.protobuf.Yamcs.Value.Type;
+import org.yamcs.utils.ValueUtility;
+import org.yamcs.xtce.Algorithm;
+import org.yamcs.xtce.BooleanParameterType;
+import org.yamcs.xtce.EnumeratedParameterType;
+import org.yamcs.xtce.InputParameter;
+import org.yamcs.xtce.Parameter;
+import org.yamcs.xtce.ParameterType;
+import org.yamcs.xtce.ValueEnumeration;
+
+/**
+ * Executes the algorithms written in the expression language (see {@link ExpressionCompiler}).
+ * <p>
+ * The inputs are converted to doubles when they are updated; the inputs which have not been received are NaN. The
+ * outputs are converted to the type of the output parameters; the outputs evaluated to NaN are not produced.
+ */
+public class ExpressionAlgorithmExecutor extends AbstractAlgorithmExecutor {
+    final double[] input;
+    final double[] output;
+    final ExpressionEvaluator evaluator;
+
+    public ExpressionAlgorithmExecutor(Algorithm algorithmDef, AlgorithmExecutionContext execCtx,
+            ExpressionEvaluator evaluator) {
+        super(algorithmDef, execCtx);
+        this.evaluator = evaluator;
+        input = new double[algorithmDef.getInputList().size()];
+        Arrays.fill(input, Double.NaN);
+        output = new double[algorithmDef.getOutputList().size()];
+    }
+
+    @Override
+    public synchronized AlgorithmExecutionResult execute(long acqTime, long genTime, ProcessingContext pctx) {
+        evaluator.evaluate(input, output);
+
+        List<ParameterValue> outputValues = new ArrayList<>(output.length);
+        for (int i = 0; i < output.length; i++) {
+            if (Double.isNaN(output[i])) {
+                continue;
+            }
+            Parameter outParam = getOutputParameter(i);
+            ParameterValue pv = new ParameterValue(outParam);
+            pv.setAcquisitionTime(acqTime);
+            pv.setGenerationTime(genTime);
+            Value engValue = getEngValue(outParam.getParameterType(), output[i]);
+            if (engValue == null) {
+                execCtx.getProcessorData().getEventProducer()
+                        .sendWarning(getAlgorithm().getName(), "Cannot convert algorithm output "
+                                + "'" + output[i] + "' into " + outParam.getParameterType());
+                pv.setInvalid();
+            } else {
+                pv.setEngValue(engValue);
+            }
+            outputValues.add(pv);
+        }
+        return new AlgorithmExecutionResult(inputValues, null, outputValues);
+    }
+
+    static Value getEngValue(ParameterType ptype, double value) {
+        if (ptype instanceof BooleanParameterType) {
+            return ValueUtility.getBooleanValue(value != 0);
+        } else if (ptype instanceof EnumeratedParameterType) {
+            ValueEnumeration ve = ((EnumeratedParameterType) ptype).enumValue((long) value);
+            return ve == null ? null : ParameterTypeUtils.getEngValue(ptype, ve.getLabel());
+        } else {
+            return ParameterTypeUtils.getEngValue(ptype, Double.valueOf(value));
+        }
+    }
+
+    @Override
+    protected void updateInput(int idx, InputParameter inputParameter, ParameterValue newValue) {
+        Value v = inputParameter.getParameterInstance().useCalibratedValue() ? newValue.getEngValue()
+                : newValue.getRawValue();
+
+        if (v == null) {
+            input[idx] = Double.NaN;
+        } else if (v.getType() == Type.BOOLEAN) {
+            input[idx] = v.getBooleanValue() ? 1 : 0;
+        } else if (!ValueUtility.processAsDouble(v, d -> {
+            input[idx] = d;
+        })) {
+            log.warn("Cannot use value of type {} for input parameter {}", v.getType(), inputParameter);
+            input[idx] = Double.NaN;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package org.yamcs.algorithms;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.yamcs.xtce.Algorithm.Scope;
+import org.yamcs.xtce.CustomAlgorithm;
+import org.yamcs.xtce.InputParameter;
+import org.yamcs.xtce.OutputParameter;
+
+/**
+ * Generates executors for the algorithms written in the built-in expression language.
+ * <p>
+ * The text is compiled by the {@link ExpressionCompiler} into a class working only with primitive values, such that
+ * these algorithms do not go through a script engine.
+ */
+public class ExpressionAlgorithmExecutorFactory implements AlgorithmExecutorFactory {
+
+    @Override
+    public AlgorithmExecutor makeExecutor(CustomAlgorithm alg, AlgorithmExecutionContext execCtx)
+            throws AlgorithmException {
+        if (alg.getScope() == Scope.COMMAND_VERIFICATION) {
+            throw new AlgorithmException("Expression algorithms cannot be used as command verifiers");
+        }
+        for (InputParameter inputParam : alg.getInputList()) {
+            if (inputParam.getParameterInstance() == null) {
+                throw new AlgorithmException("Expression algorithms support only parameters as inputs");
+            }
+        }
+        List<String> inputNames = alg.getInputList().stream()
+                .map(InputParameter::getEffectiveInputName)
+                .collect(Collectors.toList());
+        List<String> outputNames = alg.getOutputList().stream()
+                .map(OutputParameter::getEffectiveOutputName)
+                .collect(Collectors.toList());
+
+        ExpressionCompiler compiler = new ExpressionCompiler(alg.getAlgorithmText(), inputNames, outputNames);
+        try {
+            return new ExpressionAlgorithmExecutor(alg, execCtx, compiler.compile());
+        } catch (AlgorithmException e) {
+            throw new AlgorithmException("Cannot compile algorithm " + alg.getQualifiedName() + ": "
+                    + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public List<String> getLanguages() {
+        return Arrays.asList("expression", "Expression");
+    }
+}
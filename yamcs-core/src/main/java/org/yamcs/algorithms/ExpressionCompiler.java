@@ -0,0 +1,609 @@
+package org.yamcs.algorithms;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.codehaus.janino.SimpleCompiler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compiles the text of the expression algorithms into an {@link ExpressionEvaluator}.
+ * <p>
+ * The text is a list of assignments <code>name = expression</code> separated by semicolons or new lines. The name is
+ * either an output of the algorithm or a local variable which can be used in the following assignments. The
+ * expressions are made of:
+ * <ul>
+ * <li>numbers, <code>true</code>, <code>false</code> and the constants <code>PI</code>, <code>E</code> and
+ * <code>NaN</code>;</li>
+ * <li>the inputs of the algorithm and the variables assigned before;</li>
+ * <li>the arithmetic operators <code>+ - * / %</code>, the comparison operators
+ * <code>== != &lt; &lt;= &gt; &gt;=</code>, the logical operators <code>&amp;&amp; || !</code> and the conditional
+ * operator <code>condition ? value1 : value2</code>;</li>
+ * <li>the functions <code>abs, sqrt, exp, log, log10, sin, cos, tan, asin, acos, atan, floor, ceil, round</code> with
+ * one argument (<code>round</code> rounds half up, like {@link Math#round(double)}), <code>pow, atan2, hypot</code> with two arguments, <code>min, max</code> with two or more arguments and
+ * <code>isNaN</code>;</li>
+ * <li>the lookup tables <code>lookup(x, k1, v1, k2, v2, ..., default)</code> returning the value corresponding to the
+ * key equal to x and <code>interpolate(x, x1, y1, x2, y2, ...)</code> interpolating linearly between the points.</li>
+ * </ul>
+ * Comments start with <code>//</code> and continue until the end of the line.
+ * <p>
+ * All the values are primitive doubles or booleans; the text is translated into a Java class which is compiled with
+ * Janino, such that the evaluation does not allocate any object.
+ */
+public class ExpressionCompiler {
+    static final Logger log = LoggerFactory.getLogger(ExpressionCompiler.class);
+    static final String PACKAGE_NAME = "org.yamcs.algorithms.expr";
+    private static final AtomicInteger counter = new AtomicInteger();
+
+    static final Map<String, String> FUNCTIONS_1 = new HashMap<>();
+    static {
+        for (String f : new String[] { "abs", "sqrt", "exp", "log", "log10", "sin", "cos", "tan", "asin", "acos",
+                "atan", "floor", "ceil" }) {
+            FUNCTIONS_1.put(f, "Math." + f);
+        }
+        // Math.rint rounds half to even, round() rounds half up like Math.round
+        FUNCTIONS_1.put("round", "ExpressionFunctions.round");
+    }
+    static final Map<String, String> FUNCTIONS_2 = new HashMap<>();
+    static {
+        FUNCTIONS_2.put("pow", "Math.pow");
+        FUNCTIONS_2.put("atan2", "Math.atan2");
+        FUNCTIONS_2.put("hypot", "Math.hypot");
+    }
+    static final Map<String, String> CONSTANTS = new HashMap<>();
+    static {
+        CONSTANTS.put("PI", "Math.PI");
+        CONSTANTS.put("E", "Math.E");
+        CONSTANTS.put("NaN", "Double.NaN");
+    }
+
+    final String text;
+    final List<String> inputNames;
+    final List<String> outputNames;
+
+    // tokenizer state
+    private int pos = 0;
+    private int line = 1;
+    private int lineStart = 0;
+    private int depth = 0;
+    private Token token;
+    private Token prevToken;
+
+    // name -> local variable
+    private final Map<String, Variable> variables = new HashMap<>();
+    private final StringBuilder body = new StringBuilder();
+    private final StringBuilder fields = new StringBuilder();
+    private int numTables = 0;
+
+    public ExpressionCompiler(String text, List<String> inputNames, List<String> outputNames) {
+        this.text = text;
+        this.inputNames = inputNames;
+        this.outputNames = outputNames;
+    }
+
+    /**
+     * Parses the text and compiles the generated class.
+     *
+     * @throws AlgorithmException
+     *             if the text cannot be parsed or if an output is not assigned
+     */
+    public ExpressionEvaluator compile() throws AlgorithmException {
+        String className = "ExpressionEvaluator" + counter.incrementAndGet();
+        String code = generateClassCode(className);
+        log.debug("Compiling:\n{}", code);
+        try {
+            SimpleCompiler compiler = new SimpleCompiler();
+            compiler.cook(code);
+            Class<?> cls = compiler.getClassLoader().loadClass(PACKAGE_NAME + "." + className);
+            return (ExpressionEvaluator) cls.getDeclaredConstructor().newInstance();
+        } catch (Exception e) {
+            throw new AlgorithmException("Cannot compile expression '" + text + "'", e);
+        }
+    }
+
+    String generateClassCode(String className) throws AlgorithmException {
+        next();
+        while (token.type != TokenType.EOF) {
+            if (token.type == TokenType.SEPARATOR) {
+                next();
+                continue;
+            }
+            parseAssignment();
+            if (token.type != TokenType.SEPARATOR && token.type != TokenType.EOF) {
+                throw error("Expected ';' or new line instead of '" + token.text + "'");
+            }
+        }
+        for (int i = 0; i < outputNames.size(); i++) {
+            Variable v = variables.get(outputNames.get(i));
+            if (v == null) {
+                throw new AlgorithmException("Output '" + outputNames.get(i) + "' is not assigned");
+            }
+            body.append("        output[").append(i).append("] = ")
+                    .append(v.bool ? "(" + v.javaName + " ? 1.0 : 0.0)" : v.javaName).append(";\n");
+        }
+
+        StringBuilder sb = new StringBuilder();
+        sb.append("package ").append(PACKAGE_NAME).append(";\n\n")
+                .append("import org.yamcs.algorithms.ExpressionFunctions;\n\n")
+                .append("public class ").append(className)
+                .append(" implements org.yamcs.algorithms.ExpressionEvaluator {\n")
+                .append(fields)
+                .append("    public void evaluate(double[] input, double[] output) {\n")
+                .append(body)
+                .append("    }\n")
+                .append("}\n");
+        return sb.toString();
+    }
+
+    private void parseAssignment() throws AlgorithmException {
+        if (token.type != TokenType.IDENT) {
+            throw error("Expected a variable name instead of '" + token.text + "'");
+        }
+        String name = token.text;
+        if (inputNames.contains(name)) {
+            throw error("Cannot assign the input '" + name + "'");
+        }
+        if (CONSTANTS.containsKey(name) || "true".equals(name) || "false".equals(name)) {
+            throw error("Cannot assign '" + name + "'");
+        }
+        next();
+        expect("=");
+        Expr e = parseExpression();
+
+        Variable v = variables.get(name);
+        if (v == null) {
+            v = new Variable("v" + variables.size(), e.bool);
+            variables.put(name, v);
+            body.append("        ").append(e.bool ? "boolean " : "double ");
+        } else if (v.bool != e.bool) {
+            throw error("Cannot assign a " + typeName(e.bool) + " to the " + typeName(v.bool) + " '" + name + "'");
+        } else {
+            body.append("        ");
+        }
+        body.append(v.javaName).append(" = ").append(e.code).append(";\n");
+    }
+
+    private Expr parseExpression() throws AlgorithmException {
+        Expr cond = parseOr();
+        if (!isOp("?")) {
+            return cond;
+        }
+        checkBool(cond, "?");
+        next();
+        Expr e1 = parseExpression();
+        expect(":");
+        Expr e2 = parseExpression();
+        if (e1.bool != e2.bool) {
+            throw error("The two alternatives of '?' have different types");
+        }
+        return new Expr("(" + cond.code + " ? " + e1.code + " : " + e2.code + ")", e1.bool);
+    }
+
+    private Expr parseOr() throws AlgorithmException {
+        Expr e = parseAnd();
+        while (isOp("||")) {
+            next();
+            Expr e1 = parseAnd();
+            checkBool(e, "||");
+            checkBool(e1, "||");
+            e = new Expr("(" + e.code + " || " + e1.code + ")", true);
+        }
+        return e;
+    }
+
+    private Expr parseAnd() throws AlgorithmException {
+        Expr e = parseComparison();
+        while (isOp("&&")) {
+            next();
+            Expr e1 = parseComparison();
+            checkBool(e, "&&");
+            checkBool(e1, "&&");
+            e = new Expr("(" + e.code + " && " + e1.code + ")", true);
+        }
+        return e;
+    }
+
+    private Expr parseComparison() throws AlgorithmException {
+        Expr e = parseAdditive();
+        if (isOp("==") || isOp("!=")) {
+            String op = token.text;
+            next();
+            Expr e1 = parseAdditive();
+            if (e.bool != e1.bool) {
+                throw error("Cannot compare a " + typeName(e.bool) + " with a " + typeName(e1.bool));
+            }
+            return new Expr("(" + e.code + " " + op + " " + e1.code + ")", true);
+        } else if (isOp("<") || isOp("<=") || isOp(">") || isOp(">=")) {
+            String op = token.text;
+            next();
+            Expr e1 = parseAdditive();
+            checkNumber(e, op);
+            checkNumber(e1, op);
+            return new Expr("(" + e.code + " " + op + " " + e1.code + ")", true);
+        }
+        return e;
+    }
+
+    private Expr parseAdditive() throws AlgorithmException {
+        Expr e = parseMultiplicative();
+        while (isOp("+") || isOp("-")) {
+            String op = token.text;
+            next();
+            Expr e1 = parseMultiplicative();
+            checkNumber(e, op);
+            checkNumber(e1, op);
+            e = new Expr("(" + e.code + " " + op + " " + e1.code + ")", false);
+        }
+        return e;
+    }
+
+    private Expr parseMultiplicative() throws AlgorithmException {
+        Expr e = parseUnary();
+        while (isOp("*") || isOp("/") || isOp("%")) {
+            String op = token.text;
+            next();
+            Expr e1 = parseUnary();
+            checkNumber(e, op);
+            checkNumber(e1, op);
+            e = new Expr("(" + e.code + " " + op + " " + e1.code + ")", false);
+        }
+        return e;
+    }
+
+    private Expr parseUnary() throws AlgorithmException {
+        if (isOp("-")) {
+            next();
+            Expr e = parseUnary();
+            checkNumber(e, "-");
+            if (e.constant) {
+                return new Expr(-e.value);
+            }
+            return new Expr("(-" + e.code + ")", false);
+        } else if (isOp("+")) {
+            next();
+            Expr e = parseUnary();
+            checkNumber(e, "+");
+            return e;
+        } else if (isOp("!")) {
+            next();
+            Expr e = parseUnary();
+            checkBool(e, "!");
+            return new Expr("(!" + e.code + ")", true);
+        }
+        return parsePrimary();
+    }
+
+    private Expr parsePrimary() throws AlgorithmException {
+        Token t = token;
+        if (t.type == TokenType.NUMBER) {
+            next();
+            double d;
+            try {
+                d = Double.parseDouble(t.text);
+            } catch (NumberFormatException e) {
+                throw error("Invalid number '" + t.text + "'");
+            }
+            return new Expr(d);
+        } else if (isOp("(")) {
+            next();
+            Expr e = parseExpression();
+            expect(")");
+            return e;
+        } else if (t.type == TokenType.IDENT) {
+            next();
+            if (isOp("(")) {
+                next();
+                List<Expr> args = new ArrayList<>();
+                if (!isOp(")")) {
+                    args.add(parseExpression());
+                    while (isOp(",")) {
+                        next();
+                        args.add(parseExpression());
+                    }
+                }
+                expect(")");
+                return makeFunctionCall(t, args);
+            }
+            return makeName(t);
+        } else if (t.type == TokenType.EOF) {
+            throw error("Unexpected end of the text");
+        } else {
+            throw error("Unexpected '" + t.text + "'");
+        }
+    }
+
+    private Expr makeName(Token t) throws AlgorithmException {
+        String name = t.text;
+        if ("true".equals(name) || "false".equals(name)) {
+            return new Expr(name, true);
+        }
+        Variable v = variables.get(name);
+        if (v != null) {
+            return new Expr(v.javaName, v.bool);
+        }
+        int idx = inputNames.indexOf(name);
+        if (idx >= 0) {
+            return new Expr("input[" + idx + "]", false);
+        }
+        String c = CONSTANTS.get(name);
+        if (c != null) {
+            return new Expr(c, false);
+        }
+        if (outputNames.contains(name)) {
+            throw error(t, "The output '" + name + "' is used before being assigned");
+        }
+        throw error(t, "Unknown name '" + name + "'");
+    }
+
+    private Expr makeFunctionCall(Token t, List<Expr> args) throws AlgorithmException {
+        String name = t.text;
+        for (Expr e : args) {
+            checkNumber(e, name);
+        }
+        String f = FUNCTIONS_1.get(name);
+        if (f != null) {
+            checkArgs(t, args, args.size() == 1, "one argument");
+            return new Expr(f + "(" + args.get(0).code + ")", false);
+        }
+        f = FUNCTIONS_2.get(name);
+        if (f != null) {
+            checkArgs(t, args, args.size() == 2, "two arguments");
+            return new Expr(f + "(" + args.get(0).code + ", " + args.get(1).code + ")", false);
+        }
+        switch (name) {
+        case "min":
+        case "max":
+            checkArgs(t, args, args.size() >= 2, "at least two arguments");
+            String code = args.get(0).code;
+            for (int i = 1; i < args.size(); i++) {
+                code = "Math." + name + "(" + code + ", " + args.get(i).code + ")";
+            }
+            return new Expr(code, false);
+        case "isNaN":
+            checkArgs(t, args, args.size() == 1, "one argument");
+            return new Expr("Double.isNaN(" + args.get(0).code + ")", true);
+        case "lookup":
+            checkArgs(t, args, args.size() >= 4 && args.size() % 2 == 0,
+                    "the value, pairs of key and value and the default value");
+            return new Expr("ExpressionFunctions.lookup(" + args.get(0).code + ", "
+                    + makeTable(args, 1, args.size() - 1, false) + ", "
+                    + makeTable(args, 2, args.size() - 1, false) + ", "
+                    + args.get(args.size() - 1).code + ")", false);
+        case "interpolate":
+            checkArgs(t, args, args.size() >= 5 && args.size() % 2 == 1, "the value and at least two points");
+            return new Expr("ExpressionFunctions.interpolate(" + args.get(0).code + ", "
+                    + makeTable(args, 1, args.size(), true) + ", "
+                    + makeTable(args, 2, args.size(), false) + ")", false);
+        default:
+            throw error(t, "Unknown function '" + name + "'");
+        }
+    }
+
+    /**
+     * Makes an array from every second argument starting at start; if all the elements are constant, the array is
+     * created once as a static field of the generated class.
+     */
+    private String makeTable(List<Expr> args, int start, int end, boolean sorted) throws AlgorithmException {
+        boolean constant = true;
+        StringBuilder sb = new StringBuilder();
+        for (int i = start; i < end; i += 2) {
+            Expr e = args.get(i);
+            constant &= e.constant;
+            if (sb.length() > 0) {
+                sb.append(", ");
+            }
+            sb.append(e.code);
+        }
+        if (!constant) {
+            return "new double[] {" + sb + "}";
+        }
+        if (sorted) {
+            for (int i = start + 2; i < end; i += 2) {
+                if (args.get(i).value <= args.get(i - 2).value) {
+                    throw error("The interpolation table has to be sorted in increasing order");
+                }
+            }
+        }
+        String fieldName = "table" + numTables++;
+        fields.append("    static final double[] ").append(fieldName).append(" = {").append(sb).append("};\n");
+        return fieldName;
+    }
+
+    private void checkArgs(Token t, List<Expr> args, boolean ok, String expected) throws AlgorithmException {
+        if (!ok) {
+            throw error(t, "Function '" + t.text + "' expects " + expected + "; got " + args.size());
+        }
+    }
+
+    private void checkBool(Expr e, String op) throws AlgorithmException {
+        if (!e.bool) {
+            throw error("'" + op + "' expects a boolean instead of " + e.code);
+        }
+    }
+
+    private void checkNumber(Expr e, String op) throws AlgorithmException {
+        if (e.bool) {
+            throw error("'" + op + "' expects a number instead of " + e.code);
+        }
+    }
+
+    private static String typeName(boolean bool) {
+        return bool ? "boolean" : "number";
+    }
+
+    private boolean isOp(String op) {
+        return token.type == TokenType.OPERATOR && token.text.equals(op);
+    }
+
+    private void expect(String op) throws AlgorithmException {
+        if (!isOp(op)) {
+            throw error("Expected '" + op + "' instead of '" + token.text + "'");
+        }
+        next();
+    }
+
+    private AlgorithmException error(String msg) {
+        return error(token, msg);
+    }
+
+    private AlgorithmException error(Token t, String msg) {
+        return new AlgorithmException("line " + t.line + ", column " + t.column + ": " + msg);
+    }
+
+    private void next() throws AlgorithmException {
+        prevToken = token;
+        token = readToken();
+    }
+
+    private Token readToken() throws AlgorithmException {
+        while (pos < text.length()) {
+            char c = text.charAt(pos);
+            if (c == '\n') {
+                pos++;
+                line++;
+                lineStart = pos;
+                // the new line ends the statement unless the expression is obviously not complete
+                if (depth == 0 && prevToken != null && !isContinuation(prevToken)) {
+                    return new Token(TokenType.SEPARATOR, "new line", line - 1, pos - lineStart);
+                }
+            } else if (Character.isWhitespace(c)) {
+                pos++;
+            } else if (c == '/' && pos + 1 < text.length() && text.charAt(pos + 1) == '/') {
+                while (pos < text.length() && text.charAt(pos) != '\n') {
+                    pos++;
+                }
+            } else {
+                break;
+            }
+        }
+        if (pos >= text.length()) {
+            return new Token(TokenType.EOF, "end of text", line, pos - lineStart + 1);
+        }
+        int start = pos;
+        int column = pos - lineStart + 1;
+        char c = text.charAt(pos);
+        if (Character.isDigit(c) || (c == '.' && pos + 1 < text.length() && Character.isDigit(text.charAt(pos + 1)))) {
+            while (pos < text.length() && (Character.isDigit(text.charAt(pos)) || text.charAt(pos) == '.')) {
+                pos++;
+            }
+            if (pos < text.length() && (text.charAt(pos) == 'e' || text.charAt(pos) == 'E')) {
+                pos++;
+                if (pos < text.length() && (text.charAt(pos) == '+' || text.charAt(pos) == '-')) {
+                    pos++;
+                }
+                while (pos < text.length() && Character.isDigit(text.charAt(pos))) {
+                    pos++;
+                }
+            }
+            return new Token(TokenType.NUMBER, text.substring(start, pos), line, column);
+        } else if (Character.isLetter(c) || c == '_') {
+            while (pos < text.length() && (Character.isLetterOrDigit(text.charAt(pos)) || text.charAt(pos) == '_')) {
+                pos++;
+            }
+            return new Token(TokenType.IDENT, text.substring(start, pos), line, column);
+        } else if (c == ';') {
+            pos++;
+            return new Token(TokenType.SEPARATOR, ";", line, column);
+        }
+        if (pos + 1 < text.length()) {
+            String op2 = text.substring(pos, pos + 2);
+            switch (op2) {
+            case "==":
+            case "!=":
+            case "<=":
+            case ">=":
+            case "&&":
+            case "||":
+                pos += 2;
+                return new Token(TokenType.OPERATOR, op2, line, column);
+            default:
+            }
+        }
+        if ("+-*/%<>!?:(),=".indexOf(c) >= 0) {
+            pos++;
+            if (c == '(') {
+                depth++;
+            } else if (c == ')' && depth > 0) {
+                depth--;
+            }
+            return new Token(TokenType.OPERATOR, String.valueOf(c), line, column);
+        }
+        throw new AlgorithmException("line " + line + ", column " + column + ": Unexpected character '" + c + "'");
+    }
+
+    // returns true if the token cannot end an expression
+    private static boolean isContinuation(Token t) {
+        return t.type == TokenType.OPERATOR && !")".equals(t.text);
+    }
+
+    enum TokenType {
+        NUMBER, IDENT, OPERATOR, SEPARATOR, EOF
+    }
+
+    static class Token {
+        final TokenType type;
+        final String text;
+        final int line;
+        final int column;
+
+        Token(TokenType type, String text, int line, int column) {
+            this.type = type;
+            this.text = text;
+            this.line = line;
+            this.column = column;
+        }
+    }
+
+    static class Expr {
+        final String code;
+        final boolean bool;
+        // true for the number literals
+        final boolean constant;
+        // the value of the number literals
+        final double value;
+
+        Expr(String code, boolean bool) {
+            this.code = code;
+            this.bool = bool;
+            this.constant = false;
+            this.value = Double.NaN;
+        }
+
+        Expr(double value) {
+            this.code = javaLiteral(value);
+            this.bool = false;
+            this.constant = true;
+            this.value = value;
+        }
+    }
+
+    /**
+     * Returns the Java source for a double value; the infinities and NaN have no literal (an out of range literal such
+     * as 1e400 is parsed to infinity).
+     */
+    static String javaLiteral(double d) {
+        if (Double.isNaN(d)) {
+            return "Double.NaN";
+        } else if (d == Double.POSITIVE_INFINITY) {
+            return "Double.POSITIVE_INFINITY";
+        } else if (d == Double.NEGATIVE_INFINITY) {
+            return "Double.NEGATIVE_INFINITY";
+        } else {
+            return Double.toString(d);
+        }
+    }
+
+    static class Variable {
+        final String javaName;
+        final boolean bool;
+
+        Variable(String javaName, boolean bool) {
+            this.javaName = javaName;
+            this.bool = bool;
+        }
+    }
+}
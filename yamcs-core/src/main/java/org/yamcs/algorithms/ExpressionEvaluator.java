@@ -0,0 +1,11 @@
+package org.yamcs.algorithms;
+
+/**
+ * Interface implemented by the classes generated by the {@link ExpressionCompiler}.
+ * <p>
+ * The inputs and the outputs are passed as primitive doubles; the boolean outputs are passed as 1 (true) or 0
+ * (false).
+ */
+public interface ExpressionEvaluator {
+    void evaluate(double[] input, double[] output);
+}
@@ -0,0 +1,65 @@
+package org.yamcs.algorithms;
+
+/**
+ * Functions called by the code generated by the {@link ExpressionCompiler}.
+ */
+public class ExpressionFunctions {
+
+    private ExpressionFunctions() {
+    }
+
+    /**
+     * Rounds to the closest integer, with the ties rounded up (towards positive infinity) like
+     * {@link Math#round(double)}, but without converting to long.
+     */
+    public static double round(double x) {
+        if (Double.isNaN(x) || Double.isInfinite(x) || Math.abs(x) >= 0x1p52) {
+            // no fractional part
+            return x;
+        }
+        double r = Math.floor(x);
+        // exact for |x| < 2^52
+        return x - r >= 0.5 ? r + 1 : r;
+    }
+
+    /**
+     * Returns the value corresponding to the key equal to x or the default value if there is no such key.
+     */
+    public static double lookup(double x, double[] keys, double[] values, double defaultValue) {
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] == x) {
+                return values[i];
+            }
+        }
+        return defaultValue;
+    }
+
+    /**
+     * Linear interpolation in the table (xs, ys); xs has to be sorted in increasing order.
+     * <p>
+     * The values outside the table are clamped to the first respectively the last y value.
+     */
+    public static double interpolate(double x, double[] xs, double[] ys) {
+        int n = xs.length;
+        if (Double.isNaN(x)) {
+            return Double.NaN;
+        }
+        if (x <= xs[0]) {
+            return ys[0];
+        }
+        if (x >= xs[n - 1]) {
+            return ys[n - 1];
+        }
+        int lo = 0;
+        int hi = n - 1;
+        while (hi - lo > 1) {
+            int mid = (lo + hi) >>> 1;
+            if (xs[mid] <= x) {
+                lo = mid;
+            } else {
+                hi = mid;
+            }
+        }
+        return ys[lo] + (ys[hi] - ys[lo]) * (x - xs[lo]) / (xs[hi] - xs[lo]);
+    }
+}
@@ -5,6 +5,7 @@ import org.yamcs.YConfiguration;
 public class JavaAlgorithmEngine implements AlgorithmEngine {
     JavaAlgorithmExecutorFactory javaFactory = new JavaAlgorithmExecutorFactory();
     JavaExprAlgorithmExecutionFactory javaExprFactory = new JavaExprAlgorithmExecutionFactory();
+    ExpressionAlgorithmExecutorFactory expressionFactory = new ExpressionAlgorithmExecutorFactory();
 
     @Override
     public AlgorithmExecutorFactory makeExecutorFactory(AlgorithmManager algorithmManager,
@@ -13,6 +14,8 @@ public class JavaAlgorithmEngine implements AlgorithmEngine {
             return javaFactory;
         } else if ("java-expression".equalsIgnoreCase(language)) {
             return javaExprFactory;
+        } else if ("expression".equalsIgnoreCase(language)) {
+            return expressionFactory;
         } else {
             throw new IllegalArgumentException("Unknown lanaguage '" + language + "'");
         }
@@ -4,16 +4,20 @@ import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 import javax.naming.ConfigurationException;
 
 import org.rocksdb.RocksDBException;
 import org.rocksdb.RocksIterator;
+import org.rocksdb.WriteBatch;
+import org.rocksdb.WriteBatchWithIndex;
+import org.rocksdb.WriteOptions;
 import org.yamcs.AbstractYamcsService;
 import org.yamcs.InitException;
 import org.yamcs.NotThreadSafe;
@@ -27,10 +31,10 @@ import org.yamcs.protobuf.Yamcs.NamedObjectId;
 import org.yamcs.tctm.CcsdsPacket;
 import org.yamcs.utils.TimeEncoding;
 import org.yamcs.utils.TimeInterval;
-import org.yamcs.utils.parser.ParseException;
 import org.yamcs.yarch.HistogramSegment;
+import org.yamcs.yarch.PartitionManager.Interval;
 import org.yamcs.yarch.Stream;
-import org.yamcs.yarch.StreamSubscriber;
+import org.yamcs.yarch.TableDefinition;
 import org.yamcs.yarch.Tuple;
 import org.yamcs.yarch.YarchDatabase;
 import org.yamcs.yarch.YarchDatabaseInstance;
@@ -41,7 +45,7 @@ import org.yamcs.yarch.rocksdb.Tablespace;
 import org.yamcs.yarch.rocksdb.YRDB;
 import org.yamcs.yarch.rocksdb.protobuf.Tablespace.TablespaceRecord;
 import org.yamcs.yarch.rocksdb.protobuf.Tablespace.TablespaceRecord.Type;
-import org.yamcs.yarch.streamsql.StreamSqlException;
+import org.yamcs.yarch.rocksdb.protobuf.Tablespace.TmIndexRebuildInterval;
 
 /**
  * Completeness index of CCSDS telemetry. The structure of the rocksdb records:
@@ -64,10 +68,11 @@ public class CcsdsTmIndex extends AbstractYamcsService implements TmIndexService
     // if time between two packets with the same apid is more than one hour,
     // make two records even if they packets are in sequence (because maybe there is a wrap around involved)
     static long maxApidInterval = 3600 * 1000l;
-    private static AtomicInteger streamCounter = new AtomicInteger();
     protected Tablespace tablespace;
     int tbsIndex;
+    TablespaceRecord tmIndexRecord;
     List<String> streamNames;
+    CcsdsTmIndexRebuilder rebuilder;
 
     @Override
     public void init(String yamcsInstance, String serviceName, YConfiguration args) throws InitException {
@@ -103,6 +108,11 @@ public class CcsdsTmIndex extends AbstractYamcsService implements TmIndexService
             }
             stream.addSubscriber(this);
         }
+        if (tmIndexRecord.getTmIndexRebuildCount() > 0) {
+            log.info("Resuming the interrupted rebuild of the CCSDS tm index ({} intervals remaining)",
+                    tmIndexRecord.getTmIndexRebuildCount());
+            startRebuild(tmIndexRecord.getTmIndexRebuildList());
+        }
         notifyStarted();
     }
 
@@ -116,6 +126,13 @@ public class CcsdsTmIndex extends AbstractYamcsService implements TmIndexService
                 stream.removeSubscriber(this);
             }
         }
+        CcsdsTmIndexRebuilder r;
+        synchronized (this) {
+            r = rebuilder;
+        }
+        if (r != null) {
+            r.quit();
+        }
         notifyStopped();
     }
 
@@ -135,6 +152,7 @@ public class CcsdsTmIndex extends AbstractYamcsService implements TmIndexService
             tbr = l.get(0);
         }
         tbsIndex = tbr.getTbsIndex();
+        tmIndexRecord = tbr;
     }
 
     private static byte[] firstKey(int tbsIndex) {
@@ -237,6 +255,86 @@ public class CcsdsTmIndex extends AbstractYamcsService implements TmIndexService
         }
     }
 
+    /**
+     * Adds the records built by the rebuild for one interval and removes the interval from the rebuild checkpoint, in
+     * one atomic write.
+     * <p>
+     * The records are merged with the existing records they attach to. The existing records overlapping with them
+     * can only come from packets received in realtime during the rebuild; the records completely included are
+     * dropped and the partially overlapping ones are merged (the number of packets may be overestimated in this case).
+     */
+    synchronized void addRecords(Collection<Record> records, TmIndexRebuildInterval interval)
+            throws RocksDBException, IOException {
+        YRDB db = tablespace.getRdb();
+        TablespaceRecord.Builder trb = tmIndexRecord.toBuilder().clearTmIndexRebuild();
+        for (TmIndexRebuildInterval tri : tmIndexRecord.getTmIndexRebuildList()) {
+            if (!tri.equals(interval)) {
+                trb.addTmIndexRebuild(tri);
+            }
+        }
+        try (WriteBatchWithIndex wb = new WriteBatchWithIndex(true);
+                WriteOptions wo = new WriteOptions();
+                RocksIterator it = wb.newIteratorWithBase(db.getDefaultColumnFamilyHandle(), db.newIterator())) {
+            for (Record r : records) {
+                addRecord(wb, it, r);
+            }
+            TablespaceRecord tr = tablespace.writeToBatch(yamcsInstance, wb, trb);
+            db.getDb().write(wo, wb);
+            tmIndexRecord = tr;
+        }
+    }
+
+    // the batch is only modified after reading the neighbours because the modification invalidates the iterator
+    private void addRecord(WriteBatchWithIndex wb, RocksIterator it, Record r) throws RocksDBException {
+        // the records starting inside the new one are removed
+        List<Record> inside = new ArrayList<>();
+        it.seek(r.key(tbsIndex));
+        while (true) {
+            Record rin = new Record(it.key(), it.value());
+            if (rin.apid != r.apid || compare(rin.firstTime, rin.seqFirst, r.lastTime, r.seqLast) > 0) {
+                break;
+            }
+            inside.add(rin);
+            it.next();
+        }
+        Record rright = new Record(it.key(), it.value());
+        it.seek(r.key(tbsIndex));
+        it.prev();
+        Record rleft = new Record(it.key(), it.value());
+
+        for (Record rin : inside) {
+            wb.delete(rin.key(tbsIndex));
+            if (compare(rin.lastTime, rin.seqLast, r.lastTime, r.seqLast) > 0) {
+                r.lastTime = rin.lastTime;
+                r.seqLast = rin.seqLast;
+                r.numPackets += rin.numPackets;
+            }
+        }
+        int cleft = compare(r.apid, r.firstTime, r.seqFirst, rleft);
+        int cright = compare(r.apid, r.lastTime, r.seqLast, rright);
+
+        Record m;
+        if (cleft == 0 || cleft == 1) {
+            if (cleft == 0 && compare(r.apid, r.lastTime, r.seqLast, rleft) == 0) {
+                // all the packets are already in the left record
+                return;
+            }
+            rleft.lastTime = r.lastTime;
+            rleft.seqLast = r.seqLast;
+            rleft.numPackets += r.numPackets;
+            m = rleft;
+        } else {
+            m = r;
+        }
+        if (cright == -1) {
+            wb.delete(rright.key(tbsIndex));
+            m.lastTime = rright.lastTime;
+            m.seqLast = rright.seqLast;
+            m.numPackets += rright.numPackets;
+        }
+        wb.put(m.key(tbsIndex), m.val());
+    }
+
     /**
      * compare the packet with the record. returns:
      * <ul>
@@ -247,7 +345,7 @@ public class CcsdsTmIndex extends AbstractYamcsService implements TmIndexService
      * <li>&gt;1 packet fits at the right and is not attached
      * </ul>
      */
-    private static int compare(short apid, long time, short seq, Record ar) {
+    static int compare(short apid, long time, short seq, Record ar) {
         short arapid = ar.apid();
         if (apid != arapid) {
             return 0x3FFF * Integer.signum(apid - arapid);
@@ -475,57 +573,151 @@ public class CcsdsTmIndex extends AbstractYamcsService implements TmIndexService
         }
     }
 
+    /**
+     * Rebuilds the index for the given time interval.
+     * <p>
+     * The interval is extended such that it does not cut through existing records, the records in the interval are
+     * removed and the interval is split according to the time partitions of the tm table. The partitions are rebuilt in
+     * parallel by the {@link CcsdsTmIndexRebuilder}, the progress being checkpointed in the tablespace such that an
+     * interrupted rebuild is resumed at the next start.
+     */
     public synchronized CompletableFuture<Void> rebuild(TimeInterval interval) throws YarchException {
-        CompletableFuture<Void> cf = new CompletableFuture<>();
-
-        if (interval.hasStart() || interval.hasEnd()) {
-            log.info("{}: Rebuilding the CCSDS tm index for time interval: {}", yamcsInstance,
-                    interval.toStringEncoded());
-            try {
+        if (rebuilder != null) {
+            return CompletableFuture.failedFuture(new IllegalStateException("A rebuild is already in progress"));
+        }
+        List<TmIndexRebuildInterval> intervals;
+        try {
+            boolean partial = interval.hasStart() || interval.hasEnd();
+            if (partial) {
+                interval = extendInterval(interval);
+                log.info("{}: Rebuilding the CCSDS tm index for time interval: {}", yamcsInstance,
+                        interval.toStringEncoded());
+            } else {
+                log.info("{} Rebuilding the CCSDS tm index from scratch", yamcsInstance);
+            }
+            intervals = splitInterval(interval);
+            // the checkpoint is written before removing the records, such that if interrupted, the rebuild is resumed
+            // at the next start
+            tmIndexRecord = tablespace.updateRecord(yamcsInstance,
+                    tmIndexRecord.toBuilder().clearTmIndexRebuild().addAllTmIndexRebuild(intervals));
+            if (partial) {
                 deleteRecords(interval);
-            } catch (Exception e) {
-                log.error("Error when removing the existing CCSDS tm index", e);
-                cf.completeExceptionally(e);
-                return cf;
+            } else {
+                deleteAllRecords();
             }
+        } catch (Exception e) {
+            log.error("Error when removing the existing CCSDS tm index", e);
+            return CompletableFuture.failedFuture(e);
+        }
 
-        } else {
-            log.info("{} Rebuilding the CCSDS tm index from scratch", yamcsInstance);
-            try {
-                tablespace.removeTbsIndex(Type.TM_INDEX, tbsIndex);
-                openDb();
-            } catch (Exception e) {
-                log.error("Error when removing existing tm index", e);
-                cf.completeExceptionally(e);
-                return cf;
+        return startRebuild(intervals);
+    }
+
+    private synchronized CompletableFuture<Void> startRebuild(List<TmIndexRebuildInterval> intervals) {
+        CcsdsTmIndexRebuilder r = new CcsdsTmIndexRebuilder(this, YarchDatabase.getInstance(yamcsInstance),
+                intervals);
+        rebuilder = r;
+        return r.start().whenComplete((v, t) -> {
+            synchronized (this) {
+                if (rebuilder == r) {
+                    rebuilder = null;
+                }
+            }
+            if (t == null) {
+                RebuildProgress progress = r.getProgress();
+                log.info("Finished rebuilding the CCSDS tm index: {} packets ({} packets/s)",
+                        progress.numPackets(), Math.round(progress.packetsPerSecond()));
+            }
+        });
+    }
+
+    @Override
+    public synchronized RebuildProgress getRebuildProgress() {
+        return rebuilder == null ? null : rebuilder.getProgress();
+    }
+
+    /**
+     * Extends the interval such that the records starting before its start or before its end and finishing after are
+     * completely included.
+     * <p>
+     * Otherwise the packets of these records falling outside the interval would be lost from the index.
+     */
+    private TimeInterval extendInterval(TimeInterval interval) throws RocksDBException {
+        TimeInterval result = new TimeInterval(interval);
+        List<Short> apids = getApids(this);
+        boolean changed = true;
+        try (RocksIterator it = tablespace.getRdb().newIterator()) {
+            while (changed) {
+                changed = false;
+                for (short apid : apids) {
+                    if (result.hasStart()) {
+                        Record r = getRecordBefore(it, apid, result.getStart());
+                        if (r != null && r.lastTime >= result.getStart()) {
+                            result.setStart(r.firstTime);
+                            changed = true;
+                        }
+                    }
+                    if (result.hasEnd()) {
+                        Record r = getRecordBefore(it, apid, result.getEnd());
+                        if (r != null && r.lastTime >= result.getEnd()) {
+                            result.setEnd(r.lastTime + 1);
+                            changed = true;
+                        }
+                    }
+                }
             }
         }
+        return result;
+    }
 
-        String timeColumnName = StandardTupleDefinitions.GENTIME_COLUMN;
-        String streamName = "histo_rebuild_" + streamCounter.incrementAndGet();
+    // returns the last record of the apid starting before the given time or null if there is no such record
+    private Record getRecordBefore(RocksIterator it, short apid, long time) {
+        it.seek(Record.key(tbsIndex, apid, time, (short) 0));
+        it.prev();
+        Record r = new Record(it.key(), it.value());
+        return r.apid == apid ? r : null;
+    }
+
+    /**
+     * Splits the interval according to the time partitions of the tm table
+     */
+    private List<TmIndexRebuildInterval> splitInterval(TimeInterval interval) {
+        List<TmIndexRebuildInterval> intervals = new ArrayList<>();
         YarchDatabaseInstance ydb = YarchDatabase.getInstance(yamcsInstance);
-        try {
-            ydb.execute("create stream " + streamName + " as select * from tm "
-                    + getWhereCondition(timeColumnName, interval));
-        } catch (StreamSqlException | ParseException e) {
-            throw new RuntimeException(e);
+        TableDefinition tblDef = ydb.getTable(XtceTmRecorder.TABLE_NAME);
+        if (tblDef == null) {
+            return intervals;
         }
-
-        Stream stream = ydb.getStream(streamName);
-        stream.addSubscriber(new StreamSubscriber() {
-            @Override
-            public void streamClosed(Stream stream) {
-                cf.complete(null);
+        Iterator<Interval> it = ydb.getPartitionManager(tblDef).intervalIterator(interval);
+        while (it.hasNext()) {
+            Interval pintv = it.next();
+            TmIndexRebuildInterval.Builder trib = TmIndexRebuildInterval.newBuilder();
+            if (interval.hasStart() || pintv.hasStart()) {
+                trib.setStart(Math.max(interval.hasStart() ? interval.getStart() : Long.MIN_VALUE,
+                        pintv.hasStart() ? pintv.getStart() : Long.MIN_VALUE));
             }
-
-            @Override
-            public void onTuple(Stream stream, Tuple tuple) {
-                CcsdsTmIndex.this.onTuple(stream, tuple);
+            if (interval.hasEnd() || pintv.hasEnd()) {
+                trib.setEnd(Math.min(interval.hasEnd() ? interval.getEnd() : Long.MAX_VALUE,
+                        pintv.hasEnd() ? pintv.getEnd() : Long.MAX_VALUE));
             }
-        });
-        stream.start();
+            if (trib.hasStart() && trib.hasEnd() && trib.getStart() >= trib.getEnd()) {
+                continue;
+            }
+            intervals.add(trib.build());
+        }
+        return intervals;
+    }
 
-        return cf;
+    // removes all the records except the first and the last ones, keeping the metadata record with the checkpoint
+    private synchronized void deleteAllRecords() throws RocksDBException {
+        YRDB db = tablespace.getRdb();
+        byte[] v = new byte[Record.VAL_SIZE];
+        try (WriteBatch wb = new WriteBatch(); WriteOptions wo = new WriteOptions()) {
+            wb.deleteRange(RdbStorageEngine.dbKey(tbsIndex), RdbStorageEngine.dbKey(tbsIndex + 1));
+            wb.put(firstKey(tbsIndex), v);
+            wb.put(lastKey(tbsIndex), v);
+            db.getDb().write(wo, wb);
+        }
     }
 
     private synchronized void deleteRecords(TimeInterval interval) throws RocksDBException {
@@ -547,8 +739,9 @@ public class CcsdsTmIndex extends AbstractYamcsService implements TmIndexService
                     keyEnd = Record.key(tbsIndex, r.apid, Long.MAX_VALUE, (short) 0);
                 }
 
-                it.seek(keyEnd);
                 db.getDb().deleteRange(keyStart, keyEnd);
+                // move to the next apid
+                it.seek(Record.key(tbsIndex, r.apid, Long.MAX_VALUE, Short.MAX_VALUE));
             }
         }
     }
@@ -0,0 +1,292 @@
+package org.yamcs.archive;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.rocksdb.RocksDBException;
+import org.yamcs.StandardTupleDefinitions;
+import org.yamcs.archive.TmIndexService.RebuildProgress;
+import org.yamcs.logging.Log;
+import org.yamcs.tctm.CcsdsPacket;
+import org.yamcs.utils.parser.ParseException;
+import org.yamcs.yarch.Stream;
+import org.yamcs.yarch.StreamSubscriber;
+import org.yamcs.yarch.Tuple;
+import org.yamcs.yarch.YarchDatabaseInstance;
+import org.yamcs.yarch.rocksdb.protobuf.Tablespace.TmIndexRebuildInterval;
+import org.yamcs.yarch.streamsql.StreamSqlException;
+
+/**
+ * Rebuilds the {@link CcsdsTmIndex} for a list of time intervals, normally corresponding to the time partitions of the
+ * tm table.
+ * <p>
+ * Each interval is read by its own select (and therefore from its own snapshot of the archive) and up to
+ * {@link #PARALLELISM} intervals are read in parallel. The records of an interval are built in memory and written to
+ * the index when the interval is finished, in the same batch which removes the interval from the rebuild checkpoint
+ * kept in the tablespace. If the rebuild is interrupted, the intervals not finished are rebuilt at the next start of
+ * the service.
+ */
+class CcsdsTmIndexRebuilder {
+    static final int PARALLELISM = Runtime.getRuntime().availableProcessors();
+    private static AtomicInteger streamCounter = new AtomicInteger();
+
+    final CcsdsTmIndex tmIndex;
+    final YarchDatabaseInstance ydb;
+    final Log log;
+    final CompletableFuture<Void> cf = new CompletableFuture<>();
+    final int totalIntervals;
+    final AtomicLong numPackets = new AtomicLong();
+    final long startNanos = System.nanoTime();
+
+    // guarded by this
+    private final Deque<TmIndexRebuildInterval> pending;
+    private final List<IntervalRebuilder> running = new ArrayList<>();
+    private int completedIntervals;
+    private boolean quitting;
+    private Exception failure;
+
+    CcsdsTmIndexRebuilder(CcsdsTmIndex tmIndex, YarchDatabaseInstance ydb, List<TmIndexRebuildInterval> intervals) {
+        this.tmIndex = tmIndex;
+        this.ydb = ydb;
+        this.log = new Log(CcsdsTmIndexRebuilder.class, ydb.getName());
+        this.pending = new ArrayDeque<>(intervals);
+        this.totalIntervals = intervals.size();
+    }
+
+    CompletableFuture<Void> start() {
+        if (totalIntervals == 0) {
+            cf.complete(null);
+            return cf;
+        }
+        synchronized (this) {
+            for (int i = 0; i < PARALLELISM; i++) {
+                if (!startNext()) {
+                    break;
+                }
+            }
+        }
+        completeIfFailed();
+        return cf;
+    }
+
+    /**
+     * Stops the rebuild without writing the intervals in progress; they remain in the checkpoint.
+     */
+    void quit() {
+        List<IntervalRebuilder> l;
+        synchronized (this) {
+            if (quitting) {
+                return;
+            }
+            quitting = true;
+            l = new ArrayList<>(running);
+        }
+        for (IntervalRebuilder ir : l) {
+            ir.stream.close();
+        }
+        cf.cancel(false);
+    }
+
+    synchronized RebuildProgress getProgress() {
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        long n = numPackets.get();
+        return new RebuildProgress(totalIntervals, completedIntervals, n, seconds > 0 ? n / seconds : 0);
+    }
+
+    // called with the lock held; returns false if there is no interval left or if the rebuild failed
+    private boolean startNext() {
+        TmIndexRebuildInterval interval = pending.poll();
+        if (interval == null || quitting) {
+            return false;
+        }
+        String streamName = "ccsds_index_rebuild_" + streamCounter.incrementAndGet();
+        try {
+            ydb.execute("create stream " + streamName + " as select * from " + XtceTmRecorder.TABLE_NAME
+                    + getWhereCondition(interval));
+        } catch (StreamSqlException | ParseException e) {
+            fail(e);
+            return false;
+        }
+        IntervalRebuilder ir = new IntervalRebuilder(interval, ydb.getStream(streamName));
+        running.add(ir);
+        ir.stream.addSubscriber(ir);
+        ir.stream.start();
+        return true;
+    }
+
+    private void intervalFinished(IntervalRebuilder ir) {
+        Throwable error = ir.stream.getError();
+        synchronized (this) {
+            running.remove(ir);
+            if (quitting) {
+                return;
+            }
+            if (error != null) {
+                // the records are incomplete; the interval remains in the checkpoint
+                log.error("Failed to read the tm table{}", getWhereCondition(ir.interval), error);
+                fail(error instanceof Exception e ? e : new Exception(error));
+            }
+        }
+        if (error != null) {
+            completeIfFailed();
+            return;
+        }
+        try {
+            tmIndex.addRecords(ir.records.values(), ir.interval);
+        } catch (RocksDBException | IOException e) {
+            log.error("Failed to write the CCSDS tm index records", e);
+            synchronized (this) {
+                fail(e);
+            }
+            completeIfFailed();
+            return;
+        }
+
+        boolean finished;
+        synchronized (this) {
+            completedIntervals++;
+            RebuildProgress progress = getProgress();
+            log.info("CCSDS tm index rebuild: {}/{} intervals done, {} packets ({} packets/s)",
+                    completedIntervals, totalIntervals, progress.numPackets(),
+                    Math.round(progress.packetsPerSecond()));
+            startNext();
+            finished = completedIntervals == totalIntervals;
+        }
+        if (finished) {
+            cf.complete(null);
+        }
+        completeIfFailed();
+    }
+
+    // called with the lock held; the streams are closed and the future completed by completeIfFailed, after the lock
+    // has been released
+    private void fail(Exception e) {
+        quitting = true;
+        if (failure == null) {
+            failure = e;
+        }
+    }
+
+    /**
+     * Closes the running streams and completes the future if the rebuild failed.
+     * <p>
+     * Called without holding the lock: completing the future runs the callbacks which may take the index lock, while
+     * {@link CcsdsTmIndex#getRebuildProgress()} calls {@link #getProgress()} with the index lock held.
+     */
+    private void completeIfFailed() {
+        List<IntervalRebuilder> l;
+        Exception e;
+        synchronized (this) {
+            e = failure;
+            if (e == null) {
+                return;
+            }
+            l = new ArrayList<>(running);
+        }
+        for (IntervalRebuilder ir : l) {
+            ir.stream.close();
+        }
+        cf.completeExceptionally(e);
+    }
+
+    static String getWhereCondition(TmIndexRebuildInterval interval) {
+        String timeColumnName = StandardTupleDefinitions.GENTIME_COLUMN;
+        if (interval.hasStart() && interval.hasEnd()) {
+            return " where " + timeColumnName + " >= " + interval.getStart() + " and " + timeColumnName + " < "
+                    + interval.getEnd();
+        } else if (interval.hasStart()) {
+            return " where " + timeColumnName + " >= " + interval.getStart();
+        } else if (interval.hasEnd()) {
+            return " where " + timeColumnName + " < " + interval.getEnd();
+        } else {
+            return "";
+        }
+    }
+
+    /**
+     * Builds in memory the records of one interval.
+     * <p>
+     * The records are kept sorted on the same key as in the database and the packets are added with the same algorithm
+     * as {@link CcsdsTmIndex#addPacket(short, long, short)}.
+     */
+    class IntervalRebuilder implements StreamSubscriber {
+        final TmIndexRebuildInterval interval;
+        final Stream stream;
+        final TreeMap<byte[], Record> records = new TreeMap<>(Arrays::compareUnsigned);
+
+        IntervalRebuilder(TmIndexRebuildInterval interval, Stream stream) {
+            this.interval = interval;
+            this.stream = stream;
+        }
+
+        @Override
+        public void onTuple(Stream s, Tuple tuple) {
+            byte[] packet = (byte[]) tuple.getColumn(StandardTupleDefinitions.TM_PACKET_COLUMN);
+            if (packet.length < 7) {
+                return;
+            }
+            addPacket(CcsdsPacket.getAPID(packet), tmIndex.getTime(tuple),
+                    (short) CcsdsPacket.getSequenceCount(packet));
+            numPackets.incrementAndGet();
+        }
+
+        void addPacket(short apid, long instant, short seq) {
+            Record rright = null;
+            int cright = 0;
+            for (Record r : records.tailMap(Record.key(tmIndex.tbsIndex, apid, instant, seq), true).values()) {
+                cright = CcsdsTmIndex.compare(apid, instant, seq, r);
+                if (cright == 0) { // duplicate packet
+                    return;
+                } else if (cright < 0) {
+                    rright = r;
+                    break;
+                }
+            }
+
+            Map.Entry<byte[], Record> eleft = rright == null ? records.lastEntry()
+                    : records.lowerEntry(rright.key(tmIndex.tbsIndex));
+            Record rleft = eleft == null ? null : eleft.getValue();
+            int cleft = rleft == null ? 0x3FFF : CcsdsTmIndex.compare(apid, instant, seq, rleft);
+            if (cleft == 0) { // duplicate packet
+                return;
+            }
+            if (rright == null) {
+                cright = -0x3FFF;
+            }
+
+            if ((cleft == 1) && (cright == -1)) { // left and right have to be merged
+                rleft.seqLast = rright.seqLast;
+                rleft.lastTime = rright.lastTime;
+                rleft.numPackets += rright.numPackets + 1;
+                records.remove(rright.key(tmIndex.tbsIndex));
+            } else if (cleft == 1) { // attach to left
+                rleft.seqLast = seq;
+                rleft.lastTime = instant;
+                rleft.numPackets++;
+            } else if (cright == -1) { // attach to right
+                records.remove(rright.key(tmIndex.tbsIndex));
+                rright.seqFirst = seq;
+                rright.firstTime = instant;
+                rright.numPackets++;
+                records.put(rright.key(tmIndex.tbsIndex), rright);
+            } else { // create a new record
+                Record r = new Record(apid, instant, seq, 1);
+                records.put(r.key(tmIndex.tbsIndex), r);
+            }
+        }
+
+        @Override
+        public void streamClosed(Stream s) {
+            intervalFinished(this);
+        }
+    }
+}
@@ -27,4 +27,27 @@ public interface TmIndexService extends StreamSubscriber, YamcsService {
      */
     public abstract IndexIterator getIterator(List<NamedObjectId> names, long start, long stop);
 
+    /**
+     * 
+     * @return the progress of the index rebuild currently running or null if no rebuild is running
+     */
+    default RebuildProgress getRebuildProgress() {
+        return null;
+    }
+
+    /**
+     * Progress of an index rebuild.
+     * 
+     * @param totalIntervals
+     *            number of time intervals (archive partitions) to be processed
+     * @param completedIntervals
+     *            number of time intervals processed so far
+     * @param numPackets
+     *            number of packets read so far
+     * @param packetsPerSecond
+     *            average number of packets read per second since the start of the rebuild
+     */
+    public record RebuildProgress(int totalIntervals, int completedIntervals, long numPackets,
+            double packetsPerSecond) {
+    }
 }
\ No newline at end of file
@@ -192,6 +192,12 @@ public class XtceTmRecorder extends AbstractYamcsService {
         LinkedBlockingQueue<Tuple> tmQueue;
         XtceTmExtractor tmExtractor;
 
+        // definition of the recorded tuples derived from the definition of the last input tuple; the input tuples
+        // share normally the same definition so it does not need to be derived for each packet.
+        TupleDefinition inputTdef;
+        TupleDefinition recordedTdef;
+        int rootContainerIdx;
+
         StreamRecorder(Stream inputStream, Stream outputStream, SequenceContainer sc, boolean async) {
             this.outputStream = outputStream;
             this.inputStream = inputStream;
@@ -309,24 +315,28 @@ public class XtceTmRecorder extends AbstractYamcsService {
             String pname = deriveArchivePartition(cpr);
 
             try {
+                TupleDefinition tdef = t.getDefinition();
+                if (tdef != inputTdef) {
+                    recordedTdef = tdef.copy();
+                    recordedTdef.addColumn(PNAME_COLUMN, DataType.ENUM);
+                    rootContainerIdx = recordedTdef.removeColumn(TM_ROOT_CONTAINER_COLUMN);
+                    inputTdef = tdef;
+                }
                 List<?> c = t.getColumns();
                 List<Object> columns = new ArrayList<>(c.size() + 1);
                 columns.addAll(c);
-
-                columns.add(c.size(), pname);
-                TupleDefinition tdef = t.getDefinition().copy();
-                tdef.addColumn(PNAME_COLUMN, DataType.ENUM);
-
-                Tuple tp = new Tuple(tdef, columns);
-
-                // If provided on the tuple (set by a preprocessor), this has more priority
-                // in determining the pname.
-                String rootContainer = tp.removeColumn(TM_ROOT_CONTAINER_COLUMN);
-                if (rootContainer != null) {
-                    tp.setColumn(PNAME_COLUMN, rootContainer);
+                columns.add(pname);
+
+                if (rootContainerIdx != -1) {
+                    // If provided on the tuple (set by a preprocessor), this has more priority
+                    // in determining the pname.
+                    String rootContainer = (String) columns.remove(rootContainerIdx);
+                    if (rootContainer != null) {
+                        columns.set(columns.size() - 1, rootContainer);
+                    }
                 }
 
-                outputStream.emitTuple(tp);
+                outputStream.emitTuple(new Tuple(recordedTdef, columns));
             } catch (Exception e) {
                 log.error("got exception when saving packet ", e);
             }
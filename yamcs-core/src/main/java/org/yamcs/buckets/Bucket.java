@@ -1,6 +1,10 @@
 package org.yamcs.buckets;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
@@ -60,11 +64,72 @@ public interface Bucket {
     CompletableFuture<Void> putObjectAsync(String objectName, String contentType, Map<String, String> metadata,
             byte[] objectData);
 
+    /**
+     * Store an object whose content is read from the given channel until its end.
+     * <p>
+     * Contrary to {@link #putObjectAsync(String, String, Map, byte[])}, implementations do not need to hold the whole
+     * object in memory. The default implementation reads the complete channel into a byte array.
+     * <p>
+     * The channel is not closed by this method.
+     */
+    default CompletableFuture<Void> putObjectAsync(String objectName, String contentType,
+            Map<String, String> metadata, ReadableByteChannel data) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return Channels.newInputStream(data).readAllBytes();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }).thenCompose(objectData -> putObjectAsync(objectName, contentType, metadata, objectData));
+    }
+
     /**
      * Retrieve object from the bucket. Returns null if object does not exist.
      */
     CompletableFuture<byte[]> getObjectAsync(String objectName);
 
+    /**
+     * Open a channel for reading the content of an object. Returns null if the object does not exist.
+     * 
+     * @see #openObjectAsync(String, long, long)
+     */
+    default CompletableFuture<ReadableByteChannel> openObjectAsync(String objectName) {
+        return openObjectAsync(objectName, 0, -1).thenApply(oc -> oc == null ? null : oc.channel());
+    }
+
+    /**
+     * Open a channel for reading a range of the content of an object. Returns null if the object does not exist.
+     * <p>
+     * Contrary to {@link #getObjectAsync(String)}, implementations do not need to hold the whole object in memory. The
+     * default implementation retrieves the complete object and returns a channel on the requested range.
+     * <p>
+     * The size of the object is returned together with the channel, from the same version of the object. It may
+     * differ from the size retrieved before with {@link #findObjectAsync(String)} if the object has been replaced in
+     * the meantime.
+     * <p>
+     * The caller is responsible for closing the returned channel.
+     * 
+     * @param offset
+     *            position of the first byte to be read. If it is beyond the end of the object, the returned channel
+     *            is empty.
+     * @param length
+     *            maximum number of bytes to be read. A negative value means until the end of the object.
+     */
+    default CompletableFuture<ObjectChannel> openObjectAsync(String objectName, long offset, long length) {
+        if (offset < 0) {
+            throw new IllegalArgumentException("Negative offset " + offset);
+        }
+        return getObjectAsync(objectName).thenApply(objectData -> {
+            if (objectData == null) {
+                return null;
+            }
+            int start = (int) Math.min(offset, objectData.length);
+            int end = length < 0 ? objectData.length : (int) Math.min(objectData.length, start + length);
+            return new ObjectChannel(Channels.newChannel(new ByteArrayInputStream(objectData, start, end - start)),
+                    objectData.length);
+        });
+    }
+
     CompletableFuture<Void> deleteObjectAsync(String objectName);
 
     /**
@@ -1,13 +1,20 @@
 package org.yamcs.buckets;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
 import java.nio.file.DirectoryStream;
 import java.nio.file.FileVisitOption;
 import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -29,6 +36,7 @@ public class FileSystemBucket implements Bucket {
     private static final long DEFAULT_MAX_SIZE = 100L * 1024 * 1024; // 100MB
     private static final int DEFAULT_MAX_OBJECTS = 1000;
     private static final Mimetypes MIME = Mimetypes.getInstance();
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
 
     private String bucketName;
     private Path root;
@@ -189,32 +197,11 @@ public class FileSystemBucket implements Bucket {
         } else {
             // Current implementation ignores specified contentType, instead deriving
             // MIME type from the filename extension.
-            boolean fileExists = Files.isRegularFile(path);
-
-            // Verify limits
-            AtomicLong size = new AtomicLong(fileExists ? -Files.size(path) : 0);
-            AtomicInteger count = new AtomicInteger(fileExists ? -1 : 0);
-            Set<FileVisitOption> opts = EnumSet.of(FileVisitOption.FOLLOW_LINKS);
-            Files.walkFileTree(root, opts, Integer.MAX_VALUE, new SimpleFileVisitor<Path>() {
-                @Override
-                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
-                    size.addAndGet(attrs.size());
-                    count.incrementAndGet();
-                    return FileVisitResult.CONTINUE;
-                }
-            });
-
-            long newSize = size.get() + objectData.length;
-            if (newSize > maxSize) {
+            long available = verifyLimits(path);
+            if (objectData.length > available) {
                 throw new IOException("Maximum bucket size " + maxSize + " exceeded");
             }
 
-            int newCount = count.get() + 1;
-            if (newCount > maxObjects) {
-                throw new IOException(
-                        "Maximum number of objects in the bucket " + newCount + " exceeded");
-            }
-
             if (!Files.exists(path.getParent())) { // Check to avoid error when the parent is a symlink
                 Files.createDirectories(path.getParent());
             }
@@ -222,6 +209,86 @@ public class FileSystemBucket implements Bucket {
         }
     }
 
+    @Override
+    public CompletableFuture<Void> putObjectAsync(String objectName, String contentType, Map<String, String> metadata,
+            ReadableByteChannel data) {
+        return CompletableFuture.runAsync(() -> {
+            try {
+                putObject(objectName, contentType, metadata, data);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    /**
+     * Store an object by copying the data from the channel into a temporary file which replaces the object file once
+     * the copy is complete.
+     */
+    public void putObject(String objectName, String contentType, Map<String, String> metadata,
+            ReadableByteChannel data) throws IOException {
+        if (objectName.endsWith("/")) {
+            putObject(objectName, contentType, metadata, new byte[0]);
+            return;
+        }
+        Path path = resolvePath(objectName);
+        long available = verifyLimits(path);
+
+        if (!Files.exists(path.getParent())) { // Check to avoid error when the parent is a symlink
+            Files.createDirectories(path.getParent());
+        }
+        Path tmpPath = Files.createTempFile(path.getParent(), "." + path.getFileName(), ".tmp");
+        try {
+            try (FileChannel fc = FileChannel.open(tmpPath, StandardOpenOption.WRITE)) {
+                ByteBuffer buf = ByteBuffer.allocate(COPY_BUFFER_SIZE);
+                long size = 0;
+                int n;
+                while ((n = data.read(buf)) >= 0) {
+                    size += n;
+                    if (size > available) {
+                        throw new IOException("Maximum bucket size " + maxSize + " exceeded");
+                    }
+                    buf.flip();
+                    while (buf.hasRemaining()) {
+                        fc.write(buf);
+                    }
+                    buf.clear();
+                }
+            }
+            Files.move(tmpPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            Files.deleteIfExists(tmpPath);
+            throw e;
+        }
+    }
+
+    /**
+     * Verifies that the object count limit allows storing the object at the given path and returns the maximum size
+     * that object can have.
+     */
+    private long verifyLimits(Path path) throws IOException {
+        boolean fileExists = Files.isRegularFile(path);
+
+        AtomicLong size = new AtomicLong(fileExists ? -Files.size(path) : 0);
+        AtomicInteger count = new AtomicInteger(fileExists ? -1 : 0);
+        Set<FileVisitOption> opts = EnumSet.of(FileVisitOption.FOLLOW_LINKS);
+        Files.walkFileTree(root, opts, Integer.MAX_VALUE, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                size.addAndGet(attrs.size());
+                count.incrementAndGet();
+                return FileVisitResult.CONTINUE;
+            }
+        });
+
+        int newCount = count.get() + 1;
+        if (newCount > maxObjects) {
+            throw new IOException(
+                    "Maximum number of objects in the bucket " + newCount + " exceeded");
+        }
+        return maxSize - size.get();
+    }
+
     @Override
     public CompletableFuture<byte[]> getObjectAsync(String objectName) {
         return CompletableFuture.supplyAsync(() -> {
@@ -242,6 +309,44 @@ public class FileSystemBucket implements Bucket {
         }
     }
 
+    @Override
+    public CompletableFuture<ObjectChannel> openObjectAsync(String objectName, long offset, long length) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return openObject(objectName, offset, length);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    /**
+     * Open a channel for reading a range of the object file.
+     * <p>
+     * If the range extends to the end of the file, the returned channel is a {@link FileChannel}, allowing the callers
+     * to transfer the data without copying it.
+     */
+    public ObjectChannel openObject(String objectName, long offset, long length) throws IOException {
+        if (offset < 0) {
+            throw new IllegalArgumentException("Negative offset " + offset);
+        }
+        Path path = resolvePath(objectName);
+        if (!Files.exists(path)) {
+            return null;
+        }
+        if (Files.isDirectory(path)) {
+            return new ObjectChannel(Channels.newChannel(InputStream.nullInputStream()), 0);
+        }
+        FileChannel fc = FileChannel.open(path, StandardOpenOption.READ);
+        long size = fc.size();
+        fc.position(offset);
+        if (length < 0 || offset + length >= size) {
+            return new ObjectChannel(fc, size);
+        } else {
+            return new ObjectChannel(new BoundedChannel(fc, length), size);
+        }
+    }
+
     @Override
     public CompletableFuture<Void> deleteObjectAsync(String objectName) {
         return CompletableFuture.supplyAsync(() -> {
@@ -306,4 +411,49 @@ public class FileSystemBucket implements Bucket {
                 attrs.size(),
                 Collections.emptyMap());
     }
+
+    /**
+     * Limits the number of bytes which can be read from a channel
+     */
+    private static class BoundedChannel implements ReadableByteChannel {
+        final ReadableByteChannel ch;
+        long remaining;
+
+        BoundedChannel(ReadableByteChannel ch, long length) {
+            this.ch = ch;
+            this.remaining = length;
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int n;
+            if (dst.remaining() > remaining) {
+                ByteBuffer slice = dst.slice();
+                slice.limit((int) remaining);
+                n = ch.read(slice);
+                if (n > 0) {
+                    dst.position(dst.position() + n);
+                }
+            } else {
+                n = ch.read(dst);
+            }
+            if (n > 0) {
+                remaining -= n;
+            }
+            return n;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return ch.isOpen();
+        }
+
+        @Override
+        public void close() throws IOException {
+            ch.close();
+        }
+    }
 }
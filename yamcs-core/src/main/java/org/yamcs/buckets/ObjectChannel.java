@@ -0,0 +1,18 @@
+package org.yamcs.buckets;
+
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Channel opened for reading a range of the content of an object, see {@link Bucket#openObjectAsync(String, long, long)}.
+ */
+public record ObjectChannel(
+        /**
+         * Channel on the requested range
+         */
+        ReadableByteChannel channel,
+
+        /**
+         * Size in bytes of the whole object when the channel was opened
+         */
+        long objectSize) {
+}
@@ -8,6 +8,8 @@ import static org.yamcs.cfdp.CfdpService.ETYPE_TRANSFER_RESUMED;
 import static org.yamcs.cfdp.CfdpService.ETYPE_TRANSFER_SUSPENDED;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
@@ -18,6 +20,7 @@ import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
 import org.yamcs.YConfiguration;
+import org.yamcs.YamcsServer;
 import org.yamcs.cfdp.pdu.AckPacket;
 import org.yamcs.cfdp.pdu.AckPacket.FileDirectiveSubtypeCode;
 import org.yamcs.cfdp.pdu.AckPacket.TransactionStatus;
@@ -170,7 +173,16 @@ public class CfdpIncomingTransfer extends OngoingCfdpTransfer {
 
         this.maxPduDataSize = maxPduSize - directiveHeader.getLength();
         needsFinish = acknowledged;
-        incomingDataFile = new DataFile(-1);
+        incomingDataFile = new DataFile(-1, getReassemblyDirectory(config),
+                config.getLong("reassemblyMemoryLimit", 1024 * 1024l));
+    }
+
+    private static Path getReassemblyDirectory(YConfiguration config) {
+        if (config.containsKey("reassemblyDirectory")) {
+            return Path.of(config.getString("reassemblyDirectory"));
+        }
+        Path cacheDir = YamcsServer.getServer().getCacheDirectory();
+        return cacheDir == null ? null : cacheDir.resolve("cfdp");
     }
 
     @Override
@@ -410,6 +422,7 @@ public class CfdpIncomingTransfer extends OngoingCfdpTransfer {
                 log.warn("TXID{} {}", cfdpTransactionId, err);
                 pushError(err);
                 handleFault(ConditionCode.FILE_SIZE_ERROR);
+                return;
             }
         } else {
             if (fdp.getEndOffset() > maxFileSize) {
@@ -419,10 +432,18 @@ public class CfdpIncomingTransfer extends OngoingCfdpTransfer {
                 pushError(err);
                 log.warn("TXID{} {}", cfdpTransactionId, err);
                 handleFault(ConditionCode.FILE_SIZE_ERROR);
+                return;
             }
         }
 
-        incomingDataFile.addSegment(fdp);
+        try {
+            incomingDataFile.addSegment(fdp);
+        } catch (UncheckedIOException e) {
+            log.error("TXID{} failed to store the file data", cfdpTransactionId, e);
+            pushError("Failed to store the file data: " + e.getMessage());
+            handleFault(ConditionCode.FILESTORE_REJECTION);
+            return;
+        }
         monitor.stateChanged(this);
         checkFileComplete();
     }
@@ -432,12 +453,13 @@ public class CfdpIncomingTransfer extends OngoingCfdpTransfer {
         long expectedChecksum = eofPacket.getFileChecksum();
         if (expectedChecksum == incomingDataFile.getChecksum()) {
             log.info("TXID{} file completed, checksum OK", cfdpTransactionId);
+            // save before completing, the data is released when the transfer reaches its final state
+            saveFile(false, Collections.emptyList());
             if (needsFinish) {
                 finish(ConditionCode.NO_ERROR);
             } else {
                 complete(ConditionCode.NO_ERROR);
             }
-            saveFile(false, Collections.emptyList());
             sendInfoEvent(ETYPE_TRANSFER_FINISHED,
                     " downlink finished and saved in " + getBucketName() + "/" + getObjectName());
         } else {
@@ -721,10 +743,28 @@ public class CfdpIncomingTransfer extends OngoingCfdpTransfer {
         return directoryListingResponse;
     }
 
+    /**
+     * Returns the content of the received file.
+     * <p>
+     * The data is released once the transfer has reached its final state and the listeners have been notified; after
+     * that this method throws an {@link IllegalStateException}.
+     */
     public byte[] getFileData() {
         return incomingDataFile.getData();
     }
 
+    @Override
+    protected void changeState(TransferState newState) {
+        super.changeState(newState);
+        if (newState == TransferState.COMPLETED || newState == TransferState.FAILED) {
+            try {
+                incomingDataFile.close();
+            } catch (IOException e) {
+                log.warn("TXID{} failed to release the file data", cfdpTransactionId, e);
+            }
+        }
+    }
+
     public CfdpTransactionId getOriginatingTransactionId() {
         return originatingTransactionId;
     }
@@ -1,124 +1,201 @@
 package org.yamcs.cfdp;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.TreeMap;
+import java.util.UUID;
 
 import org.yamcs.cfdp.pdu.FileDataPacket;
 import org.yamcs.cfdp.pdu.SegmentRequest;
 
+/**
+ * Reassembles the file data received in a CFDP transaction.
+ * <p>
+ * The received segments are kept in a map sorted by their start offset, adjacent or overlapping segments being merged
+ * together. Only the bytes not already received are stored when a segment arrives, such that the checksum can be
+ * computed incrementally.
+ * <p>
+ * The data is kept in memory until the file (as indicated by its size or by the end offset of the received segments)
+ * becomes larger than the memory limit; from then on, it is stored in a sparse temporary file which is deleted when
+ * the data file is closed. If no memory limit is given, the data is always kept in memory and the size of the file is
+ * limited to the maximum size of a Java array.
+ */
 public class DataFile {
-    List<Segment> dataFileSegments = new ArrayList<Segment>();
+    final TreeMap<Long, Segment> dataFileSegments = new TreeMap<>();
     // -1 means size unknown or unbounded
-    private int size = -1;
+    private long size = -1;
+    private volatile long receivedSize = 0;
+    private long checksum = 0;
+
+    // in memory storage, used until the memory limit is reached
     byte[] data;
     static int MAX_SIZE = Integer.MAX_VALUE;
 
+    // disk storage
+    private final Path tempDirectory;
+    private final long memoryLimit;
+    private Path tempFile;
+    private FileChannel channel;
+    private boolean closed;
+
     public DataFile() {
         this(-1);
     }
 
     public DataFile(long size) {
-        this.size = checkMaxSize(size);
-        if (size > MAX_SIZE) {
-            throw new UnsupportedOperationException(
-                    "file transfers larger than " + MAX_SIZE + " not supported");
+        this(size, null, -1);
+    }
+
+    /**
+     * Creates a data file which keeps the data in memory as long as the file is smaller than memoryLimit bytes.
+     *
+     * @param size
+     *            the size of the file or -1 if not known
+     * @param tempDirectory
+     *            directory where the temporary file is created if the memory limit is exceeded. If null, the default
+     *            temporary-file directory is used.
+     * @param memoryLimit
+     *            maximum size in bytes of the data kept in memory. If negative, the data is always kept in memory.
+     */
+    public DataFile(long size, Path tempDirectory, long memoryLimit) {
+        this.tempDirectory = tempDirectory;
+        this.memoryLimit = memoryLimit;
+        if (memoryLimit < 0) {
+            checkMaxSize(size);
         }
-        if (size > 0) {
-            this.data = new byte[(int) size];
+        this.size = size;
+        if (isInMemory(size)) {
+            this.data = new byte[size > 0 ? (int) size : 1024];
         } else {
-            this.data = new byte[1024];
+            openTempFile();
         }
     }
 
     public synchronized void addSegment(FileDataPacket fdp) {
-        if (size != -1 && fdp.getEndOffset() > size) {
+        checkOpen();
+        long start = fdp.getOffset();
+        long end = fdp.getEndOffset();
+        if (size != -1 && end > size) {
             throw new IllegalArgumentException("Segment falls beyond the end of the file");
         }
+        ensureCapacity(end);
 
-        Segment newseg = new Segment(fdp.getOffset(), fdp.getEndOffset());
+        long newStart = start;
+        long newEnd = end;
+        // the first offset of the new segment not yet covered by the existing segments
+        long pos = start;
 
-        if (dataFileSegments.size() == 0) {
-            dataFileSegments.add(newseg);
-            addData(fdp);
-            return;
+        var prev = dataFileSegments.floorEntry(start);
+        if (prev != null && prev.getValue().end >= start) {
+            // overlaps with (or comes right after) the previous segment
+            Segment prevseg = prev.getValue();
+            newStart = prevseg.start;
+            newEnd = Math.max(end, prevseg.end);
+            pos = Math.max(start, prevseg.end);
+            dataFileSegments.remove(prevseg.start);
         }
-        var lastSegment = dataFileSegments.get(dataFileSegments.size() - 1);
-        if (lastSegment.end == newseg.start) {
-            // happy case the new segment comes right after the last segment
-            lastSegment.end = newseg.end;
-            addData(fdp);
-            return;
+
+        Iterator<Segment> it = dataFileSegments.subMap(start, false, end, true).values().iterator();
+        while (it.hasNext()) {
+            Segment seg = it.next();
+            if (seg.start > pos) {
+                addData(fdp, pos, seg.start);
+            }
+            pos = Math.max(pos, seg.end);
+            newEnd = Math.max(newEnd, seg.end);
+            it.remove();
         }
+        if (pos < end) {
+            addData(fdp, pos, end);
+        }
+
+        dataFileSegments.put(newStart, new Segment(newStart, newEnd));
+    }
 
-        int idx = Collections.binarySearch(dataFileSegments, newseg,
-                (s1, s2) -> Long.compare(s1.start, s2.start));
+    /**
+     * stores the part [from, to) of the file data packet and adds it to the checksum
+     */
+    private void addData(FileDataPacket fdp, long from, long to) {
+        int dataOffset = (int) (from - fdp.getOffset());
+        int length = (int) (to - from);
+        if (channel == null) {
+            System.arraycopy(fdp.getData(), dataOffset, data, (int) from, length);
+        } else {
+            write(ByteBuffer.wrap(fdp.getData(), dataOffset, length), from);
+        }
+        checksum += ChecksumCalculator.calculateChecksum(fdp.getData(), dataOffset, from, length);
+        receivedSize += length;
+    }
 
-        if (idx >= 0) {// newseg offset coincides with an existing segment offset
-            Segment seg1 = dataFileSegments.get(idx);
-            assert (seg1.start == newseg.start);
-            if (seg1.end < newseg.end) {
-                // newseg is longer than seg1 and starts at the same offset
-                // replace seg1 with newseg
-                seg1.end = newseg.end;
+    private void ensureCapacity(long end) {
+        if (channel != null) {
+            return;
+        }
+        if (!isInMemory(end)) {
+            spill();
+        } else if (data.length < end) {
+            checkMaxSize(end);
+            long maxLength = memoryLimit < 0 ? MAX_SIZE : Long.min(memoryLimit, MAX_SIZE);
+            var length = (int) Long.min(end + 1024 * 1024, maxLength);
+            if (size > 0) {
+                length = (int) Long.min(length, size);
             }
-        } else { // the segment does not start at the same offset with an existing segment
-                 // but it might still overlap with one
-            idx = -(idx + 1);
-            if (idx == dataFileSegments.size()) {
-
-                Segment prevseg = dataFileSegments.get(idx - 1);
-                if (prevseg.end > newseg.start) {
-                    // overlaps with the last segment
-                    // extend the last segment
-                    if (prevseg.end < newseg.end) {
-                        prevseg.end = newseg.end;
-                    }
-                } else {
-                    dataFileSegments.add(newseg);
-                }
+            data = Arrays.copyOf(data, length);
+        }
+    }
+
+    private boolean isInMemory(long fileSize) {
+        return memoryLimit < 0 || fileSize <= Long.min(memoryLimit, MAX_SIZE);
+    }
+
+    private void openTempFile() {
+        try {
+            Path dir = tempDirectory;
+            if (dir == null) {
+                dir = Path.of(System.getProperty("java.io.tmpdir"));
             } else {
-                if (idx == 0) {
-                    Segment nextseg = dataFileSegments.get(0);
-                    if (newseg.end >= nextseg.start) {
-                        nextseg.start = newseg.start;
-                    } else {
-                        dataFileSegments.add(0, newseg);
-                    }
-                } else {
-                    Segment prevseg = dataFileSegments.get(idx - 1);
-                    Segment nextseg = dataFileSegments.get(idx);
-
-                    if (prevseg.end >= newseg.start && newseg.end >= nextseg.start) {
-                        // overlaps with both prev and next
-                        prevseg.end = nextseg.end;
-                        dataFileSegments.remove(idx);
-                    } else if (prevseg.end >= newseg.start) {
-                        // overlaps only with prev
-                        if (newseg.end >= prevseg.end) {
-                            prevseg.end = newseg.end;
-                        }
-                    } else if (newseg.end >= nextseg.start) {
-                        // overlaps only with next
-                        nextseg.start = newseg.start;
-                    } else { // does not overlap
-                        dataFileSegments.add(idx, newseg);
-                    }
-                }
+                Files.createDirectories(dir);
             }
+            tempFile = dir.resolve("cfdp-" + UUID.randomUUID() + ".part");
+            channel = FileChannel.open(tempFile, StandardOpenOption.CREATE_NEW, StandardOpenOption.SPARSE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot create temporary file for the incoming data", e);
         }
+    }
 
-        addData(fdp);
+    /**
+     * moves the data received so far from memory to the temporary file
+     */
+    private void spill() {
+        openTempFile();
+        for (Segment seg : dataFileSegments.values()) {
+            write(ByteBuffer.wrap(data, (int) seg.start, seg.length()), seg.start);
+        }
+        data = null;
     }
 
-    private void addData(FileDataPacket fdp) {
-        if (data.length < fdp.getEndOffset()) {
-            checkMaxSize(fdp.getEndOffset());
-            var length = (int) Long.min(fdp.getEndOffset() + 1024 * 1024, MAX_SIZE);
-            data = Arrays.copyOf(data, length);
+    private void write(ByteBuffer buf, long position) {
+        try {
+            while (buf.hasRemaining()) {
+                position += channel.write(buf, position);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot write to " + tempFile, e);
         }
-        System.arraycopy(fdp.getData(), 0, data, (int) fdp.getOffset(), fdp.getLength());
     }
 
     public synchronized List<SegmentRequest> getMissingChunks() {
@@ -141,7 +218,7 @@ public class DataFile {
         if (includeEnd && size < 0) {
             throw new IllegalArgumentException("Size is not known, cannot pass includeEnd=true");
         }
-        for (Segment segment : dataFileSegments) {
+        for (Segment segment : dataFileSegments.values()) {
             if (segment.start != startOffset) {
                 endOffset = segment.start;
                 toReturn.add(new SegmentRequest(startOffset, endOffset));
@@ -156,23 +233,70 @@ public class DataFile {
 
     // returns the amount of bytes received of this Data Files.
     // Missing intermediate chunks are not yet received and are therefore not counted
-    public synchronized long getReceivedSize() {
-        return this.dataFileSegments.stream().mapToLong(Segment::length).sum();
+    public long getReceivedSize() {
+        return receivedSize;
     }
 
+    /**
+     * Returns the content of the file; the missing segments are filled with zeros.
+     * <p>
+     * For large files, {@link #getDataChannel()} should be used instead.
+     */
     public synchronized byte[] getData() {
+        checkOpen();
         if (size == -1) {
             throw new IllegalStateException("Size unknown");
         }
+        int n = checkMaxSize(size);
+        if (channel != null) {
+            byte[] b = new byte[n];
+            ByteBuffer buf = ByteBuffer.wrap(b);
+            try {
+                while (buf.hasRemaining()) {
+                    if (channel.read(buf, buf.position()) < 0) {
+                        // the end of the file has not been received
+                        break;
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot read from " + tempFile, e);
+            }
+            return b;
+        }
         if (data.length > size) {
-            return Arrays.copyOf(data, size);
+            return Arrays.copyOf(data, n);
         } else {
             return data;
         }
     }
 
     /**
-     * 
+     * Returns a channel for reading the content of the file, without loading it in memory if the data is stored on
+     * disk. The missing segments are filled with zeros.
+     * <p>
+     * The channel is valid until the data file is closed; closing the channel does not close the data file.
+     */
+    public synchronized ReadableByteChannel getDataChannel() {
+        checkOpen();
+        if (size == -1) {
+            throw new IllegalStateException("Size unknown");
+        }
+        if (channel == null) {
+            return Channels.newChannel(new ByteArrayInputStream(data, 0, (int) Long.min(size, data.length)));
+        }
+        try {
+            if (channel.size() < size) {
+                // the end of the file is missing, make sure it reads as zeros
+                write(ByteBuffer.allocate(1), size - 1);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot write to " + tempFile, e);
+        }
+        return new TempFileChannel(channel, size);
+    }
+
+    /**
+     *
      * @return true if all the data has been received. If size is not known return false.
      */
     public synchronized boolean isComplete() {
@@ -182,15 +306,14 @@ public class DataFile {
         if (dataFileSegments.size() != 1) {
             return false;
         }
-        var seg0 = dataFileSegments.get(0);
+        var seg0 = dataFileSegments.firstEntry().getValue();
         return seg0.start == 0 && seg0.end == size;
     }
 
+    /**
+     * Returns the modular checksum of the data received so far; it is updated each time a new segment is added.
+     */
     public synchronized long getChecksum() {
-        long checksum = 0;
-        for (Segment segment : this.dataFileSegments) {
-            checksum += ChecksumCalculator.calculateChecksum(data, segment.start, segment.length());
-        }
         return checksum & 0xFFFFFFFFl;
     }
 
@@ -201,8 +324,7 @@ public class DataFile {
      */
     public synchronized long endOfFileOffset() {
         if (!dataFileSegments.isEmpty()) {
-            Segment seg = dataFileSegments.get(dataFileSegments.size() - 1);
-            return seg.end;
+            return dataFileSegments.lastEntry().getValue().end;
         } else {
             return -1;
         }
@@ -213,13 +335,48 @@ public class DataFile {
         if (size < 0 || size < eof) {
             throw new IllegalArgumentException("Invalid size");
         }
-        this.size = checkMaxSize(size);
+        if (memoryLimit < 0) {
+            checkMaxSize(size);
+        }
+        this.size = size;
+        if (channel == null && !closed && !isInMemory(size)) {
+            spill();
+        }
     }
 
     public synchronized long getSize() {
         return size;
     }
 
+    /**
+     * Returns true if the data is stored in a temporary file.
+     */
+    public synchronized boolean isOnDisk() {
+        return channel != null;
+    }
+
+    /**
+     * Releases the memory or the temporary file used to store the data.
+     * <p>
+     * After this method is called, the segment information and the checksum are still available but the data is not.
+     */
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        data = null;
+        if (channel != null) {
+            channel.close();
+        }
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("Data file closed");
+        }
+    }
+
     public static int checkMaxSize(long size) {
         if (size > MAX_SIZE) {
             throw new IllegalArgumentException(
@@ -242,4 +399,52 @@ public class DataFile {
         }
     }
 
+    /**
+     * Reads the temporary file from the beginning up to the file size, independently of the position of the
+     * underlying channel.
+     */
+    static class TempFileChannel implements ReadableByteChannel {
+        final FileChannel fc;
+        final long end;
+        long position = 0;
+        boolean open = true;
+
+        TempFileChannel(FileChannel fc, long end) {
+            this.fc = fc;
+            this.end = end;
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            if (!open) {
+                throw new ClosedChannelException();
+            }
+            if (position >= end) {
+                return -1;
+            }
+            int limit = dst.limit();
+            if (dst.remaining() > end - position) {
+                dst.limit(dst.position() + (int) (end - position));
+            }
+            try {
+                int n = fc.read(dst, position);
+                if (n > 0) {
+                    position += n;
+                }
+                return n;
+            } finally {
+                dst.limit(limit);
+            }
+        }
+
+        @Override
+        public boolean isOpen() {
+            return open;
+        }
+
+        @Override
+        public void close() {
+            open = false;
+        }
+    }
 }
@@ -58,7 +58,7 @@ public class FileSaveHandler {
         }
 
         try {
-            bucket.putObjectAsync(this.objectName, null, metadata, file.getData()).get();
+            bucket.putObjectAsync(this.objectName, null, metadata, file.getDataChannel()).get();
         } catch (ExecutionException e) {
             throw new UncheckedIOException(new IOException("Cannot save incoming file in bucket: " + objectName
                     + (bucket != null ? " -> " + bucket.getName() : ""), e.getCause()));
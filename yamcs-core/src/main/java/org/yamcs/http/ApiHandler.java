@@ -15,13 +15,20 @@ import com.google.protobuf.Message;
 
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.WriteBufferWaterMark;
+import io.netty.handler.codec.compression.ZlibCodecFactory;
 import io.netty.handler.codec.http.HttpContentCompressor;
 import io.netty.handler.codec.http.HttpMethod;
 import io.netty.handler.codec.http.HttpObjectAggregator;
 import io.netty.handler.codec.http.HttpRequest;
 import io.netty.handler.codec.http.HttpUtil;
+import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
 import io.netty.handler.codec.http.websocketx.WebSocketServerProtocolHandler;
-import io.netty.handler.codec.http.websocketx.extensions.compression.WebSocketServerCompressionHandler;
+import io.netty.handler.codec.http.websocketx.extensions.WebSocketExtensionFilter;
+import io.netty.handler.codec.http.websocketx.extensions.WebSocketExtensionFilterProvider;
+import io.netty.handler.codec.http.websocketx.extensions.WebSocketServerExtensionHandler;
+import io.netty.handler.codec.http.websocketx.extensions.compression.DeflateFrameServerExtensionHandshaker;
+import io.netty.handler.codec.http.websocketx.extensions.compression.PerMessageDeflateServerExtensionHandshaker;
 import io.netty.handler.codec.protobuf.ProtobufDecoder;
 import io.netty.handler.codec.protobuf.ProtobufVarint32FrameDecoder;
 import io.netty.handler.timeout.IdleStateHandler;
@@ -122,7 +129,9 @@ public class ApiHandler extends HttpHandler {
         var pipeline = nettyContext.pipeline();
         pipeline.addLast(new HttpObjectAggregator(65536));
         pipeline.addLast(new WebSocketFrameDropper(waterMark.high()));
-        pipeline.addLast(new WebSocketServerCompressionHandler());
+        if (wsConfig.getBoolean("compression")) {
+            pipeline.addLast(createCompressionHandler());
+        }
 
         // Add websocket-specific handlers to channel pipeline
         String webSocketPath = req.uri();
@@ -142,6 +151,35 @@ public class ApiHandler extends HttpHandler {
         nettyContext.fireChannelRead(req);
     }
 
+    /**
+     * Creates the handler negotiating the permessage-deflate extension (and the older deflate-frame extension).
+     * <p>
+     * The messages smaller than the configured threshold are sent uncompressed, the compression gain being too small
+     * compared to the cost.
+     */
+    private WebSocketServerExtensionHandler createCompressionHandler() {
+        int level = wsConfig.getInt("compressionLevel");
+        int threshold = wsConfig.getInt("compressionThreshold");
+        WebSocketExtensionFilterProvider filterProvider = new WebSocketExtensionFilterProvider() {
+            @Override
+            public WebSocketExtensionFilter encoderFilter() {
+                // only the complete text and binary messages can be skipped
+                return frame -> (frame instanceof TextWebSocketFrame || frame instanceof BinaryWebSocketFrame)
+                        && frame.isFinalFragment() && frame.content().readableBytes() < threshold;
+            }
+
+            @Override
+            public WebSocketExtensionFilter decoderFilter() {
+                return WebSocketExtensionFilter.NEVER_SKIP;
+            }
+        };
+        return new WebSocketServerExtensionHandler(
+                new PerMessageDeflateServerExtensionHandshaker(level,
+                        ZlibCodecFactory.isSupportingWindowSizeAndMemLevel(),
+                        PerMessageDeflateServerExtensionHandshaker.MAX_WINDOW_SIZE, false, false, filterProvider),
+                new DeflateFrameServerExtensionHandshaker(level, filterProvider));
+    }
+
     private RouteMatch matchRoute(HttpMethod method, String uri) throws MethodNotAllowedException {
         for (Route route : httpServer.getRoutes()) {
             if (route.getHttpMethod().equals(method)) {
@@ -7,6 +7,8 @@ import static io.netty.handler.codec.http.HttpResponseStatus.OK;
 import static io.netty.handler.codec.http.HttpVersion.HTTP_1_1;
 
 import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
 import java.nio.charset.StandardCharsets;
 
 import org.yamcs.NotThreadSafe;
@@ -25,20 +27,30 @@ import com.google.protobuf.util.FieldMaskUtil;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufOutputStream;
 import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
+import io.netty.channel.DefaultFileRegion;
 import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.HttpChunkedInput;
 import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
 import io.netty.handler.codec.http.HttpRequest;
 import io.netty.handler.codec.http.HttpResponse;
 import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpUtil;
+import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.handler.ssl.SslHandler;
+import io.netty.handler.stream.ChunkedNioStream;
+import io.netty.handler.stream.ChunkedWriteHandler;
 
 /**
  * Observes the state of a single RPC call where both request and response are non-streaming.
  */
 @NotThreadSafe
-public class CallObserver implements Observer<Message> {
+public class CallObserver implements Observer<Message>, ChannelObserver {
 
     private static final Log log = new Log(CallObserver.class);
+    private static final int CHUNK_SIZE = 64 * 1024;
 
     private RouteContext ctx;
 
@@ -105,6 +117,75 @@ public class CallObserver implements Observer<Message> {
         completed = true;
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * If the channel is a {@link FileChannel} and the connection is not encrypted, the data is transferred without
+     * copying it to user space (zero-copy). Otherwise it is read in chunks when the connection becomes writable.
+     */
+    @Override
+    public void completeWithChannel(HttpResponse httpResponse, ReadableByteChannel channel, long length) {
+        if (completed) {
+            throw new IllegalStateException("Observer already completed");
+        }
+        Channel ch = ctx.nettyContext.channel();
+        long position = -1;
+        if (channel instanceof FileChannel fc && ch.pipeline().get(SslHandler.class) == null) {
+            try {
+                position = fc.position();
+            } catch (IOException e) {
+                closeQuietly(channel);
+                completeExceptionally(e);
+                return;
+            }
+        }
+        completed = true;
+
+        HttpRequest req = ctx.nettyRequest;
+        boolean keepAlive = HttpUtil.isKeepAlive(req);
+        HttpUtil.setKeepAlive(httpResponse, keepAlive);
+        HttpUtil.setContentLength(httpResponse, length);
+        ctx.reportStatusCode(httpResponse.status().code());
+        log.info("{} {} {} {} streaming {} bytes", ch.id().asShortText(), req.method(), req.uri(),
+                httpResponse.status().code(), length);
+
+        ChannelFuture lastContentFuture;
+        if (position >= 0) {
+            // the file region bypasses the compressor, so the content is sent as is
+            httpResponse.headers().set(HttpHeaderNames.CONTENT_ENCODING, HttpHeaderValues.IDENTITY);
+            ch.write(httpResponse);
+            ch.write(new DefaultFileRegion((FileChannel) channel, position, length));
+            lastContentFuture = ch.writeAndFlush(LastHttpContent.EMPTY_LAST_CONTENT);
+        } else {
+            if (ch.pipeline().get(ChunkedWriteHandler.class) == null) {
+                ch.pipeline().addLast(new ChunkedWriteHandler());
+            }
+            ch.write(httpResponse);
+            lastContentFuture = ch.writeAndFlush(new HttpChunkedInput(new ChunkedNioStream(channel, CHUNK_SIZE)));
+        }
+        ctx.addTransferredSize(length);
+        lastContentFuture.addListener(l -> {
+            if (l.isSuccess()) {
+                ctx.requestFuture.complete(null);
+            } else {
+                log.error("Network error", l.cause());
+                closeQuietly(channel);
+                ctx.requestFuture.completeExceptionally(l.cause());
+            }
+            if (!keepAlive || !l.isSuccess()) {
+                ch.close();
+            }
+        });
+    }
+
+    private static void closeQuietly(ReadableByteChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            log.debug("Error closing channel", e);
+        }
+    }
+
     private void completeRequest(HttpResponse httpResponse) {
         ChannelFuture cf = HttpRequestHandler.sendResponse(ctx.nettyContext,
                 ctx.nettyRequest, httpResponse);
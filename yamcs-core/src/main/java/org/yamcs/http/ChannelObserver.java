@@ -0,0 +1,28 @@
+package org.yamcs.http;
+
+import java.nio.channels.ReadableByteChannel;
+
+import io.netty.handler.codec.http.HttpResponse;
+
+/**
+ * Capability of an observer to complete a call with a response body read from a channel, instead of a body provided as
+ * an {@link org.yamcs.api.HttpBody HttpBody} message. This allows to send large bodies without loading them in memory.
+ * <p>
+ * The API implementations can check whether the observer of the call implements this interface and fall back to
+ * {@link org.yamcs.api.HttpBody HttpBody} messages otherwise.
+ */
+public interface ChannelObserver {
+
+    /**
+     * Completes the call by sending a response whose body is read from the channel. The channel is closed after the
+     * transfer.
+     * 
+     * @param httpResponse
+     *            response containing the status and the headers. The Content-Length header is set by this method.
+     * @param channel
+     *            channel providing the body
+     * @param length
+     *            number of bytes to be read from the channel
+     */
+    void completeWithChannel(HttpResponse httpResponse, ReadableByteChannel channel, long length);
+}
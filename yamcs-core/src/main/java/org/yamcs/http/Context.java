@@ -149,6 +149,15 @@ public abstract class Context {
         this.statusCode = statusCode;
     }
 
+    /**
+     * Returns the value of a header of the request, or null if the header is not present.
+     * <p>
+     * The requests received over a WebSocket have no headers of their own, so this always returns null for them.
+     */
+    public String getRequestHeader(String name) {
+        return null;
+    }
+
     public String getClientAddress() {
         InetSocketAddress address = (InetSocketAddress) nettyContext.channel().remoteAddress();
         return reverseLookup ? address.getHostName() : address.getAddress().getHostAddress();
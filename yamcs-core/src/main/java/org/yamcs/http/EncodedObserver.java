@@ -0,0 +1,15 @@
+package org.yamcs.http;
+
+/**
+ * Capability of an observer to emit messages which have been encoded in advance.
+ * <p>
+ * The API implementations sending the same data to many subscribers can check whether the observer of the call
+ * implements this interface and encode the shared parts of the messages only once.
+ */
+public interface EncodedObserver {
+
+    /**
+     * Emit the next message, encoded in advance.
+     */
+    void nextEncoded(PreEncodedMessage message);
+}
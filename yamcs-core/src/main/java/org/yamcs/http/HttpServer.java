@@ -134,6 +134,7 @@ public class HttpServer extends AbstractYamcsService {
     private ProtobufRegistry protobufRegistry = new ProtobufRegistry();
     private JsonFormat.Parser jsonParser;
     private JsonFormat.Printer jsonPrinter;
+    private JsonEncoder jsonEncoder;
 
     // Services (may participate in start-stop events)
     private TokenStore tokenStore;
@@ -170,6 +171,9 @@ public class HttpServer extends AbstractYamcsService {
         // Value in seconds. Both nginx and apache have a default timeout of 60 seconds before
         // they will close an idle WebSocket connection, therefore we choose a value well below that.
         websocketSpec.addOption("pingWhenIdleFor", OptionType.INTEGER).withDefault(40);
+        websocketSpec.addOption("compression", OptionType.BOOLEAN).withDefault(true);
+        websocketSpec.addOption("compressionLevel", OptionType.INTEGER).withDefault(6);
+        websocketSpec.addOption("compressionThreshold", OptionType.INTEGER).withDefault(0);
 
         Spec bindingSpec = new Spec();
         bindingSpec.addOption("address", OptionType.STRING);
@@ -365,6 +369,7 @@ public class HttpServer extends AbstractYamcsService {
 
         jsonParser = JsonFormat.parser().usingTypeRegistry(typeRegistry);
         jsonPrinter = JsonFormat.printer().usingTypeRegistry(typeRegistry);
+        jsonEncoder = new JsonEncoder(jsonPrinter);
 
         // Sort in a way that increases chances of a good URI match
         Collections.sort(routes);
@@ -479,6 +484,14 @@ public class HttpServer extends AbstractYamcsService {
         return jsonPrinter;
     }
 
+    /**
+     * Returns the encoder used for the JSON messages sent over WebSocket. It produces the same format as
+     * {@link #getJsonPrinter()}, without the insignificant whitespace.
+     */
+    public JsonEncoder getJsonEncoder() {
+        return jsonEncoder;
+    }
+
     public boolean getReverseLookup() {
         return reverseLookup;
     }
@@ -47,6 +47,47 @@ public class HttpUtils {
         }
     }
 
+    /**
+     * Parses the value of a Range header requesting a part of a resource of the given size.
+     * <p>
+     * Only single byte ranges are supported ({@code bytes=first-last}, {@code bytes=first-} or {@code bytes=-suffix}).
+     * For any other value null is returned, meaning that the complete resource has to be sent.
+     * 
+     * @return the start (inclusive) and the end (exclusive) of the range or null if the header is not supported
+     * @throws RangeNotSatisfiableException
+     *             if the range starts after the end of the resource
+     */
+    public static long[] parseByteRange(String header, long size) throws RangeNotSatisfiableException {
+        if (!header.startsWith("bytes=") || header.indexOf(',') >= 0) {
+            return null;
+        }
+        String spec = header.substring(6).trim();
+        int idx = spec.indexOf('-');
+        if (idx < 0) {
+            return null;
+        }
+        long start, end;
+        try {
+            if (idx == 0) {
+                long suffix = Long.parseLong(spec.substring(1));
+                start = Math.max(0, size - suffix);
+                end = size;
+            } else {
+                start = Long.parseLong(spec.substring(0, idx));
+                end = idx == spec.length() - 1 ? size : Math.min(size, Long.parseLong(spec.substring(idx + 1)) + 1);
+                if (end <= start && start < size) {
+                    return null;
+                }
+            }
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        if (start >= size || start >= end) {
+            throw new RangeNotSatisfiableException("Range " + spec + " not satisfiable for a resource of size " + size);
+        }
+        return new long[] { start, end };
+    }
+
     private static String removeQueryString(String uri) {
         int idx = uri.indexOf('?');
         return (idx == -1) ? uri : uri.substring(0, idx);
@@ -0,0 +1,348 @@
+package org.yamcs.http;
+
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.Descriptors.Descriptor;
+import com.google.protobuf.Descriptors.EnumValueDescriptor;
+import com.google.protobuf.Descriptors.FieldDescriptor;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.MessageOrBuilder;
+import com.google.protobuf.Timestamp;
+import com.google.protobuf.util.JsonFormat;
+import com.google.protobuf.util.Timestamps;
+
+/**
+ * Encodes protobuf messages to JSON in the same format as {@link JsonFormat.Printer}, without insignificant
+ * whitespace.
+ * <p>
+ * For each message type, the list of fields with their quoted JSON names and a writer specific to the field type is
+ * prepared once and reused for all the messages of that type. Compared to {@link JsonFormat.Printer}, this avoids
+ * building a sorted map of the fields for each message, the dispatch on the field type for each value and the pretty
+ * printing.
+ * <p>
+ * The well-known types which are not handled here ({@code Any}, {@code Duration}, {@code FieldMask}, {@code Struct},
+ * {@code Value} and {@code ListValue}) are printed with the fallback printer.
+ */
+public class JsonEncoder {
+
+    private final JsonFormat.Printer fallback;
+    private final ConcurrentMap<Descriptor, MessageEncoder> encoders = new ConcurrentHashMap<>();
+
+    /**
+     * @param printer
+     *            printer used for the types not handled by this encoder; it has to know the types which can be found
+     *            in the {@code Any} fields.
+     */
+    public JsonEncoder(JsonFormat.Printer printer) {
+        this.fallback = printer.omittingInsignificantWhitespace();
+    }
+
+    public String encode(MessageOrBuilder message) throws InvalidProtocolBufferException {
+        StringBuilder sb = new StringBuilder();
+        encode(message, sb);
+        return sb.toString();
+    }
+
+    public void encode(MessageOrBuilder message, StringBuilder sb) throws InvalidProtocolBufferException {
+        getEncoder(message.getDescriptorForType()).encode(message, sb);
+    }
+
+    /**
+     * Writes the fields of the message as JSON properties, without the enclosing braces. Can be used to add the fields
+     * of a message to an object containing other properties.
+     * <p>
+     * The well-known types which are not represented as JSON objects are written in a {@code value} property, as for
+     * the content of the {@code Any} fields.
+     *
+     * @param first
+     *            true if no property has been written before in the enclosing object
+     * @return true if still no property has been written
+     */
+    public boolean encodeFields(MessageOrBuilder message, StringBuilder sb, boolean first)
+            throws InvalidProtocolBufferException {
+        MessageEncoder encoder = getEncoder(message.getDescriptorForType());
+        if (encoder.kind != Kind.REGULAR) {
+            if (!first) {
+                sb.append(',');
+            }
+            sb.append("\"value\":");
+            encoder.encode(message, sb);
+            return false;
+        }
+        return encoder.encodeFields(message, sb, first);
+    }
+
+    private MessageEncoder getEncoder(Descriptor descriptor) {
+        return encoders.computeIfAbsent(descriptor, MessageEncoder::new);
+    }
+
+    /**
+     * Appends the string as a JSON string literal.
+     */
+    public static void appendString(String s, StringBuilder sb) {
+        sb.append('"');
+        int start = 0;
+        int n = s.length();
+        for (int i = 0; i < n; i++) {
+            char c = s.charAt(i);
+            String escaped;
+            if (c == '"') {
+                escaped = "\\\"";
+            } else if (c == '\\') {
+                escaped = "\\\\";
+            } else if (c < 0x20) {
+                escaped = switch (c) {
+                case '\n' -> "\\n";
+                case '\r' -> "\\r";
+                case '\t' -> "\\t";
+                case '\b' -> "\\b";
+                case '\f' -> "\\f";
+                default -> String.format("\\u%04x", (int) c);
+                };
+            } else {
+                continue;
+            }
+            sb.append(s, start, i).append(escaped);
+            start = i + 1;
+        }
+        sb.append(s, start, n).append('"');
+    }
+
+    enum Kind {
+        REGULAR, TIMESTAMP, WRAPPER, FALLBACK
+    }
+
+    static Kind getKind(Descriptor descriptor) {
+        switch (descriptor.getFullName()) {
+        case "google.protobuf.Timestamp":
+            return Kind.TIMESTAMP;
+        case "google.protobuf.DoubleValue":
+        case "google.protobuf.FloatValue":
+        case "google.protobuf.Int64Value":
+        case "google.protobuf.UInt64Value":
+        case "google.protobuf.Int32Value":
+        case "google.protobuf.UInt32Value":
+        case "google.protobuf.BoolValue":
+        case "google.protobuf.StringValue":
+        case "google.protobuf.BytesValue":
+            return Kind.WRAPPER;
+        case "google.protobuf.Any":
+        case "google.protobuf.Duration":
+        case "google.protobuf.FieldMask":
+        case "google.protobuf.Struct":
+        case "google.protobuf.Value":
+        case "google.protobuf.ListValue":
+            return Kind.FALLBACK;
+        default:
+            return Kind.REGULAR;
+        }
+    }
+
+    class MessageEncoder {
+        final Kind kind;
+        final FieldEncoder[] fields;
+
+        MessageEncoder(Descriptor descriptor) {
+            this.kind = getKind(descriptor);
+            List<FieldDescriptor> fdList = descriptor.getFields();
+            fields = new FieldEncoder[fdList.size()];
+            for (int i = 0; i < fields.length; i++) {
+                fields[i] = new FieldEncoder(fdList.get(i));
+            }
+        }
+
+        void encode(MessageOrBuilder message, StringBuilder sb) throws InvalidProtocolBufferException {
+            switch (kind) {
+            case TIMESTAMP:
+                Timestamp ts = message instanceof Timestamp t ? t : Timestamp.newBuilder()
+                        .setSeconds((Long) message.getField(fields[0].fd))
+                        .setNanos((Integer) message.getField(fields[1].fd))
+                        .build();
+                sb.append('"').append(Timestamps.toString(ts)).append('"');
+                break;
+            case WRAPPER:
+                // the value is printed even if it is the default one
+                FieldEncoder fe = fields[0];
+                fe.writeValue(message.getField(fe.fd), sb);
+                break;
+            case FALLBACK:
+                sb.append(fallback.print(message));
+                break;
+            default:
+                sb.append('{');
+                encodeFields(message, sb, true);
+                sb.append('}');
+            }
+        }
+
+        boolean encodeFields(MessageOrBuilder message, StringBuilder sb, boolean first)
+                throws InvalidProtocolBufferException {
+            for (FieldEncoder fe : fields) {
+                FieldDescriptor fd = fe.fd;
+                if (fd.isRepeated()) {
+                    int n = message.getRepeatedFieldCount(fd);
+                    if (n == 0) {
+                        continue;
+                    }
+                    if (!first) {
+                        sb.append(',');
+                    }
+                    first = false;
+                    sb.append(fe.name);
+                    if (fe.mapKey != null) {
+                        fe.writeMap(message, n, sb);
+                    } else {
+                        sb.append('[');
+                        for (int i = 0; i < n; i++) {
+                            if (i > 0) {
+                                sb.append(',');
+                            }
+                            fe.writeValue(message.getRepeatedField(fd, i), sb);
+                        }
+                        sb.append(']');
+                    }
+                } else if (message.hasField(fd)) {
+                    // for the fields without presence, hasField returns false for the default value
+                    if (!first) {
+                        sb.append(',');
+                    }
+                    first = false;
+                    sb.append(fe.name);
+                    fe.writeValue(message.getField(fd), sb);
+                }
+            }
+            return first;
+        }
+    }
+
+    class FieldEncoder {
+        final FieldDescriptor fd;
+        // quoted name followed by colon
+        final String name;
+        // for map fields, the key and value fields of the entry
+        final FieldDescriptor mapKey;
+        final FieldEncoder mapValue;
+        // for message fields, resolved on first use
+        private volatile MessageEncoder messageEncoder;
+
+        FieldEncoder(FieldDescriptor fd) {
+            this.fd = fd;
+            StringBuilder sb = new StringBuilder();
+            appendString(fd.getJsonName(), sb);
+            this.name = sb.append(':').toString();
+            if (fd.isMapField()) {
+                Descriptor entry = fd.getMessageType();
+                mapKey = entry.findFieldByNumber(1);
+                mapValue = new FieldEncoder(entry.findFieldByNumber(2));
+            } else {
+                mapKey = null;
+                mapValue = null;
+            }
+        }
+
+        void writeMap(MessageOrBuilder message, int n, StringBuilder sb) throws InvalidProtocolBufferException {
+            sb.append('{');
+            for (int i = 0; i < n; i++) {
+                if (i > 0) {
+                    sb.append(',');
+                }
+                MessageOrBuilder entry = (MessageOrBuilder) message.getRepeatedField(fd, i);
+                writeMapKey(entry.getField(mapKey), sb);
+                sb.append(':');
+                mapValue.writeValue(entry.getField(mapValue.fd), sb);
+            }
+            sb.append('}');
+        }
+
+        private void writeMapKey(Object key, StringBuilder sb) {
+            switch (mapKey.getType()) {
+            case STRING:
+                appendString((String) key, sb);
+                break;
+            case UINT32:
+            case FIXED32:
+                sb.append('"').append(Integer.toUnsignedString((Integer) key)).append('"');
+                break;
+            case UINT64:
+            case FIXED64:
+                sb.append('"').append(Long.toUnsignedString((Long) key)).append('"');
+                break;
+            default:
+                sb.append('"').append(key).append('"');
+            }
+        }
+
+        void writeValue(Object value, StringBuilder sb) throws InvalidProtocolBufferException {
+            switch (fd.getType()) {
+            case INT32:
+            case SINT32:
+            case SFIXED32:
+            case BOOL:
+                sb.append(value);
+                break;
+            case INT64:
+            case SINT64:
+            case SFIXED64:
+                sb.append('"').append(value).append('"');
+                break;
+            case UINT32:
+            case FIXED32:
+                sb.append(Integer.toUnsignedString((Integer) value));
+                break;
+            case UINT64:
+            case FIXED64:
+                sb.append('"').append(Long.toUnsignedString((Long) value)).append('"');
+                break;
+            case FLOAT:
+                float f = (Float) value;
+                if (Float.isNaN(f) || Float.isInfinite(f)) {
+                    sb.append('"').append(f).append('"');
+                } else {
+                    sb.append(f);
+                }
+                break;
+            case DOUBLE:
+                double d = (Double) value;
+                if (Double.isNaN(d) || Double.isInfinite(d)) {
+                    sb.append('"').append(d).append('"');
+                } else {
+                    sb.append(d);
+                }
+                break;
+            case STRING:
+                appendString((String) value, sb);
+                break;
+            case BYTES:
+                sb.append('"').append(Base64.getEncoder().encodeToString(((ByteString) value).toByteArray()))
+                        .append('"');
+                break;
+            case ENUM:
+                EnumValueDescriptor evd = (EnumValueDescriptor) value;
+                if (evd.getType().getFullName().equals("google.protobuf.NullValue")) {
+                    sb.append("null");
+                } else if (evd.getIndex() == -1) {
+                    // unknown value
+                    sb.append(evd.getNumber());
+                } else {
+                    sb.append('"').append(evd.getName()).append('"');
+                }
+                break;
+            case MESSAGE:
+            case GROUP:
+                MessageEncoder me = messageEncoder;
+                if (me == null) {
+                    me = getEncoder(fd.getMessageType());
+                    messageEncoder = me;
+                }
+                me.encode((MessageOrBuilder) value, sb);
+                break;
+            default:
+                throw new IllegalStateException("Unexpected type " + fd.getType());
+            }
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package org.yamcs.http;
+
+import java.io.IOException;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.Message;
+
+/**
+ * Message sent over WebSocket whose content has been (partially) encoded in advance.
+ * <p>
+ * It allows the parts of the message which are shared between many subscribers to be encoded only once, instead of
+ * once for each WebSocket channel. It also allows the message to be written directly in the frame, without being
+ * first serialized in an {@link com.google.protobuf.Any}.
+ */
+public interface PreEncodedMessage {
+
+    /**
+     * 
+     * @return an instance of the protobuf message type represented by this message, used to determine the type URL
+     */
+    Message getDefaultInstanceForType();
+
+    /**
+     * 
+     * @return the size of the serialized protobuf message
+     */
+    int getSerializedSize();
+
+    /**
+     * Writes the serialized protobuf message.
+     */
+    void writeTo(CodedOutputStream out) throws IOException;
+
+    /**
+     * Writes the fields of the message as JSON properties, without the enclosing braces.
+     *
+     * @param first
+     *            true if no property has been written before in the enclosing object
+     * @return true if still no property has been written
+     * @see JsonEncoder#encodeFields(com.google.protobuf.MessageOrBuilder, StringBuilder, boolean)
+     */
+    boolean writeJsonFields(JsonEncoder encoder, StringBuilder sb, boolean first)
+            throws InvalidProtocolBufferException;
+
+    /**
+     * 
+     * @return the serialized protobuf message
+     */
+    default ByteString toByteString() {
+        byte[] buf = new byte[getSerializedSize()];
+        CodedOutputStream out = CodedOutputStream.newInstance(buf);
+        try {
+            writeTo(out);
+            out.checkNoSpaceLeft();
+        } catch (IOException e) {
+            // cannot happen when writing to an array of the right size
+            throw new IllegalStateException(e);
+        }
+        return ByteString.copyFrom(buf);
+    }
+
+    /**
+     * Wraps a message which has not been encoded in advance.
+     */
+    static PreEncodedMessage of(Message message) {
+        return new WrappedMessage(message);
+    }
+}
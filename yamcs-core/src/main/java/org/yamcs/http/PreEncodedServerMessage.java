@@ -0,0 +1,9 @@
+package org.yamcs.http;
+
+/**
+ * Equivalent of a {@link org.yamcs.protobuf.ServerMessage} with the data not packed in an
+ * {@link com.google.protobuf.Any}. It is written to the channel and converted to a WebSocket frame by the
+ * {@link WebSocketServerMessageHandler}.
+ */
+record PreEncodedServerMessage(String type, int call, int seq, PreEncodedMessage data) {
+}
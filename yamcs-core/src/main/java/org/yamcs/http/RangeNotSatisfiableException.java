@@ -0,0 +1,19 @@
+package org.yamcs.http;
+
+import io.netty.handler.codec.http.HttpResponseStatus;
+
+/**
+ * When the range requested with a Range header does not overlap with the requested resource
+ */
+public class RangeNotSatisfiableException extends HttpException {
+    private static final long serialVersionUID = 1L;
+
+    public RangeNotSatisfiableException(String message) {
+        super(message);
+    }
+
+    @Override
+    public HttpResponseStatus getStatus() {
+        return HttpResponseStatus.REQUESTED_RANGE_NOT_SATISFIABLE;
+    }
+}
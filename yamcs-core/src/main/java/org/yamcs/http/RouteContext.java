@@ -100,6 +100,11 @@ public class RouteContext extends Context {
         this.fullNettyRequest = fullNettyRequest;
     }
 
+    @Override
+    public String getRequestHeader(String name) {
+        return nettyRequest.headers().get(name);
+    }
+
     @Override
     public String getClientAddress() {
         String forwardedFor = nettyRequest.headers().get("x-forwarded-for");
@@ -15,13 +15,11 @@ import org.yamcs.logging.Log;
 import org.yamcs.protobuf.CancelOptions;
 import org.yamcs.protobuf.ClientMessage;
 import org.yamcs.protobuf.Reply;
-import org.yamcs.protobuf.ServerMessage;
 import org.yamcs.protobuf.State;
 import org.yamcs.security.User;
 
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
-import com.google.protobuf.Any;
 import com.google.protobuf.Descriptors.Descriptor;
 import com.google.protobuf.InvalidProtocolBufferException;
 import com.google.protobuf.Message;
@@ -247,12 +245,7 @@ public class WebSocketFrameHandler extends SimpleChannelInboundHandler<WebSocket
      * Sends the message to the netty channel.
      */
     private void writeMessage(ChannelHandlerContext nettyContext, String type, Message data) {
-        ServerMessage serverMessage = ServerMessage.newBuilder()
-                .setType(type)
-                .setCall(0)
-                .setSeq(0)
-                .setData(Any.pack(data, HttpServer.TYPE_URL_PREFIX))
-                .build();
+        var serverMessage = new PreEncodedServerMessage(type, 0, 0, PreEncodedMessage.of(data));
         nettyContext.channel().attr(WebSocketFramePriority.ATTR).set(HIGH);
         nettyContext.channel().writeAndFlush(serverMessage);
     }
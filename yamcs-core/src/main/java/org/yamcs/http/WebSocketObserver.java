@@ -10,12 +10,10 @@ import java.util.List;
 import org.yamcs.api.Observer;
 import org.yamcs.logging.Log;
 import org.yamcs.protobuf.Reply;
-import org.yamcs.protobuf.ServerMessage;
 
-import com.google.protobuf.Any;
 import com.google.protobuf.Message;
 
-public class WebSocketObserver implements Observer<Message> {
+public class WebSocketObserver implements Observer<Message>, EncodedObserver {
 
     private Log log;
 
@@ -28,7 +26,7 @@ public class WebSocketObserver implements Observer<Message> {
     private Runnable cancelHandler;
 
     private boolean replied;
-    private List<Message> pendingMessages = new ArrayList<>(); // Messages received while not yet replied
+    private List<PreEncodedMessage> pendingMessages = new ArrayList<>(); // Messages received while not yet replied
 
     public WebSocketObserver(TopicContext ctx) {
         this.ctx = ctx;
@@ -42,12 +40,12 @@ public class WebSocketObserver implements Observer<Message> {
     void sendReply(Reply reply) {
         synchronized (this) { // Guard 'replied' and 'pendingMessages'
             try {
-                sendMessage("reply", reply, HIGH);
+                sendMessage("reply", PreEncodedMessage.of(reply), HIGH);
             } finally {
                 replied = true;
             }
 
-            pendingMessages.forEach(message -> next(message));
+            pendingMessages.forEach(message -> nextEncoded(message));
             pendingMessages.clear();
         }
     }
@@ -58,6 +56,14 @@ public class WebSocketObserver implements Observer<Message> {
      */
     @Override
     public synchronized void next(Message message) {
+        nextEncoded(PreEncodedMessage.of(message));
+    }
+
+    /**
+     * Same as {@link #next(Message)} for a message which has been encoded in advance.
+     */
+    @Override
+    public synchronized void nextEncoded(PreEncodedMessage message) {
         if (!replied) {
             pendingMessages.add(message);
             return;
@@ -73,14 +79,8 @@ public class WebSocketObserver implements Observer<Message> {
         sendMessage(ctx.getTopic().getName(), message, lowPriority ? LOW : NORMAL);
     }
 
-    private void sendMessage(String type, Message data, WebSocketFramePriority priority) {
-        ServerMessage serverMessage = ServerMessage.newBuilder()
-                .setType(type)
-                .setCall(ctx.getId())
-                .setSeq(messageCount)
-                .setData(Any.pack(data, HttpServer.TYPE_URL_PREFIX))
-                .build();
-
+    private void sendMessage(String type, PreEncodedMessage data, WebSocketFramePriority priority) {
+        var serverMessage = new PreEncodedServerMessage(type, ctx.getId(), messageCount, data);
         ctx.nettyContext.channel().attr(WebSocketFramePriority.ATTR).set(priority);
         ctx.nettyContext.channel().writeAndFlush(serverMessage);
     }
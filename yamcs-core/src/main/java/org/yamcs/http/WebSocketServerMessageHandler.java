@@ -1,9 +1,18 @@
 package org.yamcs.http;
 
+import java.io.IOException;
+
 import org.yamcs.protobuf.ServerMessage;
 
+import com.google.protobuf.Any;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.Descriptors.Descriptor;
+import com.google.protobuf.WireFormat;
+
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
 import io.netty.buffer.ByteBufOutputStream;
+import io.netty.buffer.ByteBufUtil;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelOutboundHandlerAdapter;
 import io.netty.channel.ChannelPromise;
@@ -14,6 +23,10 @@ import io.netty.handler.codec.http.websocketx.WebSocketFrame;
 /**
  * Encodes {@link ServerMessage} to either {@link BinaryWebSocketFrame} or {@link TextWebSocketFrame} depending if the
  * protobuf or json has to be sent.
+ * <p>
+ * The {@link PreEncodedServerMessage} are encoded without building a {@link ServerMessage}: in protobuf the data is
+ * written directly in the frame, without being first serialized in an {@link Any}, and in JSON the data fields are
+ * written with the {@link JsonEncoder} in the object corresponding to the {@link ServerMessage}.
  */
 public class WebSocketServerMessageHandler extends ChannelOutboundHandlerAdapter {
 
@@ -27,20 +40,106 @@ public class WebSocketServerMessageHandler extends ChannelOutboundHandlerAdapter
 
     @Override
     public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
-        ServerMessage serverMessage = (ServerMessage) msg;
         WebSocketFrame frame;
-
-        if (protobuf) {
-            ByteBuf buf = ctx.alloc().buffer();
-            try (ByteBufOutputStream bufOut = new ByteBufOutputStream(buf)) {
-                serverMessage.writeTo(bufOut);
+        if (msg instanceof PreEncodedServerMessage encodedMessage) {
+            if (protobuf) {
+                frame = new BinaryWebSocketFrame(encodeProtobuf(ctx.alloc(), encodedMessage));
+            } else {
+                frame = new TextWebSocketFrame(ByteBufUtil.writeUtf8(ctx.alloc(),
+                        encodeJson(encodedMessage, httpServer.getJsonEncoder())));
             }
-            frame = new BinaryWebSocketFrame(buf);
         } else {
-            String json = httpServer.getJsonPrinter().print(serverMessage);
-            frame = new TextWebSocketFrame(json);
+            ServerMessage serverMessage = (ServerMessage) msg;
+            if (protobuf) {
+                ByteBuf buf = ctx.alloc().buffer(serverMessage.getSerializedSize());
+                try (ByteBufOutputStream bufOut = new ByteBufOutputStream(buf)) {
+                    serverMessage.writeTo(bufOut);
+                }
+                frame = new BinaryWebSocketFrame(buf);
+            } else {
+                String json = httpServer.getJsonEncoder().encode(serverMessage);
+                frame = new TextWebSocketFrame(json);
+            }
         }
 
         ctx.write(frame, promise);
     }
+
+    /**
+     * Writes the message with the same serialization as the equivalent {@link ServerMessage}.
+     */
+    static ByteBuf encodeProtobuf(ByteBufAllocator alloc, PreEncodedServerMessage msg)
+            throws IOException {
+        String typeUrl = getTypeUrl(msg.data().getDefaultInstanceForType().getDescriptorForType());
+        int dataSize = msg.data().getSerializedSize();
+        int anySize = CodedOutputStream.computeStringSize(Any.TYPE_URL_FIELD_NUMBER, typeUrl);
+        if (dataSize > 0) {
+            anySize += CodedOutputStream.computeTagSize(Any.VALUE_FIELD_NUMBER)
+                    + CodedOutputStream.computeUInt32SizeNoTag(dataSize) + dataSize;
+        }
+        int size = CodedOutputStream.computeStringSize(ServerMessage.TYPE_FIELD_NUMBER, msg.type());
+        if (msg.call() != 0) {
+            size += CodedOutputStream.computeInt32Size(ServerMessage.CALL_FIELD_NUMBER, msg.call());
+        }
+        if (msg.seq() != 0) {
+            size += CodedOutputStream.computeInt32Size(ServerMessage.SEQ_FIELD_NUMBER, msg.seq());
+        }
+        size += CodedOutputStream.computeTagSize(ServerMessage.DATA_FIELD_NUMBER)
+                + CodedOutputStream.computeUInt32SizeNoTag(anySize) + anySize;
+
+        ByteBuf buf = alloc.buffer(size);
+        try {
+            CodedOutputStream out = CodedOutputStream.newInstance(buf.nioBuffer(0, size));
+            out.writeString(ServerMessage.TYPE_FIELD_NUMBER, msg.type());
+            if (msg.call() != 0) {
+                out.writeInt32(ServerMessage.CALL_FIELD_NUMBER, msg.call());
+            }
+            if (msg.seq() != 0) {
+                out.writeInt32(ServerMessage.SEQ_FIELD_NUMBER, msg.seq());
+            }
+            out.writeTag(ServerMessage.DATA_FIELD_NUMBER, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+            out.writeUInt32NoTag(anySize);
+            out.writeString(Any.TYPE_URL_FIELD_NUMBER, typeUrl);
+            if (dataSize > 0) {
+                out.writeTag(Any.VALUE_FIELD_NUMBER, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+                out.writeUInt32NoTag(dataSize);
+                msg.data().writeTo(out);
+            }
+            out.flush();
+            out.checkNoSpaceLeft();
+            buf.writerIndex(size);
+            return buf;
+        } catch (IOException | RuntimeException e) {
+            buf.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Writes the message as the JSON object corresponding to the equivalent {@link ServerMessage}.
+     */
+    static StringBuilder encodeJson(PreEncodedServerMessage msg, JsonEncoder encoder) throws IOException {
+        String typeUrl = getTypeUrl(msg.data().getDefaultInstanceForType().getDescriptorForType());
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\"type\":");
+        JsonEncoder.appendString(msg.type(), sb);
+        if (msg.call() != 0) {
+            sb.append(",\"call\":").append(msg.call());
+        }
+        if (msg.seq() != 0) {
+            sb.append(",\"seq\":").append(msg.seq());
+        }
+        sb.append(",\"data\":{\"@type\":");
+        JsonEncoder.appendString(typeUrl, sb);
+        msg.data().writeJsonFields(encoder, sb, false);
+        sb.append("}}");
+        return sb;
+    }
+
+    // same as in Any.pack
+    private static String getTypeUrl(Descriptor descriptor) {
+        String prefix = HttpServer.TYPE_URL_PREFIX;
+        return prefix.endsWith("/") ? prefix + descriptor.getFullName()
+                : prefix + "/" + descriptor.getFullName();
+    }
 }
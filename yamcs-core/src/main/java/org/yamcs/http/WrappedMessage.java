@@ -0,0 +1,39 @@
+package org.yamcs.http;
+
+import java.io.IOException;
+
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.Message;
+
+/**
+ * {@link PreEncodedMessage} encoding a regular message when it is written.
+ */
+class WrappedMessage implements PreEncodedMessage {
+    final Message message;
+
+    WrappedMessage(Message message) {
+        this.message = message;
+    }
+
+    @Override
+    public Message getDefaultInstanceForType() {
+        return message.getDefaultInstanceForType();
+    }
+
+    @Override
+    public int getSerializedSize() {
+        return message.getSerializedSize();
+    }
+
+    @Override
+    public void writeTo(CodedOutputStream out) throws IOException {
+        message.writeTo(out);
+    }
+
+    @Override
+    public boolean writeJsonFields(JsonEncoder encoder, StringBuilder sb, boolean first)
+            throws InvalidProtocolBufferException {
+        return encoder.encodeFields(message, sb, first);
+    }
+}
@@ -1,6 +1,8 @@
 package org.yamcs.http.api;
 
 import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -16,11 +18,14 @@ import org.yamcs.buckets.BucketProperties;
 import org.yamcs.buckets.FileSystemBucket;
 import org.yamcs.buckets.ObjectProperties;
 import org.yamcs.http.BadRequestException;
+import org.yamcs.http.ChannelObserver;
 import org.yamcs.http.Context;
 import org.yamcs.http.ForbiddenException;
 import org.yamcs.http.HttpException;
+import org.yamcs.http.HttpUtils;
 import org.yamcs.http.InternalServerErrorException;
 import org.yamcs.http.NotFoundException;
+import org.yamcs.http.RangeNotSatisfiableException;
 import org.yamcs.protobuf.AbstractBucketsApi;
 import org.yamcs.protobuf.BucketInfo;
 import org.yamcs.protobuf.BucketLocation;
@@ -44,6 +49,13 @@ import org.yamcs.utils.TimeEncoding;
 import com.google.protobuf.ByteString;
 import com.google.protobuf.Empty;
 
+import io.netty.handler.codec.http.DefaultHttpResponse;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpVersion;
+
 public class BucketsApi extends AbstractBucketsApi<Context> {
 
     static final Pattern BUCKET_NAME_REGEXP = Pattern.compile("\\w[\\w\\-]+");
@@ -167,6 +179,9 @@ public class BucketsApi extends AbstractBucketsApi<Context> {
             if (err == null) {
                 if (props == null) {
                     observer.completeExceptionally(new NotFoundException());
+                } else if (observer instanceof ChannelObserver channelObserver) {
+                    // the data can be streamed without loading the object in memory
+                    streamObject(ctx, observer, channelObserver, bucket, objName, props);
                 } else {
                     bucket.getObjectAsync(objName).whenComplete((objData, err2) -> {
                         if (err2 == null) {
@@ -192,6 +207,59 @@ public class BucketsApi extends AbstractBucketsApi<Context> {
         });
     }
 
+    /**
+     * Sends the object data read from a channel provided by the bucket. A single byte range of the object can be
+     * requested with the Range header.
+     */
+    private void streamObject(Context ctx, Observer<HttpBody> observer, ChannelObserver channelObserver,
+            Bucket bucket, String objName, ObjectProperties props) {
+        long size = props.size();
+        long[] range;
+        String rangeHeader = ctx.getRequestHeader(HttpHeaderNames.RANGE.toString());
+        try {
+            range = rangeHeader == null ? null : HttpUtils.parseByteRange(rangeHeader, size);
+        } catch (RangeNotSatisfiableException e) {
+            observer.completeExceptionally(e);
+            return;
+        }
+
+        HttpResponse response;
+        long offset, length;
+        if (range == null) {
+            response = new DefaultHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK);
+            offset = 0;
+            length = size;
+        } else {
+            response = new DefaultHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.PARTIAL_CONTENT);
+            response.headers().set(HttpHeaderNames.CONTENT_RANGE,
+                    "bytes " + range[0] + "-" + (range[1] - 1) + "/" + size);
+            offset = range[0];
+            length = range[1] - range[0];
+        }
+        String contentType = props.contentType() != null ? props.contentType() : "application/octet-stream";
+        response.headers().set(HttpHeaderNames.CONTENT_TYPE, contentType);
+        response.headers().set(HttpHeaderNames.ACCEPT_RANGES, HttpHeaderValues.BYTES);
+
+        bucket.openObjectAsync(objName, offset, length).whenComplete((oc, err) -> {
+            if (err != null) {
+                observer.completeExceptionally(new InternalServerErrorException(
+                        "Error when retrieving object: " + err.getMessage(), err));
+            } else if (oc == null) {
+                observer.completeExceptionally(new NotFoundException());
+            } else if (oc.objectSize() != size) {
+                // the object has been replaced since its properties were retrieved, the headers do not match it
+                try {
+                    oc.channel().close();
+                } catch (IOException e) {
+                    // ignore, the request fails anyway
+                }
+                observer.completeExceptionally(new NotFoundException("Object " + objName + " has been modified"));
+            } else {
+                channelObserver.completeWithChannel(response, oc.channel(), length);
+            }
+        });
+    }
+
     @Override
     public void uploadObject(Context ctx, UploadObjectRequest request, Observer<Empty> observer) {
         String bucketName = request.getBucketName();
@@ -211,7 +279,7 @@ public class BucketsApi extends AbstractBucketsApi<Context> {
         verifyObjectName(objectName);
 
         String contentType = body.hasContentType() ? body.getContentType() : null;
-        byte[] objectData = body.getData().toByteArray();
+        ReadableByteChannel objectData = Channels.newChannel(body.getData().newInput());
 
         bucket.putObjectAsync(objectName, contentType, body.getMetadataMap(), objectData).whenComplete((res, err) -> {
             if (err == null) {
@@ -0,0 +1,95 @@
+package org.yamcs.http.api;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.yamcs.http.JsonEncoder;
+import org.yamcs.http.PreEncodedMessage;
+import org.yamcs.http.api.ParameterEncodingCache.EncodedParameterValue;
+import org.yamcs.protobuf.SubscribeParametersData;
+import org.yamcs.utils.IntArray;
+
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.Message;
+import com.google.protobuf.WireFormat;
+
+/**
+ * {@link SubscribeParametersData} containing only values, assembled from values encoded in advance.
+ * <p>
+ * The numeric id of each value is added to the encoded value: in protobuf the field is appended to the serialized
+ * value and in JSON the property is inserted at the beginning of the object.
+ */
+public class EncodedParameterData implements PreEncodedMessage {
+    static final int NUMERIC_ID_FIELD_NUMBER = org.yamcs.protobuf.Pvalue.ParameterValue.NUMERICID_FIELD_NUMBER;
+
+    private final List<EncodedParameterValue> values = new ArrayList<>();
+    private final IntArray numericIds = new IntArray();
+
+    public void add(EncodedParameterValue value, int numericId) {
+        values.add(value);
+        numericIds.add(numericId);
+    }
+
+    public boolean isEmpty() {
+        return values.isEmpty();
+    }
+
+    @Override
+    public Message getDefaultInstanceForType() {
+        return SubscribeParametersData.getDefaultInstance();
+    }
+
+    @Override
+    public int getSerializedSize() {
+        int size = 0;
+        for (int i = 0; i < values.size(); i++) {
+            int valueSize = getValueSize(i);
+            size += CodedOutputStream.computeTagSize(SubscribeParametersData.VALUES_FIELD_NUMBER)
+                    + CodedOutputStream.computeUInt32SizeNoTag(valueSize) + valueSize;
+        }
+        return size;
+    }
+
+    @Override
+    public void writeTo(CodedOutputStream out) throws IOException {
+        for (int i = 0; i < values.size(); i++) {
+            out.writeTag(SubscribeParametersData.VALUES_FIELD_NUMBER, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+            out.writeUInt32NoTag(getValueSize(i));
+            out.writeRawBytes(values.get(i).getProtobuf());
+            out.writeUInt32(NUMERIC_ID_FIELD_NUMBER, numericIds.get(i));
+        }
+    }
+
+    @Override
+    public boolean writeJsonFields(JsonEncoder encoder, StringBuilder sb, boolean first)
+            throws InvalidProtocolBufferException {
+        if (values.isEmpty()) {
+            return first;
+        }
+        if (!first) {
+            sb.append(',');
+        }
+        sb.append("\"values\":[");
+        for (int i = 0; i < values.size(); i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            String json = values.get(i).getJson(encoder);
+            sb.append("{\"numericId\":").append(Integer.toUnsignedString(numericIds.get(i)));
+            if (json.length() > 2) {
+                sb.append(',').append(json, 1, json.length());
+            } else {
+                sb.append('}');
+            }
+        }
+        sb.append(']');
+        return false;
+    }
+
+    private int getValueSize(int i) {
+        return values.get(i).getProtobuf().size()
+                + CodedOutputStream.computeUInt32Size(NUMERIC_ID_FIELD_NUMBER, numericIds.get(i));
+    }
+}
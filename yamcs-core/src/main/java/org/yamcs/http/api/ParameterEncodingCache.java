@@ -0,0 +1,107 @@
+package org.yamcs.http.api;
+
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.concurrent.TimeUnit;
+
+import org.yamcs.Processor;
+import org.yamcs.http.JsonEncoder;
+import org.yamcs.parameter.ParameterStatus;
+import org.yamcs.parameter.ParameterValue;
+import org.yamcs.protobuf.Pvalue.AcquisitionStatus;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.InvalidProtocolBufferException;
+
+/**
+ * Cache of the protobuf and JSON encodings of the parameter values delivered by a processor.
+ * <p>
+ * The processor delivers the same {@link ParameterValue} objects to all the subscribers, so when many clients
+ * subscribe to the same parameters, each value is encoded only once. The encoded values do not contain the numeric id,
+ * which is specific to each subscription; it is added when the message for one subscriber is assembled (see
+ * {@link EncodedParameterData}).
+ * <p>
+ * The values are identified by reference and the entries are kept only for a short time, enough for the value to be
+ * delivered to all the subscribers.
+ */
+public class ParameterEncodingCache {
+    static final long EXPIRATION_MILLIS = 10_000;
+
+    private static final LoadingCache<Processor, ParameterEncodingCache> caches = CacheBuilder.newBuilder()
+            .weakKeys()
+            .build(CacheLoader.from(processor -> new ParameterEncodingCache()));
+
+    private final Cache<ParameterValue, EncodedParameterValue> cache = CacheBuilder.newBuilder()
+            .weakKeys()
+            .expireAfterWrite(EXPIRATION_MILLIS, TimeUnit.MILLISECONDS)
+            .build();
+
+    ParameterEncodingCache() {
+    }
+
+    public static ParameterEncodingCache forProcessor(Processor processor) {
+        return caches.getUnchecked(processor);
+    }
+
+    /**
+     * Returns the encoded value, encoding it if it is not in the cache or if its status has changed since it has been
+     * encoded (the values are marked as expired after having been delivered).
+     */
+    public EncodedParameterValue get(ParameterValue pval) {
+        EncodedParameterValue epv = cache.getIfPresent(pval);
+        if (epv == null || !epv.isUpToDate(pval)) {
+            epv = new EncodedParameterValue(pval);
+            cache.put(pval, epv);
+        }
+        return epv;
+    }
+
+    /**
+     * Parameter value encoded without identifier.
+     */
+    public static class EncodedParameterValue {
+        private final ParameterStatus status;
+        private final AcquisitionStatus acqStatus;
+        private final org.yamcs.protobuf.Pvalue.ParameterValue gpb;
+        private final ByteString protobuf;
+        private volatile String json;
+
+        EncodedParameterValue(ParameterValue pval) {
+            this.status = pval.getStatus();
+            this.acqStatus = pval.getAcquisitionStatus(true);
+            this.gpb = pval.toProtobufParameterValue(Optional.empty(), OptionalInt.empty(), true);
+            this.protobuf = gpb.toByteString();
+        }
+
+        /**
+         * Creates a value which is not shared, for example because it has been modified for one subscriber.
+         */
+        public EncodedParameterValue(org.yamcs.protobuf.Pvalue.ParameterValue gpb) {
+            this.status = null;
+            this.acqStatus = gpb.getAcquisitionStatus();
+            this.gpb = gpb;
+            this.protobuf = gpb.toByteString();
+        }
+
+        boolean isUpToDate(ParameterValue pval) {
+            return pval.getStatus() == status && pval.getAcquisitionStatus(true) == acqStatus;
+        }
+
+        ByteString getProtobuf() {
+            return protobuf;
+        }
+
+        String getJson(JsonEncoder encoder) throws InvalidProtocolBufferException {
+            String s = json;
+            if (s == null) {
+                s = encoder.encode(gpb);
+                json = s;
+            }
+            return s;
+        }
+    }
+}
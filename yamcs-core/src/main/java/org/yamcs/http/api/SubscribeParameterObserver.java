@@ -6,6 +6,8 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalInt;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
@@ -16,11 +18,16 @@ import org.yamcs.NoPermissionException;
 import org.yamcs.Processor;
 import org.yamcs.api.Observer;
 import org.yamcs.http.BadRequestException;
+import org.yamcs.http.EncodedObserver;
+import org.yamcs.http.api.ParameterEncodingCache.EncodedParameterValue;
 import org.yamcs.logging.Log;
+import org.yamcs.parameter.ConflatingParameterConsumer;
 import org.yamcs.parameter.ParameterRequestManager;
 import org.yamcs.parameter.ParameterValue;
 import org.yamcs.parameter.ParameterValueWithId;
+import org.yamcs.parameter.ParameterWithIdConsumer;
 import org.yamcs.parameter.ParameterWithIdRequestHelper;
+import org.yamcs.parameter.Value;
 import org.yamcs.protobuf.Mdb.DataSourceType;
 import org.yamcs.protobuf.SubscribeParametersData;
 import org.yamcs.protobuf.SubscribeParametersRequest;
@@ -28,6 +35,7 @@ import org.yamcs.protobuf.SubscribeParametersRequest.Action;
 import org.yamcs.protobuf.SubscribedParameterInfo;
 import org.yamcs.protobuf.Yamcs.NamedObjectId;
 import org.yamcs.protobuf.Yamcs.NamedObjectList;
+import org.yamcs.protobuf.Yamcs.Value.Type;
 import org.yamcs.security.User;
 import org.yamcs.utils.StringConverter;
 import org.yamcs.xtce.BaseDataType;
@@ -44,6 +52,8 @@ public class SubscribeParameterObserver implements Observer<SubscribeParametersR
 
     private int subscriptionId = -1;
     private ParameterWithIdRequestHelper pidrm;
+    private ParameterEncodingCache encodingCache;
+    private ConflatingParameterConsumer conflator;
 
     private ConcurrentMap<NamedObjectId, Integer> numericIdMap = new ConcurrentHashMap<>();
     private AtomicInteger numericIdGenerator = new AtomicInteger();
@@ -65,20 +75,21 @@ public class SubscribeParameterObserver implements Observer<SubscribeParametersR
         if (pidrm == null) {
             Processor processor = ProcessingApi.verifyProcessor(request.getInstance(), request.getProcessor());
             ParameterRequestManager requestManager = processor.getParameterRequestManager();
-            pidrm = new ParameterWithIdRequestHelper(requestManager, (subscriptionId, params) -> {
-                if (params.isEmpty()) {
-                    return;
-                }
-                SubscribeParametersData.Builder datab = SubscribeParametersData.newBuilder();
-                for (ParameterValueWithId pvwi : params) {
-                    ParameterValue pval = pvwi.getParameterValue();
-                    Integer numericId = numericIdMap.get(pvwi.getId());
-                    if (numericId != null) {
-                        datab.addValues(toGpb(pval, numericId));
-                    }
-                }
-                responseObserver.next(datab.build());
-            });
+            ParameterWithIdConsumer consumer;
+            if (responseObserver instanceof EncodedObserver encodedObserver) {
+                encodingCache = ParameterEncodingCache.forProcessor(processor);
+                consumer = (subscriptionId, params) -> sendEncoded(encodedObserver, params);
+            } else {
+                consumer = (subscriptionId, params) -> send(params);
+            }
+            if (request.hasUpdatePeriod() && request.getUpdatePeriod() > 0) {
+                // the conflated updates are sent from the timer thread, concurrently with the replies sent from the
+                // request thread; the response observers serialize the messages they send
+                conflator = new ConflatingParameterConsumer(consumer, processor.getTimer(),
+                        request.getUpdatePeriod());
+                consumer = conflator;
+            }
+            pidrm = new ParameterWithIdRequestHelper(requestManager, consumer);
         }
 
         Action action = Action.REPLACE;
@@ -156,6 +167,52 @@ public class SubscribeParameterObserver implements Observer<SubscribeParametersR
         }
     }
 
+    private void send(List<ParameterValueWithId> params) {
+        if (params.isEmpty()) {
+            return;
+        }
+        SubscribeParametersData.Builder datab = SubscribeParametersData.newBuilder();
+        for (ParameterValueWithId pvwi : params) {
+            ParameterValue pval = pvwi.getParameterValue();
+            Integer numericId = numericIdMap.get(pvwi.getId());
+            if (numericId != null) {
+                datab.addValues(toGpb(pval, numericId));
+            }
+        }
+        responseObserver.next(datab.build());
+    }
+
+    /**
+     * Sends the values to a client reusing the encodings shared with the other clients subscribed to the
+     * same processor. Only the values truncated for this client are encoded specifically.
+     */
+    private void sendEncoded(EncodedObserver encodedObserver, List<ParameterValueWithId> params) {
+        EncodedParameterData data = new EncodedParameterData();
+        for (ParameterValueWithId pvwi : params) {
+            ParameterValue pval = pvwi.getParameterValue();
+            Integer numericId = numericIdMap.get(pvwi.getId());
+            if (numericId != null) {
+                if (needsTruncation(pval)) {
+                    var gpb = pval.toProtobufParameterValue(Optional.empty(), OptionalInt.empty(), true);
+                    data.add(new EncodedParameterValue(truncate(gpb)), numericId);
+                } else {
+                    data.add(encodingCache.get(pval), numericId);
+                }
+            }
+        }
+        if (!data.isEmpty()) {
+            encodedObserver.nextEncoded(data);
+        }
+    }
+
+    private boolean needsTruncation(ParameterValue pval) {
+        return maxBytes >= 0 && (isLongBinary(pval.getRawValue()) || isLongBinary(pval.getEngValue()));
+    }
+
+    private boolean isLongBinary(Value v) {
+        return v != null && v.getType() == Type.BINARY && v.getBinaryValue().length > maxBytes;
+    }
+
     private SubscribedParameterInfo generateInfo(NamedObjectId id) {
         var infob = SubscribedParameterInfo.newBuilder();
         try {
@@ -201,6 +258,9 @@ public class SubscribeParameterObserver implements Observer<SubscribeParametersR
                 subscriptionId = -1;
             }
             subscriptionId = pidrm.addRequest(idList, updateOnExpiration, user);
+            if (conflator != null) {
+                conflator.retain(idList);
+            }
         } else if (action == Action.ADD) {
             if (subscriptionId == -1) {
                 subscriptionId = pidrm.addRequest(idList, updateOnExpiration, user);
@@ -211,11 +271,17 @@ public class SubscribeParameterObserver implements Observer<SubscribeParametersR
             if (subscriptionId != -1) {
                 pidrm.removeItemsFromRequest(subscriptionId, idList, user);
             }
+            if (conflator != null) {
+                conflator.remove(idList);
+            }
         }
     }
 
     private org.yamcs.protobuf.Pvalue.ParameterValue toGpb(ParameterValue pval, int numericId) {
-        var gpb = pval.toGpb(numericId);
+        return truncate(pval.toGpb(numericId));
+    }
+
+    private org.yamcs.protobuf.Pvalue.ParameterValue truncate(org.yamcs.protobuf.Pvalue.ParameterValue gpb) {
         if (maxBytes >= 0) {
             var hasRawBinaryValue = gpb.hasRawValue() && gpb.getRawValue().hasBinaryValue();
             var hasEngBinaryValue = gpb.hasEngValue() && gpb.getEngValue().hasBinaryValue();
@@ -244,6 +310,9 @@ public class SubscribeParameterObserver implements Observer<SubscribeParametersR
     @Override
     public void completeExceptionally(Throwable t) {
         log.error("Parameter subscription errored", t);
+        if (conflator != null) {
+            conflator.cancel();
+        }
         if (pidrm != null) {
             pidrm.quit();
         }
@@ -251,6 +320,9 @@ public class SubscribeParameterObserver implements Observer<SubscribeParametersR
 
     @Override
     public void complete() {
+        if (conflator != null) {
+            conflator.cancel();
+        }
         if (pidrm != null) {
             pidrm.quit();
         }
@@ -88,7 +88,14 @@ public class DataEncodingDecoder {
         int numBits = ide.getSizeInBits();
 
         long rv = buffer.getBits(numBits);
-        switch (ide.getEncoding()) {
+        return getRawValue(ide, decodeInteger(ide.getEncoding(), numBits, rv));
+    }
+
+    /**
+     * Converts the bits read from the buffer into a signed long according to the integer encoding
+     */
+    static long decodeInteger(Encoding encoding, int numBits, long rv) {
+        switch (encoding) {
         case UNSIGNED:
             // nothing to do
             break;
@@ -118,10 +125,10 @@ public class DataEncodingDecoder {
         default: // shouldn't happen
             throw new IllegalStateException();
         }
-        return getRawValue(ide, rv);
+        return rv;
     }
 
-    private static Value getRawValue(IntegerDataEncoding ide, long longValue) {
+    static Value getRawValue(IntegerDataEncoding ide, long longValue) {
         if (ide.getSizeInBits() <= 32) {
             if (ide.getEncoding() == Encoding.UNSIGNED) {
                 return ValueUtility.getUint32Value((int) longValue);
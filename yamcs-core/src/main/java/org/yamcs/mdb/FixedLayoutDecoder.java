@@ -0,0 +1,210 @@
+package org.yamcs.mdb;
+
+import java.nio.ByteOrder;
+import java.util.List;
+
+import org.yamcs.parameter.ContainerParameterValue;
+import org.yamcs.parameter.Value;
+import org.yamcs.utils.BitBuffer;
+import org.yamcs.utils.ValueUtility;
+import org.yamcs.xtce.ArrayParameterEntry;
+import org.yamcs.xtce.BaseDataType;
+import org.yamcs.xtce.BooleanDataEncoding;
+import org.yamcs.xtce.DataEncoding;
+import org.yamcs.xtce.FloatDataEncoding;
+import org.yamcs.xtce.IntegerDataEncoding;
+import org.yamcs.xtce.IntegerDataEncoding.Encoding;
+import org.yamcs.xtce.ParameterEntry;
+import org.yamcs.xtce.ParameterType;
+import org.yamcs.xtce.SequenceEntry;
+import org.yamcs.xtce.SequenceEntry.ReferenceLocationType;
+
+/**
+ * Decoder for the subscribed entries of a container when all of them are parameters of fixed size located at fixed
+ * positions.
+ * <p>
+ * The location, size and extraction function of each entry are resolved once when the decoder is created, such that
+ * processing a packet does not walk again through the XTCE definitions. The result is the same as the one obtained by
+ * the generic processing done by the {@link SequenceContainerProcessor} and {@link SequenceEntryProcessor}.
+ * <p>
+ * Objects of this class are immutable and can be used by multiple threads at the same time.
+ */
+class FixedLayoutDecoder {
+    final ParameterEntry[] entries;
+    final FieldDecoder[] decoders;
+    final int[] locations;
+    final boolean[] fromContainerStart;
+    final int[] sizes;
+
+    private FixedLayoutDecoder(int n) {
+        entries = new ParameterEntry[n];
+        decoders = new FieldDecoder[n];
+        locations = new int[n];
+        fromContainerStart = new boolean[n];
+        sizes = new int[n];
+    }
+
+    /**
+     * Creates a decoder for the given list of entries.
+     *
+     * @return the decoder or null if at least one of the entries is not located at a fixed position or does not have
+     *         a fixed size
+     */
+    static FixedLayoutDecoder create(List<SequenceEntry> entryList) {
+        if (entryList.isEmpty()) {
+            return null;
+        }
+        FixedLayoutDecoder fld = new FixedLayoutDecoder(entryList.size());
+        for (int i = 0; i < entryList.size(); i++) {
+            SequenceEntry se = entryList.get(i);
+            if (!(se instanceof ParameterEntry) || se instanceof ArrayParameterEntry
+                    || se.getIncludeCondition() != null || se.getRepeatEntry() != null) {
+                return null;
+            }
+            ParameterEntry pe = (ParameterEntry) se;
+            ParameterType ptype = pe.getParameter().getParameterType();
+            if (!(ptype instanceof BaseDataType)) {
+                return null;
+            }
+            DataEncoding de = ((BaseDataType) ptype).getEncoding();
+            FieldDecoder decoder = getDecoder(de);
+            if (decoder == null) {
+                return null;
+            }
+            fld.entries[i] = pe;
+            fld.decoders[i] = decoder;
+            fld.locations[i] = se.getLocationInContainerInBits();
+            fld.fromContainerStart[i] = se.getReferenceLocation() == ReferenceLocationType.CONTAINER_START;
+            // the boolean values are always read from one bit, whatever the size of the encoding
+            fld.sizes[i] = de instanceof BooleanDataEncoding ? 1 : de.getSizeInBits();
+        }
+        return fld;
+    }
+
+    /**
+     * Extracts all the entries from the buffer of the processing context, starting at its current position, and adds
+     * them to the result.
+     * <p>
+     * If any of the entries does not fit inside the buffer, nothing is extracted and -1 is returned; the caller should
+     * then use the generic processing which knows how to report the error.
+     *
+     * @return the maximum position reached in the buffer or -1 if the entries could not be extracted
+     */
+    int extract(ContainerProcessingContext pcontext) {
+        BitBuffer buf = pcontext.buffer;
+        int n = entries.length;
+        int size = buf.sizeInBits();
+
+        int position = buf.getPosition();
+        int maxposition = position;
+        for (int i = 0; i < n; i++) {
+            position = fromContainerStart[i] ? locations[i] : position + locations[i];
+            if (position < 0 || position + sizes[i] > size) {
+                return -1;
+            }
+            position += sizes[i];
+            if (position > maxposition) {
+                maxposition = position;
+            }
+        }
+
+        ContainerProcessingResult result = pcontext.result;
+        ParameterTypeProcessor ptypeProcessor = pcontext.proccessorData.parameterTypeProcessor;
+        int offset = buf.offset();
+        position = buf.getPosition();
+        for (int i = 0; i < n; i++) {
+            position = fromContainerStart[i] ? locations[i] : position + locations[i];
+            buf.setPosition(position);
+
+            ParameterEntry pe = entries[i];
+            pcontext.currentEntry = pe;
+            ContainerParameterValue pv = new ContainerParameterValue(pe.getParameter(), offset, position);
+            pv.setRawValue(decoders[i].decode(buf));
+            pv.setBitSize(sizes[i]);
+            ptypeProcessor.calibrate(result, pv);
+
+            pv.setAcquisitionTime(result.acquisitionTime);
+            pv.setGenerationTime(result.generationTime);
+            pv.setExpireMillis(result.expireMillis);
+            pv.setSequenceEntry(pe);
+            result.addTmParam(pv);
+
+            position += sizes[i];
+        }
+        pcontext.currentEntry = null;
+        buf.setPosition(position);
+
+        return maxposition;
+    }
+
+    private static FieldDecoder getDecoder(DataEncoding de) {
+        if (de == null || de.getFromBinaryTransformAlgorithm() != null) {
+            return null;
+        }
+        if (de instanceof IntegerDataEncoding) {
+            return getIntegerDecoder((IntegerDataEncoding) de);
+        } else if (de instanceof FloatDataEncoding) {
+            return getFloatDecoder((FloatDataEncoding) de);
+        } else if (de instanceof BooleanDataEncoding) {
+            return buf -> ValueUtility.getBooleanValue(buf.getBits(1) != 0);
+        } else {
+            return null;
+        }
+    }
+
+    private static FieldDecoder getIntegerDecoder(IntegerDataEncoding ide) {
+        Encoding encoding = ide.getEncoding();
+        int numBits = ide.getSizeInBits();
+        if (encoding == Encoding.STRING || numBits <= 0 || numBits > 64) {
+            return null;
+        }
+        ByteOrder byteOrder = ide.getByteOrder();
+        if (encoding == Encoding.UNSIGNED) {
+            if (numBits <= 32) {
+                return buf -> {
+                    buf.setByteOrder(byteOrder);
+                    return ValueUtility.getUint32Value((int) buf.getBits(numBits));
+                };
+            } else {
+                return buf -> {
+                    buf.setByteOrder(byteOrder);
+                    return ValueUtility.getUint64Value(buf.getBits(numBits));
+                };
+            }
+        } else {
+            return buf -> {
+                buf.setByteOrder(byteOrder);
+                long rv = DataEncodingDecoder.decodeInteger(encoding, numBits, buf.getBits(numBits));
+                return DataEncodingDecoder.getRawValue(ide, rv);
+            };
+        }
+    }
+
+    private static FieldDecoder getFloatDecoder(FloatDataEncoding fde) {
+        if (fde.getEncoding() != FloatDataEncoding.Encoding.IEEE754_1985) {
+            return null;
+        }
+        ByteOrder byteOrder = fde.getByteOrder();
+        if (fde.getSizeInBits() == 32) {
+            return buf -> {
+                buf.setByteOrder(byteOrder);
+                return ValueUtility.getFloatValue(Float.intBitsToFloat((int) buf.getBits(32)));
+            };
+        } else if (fde.getSizeInBits() == 64) {
+            return buf -> {
+                buf.setByteOrder(byteOrder);
+                return ValueUtility.getDoubleValue(Double.longBitsToDouble(buf.getBits(64)));
+            };
+        } else {
+            return null;
+        }
+    }
+
+    /**
+     * Reads one raw value from the current position of the buffer
+     */
+    @FunctionalInterface
+    interface FieldDecoder {
+        Value decode(BitBuffer buf);
+    }
+}
@@ -1,14 +1,9 @@
 package org.yamcs.mdb;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InvalidClassException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
-import java.io.OutputStream;
 import java.io.RandomAccessFile;
 import java.io.UnsupportedEncodingException;
 import java.nio.file.Files;
@@ -23,6 +18,8 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 import org.yamcs.ConfigurationException;
 import org.yamcs.YConfiguration;
@@ -147,7 +144,7 @@ public class MdbFactory {
         if (mdb == null) {
             // Construct a Space System with one branch from the config file and the other one /yamcs for system
             // variables
-            LoadResult lr = loaderTree.load();
+            LoadResult lr = loadTree(loaderTree, attemptToLoadSerialized, saveSerialized);
 
             if (lr.ssList.size() != 1) {
                 throw new IllegalStateException("root loader has to load exactly one subsystem");
@@ -159,7 +156,7 @@ public class MdbFactory {
             rootSs.addSpaceSystem(yamcsSs);
             ReferenceFinder refFinder = new ReferenceFinder(s -> log.warn(s));
             int n;
-            while ((n = resolveReferences(rootSs, rootSs, refFinder)) > 0) {
+            while ((n = resolveReferences(rootSs, rootSs, refFinder, true)) > 0) {
             }
 
             if (n == 0) {
@@ -197,6 +194,23 @@ public class MdbFactory {
         return mdb;
     }
 
+    /**
+     * Loads the tree, the independent subtrees being loaded in parallel.
+     */
+    private static LoadResult loadTree(LoaderTree loaderTree, boolean loadCached, boolean saveCached) {
+        // the root loader only creates the empty root space system
+        int parallelism = Math.min(loaderTree.countLoaders() - 1, Runtime.getRuntime().availableProcessors());
+        if (parallelism <= 1) {
+            return loaderTree.load(loadCached, saveCached);
+        }
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            return pool.invoke(ForkJoinTask.adapt(() -> loaderTree.load(loadCached, saveCached)));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
     /* collects a description for all unresolved references into the StringBuffer to raise an error */
     private static void collectUnresolvedReferences(SpaceSystem ss, StringBuilder sb) {
         List<NameReference> refs = ss.getUnresolvedReferences();
@@ -215,10 +229,13 @@ public class MdbFactory {
      *
      * @param ss
      * @param sysDb
+     * @param global
+     *            false if rootSs contains only part of the MDB, in which case the system parameters are not created
+     *            and the aliases are not searched
      * @return the number of references resolved or -1 if there was no reference to be resolved
      */
-    private static int resolveReferences(SpaceSystem rootSs, SpaceSystem ss, ReferenceFinder refFinder)
-            throws DatabaseLoadException {
+    private static int resolveReferences(SpaceSystem rootSs, SpaceSystem ss, ReferenceFinder refFinder,
+            boolean global) throws DatabaseLoadException {
         List<NameReference> refs = ss.getUnresolvedReferences();
 
         if (refs == null) { // this can happen if the spacesystem has been unserialized since the reference name is
@@ -237,13 +254,13 @@ public class MdbFactory {
                 resolved = resolveArgumentReference((ArgumentReference) nr);
             } else {
                 FoundReference foundReference = refFinder.findReference(rootSs, nr, ss);
-                if (foundReference == null && nr.getType() == Type.PARAMETER
+                if (global && foundReference == null && nr.getType() == Type.PARAMETER
                         && nr.getReference().startsWith(Mdb.YAMCS_SPACESYSTEM_NAME)) {
                     // Special case for system parameters: they are created on the fly
                     SystemParameter sp = createSystemParameter(rootSs, nr);
                     foundReference = new FoundReference(sp);
                 }
-                if (foundReference == null) { // look for aliases up the hierarchy
+                if (global && foundReference == null) { // look for aliases up the hierarchy
                     foundReference = refFinder.findAliasReference(rootSs, nr, ss);
                 }
 
@@ -260,7 +277,7 @@ public class MdbFactory {
             }
         }
         for (SpaceSystem ss1 : ss.getSubSystems()) {
-            int m = resolveReferences(rootSs, ss1, refFinder);
+            int m = resolveReferences(rootSs, ss1, refFinder, global);
             if (n == -1) {
                 n = m;
             } else if (m > 0) {
@@ -468,13 +485,44 @@ public class MdbFactory {
     private static Mdb loadSerializedInstance(File serializedFile) throws IOException, ClassNotFoundException {
         log.debug("Loading serialized XTCE DB from: {}", serializedFile);
 
-        try (ObjectInputStream in = new ObjectInputStream(new FileInputStream(serializedFile))) {
-            Mdb mdb = (Mdb) in.readObject();
-            log.info("Loaded XTCE DB from {} with {} containers, {} parameters and {} commands",
-                    serializedFile, mdb.getSequenceContainers().size(), mdb.getParameterNames().size(),
-                    mdb.getMetaCommands().size());
-            return mdb;
+        long t0 = System.nanoTime();
+        Mdb mdb = (Mdb) MdbSnapshot.read(serializedFile);
+        log.info("Loaded XTCE DB from {} with {} containers, {} parameters and {} commands in {} ms",
+                serializedFile, mdb.getSequenceContainers().size(), mdb.getParameterNames().size(),
+                mdb.getMetaCommands().size(), (System.nanoTime() - t0) / 1000000);
+        return mdb;
+    }
+
+    /**
+     * Resolves the references between the space systems loaded by one loader placed directly under the root, before
+     * they are added to the MDB.
+     * <p>
+     * A reference found in this partial tree is resolved to the same object as it would be in the full MDB, because
+     * the other loaders only add siblings of these space systems. The references to the system parameters, to the
+     * aliases or to the objects of the other loaders are left for the final resolution phase.
+     *
+     * @return true if all the references have been resolved, meaning that the space systems do not depend on what is
+     *         loaded by the other loaders.
+     */
+    static boolean resolveLocalReferences(List<SpaceSystem> ssList) {
+        SpaceSystem tmpRoot = new SpaceSystem("");
+        tmpRoot.setParent(tmpRoot);
+        List<SpaceSystem> parents = new ArrayList<>(ssList.size());
+        for (SpaceSystem ss : ssList) {
+            parents.add(ss.getParent());
+            tmpRoot.addSpaceSystem(ss);
+        }
+        ReferenceFinder refFinder = new ReferenceFinder(s -> log.debug(s));
+        int n;
+        try {
+            while ((n = resolveReferences(tmpRoot, tmpRoot, refFinder, false)) > 0) {
+            }
+        } finally {
+            for (int i = 0; i < ssList.size(); i++) {
+                ssList.get(i).setParent(parents.get(i));
+            }
         }
+        return n == -1;
     }
 
     private static File resolveSerializedFile(String filename) {
@@ -496,10 +544,8 @@ public class MdbFactory {
     private static void saveSerializedInstance(LoaderTree loaderTree, Mdb mdb, File serializedFile,
             File consistencyFile) throws IOException {
         serializedFile.getParentFile().mkdirs();
-        try (OutputStream os = new FileOutputStream(serializedFile);
-                ObjectOutputStream out = new ObjectOutputStream(os);
-                FileWriter fw = new FileWriter(consistencyFile)) {
-            out.writeObject(mdb);
+        MdbSnapshot.write(mdb, serializedFile);
+        try (FileWriter fw = new FileWriter(consistencyFile)) {
             loaderTree.writeConsistencyDate(fw);
         }
     }
@@ -632,9 +678,38 @@ public class MdbFactory {
             return false;
         }
 
-        public LoadResult load() throws ConfigurationException {
+        int countLoaders() {
+            int n = 1;
+            if (children != null) {
+                for (LoaderTree lt : children) {
+                    n += lt.countLoaders();
+                }
+            }
+            return n;
+        }
+
+        /**
+         * Loads the space systems of this subtree.
+         * <p>
+         * The children are loaded in parallel if this is called from a {@link ForkJoinPool}.
+         * <p>
+         * The result of each loader placed directly under the root, without sub-loaders and not writable, is
+         * additionally cached in its own snapshot if all its references can be resolved locally. When the full MDB
+         * has to be re-loaded because some source has changed, these loaders are read from their snapshot instead of
+         * being parsed again if their sources did not change.
+         *
+         * @param loadCached
+         *            if the space systems can be read from the snapshot
+         * @param saveCached
+         *            if the snapshot of the space systems loaded from the sources should be saved
+         */
+        public LoadResult load(boolean loadCached, boolean saveCached) throws ConfigurationException {
             LoadResult r = new LoadResult();
-            r.ssList = root.loadList();
+            if (children == null && !writable && (loadCached || saveCached)) {
+                r.ssList = loadLeaf(loadCached, saveCached);
+            } else {
+                r.ssList = root.loadList();
+            }
 
             if (writable) {
                 var w = root.getWriter();
@@ -649,8 +724,8 @@ public class MdbFactory {
                 }
                 SpaceSystem rss = r.ssList.get(0);
 
-                for (LoaderTree lt : children) {
-                    LoadResult rc = lt.load();
+                List<LoadResult> results = loadChildren(loadCached, saveCached);
+                for (LoadResult rc : results) {
                     for (SpaceSystem ss : rc.ssList) {
                         rss.addSpaceSystem(ss);
                         ss.setParent(rss);
@@ -664,6 +739,67 @@ public class MdbFactory {
             return r;
         }
 
+        private List<LoadResult> loadChildren(boolean loadCached, boolean saveCached) {
+            // only the loaders directly under the root are cached separately
+            boolean top = root instanceof RootSpaceSystemLoader;
+            boolean loadChildCached = top && loadCached;
+            boolean saveChildCached = top && saveCached;
+            List<LoadResult> results = new ArrayList<>(children.size());
+            if (children.size() == 1 || ForkJoinTask.getPool() == null) {
+                for (LoaderTree lt : children) {
+                    results.add(lt.load(loadChildCached, saveChildCached));
+                }
+            } else {
+                List<ForkJoinTask<LoadResult>> tasks = new ArrayList<>(children.size());
+                for (LoaderTree lt : children) {
+                    tasks.add(ForkJoinTask.adapt(() -> lt.load(loadChildCached, saveChildCached)));
+                }
+                // the results are added to the parent in the order of the configuration
+                ForkJoinTask.invokeAll(tasks);
+                for (ForkJoinTask<LoadResult> task : tasks) {
+                    results.add(task.join());
+                }
+            }
+            return results;
+        }
+
+        @SuppressWarnings("unchecked")
+        private List<SpaceSystem> loadLeaf(boolean loadCached, boolean saveCached) {
+            String filename = sha1(root.getConfigName() + ".ss");
+            File snapshotFile = resolveSerializedFile(filename);
+            File consistencyFile = resolveConsistencyFile(filename);
+
+            if (loadCached && snapshotFile.exists()) {
+                try (RandomAccessFile raf = new RandomAccessFile(consistencyFile, "r")) {
+                    if (!needsUpdate(raf)) {
+                        List<SpaceSystem> ssList = (List<SpaceSystem>) MdbSnapshot.read(snapshotFile);
+                        log.debug("Loaded {} from snapshot {}", root.getConfigName(), snapshotFile);
+                        return ssList;
+                    }
+                } catch (InvalidClassException e) {
+                    log.debug("Cannot load snapshot of {}: {}", root.getConfigName(), e.getMessage());
+                } catch (Exception e) {
+                    log.warn("Cannot load snapshot of " + root.getConfigName(), e);
+                }
+            }
+
+            List<SpaceSystem> ssList = root.loadList();
+            // the snapshot is taken before the final resolution phase, that is while the loaded objects do not point
+            // to objects from other loaders
+            if (saveCached && resolveLocalReferences(ssList)) {
+                try {
+                    snapshotFile.getParentFile().mkdirs();
+                    MdbSnapshot.write(ssList, snapshotFile);
+                    try (FileWriter fw = new FileWriter(consistencyFile)) {
+                        writeConsistencyDate(fw);
+                    }
+                } catch (Exception e) {
+                    log.warn("Cannot save snapshot of " + root.getConfigName(), e);
+                }
+            }
+            return ssList;
+        }
+
         public void writeConsistencyDate(FileWriter fw) throws IOException {
             root.writeConsistencyDate(fw);
             if (children != null) {
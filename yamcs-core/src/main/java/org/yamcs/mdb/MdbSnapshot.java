@@ -0,0 +1,98 @@
+package org.yamcs.mdb;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reads and writes the MDB snapshots stored in the cache directory to avoid re-loading the MDB from its sources at
+ * each start. A snapshot contains either the full {@link Mdb} or the list of SpaceSystems produced by one loader.
+ * <p>
+ * The snapshot starts with a header made of a magic number and a format version, followed by the serialized object
+ * graph. A file with a different header (for example written by an older version) is rejected with an
+ * {@link InvalidClassException}, as an incompatible serialized class would be, such that the MDB is re-loaded from its
+ * sources.
+ * <p>
+ * Compared to the plain serialized files used before, the snapshot is an incremental improvement: the object graph is
+ * still written with Java serialization, but the file is written and read through buffers instead of with many small
+ * I/O operations, and the strings which are equal but not identical (names, namespaces, units...) are written once and
+ * shared after loading. The {@code MdbSnapshotBenchmark} in yamcs-benchmarks compares the two formats.
+ */
+class MdbSnapshot {
+    static final int MAGIC = 0x594D4442; // "YMDB"
+    /**
+     * To be incremented for each incompatible change of the format or of the serialized classes
+     */
+    static final int FORMAT_VERSION = 1;
+
+    static final int BUFFER_SIZE = 64 * 1024;
+
+    static void write(Object obj, File file) throws IOException {
+        try (OutputStream os = new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE)) {
+            DataOutputStream dos = new DataOutputStream(os);
+            dos.writeInt(MAGIC);
+            dos.writeInt(FORMAT_VERSION);
+            SnapshotOutputStream out = new SnapshotOutputStream(os);
+            out.writeObject(obj);
+            out.flush();
+        }
+    }
+
+    static Object read(File file) throws IOException, ClassNotFoundException {
+        // the file is read with a buffered stream rather than mapped in memory: a mapping is released only when the
+        // buffer is garbage collected and, on Windows, prevents the file from being rewritten after a rejected snapshot
+        try (InputStream is = new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE)) {
+            DataInputStream dis = new DataInputStream(is);
+            int magic;
+            try {
+                magic = dis.readInt();
+            } catch (EOFException e) {
+                magic = 0;
+            }
+            if (magic != MAGIC) {
+                throw new InvalidClassException("Not a MDB snapshot in the current format: " + file);
+            }
+            int version = dis.readInt();
+            if (version != FORMAT_VERSION) {
+                throw new InvalidClassException("Unsupported MDB snapshot version " + version
+                        + " (expected " + FORMAT_VERSION + ")");
+            }
+            ObjectInputStream in = new ObjectInputStream(is);
+            return in.readObject();
+        }
+    }
+
+    /**
+     * Replaces each string by the first equal string written, such that the object stream writes a back-reference
+     * instead of a new copy.
+     */
+    static class SnapshotOutputStream extends ObjectOutputStream {
+        final Map<String, String> strings = new HashMap<>();
+
+        SnapshotOutputStream(OutputStream out) throws IOException {
+            super(out);
+            enableReplaceObject(true);
+        }
+
+        @Override
+        protected Object replaceObject(Object obj) throws IOException {
+            if (obj instanceof String s) {
+                return strings.computeIfAbsent(s, k -> k);
+            }
+            return obj;
+        }
+    }
+}
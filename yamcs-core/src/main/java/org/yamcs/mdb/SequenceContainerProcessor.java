@@ -21,7 +21,6 @@ public class SequenceContainerProcessor {
     }
 
     public void extract(SubscribedContainer subscribedContainer) throws XtceProcessingException {
-        ProcessorData pdata = pcontext.proccessorData;
         SequenceContainer containerDef = subscribedContainer.conainerDef;
         ContainerProcessingResult result = pcontext.result;
         ContainerProcessingOptions options = pcontext.options;
@@ -41,7 +40,44 @@ public class SequenceContainerProcessor {
         int maxposition = buf.getPosition();
 
         // then extract the entries
-        List<SequenceEntry> entries = subscribedContainer.entries;
+        FixedLayoutDecoder fld = subscribedContainer.fixedLayoutDecoder;
+        int p = fld == null ? -1 : fld.extract(pcontext);
+        if (p < 0) {
+            p = extractEntries(subscribedContainer.entries);
+        }
+        if (p > maxposition) {
+            maxposition = p;
+        }
+
+        List<InheritingContainer> inheritingContainers = subscribedContainer.inheritingContainers;
+        // And then any derived containers
+        int bitp = buf.getPosition();
+        for (InheritingContainer inherited : inheritingContainers) {
+            MatchResult r = inherited.matches(result);
+
+            if (r == MatchResult.OK) {
+                buf.setPosition(bitp);
+                extract(inherited.container);
+                if (buf.getPosition() > maxposition) {
+                    maxposition = buf.getPosition();
+                }
+            }
+        }
+        buf.setPosition(maxposition);
+    }
+
+    /**
+     * Extracts the entries one by one, interpreting their definition.
+     *
+     * @return the maximum position reached in the buffer
+     */
+    private int extractEntries(List<SequenceEntry> entries) {
+        ProcessorData pdata = pcontext.proccessorData;
+        ContainerProcessingResult result = pcontext.result;
+        ContainerProcessingOptions options = pcontext.options;
+        BitBuffer buf = pcontext.buffer;
+        int maxposition = buf.getPosition();
+
         for (SequenceEntry se : entries) {
             int position = buf.getPosition();
             try {
@@ -101,20 +137,6 @@ public class SequenceContainerProcessor {
             }
         }
 
-        List<InheritingContainer> inheritingContainers = subscribedContainer.inheritingContainers;
-        // And then any derived containers
-        int bitp = buf.getPosition();
-        for (InheritingContainer inherited : inheritingContainers) {
-            MatchResult r = inherited.matches(result);
-
-            if (r == MatchResult.OK) {
-                buf.setPosition(bitp);
-                extract(inherited.container);
-                if (buf.getPosition() > maxposition) {
-                    maxposition = buf.getPosition();
-                }
-            }
-        }
-        buf.setPosition(maxposition);
+        return maxposition;
     }
 }
@@ -15,11 +15,31 @@ public class SubscribedContainer {
 
     List<InheritingContainer> inheritingContainers = new ArrayList<>();
     boolean allEntriesAdded = false;
+    /**
+     * decoder for the entries if they are all at fixed positions; only set in the read-only copies of the
+     * subscription
+     */
+    FixedLayoutDecoder fixedLayoutDecoder;
 
     public SubscribedContainer(SequenceContainer sc) {
         this.conainerDef = sc;
     }
 
+    /**
+     * Creates a copy of this container having the same entries but no inheriting containers; these are linked by
+     * {@link Subscription#copy()} once all the containers have been copied.
+     * <p>
+     * The copy is not supposed to be modified, so if possible a {@link FixedLayoutDecoder} is created for its
+     * entries.
+     */
+    SubscribedContainer copy() {
+        SubscribedContainer c = new SubscribedContainer(conainerDef);
+        c.entries = new ArrayList<>(entries);
+        c.allEntriesAdded = allEntriesAdded;
+        c.fixedLayoutDecoder = FixedLayoutDecoder.create(c.entries);
+        return c;
+    }
+
     public void addEntry(SequenceEntry se) {
         if (allEntriesAdded) {
             return;
@@ -64,6 +84,11 @@ public class SubscribedContainer {
                     : MatchCriteriaEvaluatorFactory.getEvaluator(matchCriteria);
         }
 
+        InheritingContainer(SubscribedContainer container, MatchCriteriaEvaluator criteriaEvaluator) {
+            this.container = container;
+            this.criteriaEvaluator = criteriaEvaluator;
+        }
+
         public MatchResult matches(ProcessingContext ctx) {
             return criteriaEvaluator.evaluate(ctx);
         }
@@ -9,6 +9,7 @@ import java.util.Set;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.yamcs.mdb.SubscribedContainer.InheritingContainer;
 import org.yamcs.xtce.ArrayParameterEntry;
 import org.yamcs.xtce.ContainerEntry;
 import org.yamcs.xtce.DynamicIntegerValue;
@@ -22,7 +23,9 @@ import org.yamcs.xtce.SequenceEntry;
 
 /**
  * keeps track of the parameters and containers subscribed (because we only want to extract those)
- * 
+ * <p>
+ * This class is not thread safe. The {@link XtceTmExtractor} modifies it under lock and uses for processing packets
+ * read-only copies obtained with {@link #copy()}.
  */
 public class Subscription {
     private final Map<SequenceContainer, SubscribedContainer> containers = new HashMap<>();
@@ -161,6 +164,25 @@ public class Subscription {
         }
     }
 
+    /**
+     * Creates a deep copy of this subscription. The copy is independent of this object; further additions to this
+     * subscription are not reflected in the copy.
+     */
+    public Subscription copy() {
+        Subscription s = new Subscription(mdb);
+        for (SubscribedContainer subscr : containers.values()) {
+            s.containers.put(subscr.conainerDef, subscr.copy());
+        }
+        for (SubscribedContainer subscr : containers.values()) {
+            SubscribedContainer c = s.containers.get(subscr.conainerDef);
+            for (InheritingContainer ic : subscr.inheritingContainers) {
+                c.inheritingContainers.add(new InheritingContainer(s.containers.get(ic.container.conainerDef),
+                        ic.criteriaEvaluator));
+            }
+        }
+        return s;
+    }
+
     /**
      * Get the set of all containers subscribed
      * 
@@ -15,11 +15,19 @@ import org.yamcs.xtce.SequenceContainer;
 /**
  *
  * Extracts parameters out of packets based on the XTCE description
+ * <p>
+ * The packets are processed without holding any lock, so multiple threads can call the processPacket methods in
+ * parallel. The subscription changes are performed under lock on the {@link #subscription} object and a read-only
+ * snapshot of it is published to the processing threads the next time a packet is processed.
  *
  */
 public class XtceTmExtractor {
     private static final Logger log = LoggerFactory.getLogger(XtceTmExtractor.class);
     protected final Subscription subscription;
+    /**
+     * copy of the subscription used for processing the packets; set to null each time the subscription changes
+     */
+    private volatile Subscription snapshot;
     private ProcessingStatistics stats = new ProcessingStatistics();
 
     public final Mdb mdb;
@@ -75,6 +83,7 @@ public class XtceTmExtractor {
                 dependencies.forEach(p -> subscription.addParameter(p));
             }
             subscription.addParameter(param);
+            snapshot = null;
         }
     }
 
@@ -82,10 +91,13 @@ public class XtceTmExtractor {
      * Adds all containers and parameters to the subscription
      */
     public void provideAll() {
-        for (SequenceContainer c : mdb.getSequenceContainers()) {
-            if (c.getBaseContainer() == null) {
-                subscription.addAll(c);
+        synchronized (subscription) {
+            for (SequenceContainer c : mdb.getSequenceContainers()) {
+                if (c.getBaseContainer() == null) {
+                    subscription.addAll(c);
+                }
             }
+            snapshot = null;
         }
     }
 
@@ -125,15 +137,18 @@ public class XtceTmExtractor {
         ContainerProcessingResult result = new ContainerProcessingResult(acquisitionTime, generationTime, seqCount,
                 pdata.getLastValueCache());
         try {
-            synchronized (subscription) {
-                SubscribedContainer subscribedContainer = subscription.addSequenceContainer(startContainer);
-                ContainerProcessingContext cpc = new ContainerProcessingContext(pdata, buf, result, subscription,
-                        options, true);
-                cpc.sequenceContainerProcessor.extract(subscribedContainer);
-                String pname = XtceTmRecorder.deriveArchivePartition(result);
-                stats.newPacket(pname, result.getParameterResult().size(), acquisitionTime, generationTime,
-                        buf.sizeInBits());
+            Subscription s = snapshot;
+            SubscribedContainer subscribedContainer = s == null ? null : s.getSubscribedContainer(startContainer);
+            if (subscribedContainer == null) {
+                s = getSnapshot(startContainer);
+                subscribedContainer = s.getSubscribedContainer(startContainer);
             }
+            ContainerProcessingContext cpc = new ContainerProcessingContext(pdata, buf, result, s,
+                    options, true);
+            cpc.sequenceContainerProcessor.extract(subscribedContainer);
+            String pname = XtceTmRecorder.deriveArchivePartition(result);
+            stats.newPacket(pname, result.getParameterResult().size(), acquisitionTime, generationTime,
+                    buf.sizeInBits());
         } catch (XtceProcessingException e) {
             pdata.eventProducer.sendWarning(e.toString());
             if (log.isDebugEnabled()) {
@@ -150,6 +165,25 @@ public class XtceTmExtractor {
         return result;
     }
 
+    /**
+     * Adds the start container to the subscription if required and returns an up to date snapshot of the
+     * subscription.
+     */
+    private Subscription getSnapshot(SequenceContainer startContainer) {
+        synchronized (subscription) {
+            if (subscription.getSubscribedContainer(startContainer) == null) {
+                subscription.addSequenceContainer(startContainer);
+                snapshot = null;
+            }
+            Subscription s = snapshot;
+            if (s == null) {
+                s = subscription.copy();
+                snapshot = s;
+            }
+            return s;
+        }
+    }
+
     public void resetStatistics() {
         stats.reset();
     }
@@ -161,6 +195,7 @@ public class XtceTmExtractor {
     public void startProviding(SequenceContainer sequenceContainer) {
         synchronized (subscription) {
             subscription.addSequenceContainer(sequenceContainer);
+            snapshot = null;
         }
     }
 
@@ -174,7 +209,9 @@ public class XtceTmExtractor {
 
     @Override
     public String toString() {
-        return subscription.toString();
+        synchronized (subscription) {
+            return subscription.toString();
+        }
     }
 
     public void setOptions(ContainerProcessingOptions opts) {
@@ -1,5 +1,11 @@
 package org.yamcs.parameter;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
 import java.util.ArrayList;
 import java.util.BitSet;
 import java.util.Collection;
@@ -7,6 +13,7 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.ReadWriteLock;
@@ -23,6 +30,9 @@ import org.yamcs.xtce.Parameter;
 /**
  * This is another implementation of the parameter cache using arrays to store primitive values (instead of storing
  * {@link Value}).
+ * <p>
+ * If the {@link ParameterCacheConfig#offHeap} option is set, the numeric values and the acquisition times are stored in
+ * direct buffers allocated outside of the java heap.
  */
 public class ArrayParameterCache implements ParameterCache {
     SimpleParameterIdMap pidMap = new SimpleParameterIdMap();
@@ -41,7 +51,8 @@ public class ArrayParameterCache implements ParameterCache {
     @Override
     public void update(Collection<ParameterValue> pvs) {
 
-        Map<Long, SortedParameterList> m = new HashMap<>();
+        // sorted by time such that the rows are added in order to the tables
+        Map<Long, SortedParameterList> m = new TreeMap<>();
         for (ParameterValue pv : pvs) {
             long t = pv.getGenerationTime();
             if (t < cacheStartTime) {
@@ -72,7 +83,8 @@ public class ArrayParameterCache implements ParameterCache {
         SortedIntArray sia = pvList.getParameterIdArray();
         ParameterValueTable table = tables.get(sia);
         if (table == null) {
-            table = new ParameterValueTable(sia, cacheConfig.maxDuration, cacheConfig.maxNumEntries);
+            table = new ParameterValueTable(sia, cacheConfig.maxDuration, cacheConfig.maxNumEntries,
+                    cacheConfig.offHeap);
             ParameterValueTable table1 = tables.putIfAbsent(sia, table);
             if (table1 != null) {
                 table = table1;
@@ -425,7 +437,12 @@ public class ArrayParameterCache implements ParameterCache {
      *
      * Each column is stored as an array of different type (depending on the parameter type). The array works as a
      * circular list
-     * 
+     * <p>
+     * If offHeap is true, the numeric columns and the acquisition time columns are stored in direct buffers instead of
+     * java arrays. The boolean, string, binary and the other object columns are always kept on the heap.
+     * <p>
+     * As long as the rows are added in increasing generation time order, the retrieval of an interval performs a binary
+     * search for its limits instead of scanning the whole table.
      */
     static class ParameterValueTable {
         static final int MAX_NUM_ENTRIES = 1024;
@@ -434,26 +451,35 @@ public class ArrayParameterCache implements ParameterCache {
         final Object[] rawValueColumns;
         final Object[] engValueColumns;
         final Object[] statusColumns;
-        final long[][] acquisitionTimeColumns;
+        // long[] or LongBuffer
+        final Object[] acquisitionTimeColumns;
         final int numParams;
         final long timeToCache;
+        final boolean offHeap;
         int head = 0;
         int tail = head;
         int maxNumEntries = MAX_NUM_ENTRIES;
         final SortedIntArray pids;
         long coverageStart = TimeEncoding.INVALID_INSTANT;
+        // true if the generation times are increasing from the tail to the head
+        boolean ordered = true;
 
         ReadWriteLock lock = new ReentrantReadWriteLock();
 
         ParameterValueTable(SortedIntArray pids, long timeToCache, int maxNumEntries) {
+            this(pids, timeToCache, maxNumEntries, false);
+        }
+
+        ParameterValueTable(SortedIntArray pids, long timeToCache, int maxNumEntries, boolean offHeap) {
             this.numParams = pids.size();
             this.pids = pids;
             this.rawValueColumns = new Object[numParams];
             this.engValueColumns = new Object[numParams];
             this.statusColumns = new Object[numParams];
-            this.acquisitionTimeColumns = new long[numParams][];
+            this.acquisitionTimeColumns = new Object[numParams];
             this.timeToCache = timeToCache;
             this.maxNumEntries = maxNumEntries;
+            this.offHeap = offHeap;
         }
 
         private void init(List<ParameterValue> sortedPvList) {
@@ -469,7 +495,7 @@ public class ArrayParameterCache implements ParameterCache {
                     rawValueColumns[i] = getNewColumn(rawV.getType());
                 }
                 statusColumns[i] = new ParameterStatus[INITIAL_CAPACITY];
-                acquisitionTimeColumns[i] = new long[INITIAL_CAPACITY];
+                acquisitionTimeColumns[i] = newLongColumn(INITIAL_CAPACITY);
             }
         }
 
@@ -497,6 +523,9 @@ public class ArrayParameterCache implements ParameterCache {
                         tail = (tail + 1) & (generationTimeColumn.length - 1);
                     }
                 }
+                if (ordered && t < getLastTimeUnlocked()) {
+                    ordered = false;
+                }
                 generationTimeColumn[_head] = t;
 
                 for (int i = 0; i < numParams; i++) {
@@ -540,18 +569,18 @@ public class ArrayParameterCache implements ParameterCache {
                 while (col1 > 0 && pids.get(col1 - 1) == p.id) {
                     col1--;
                 }
-                int _tail = tail;
-                int _head = head;
                 int n = generationTimeColumn.length - 1;
-                int row = _head;
-                do {
-                    row = (row - 1) & n;
-                    for (int col = col2; col >= col1; col--) {
-                        if (generationTimeColumn[row] > start && generationTimeColumn[row] <= stop) {
+                int k1 = firstIndexAfter(start, 0);
+                int k2 = firstIndexAfter(stop, numRows());
+                for (int k = k2 - 1; k >= k1; k--) {
+                    int row = (tail + k) & n;
+                    long gentime = generationTimeColumn[row];
+                    if (gentime > start && gentime <= stop) {
+                        for (int col = col2; col >= col1; col--) {
                             result.add(getParameterValue(row, col, p));
                         }
                     }
-                } while (row != _tail);
+                }
             } finally {
                 lock.readLock().unlock();
             }
@@ -576,17 +605,17 @@ public class ArrayParameterCache implements ParameterCache {
                     return false;
                 }
 
-                int _tail = tail;
-                int _head = head;
                 int n = generationTimeColumn.length - 1;
-                int row = _head;
+                int k1 = firstIndexAfter(start, 0);
+                int k2 = firstIndexAfter(stop, numRows());
 
-                // Iterate over the rows of the circular buffer
-                do {
-                    row = (row - 1) & n;
+                // Iterate over the rows of the circular buffer, from the newest to the oldest
+                for (int k = k2 - 1; k >= k1; k--) {
+                    int row = (tail + k) & n;
 
                     // Only process rows within the specified time range
-                    if (generationTimeColumn[row] > start && generationTimeColumn[row] <= stop) {
+                    long gentime = generationTimeColumn[row];
+                    if (gentime > start && gentime <= stop) {
                         List<ParameterValue> rowValues = new ArrayList<>();
 
                         // Collect parameter values for all requested ParameterIds in this row
@@ -603,7 +632,7 @@ public class ArrayParameterCache implements ParameterCache {
                         // Add the collected values for the current row to the result
                         result.add(rowValues);
                     }
-                } while (row != _tail);
+                }
             } finally {
                 lock.readLock().unlock();
             }
@@ -631,18 +660,18 @@ public class ArrayParameterCache implements ParameterCache {
                 while (col1 > 0 && pids.get(col1 - 1) == p.id) {
                     col1--;
                 }
-                int _tail = tail;
-                int _head = head;
                 int n = generationTimeColumn.length - 1;
-                int row = _head;
-                do {
-                    row = (row - 1) & n;
-                    for (int col = col2; col >= col1; col--) {
-                        if (generationTimeColumn[row] > start && generationTimeColumn[row] <= stop) {
+                int k1 = firstIndexAfter(start, 0);
+                int k2 = firstIndexAfter(stop, numRows());
+                for (int k = k2 - 1; k >= k1; k--) {
+                    int row = (tail + k) & n;
+                    long gentime = generationTimeColumn[row];
+                    if (gentime > start && gentime <= stop) {
+                        for (int col = col2; col >= col1; col--) {
                             result.add(getParameterValue(row, col, p));
                         }
                     }
-                } while (row != _tail);
+                }
                 return true;
             } finally {
                 lock.readLock().unlock();
@@ -650,6 +679,37 @@ public class ArrayParameterCache implements ParameterCache {
 
         }
 
+        /**
+         * Returns the number of rows in the table
+         */
+        private int numRows() {
+            return ((head - tail - 1) & (generationTimeColumn.length - 1)) + 1;
+        }
+
+        /**
+         * Returns the index (counted from the tail) of the first row having the generation time greater than t.
+         * <p>
+         * If the rows are not ordered, the binary search cannot be used and the provided default value is returned
+         * instead; the caller has to then check the generation time of each row.
+         */
+        private int firstIndexAfter(long t, int defaultValue) {
+            if (!ordered) {
+                return defaultValue;
+            }
+            int n = generationTimeColumn.length - 1;
+            int low = 0;
+            int high = numRows();
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (generationTimeColumn[(tail + mid) & n] <= t) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
         private ParameterValue getParameterValue(int row, ParameterId p) {
             int col = pids.search(p.id);
             return getParameterValue(row, col, p);
@@ -665,7 +725,7 @@ public class ArrayParameterCache implements ParameterCache {
                 pv.setEngValue(getValue(engValueColumns[col], p.engType, row));
             }
             pv.setGenerationTime(generationTimeColumn[row]);
-            pv.setAcquisitionTime(acquisitionTimeColumns[col][row]);
+            pv.setAcquisitionTime(getLong(acquisitionTimeColumns[col], row));
 
             pv.setStatus((ParameterStatus) ((Object[]) statusColumns[col])[row]);
             return pv;
@@ -676,19 +736,19 @@ public class ArrayParameterCache implements ParameterCache {
             case BOOLEAN:
                 return ValueUtility.getBooleanValue(((BitSet) o).get(idx));
             case DOUBLE:
-                return ValueUtility.getDoubleValue(((double[]) o)[idx]);
+                return ValueUtility.getDoubleValue(getDouble(o, idx));
             case FLOAT:
-                return ValueUtility.getFloatValue(((float[]) o)[idx]);
+                return ValueUtility.getFloatValue(getFloat(o, idx));
             case SINT32:
-                return ValueUtility.getSint32Value(((int[]) o)[idx]);
+                return ValueUtility.getSint32Value(getInt(o, idx));
             case UINT32:
-                return ValueUtility.getUint32Value(((int[]) o)[idx]);
+                return ValueUtility.getUint32Value(getInt(o, idx));
             case SINT64:
-                return ValueUtility.getSint64Value(((long[]) o)[idx]);
+                return ValueUtility.getSint64Value(getLong(o, idx));
             case UINT64:
-                return ValueUtility.getUint64Value(((long[]) o)[idx]);
+                return ValueUtility.getUint64Value(getLong(o, idx));
             case TIMESTAMP:
-                return ValueUtility.getTimestampValue(((long[]) o)[idx]);
+                return ValueUtility.getTimestampValue(getLong(o, idx));
             case STRING:
                 return ValueUtility.getStringValue((String) ((Object[]) o)[idx]);
             case BINARY:
@@ -705,13 +765,17 @@ public class ArrayParameterCache implements ParameterCache {
         public long getLastTime() {
             lock.readLock().lock();
             try {
-                int row = (head - 1) & (generationTimeColumn.length - 1);
-                return generationTimeColumn[row];
+                return getLastTimeUnlocked();
             } finally {
                 lock.readLock().unlock();
             }
         }
 
+        private long getLastTimeUnlocked() {
+            int row = (head - 1) & (generationTimeColumn.length - 1);
+            return generationTimeColumn[row];
+        }
+
         private void storeParameter(int col, int row, ParameterValue pv) {
             Value v = pv.getEngValue();
             if (v != null) {
@@ -731,7 +795,7 @@ public class ArrayParameterCache implements ParameterCache {
                 }
             }
             ((Object[]) statusColumns[col])[row] = status;
-            acquisitionTimeColumns[col][row] = pv.getAcquisitionTime();
+            setLong(acquisitionTimeColumns[col], row, pv.getAcquisitionTime());
         }
 
         private void storeValue(Object o, int pos, Value v) {
@@ -739,13 +803,13 @@ public class ArrayParameterCache implements ParameterCache {
 
             switch (type) {
             case BOOLEAN -> ((BitSet) o).set(pos, v.getBooleanValue());
-            case DOUBLE -> ((double[]) o)[pos] = v.getDoubleValue();
-            case FLOAT -> ((float[]) o)[pos] = v.getFloatValue();
-            case SINT32 -> ((int[]) o)[pos] = v.getSint32Value();
-            case UINT32 -> ((int[]) o)[pos] = v.getUint32Value();
-            case SINT64 -> ((long[]) o)[pos] = v.getSint64Value();
-            case UINT64 -> ((long[]) o)[pos] = v.getUint64Value();
-            case TIMESTAMP -> ((long[]) o)[pos] = v.getTimestampValue();
+            case DOUBLE -> setDouble(o, pos, v.getDoubleValue());
+            case FLOAT -> setFloat(o, pos, v.getFloatValue());
+            case SINT32 -> setInt(o, pos, v.getSint32Value());
+            case UINT32 -> setInt(o, pos, v.getUint32Value());
+            case SINT64 -> setLong(o, pos, v.getSint64Value());
+            case UINT64 -> setLong(o, pos, v.getUint64Value());
+            case TIMESTAMP -> setLong(o, pos, v.getTimestampValue());
             case STRING -> {
                 Object[] objArray = (Object[]) o;
                 String stringValue = v.getStringValue();
@@ -776,21 +840,80 @@ public class ArrayParameterCache implements ParameterCache {
             }
         }
 
+        private static double getDouble(Object o, int idx) {
+            return o instanceof double[] a ? a[idx] : ((DoubleBuffer) o).get(idx);
+        }
+
+        private static float getFloat(Object o, int idx) {
+            return o instanceof float[] a ? a[idx] : ((FloatBuffer) o).get(idx);
+        }
+
+        private static int getInt(Object o, int idx) {
+            return o instanceof int[] a ? a[idx] : ((IntBuffer) o).get(idx);
+        }
+
+        private static long getLong(Object o, int idx) {
+            return o instanceof long[] a ? a[idx] : ((LongBuffer) o).get(idx);
+        }
+
+        private static void setDouble(Object o, int idx, double x) {
+            if (o instanceof double[] a) {
+                a[idx] = x;
+            } else {
+                ((DoubleBuffer) o).put(idx, x);
+            }
+        }
+
+        private static void setFloat(Object o, int idx, float x) {
+            if (o instanceof float[] a) {
+                a[idx] = x;
+            } else {
+                ((FloatBuffer) o).put(idx, x);
+            }
+        }
+
+        private static void setInt(Object o, int idx, int x) {
+            if (o instanceof int[] a) {
+                a[idx] = x;
+            } else {
+                ((IntBuffer) o).put(idx, x);
+            }
+        }
+
+        private static void setLong(Object o, int idx, long x) {
+            if (o instanceof long[] a) {
+                a[idx] = x;
+            } else {
+                ((LongBuffer) o).put(idx, x);
+            }
+        }
+
+        private static ByteBuffer allocateDirect(int capacity, int elementSize) {
+            return ByteBuffer.allocateDirect(capacity * elementSize).order(ByteOrder.nativeOrder());
+        }
+
+        private Object newLongColumn(int capacity) {
+            return offHeap ? allocateDirect(capacity, Long.BYTES).asLongBuffer() : new long[capacity];
+        }
+
         private Object getNewColumn(Type type) {
             switch (type) {
             case BOOLEAN:
                 return new BitSet(INITIAL_CAPACITY);
             case DOUBLE:
-                return new double[INITIAL_CAPACITY];
+                return offHeap ? allocateDirect(INITIAL_CAPACITY, Double.BYTES).asDoubleBuffer()
+                        : new double[INITIAL_CAPACITY];
             case FLOAT:
-                return new float[INITIAL_CAPACITY];
+                return offHeap ? allocateDirect(INITIAL_CAPACITY, Float.BYTES).asFloatBuffer()
+                        : new float[INITIAL_CAPACITY];
             case SINT32:
             case UINT32:
-                return new int[INITIAL_CAPACITY];
+                return offHeap ? allocateDirect(INITIAL_CAPACITY, Integer.BYTES).asIntBuffer()
+                        : new int[INITIAL_CAPACITY];
             case SINT64:
             case UINT64:
             case TIMESTAMP:
-                return new long[INITIAL_CAPACITY];
+                return newLongColumn(INITIAL_CAPACITY);
             case STRING:
             case BINARY:
             case AGGREGATE:
@@ -818,27 +941,26 @@ public class ArrayParameterCache implements ParameterCache {
             for (int i = 0; i < numParams; i++) {
                 Object c = engValueColumns[i];
                 if (c != null) {
-                    engValueColumns[i] = growCapacity(c, newCapacity);
+                    engValueColumns[i] = growCapacity(c, capacity, newCapacity);
                 }
 
                 c = rawValueColumns[i];
                 if (c != null) {
-                    rawValueColumns[i] = growCapacity(c, newCapacity);
+                    rawValueColumns[i] = growCapacity(c, capacity, newCapacity);
                 }
 
                 c = statusColumns[i];
                 if (c != null) {
-                    statusColumns[i] = growCapacity(c, newCapacity);
+                    statusColumns[i] = growCapacity(c, capacity, newCapacity);
                 }
-                c = acquisitionTimeColumns[i];
-                acquisitionTimeColumns[i] = (long[]) growCapacity(c, newCapacity);
+                acquisitionTimeColumns[i] = growCapacity(acquisitionTimeColumns[i], capacity, newCapacity);
             }
             tail = 0;
             head = capacity;
             return true;
         }
 
-        private Object growCapacity(Object o, int newCapacity) {
+        private Object growCapacity(Object o, int capacity, int newCapacity) {
             if (o instanceof int[]) {
                 int[] o1 = (int[]) o;
                 int[] o2 = new int[newCapacity];
@@ -870,7 +992,36 @@ public class ArrayParameterCache implements ParameterCache {
                 System.arraycopy(o1, 0, o2, o1.length - head, head);
                 return o2;
             } else if (o instanceof BitSet) {
-                return o;
+                BitSet o1 = (BitSet) o;
+                BitSet o2 = new BitSet(newCapacity);
+                for (int i = o1.nextSetBit(0); i >= 0 && i < capacity; i = o1.nextSetBit(i + 1)) {
+                    o2.set((i - head) & (capacity - 1));
+                }
+                return o2;
+            } else if (o instanceof LongBuffer) {
+                LongBuffer o1 = (LongBuffer) o;
+                LongBuffer o2 = allocateDirect(newCapacity, Long.BYTES).asLongBuffer();
+                o2.put(0, o1, head, capacity - head);
+                o2.put(capacity - head, o1, 0, head);
+                return o2;
+            } else if (o instanceof IntBuffer) {
+                IntBuffer o1 = (IntBuffer) o;
+                IntBuffer o2 = allocateDirect(newCapacity, Integer.BYTES).asIntBuffer();
+                o2.put(0, o1, head, capacity - head);
+                o2.put(capacity - head, o1, 0, head);
+                return o2;
+            } else if (o instanceof DoubleBuffer) {
+                DoubleBuffer o1 = (DoubleBuffer) o;
+                DoubleBuffer o2 = allocateDirect(newCapacity, Double.BYTES).asDoubleBuffer();
+                o2.put(0, o1, head, capacity - head);
+                o2.put(capacity - head, o1, 0, head);
+                return o2;
+            } else if (o instanceof FloatBuffer) {
+                FloatBuffer o1 = (FloatBuffer) o;
+                FloatBuffer o2 = allocateDirect(newCapacity, Float.BYTES).asFloatBuffer();
+                o2.put(0, o1, head, capacity - head);
+                o2.put(capacity - head, o1, 0, head);
+                return o2;
             } else {
                 throw new IllegalArgumentException("Cannot double objects of type " + o.getClass());
             }
@@ -47,6 +47,10 @@ public class BasicParameterValue extends RawEngValue {
     }
 
     public void setExpireMillis(long em) {
+        if (status.getExpireMills() == em) {
+            // avoid allocating a new status for each value extracted from containers without expiration
+            return;
+        }
         changeNominalStatus();
         status.setExpireMillis(em);
     }
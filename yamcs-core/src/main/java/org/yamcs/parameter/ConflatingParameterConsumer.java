@@ -0,0 +1,230 @@
+package org.yamcs.parameter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.yamcs.logging.Log;
+import org.yamcs.protobuf.Yamcs.NamedObjectId;
+
+/**
+ * Conflates the parameter updates received from a {@link ParameterWithIdRequestHelper}: the updates are passed to the
+ * downstream consumer periodically and each delivery contains at most one value for each parameter identifier, the
+ * latest one received during the period.
+ * <p>
+ * The pending values are kept in a table with one slot per identifier, such that the memory and the number of values
+ * delivered downstream do not depend on the rate of the updates, only on the number of subscribed identifiers. The
+ * slots of the identifiers removed from the subscription with {@link #remove(Collection)} or
+ * {@link #retain(Collection)} are reused for the identifiers added later.
+ * <p>
+ * The deliveries are made on the timer thread, one at a time. The downstream consumer is therefore called from a
+ * different thread than the one producing the updates and, if it forwards them to an observer, it has to be safe to
+ * use concurrently with the other threads writing to the same observer.
+ */
+public class ConflatingParameterConsumer implements ParameterWithIdConsumer {
+    private static final Log log = new Log(ConflatingParameterConsumer.class);
+
+    final ParameterWithIdConsumer consumer;
+    final long periodMillis;
+    private final ScheduledFuture<?> future;
+
+    // guarded by this
+    private final Map<NamedObjectId, Integer> slotIndex = new HashMap<>();
+    private ParameterValueWithId[] slots = new ParameterValueWithId[16];
+    // subscription id of the value in each slot
+    private int[] slotSubscriptionIds = new int[16];
+    private int numSlots;
+    // slots released by the removed identifiers
+    private int[] freeSlots = new int[16];
+    private int numFree;
+    // indices of the slots with a pending value, in the order of their first update
+    private int[] pending = new int[16];
+    private int numPending;
+    private boolean quit;
+
+    // ensures that the deliveries are made one at a time, in order
+    private final Object deliveryLock = new Object();
+
+    /**
+     *
+     * @param consumer
+     *            the consumer receiving the conflated updates
+     * @param timer
+     *            executor used to deliver the updates; the consumer is called on its thread
+     * @param periodMillis
+     *            the delivery period in milliseconds
+     */
+    public ConflatingParameterConsumer(ParameterWithIdConsumer consumer, ScheduledExecutorService timer,
+            long periodMillis) {
+        if (periodMillis <= 0) {
+            throw new IllegalArgumentException("The period has to be positive");
+        }
+        this.consumer = consumer;
+        this.periodMillis = periodMillis;
+        this.future = timer.scheduleAtFixedRate(this::flush, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public synchronized void update(int subscriptionId, List<ParameterValueWithId> params) {
+        if (quit) {
+            return;
+        }
+        for (ParameterValueWithId pvwi : params) {
+            int idx = getSlot(pvwi.getId());
+            if (slots[idx] == null) {
+                if (numPending == pending.length) {
+                    pending = Arrays.copyOf(pending, 2 * pending.length);
+                }
+                pending[numPending++] = idx;
+            }
+            slots[idx] = pvwi;
+            slotSubscriptionIds[idx] = subscriptionId;
+        }
+    }
+
+    /**
+     * Removes the identifiers from the table, discarding their pending values. To be called when the identifiers are
+     * removed from the subscription.
+     */
+    public synchronized void remove(Collection<NamedObjectId> ids) {
+        for (NamedObjectId id : ids) {
+            releaseSlot(id);
+        }
+    }
+
+    /**
+     * Removes from the table all the identifiers not in the given collection, discarding their pending values. To be
+     * called when the subscription is replaced.
+     */
+    public synchronized void retain(Collection<NamedObjectId> ids) {
+        Set<NamedObjectId> retained = new HashSet<>(ids);
+        for (NamedObjectId id : new ArrayList<>(slotIndex.keySet())) {
+            if (!retained.contains(id)) {
+                releaseSlot(id);
+            }
+        }
+    }
+
+    /**
+     * Passes the pending values to the downstream consumer. Called periodically.
+     * <p>
+     * The values are passed in one call for each subscription id, in the order of their first update.
+     */
+    public void flush() {
+        synchronized (deliveryLock) {
+            List<ParameterValueWithId> params;
+            int[] subscriptionIds;
+            synchronized (this) {
+                if (numPending == 0) {
+                    return;
+                }
+                params = new ArrayList<>(numPending);
+                subscriptionIds = new int[numPending];
+                for (int i = 0; i < numPending; i++) {
+                    int idx = pending[i];
+                    params.add(slots[idx]);
+                    subscriptionIds[i] = slotSubscriptionIds[idx];
+                    slots[idx] = null;
+                }
+                numPending = 0;
+            }
+            int start = 0;
+            for (int i = 1; i <= subscriptionIds.length; i++) {
+                if (i == subscriptionIds.length || subscriptionIds[i] != subscriptionIds[start]) {
+                    deliver(subscriptionIds[start], params.subList(start, i));
+                    start = i;
+                }
+            }
+        }
+    }
+
+    private void deliver(int subscriptionId, List<ParameterValueWithId> params) {
+        try {
+            consumer.update(subscriptionId, params);
+        } catch (Exception e) {
+            // do not let the exception cancel the periodic delivery
+            log.warn("Error delivering parameter updates", e);
+        }
+    }
+
+    /**
+     * Stops the periodic delivery after having passed the pending values to the downstream consumer. The updates
+     * received afterwards are ignored.
+     */
+    public void quit() {
+        stop();
+        flush();
+    }
+
+    /**
+     * Stops the periodic delivery and discards the pending values, for example because the downstream consumer is no
+     * longer interested in them. The updates received afterwards are ignored.
+     */
+    public void cancel() {
+        stop();
+        synchronized (this) {
+            Arrays.fill(slots, 0, numSlots, null);
+            numPending = 0;
+        }
+    }
+
+    private void stop() {
+        future.cancel(false);
+        synchronized (this) {
+            quit = true;
+        }
+    }
+
+    private int getSlot(NamedObjectId id) {
+        Integer idx = slotIndex.get(id);
+        if (idx == null) {
+            if (numFree > 0) {
+                idx = freeSlots[--numFree];
+            } else {
+                idx = numSlots++;
+                if (idx == slots.length) {
+                    slots = Arrays.copyOf(slots, 2 * slots.length);
+                    slotSubscriptionIds = Arrays.copyOf(slotSubscriptionIds, 2 * slotSubscriptionIds.length);
+                }
+            }
+            slotIndex.put(id, idx);
+        }
+        return idx;
+    }
+
+    private void releaseSlot(NamedObjectId id) {
+        Integer idx = slotIndex.remove(id);
+        if (idx == null) {
+            return;
+        }
+        if (slots[idx] != null) {
+            slots[idx] = null;
+            for (int i = 0; i < numPending; i++) {
+                if (pending[i] == idx) {
+                    System.arraycopy(pending, i + 1, pending, i, numPending - i - 1);
+                    numPending--;
+                    break;
+                }
+            }
+        }
+        if (numFree == freeSlots.length) {
+            freeSlots = Arrays.copyOf(freeSlots, 2 * freeSlots.length);
+        }
+        freeSlots[numFree++] = idx;
+    }
+
+    /**
+     * Returns the number of slots allocated in the table, including the free ones
+     */
+    synchronized int getNumSlots() {
+        return numSlots;
+    }
+}
@@ -5,8 +5,8 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.yamcs.xtce.DataSource;
 import org.yamcs.xtce.Parameter;
@@ -16,15 +16,27 @@ import org.yamcs.xtce.Parameter;
  * <p>
  * Can also stored a number of n values for certain parameters (required by algorithms and match criteria)
  * <p>
- * it uses a readwrite lock to synchronize access from multiple threads.
+ * The values are kept in a concurrent map, so updates of different parameters do not block each other nor the readers
+ * of single values. The buffers of the parameters having buffering enabled are modified under the lock of their map
+ * entry and read under their own monitor.
+ * <p>
+ * The values delivered together are added with {@link #addAll(Collection)} and {@link #getValues(Collection)} returns
+ * a consistent snapshot with respect to these batches: it does not see some values of a batch without the others. No
+ * lock is used for this: each batch increments a counter before and another one after being added (seqlock style) and
+ * the snapshot is read again if a batch has been added in the meanwhile. The writers are therefore never blocked by
+ * the readers. The other read methods return the values as they are found.
  *
  */
 public class LastValueCache {
-    HashMap<Parameter, ParameterValue> constants = new HashMap<>();
-    HashMap<Parameter, ParameterValue> params = new HashMap<>();
-    HashMap<Parameter, ParamBuffer> bufferedParams = new HashMap<>();
-
-    ReadWriteLock lock = new ReentrantReadWriteLock();
+    final HashMap<Parameter, ParameterValue> constants = new HashMap<>();
+    /**
+     * the value is either a {@link ParameterValue} or a {@link ParamBuffer} if buffering has been enabled for the
+     * parameter
+     */
+    final ConcurrentHashMap<Parameter, Object> values = new ConcurrentHashMap<>();
+    // number of batches whose addition has been started, respectively finished
+    final AtomicLong batchesStarted = new AtomicLong();
+    final AtomicLong batchesFinished = new AtomicLong();
 
     public LastValueCache() {
     }
@@ -43,17 +55,35 @@ public class LastValueCache {
         if (param.getDataSource() == DataSource.CONSTANT) {
             return constants.get(param);
         }
+        return last(values.get(param));
+    }
 
-        lock.readLock().lock();
-        try {
-            ParamBuffer pb = bufferedParams.get(param);
-            if (pb != null) {
-                return pb.end();
-            } else {
-                return params.get(param);
+    /**
+     * Returns the latest known values for the given parameters. The parameters without a value are skipped so the
+     * returned list may be shorter than the input collection.
+     * <p>
+     * The values are read atomically with respect to {@link #addAll(Collection)}: either all or none of the values of a
+     * batch are returned. The values are read again if a batch is added during the read.
+     */
+    public List<ParameterValue> getValues(Collection<Parameter> plist) {
+        while (true) {
+            long finished = batchesFinished.get();
+            long started = batchesStarted.get();
+            if (started != finished) {
+                // a batch is being added
+                Thread.onSpinWait();
+                continue;
+            }
+            List<ParameterValue> pvList = new ArrayList<>(plist.size());
+            for (Parameter p : plist) {
+                ParameterValue pv = getValue(p);
+                if (pv != null) {
+                    pvList.add(pv);
+                }
+            }
+            if (batchesStarted.get() == started) {
+                return pvList;
             }
-        } finally {
-            lock.readLock().unlock();
         }
     }
 
@@ -82,23 +112,21 @@ public class LastValueCache {
             }
         }
 
-        lock.readLock().lock();
-        try {
-            if (n == 0) {
-                return getValue(param);
-            }
+        if (n == 0) {
+            return getValue(param);
+        }
 
-            ParamBuffer pb = bufferedParams.get(param);
-            if (pb == null) {
-                throw new IllegalStateException("Buffering not enabled for " + param.getQualifiedName());
-            }
-            if (pb.capacity() < -n + 1) {
-                throw new IllegalStateException("Buffering enabled for " + param.getQualifiedName()
-                        + " but it's capacity " + pb.capacity() + " is smaller than " + (n + 1));
-            }
+        Object o = values.get(param);
+        if (!(o instanceof ParamBuffer)) {
+            throw new IllegalStateException("Buffering not enabled for " + param.getQualifiedName());
+        }
+        ParamBuffer pb = (ParamBuffer) o;
+        if (pb.capacity() < -n + 1) {
+            throw new IllegalStateException("Buffering enabled for " + param.getQualifiedName()
+                    + " but it's capacity " + pb.capacity() + " is smaller than " + (n + 1));
+        }
+        synchronized (pb) {
             return pb.nthFromEnd(n);
-        } finally {
-            lock.readLock().unlock();
         }
     }
 
@@ -117,29 +145,23 @@ public class LastValueCache {
         if (param.getDataSource() == DataSource.CONSTANT) {
             throw new IllegalArgumentException("Cannot enable buffering for constant parameters");
         }
-        lock.writeLock().lock();
-        try {
-
-            ParamBuffer pb = bufferedParams.get(param);
-            if (pb == null) {
-                pb = new ParamBuffer(capacity);
-                ParameterValue pv = params.remove(param);
-                if (pv != null) {
-                    pb.add(pv);
+        values.compute(param, (p, o) -> {
+            if (o instanceof ParamBuffer) {
+                ParamBuffer pb = (ParamBuffer) o;
+                if (capacity <= pb.capacity()) {
+                    return pb;
+                }
+                synchronized (pb) {
+                    return new ParamBuffer(pb, capacity);
                 }
-                bufferedParams.put(param, pb);
             } else {
-                if (capacity <= pb.capacity()) {
-                    return;
-                } else {
-                    ParamBuffer pb1 = new ParamBuffer(pb, capacity);
-
-                    bufferedParams.put(param, pb1);
+                ParamBuffer pb = new ParamBuffer(capacity);
+                if (o != null) {
+                    pb.add((ParameterValue) o);
                 }
+                return pb;
             }
-        } finally {
-            lock.writeLock().unlock();
-        }
+        });
     }
 
     /**
@@ -149,62 +171,68 @@ public class LastValueCache {
      * @param pv
      */
     public void add(ParameterValue pv) {
-        lock.writeLock().lock();
-        try {
-            doAdd(pv);
-        } finally {
-            lock.writeLock().unlock();
-        }
-    }
-
-    private void doAdd(ParameterValue pv) {
         Parameter param = pv.getParameter();
         if (param.getDataSource() == DataSource.CONSTANT) {
             throw new IllegalArgumentException("Cannot add constants (they can only be added in the constructor)");
         }
-        ParamBuffer pb = bufferedParams.get(param);
-        if (pb == null) {
-            params.put(param, pv);
-        } else {
-            pb.add(pv);
+        Object o = values.get(param);
+        if (o == null || o instanceof ParameterValue) {
+            // fast path: buffering is not enabled, replace the old value if it has not changed in the meanwhile
+            if (o == null ? values.putIfAbsent(param, pv) == null : values.replace(param, o, pv)) {
+                return;
+            }
         }
+        values.compute(param, (p, old) -> {
+            if (old instanceof ParamBuffer) {
+                ParamBuffer pb = (ParamBuffer) old;
+                synchronized (pb) {
+                    pb.add(pv);
+                }
+                return pb;
+            } else {
+                return pv;
+            }
+        });
     }
 
     /**
-     * Add all parameters to the cache
+     * Add all parameters to the cache, atomically with respect to {@link #getValues(Collection)}.
+     * <p>
+     * Neither the concurrent calls nor the readers block each other.
      * 
      * @param newValues
      */
     public void addAll(Collection<ParameterValue> newValues) {
-        lock.writeLock().lock();
+        batchesStarted.incrementAndGet();
         try {
-            newValues.forEach(pv -> doAdd(pv));
+            for (ParameterValue pv : newValues) {
+                add(pv);
+            }
         } finally {
-            lock.writeLock().unlock();
+            batchesFinished.incrementAndGet();
         }
     }
 
     public int size() {
-        lock.readLock().lock();
-        try {
-            return constants.size() + params.size() + bufferedParams.size();
-        } finally {
-            lock.readLock().unlock();
-        }
+        return constants.size() + values.size();
     }
 
     /**
-     * returns all the values from the cache
+     * returns the last values of all the non constant parameters from the cache
+     * <p>
+     * This is not a consistent snapshot: a batch being added concurrently may be partially returned.
      * 
      * @return
      */
     public Collection<ParameterValue> getValues() {
-        lock.readLock().lock();
-        try {
-            return params.values();
-        } finally {
-            lock.readLock().unlock();
+        List<ParameterValue> pvList = new ArrayList<>(values.size());
+        for (Object o : values.values()) {
+            ParameterValue pv = last(o);
+            if (pv != null) {
+                pvList.add(pv);
+            }
         }
+        return pvList;
     }
 
     /**
@@ -214,27 +242,28 @@ public class LastValueCache {
      */
     public List<ParameterValue> getValuesToBePersisted() {
         List<ParameterValue> pvList = new ArrayList<>();
-        lock.readLock().lock();
-        try {
-            for (var entry : bufferedParams.entrySet()) {
-                if (entry.getKey().isPersistent()) {
-                    var pv = entry.getValue().end();
-                    if (pv != null) {
-                        pvList.add(pv);
-                    }
-                }
-            }
-            for (var entry : params.entrySet()) {
-                if (entry.getKey().isPersistent()) {
-                    pvList.add(entry.getValue());
+        for (var entry : values.entrySet()) {
+            if (entry.getKey().isPersistent()) {
+                ParameterValue pv = last(entry.getValue());
+                if (pv != null) {
+                    pvList.add(pv);
                 }
             }
-        } finally {
-            lock.readLock().unlock();
         }
         return pvList;
     }
 
+    private static ParameterValue last(Object o) {
+        if (o instanceof ParamBuffer) {
+            ParamBuffer pb = (ParamBuffer) o;
+            synchronized (pb) {
+                return pb.end();
+            }
+        } else {
+            return (ParameterValue) o;
+        }
+    }
+
     // fixed size circular buffer
     static class ParamBuffer {
         final ParameterValue[] data;
@@ -8,28 +8,38 @@ public class ParameterCacheConfig {
     //maximum duration of the cache
     final long maxDuration;
     final int maxNumEntries;
+    // store the primitive values outside of the java heap
+    final boolean offHeap;
     
     public ParameterCacheConfig(boolean enabled, boolean cacheAll, long duration, int maxNumEntries) {
+        this(enabled, cacheAll, duration, maxNumEntries, false);
+    }
+
+    public ParameterCacheConfig(boolean enabled, boolean cacheAll, long duration, int maxNumEntries,
+            boolean offHeap) {
         this.cacheAll = cacheAll;
         this.maxDuration = duration;
         this.maxNumEntries = maxNumEntries;
+        this.offHeap = offHeap;
     }
     
     public ParameterCacheConfig() {
         this.cacheAll = false;
         this.maxDuration = 0;
         this.maxNumEntries = 0;
+        this.offHeap = false;
     }
 
     public ParameterCacheConfig(YConfiguration cacheConfig, Log log) {
         cacheAll = cacheConfig.getBoolean("cacheAll", true);
         maxDuration = 1000L * cacheConfig.getInt("duration", 600);
         maxNumEntries = cacheConfig.getInt("maxNumEntries", 4096);
+        offHeap = cacheConfig.getBoolean("offHeap", false);
     }
 
     @Override
     public String toString() {
         return "ParameterCacheConfig [cacheAll=" + cacheAll + ", maxDuration=" + maxDuration
-                + ", maxNumEntries=" + maxNumEntries + "]";
+                + ", maxNumEntries=" + maxNumEntries + ", offHeap=" + offHeap + "]";
     }
 }
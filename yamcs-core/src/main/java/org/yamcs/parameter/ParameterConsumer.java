@@ -7,5 +7,21 @@ import java.util.List;
  * 
  */
 public interface ParameterConsumer {
+    /**
+     * Called with the values for the parameters part of the subscription.
+     * <p>
+     * Unless {@link #acceptsReusedList()} returns true, the list belongs to the consumer.
+     */
     void updateItems(int subscriptionId, List<ParameterValue> items);
+
+    /**
+     * If true, the list passed to {@link #updateItems(int, List)} is owned by the caller and it is reused after the
+     * method returns, which saves a copy for each delivery. The consumers returning true have to copy the list if they
+     * need it later (e.g. if processed in another thread).
+     * <p>
+     * The default is false: each call receives a new list.
+     */
+    default boolean acceptsReusedList() {
+        return false;
+    }
 }
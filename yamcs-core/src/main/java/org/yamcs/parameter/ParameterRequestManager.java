@@ -1,13 +1,15 @@
 package org.yamcs.parameter;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.yamcs.ConfigurationException;
 import org.yamcs.InvalidIdentification;
@@ -27,11 +29,17 @@ import org.yamcs.xtce.Parameter;
 public class ParameterRequestManager {
     Log log;
 
-    // Maps the parameters to the request(subscription id) in which they have been asked
-    private ConcurrentHashMap<Parameter, SubscriptionArray> param2RequestMap = new ConcurrentHashMap<>();
+    // Maps the parameters to the subscribers (requests) in which they have been asked
+    private ConcurrentHashMap<Parameter, SubscriberArray> param2RequestMap = new ConcurrentHashMap<>();
 
-    // Maps the request (subscription id) to the consumer
-    private Map<Integer, ParameterConsumer> request2ParameterConsumerMap = new ConcurrentHashMap<>();
+    // Maps the request (subscription id) to the subscriber
+    private Map<Integer, Subscriber> request2SubscriberMap = new ConcurrentHashMap<>();
+
+    // the delivery slots in use by the subscribers; guarded by itself
+    private final BitSet usedSlots = new BitSet();
+
+    // the delivery buffers are reused between the deliveries made by the same thread
+    private final ThreadLocal<DeliveryContext> deliveryContext = ThreadLocal.withInitial(DeliveryContext::new);
 
     // contains subscribe all
     private Map<Integer, ParameterConsumer> subscribeAllConsumers = new ConcurrentHashMap<>();
@@ -90,12 +98,13 @@ public class ParameterRequestManager {
         log.debug("new request with subscriptionId {} with {} items", id, paraList.size());
         subscribeToProviders(paraList);
 
+        Subscriber subscriber = newSubscriber(id, tpc);
         for (Parameter p : paraList) {
             log.trace("adding to subscriptionID: {} item:{} ", id, p.getQualifiedName());
-            addItemToRequest(id, p);
+            addItemToRequest(subscriber, p);
         }
 
-        request2ParameterConsumerMap.put(id, tpc);
+        request2SubscriberMap.put(id, subscriber);
         return id;
     }
 
@@ -110,8 +119,9 @@ public class ParameterRequestManager {
         final int id = lastSubscriptionId.incrementAndGet();
         log.debug("new request with subscriptionId {} for parameter: {}", id, para.getQualifiedName());
         subscribeToProviders(para);
-        addItemToRequest(id, para);
-        request2ParameterConsumerMap.put(id, tpc);
+        Subscriber subscriber = newSubscriber(id, tpc);
+        addItemToRequest(subscriber, para);
+        request2SubscriberMap.put(id, subscriber);
 
         return id;
     }
@@ -127,11 +137,12 @@ public class ParameterRequestManager {
      */
     public void addRequest(int subscriptionId, List<Parameter> paraList, ParameterConsumer tpc) {
         subscribeToProviders(paraList);
+        Subscriber subscriber = newSubscriber(subscriptionId, tpc);
         for (int i = 0; i < paraList.size(); i++) {
             log.trace("creating subscriptionID:{} with item:{}", subscriptionId, paraList.get(i));
-            addItemToRequest(subscriptionId, paraList.get(i));
+            addItemToRequest(subscriber, paraList.get(i));
         }
-        request2ParameterConsumerMap.put(subscriptionId, tpc);
+        request2SubscriberMap.put(subscriptionId, subscriber);
     }
 
     /**
@@ -142,9 +153,9 @@ public class ParameterRequestManager {
      */
     public void addItemsToRequest(final int subscriptionId, final Parameter para) throws InvalidRequestIdentification {
         log.debug("adding to subscriptionID {}: items: {} ", subscriptionId, para.getName());
-        verifySubscriptionId(subscriptionId);
+        Subscriber subscriber = verifySubscriptionId(subscriptionId);
         subscribeToProviders(para);
-        addItemToRequest(subscriptionId, para);
+        addItemToRequest(subscriber, para);
     }
 
     /**
@@ -158,18 +169,20 @@ public class ParameterRequestManager {
     public void addItemsToRequest(final int subscriptionId, final List<Parameter> paraList)
             throws InvalidRequestIdentification {
         log.debug("adding to subscriptionID {}: {} items ", subscriptionId, paraList.size());
-        verifySubscriptionId(subscriptionId);
+        Subscriber subscriber = verifySubscriptionId(subscriptionId);
 
         subscribeToProviders(paraList);
         for (int i = 0; i < paraList.size(); i++) {
-            addItemToRequest(subscriptionId, paraList.get(i));
+            addItemToRequest(subscriber, paraList.get(i));
         }
     }
 
-    private void verifySubscriptionId(int subscriptionId) throws InvalidRequestIdentification {
-        if (!request2ParameterConsumerMap.containsKey(subscriptionId)) {
+    private Subscriber verifySubscriptionId(int subscriptionId) throws InvalidRequestIdentification {
+        Subscriber subscriber = request2SubscriberMap.get(subscriptionId);
+        if (subscriber == null) {
             throw new InvalidRequestIdentification("no such subscriptionID", subscriptionId);
         }
+        return subscriber;
     }
 
     /**
@@ -198,14 +211,22 @@ public class ParameterRequestManager {
         }
     }
 
-    private void addItemToRequest(int id, Parameter para) {
-        SubscriptionArray al_req = param2RequestMap.computeIfAbsent(para, k -> new SubscriptionArray());
-        al_req.add(id);
+    private Subscriber newSubscriber(int subscriptionId, ParameterConsumer consumer) {
+        synchronized (usedSlots) {
+            int slot = usedSlots.nextClearBit(0);
+            usedSlots.set(slot);
+            return new Subscriber(subscriptionId, consumer, slot);
+        }
+    }
+
+    private void addItemToRequest(Subscriber subscriber, Parameter para) {
+        SubscriberArray al_req = param2RequestMap.computeIfAbsent(para, k -> new SubscriberArray());
+        al_req.add(subscriber);
     }
 
     private void removeItemFromRequest(int subscriptionId, Parameter para) {
         if (param2RequestMap.containsKey(para)) { // is there really any request associated to this parameter?
-            SubscriptionArray al_req = param2RequestMap.get(para);
+            SubscriberArray al_req = param2RequestMap.get(para);
             // remove the subscription from the list of this parameter
             if (al_req.remove(subscriptionId)) {
                 /*
@@ -237,11 +258,11 @@ public class ParameterRequestManager {
         // loop through all the parameter definitions
         // find all the subscriptions with the requested subscriptionId and add their corresponding
         // itemId to the list.
-        Iterator<Map.Entry<Parameter, SubscriptionArray>> it = param2RequestMap.entrySet().iterator();
+        Iterator<Map.Entry<Parameter, SubscriberArray>> it = param2RequestMap.entrySet().iterator();
         while (it.hasNext()) {
-            Map.Entry<Parameter, SubscriptionArray> m = it.next();
+            Map.Entry<Parameter, SubscriberArray> m = it.next();
             Parameter param = m.getKey();
-            SubscriptionArray al_req = m.getValue();
+            SubscriberArray al_req = m.getValue();
             if (al_req.remove(subscriptionId)) {
                 result.add(param);
             }
@@ -253,7 +274,12 @@ public class ParameterRequestManager {
                  */
             }
         }
-        request2ParameterConsumerMap.remove(subscriptionId);
+        Subscriber subscriber = request2SubscriberMap.remove(subscriptionId);
+        if (subscriber != null) {
+            synchronized (usedSlots) {
+                usedSlots.clear(subscriber.slot);
+            }
+        }
         return result;
     }
 
@@ -308,60 +334,38 @@ public class ParameterRequestManager {
      * <li>Add to parameter cache (if enabled).</li>
      * <li>Add to the last value cache.</li>
      * </ol>
-     * 
+     * <p>
+     * The lists passed to the subscribers accepting it (see {@link ParameterConsumer#acceptsReusedList()}) are reused
+     * by the next delivery made from the same thread; the other subscribers receive a copy.
      * 
      */
     public void update(ParameterValueList pvlist) {
-        // build the customised lists for the subscribers and send it to them
-        HashMap<Integer, ArrayList<ParameterValue>> subscription = new HashMap<>();
         for (var consumer : subscribeAllConsumers.values()) {
             consumer.updateItems(0, pvlist);
         }
-        updateSubscription(subscription, pvlist);
 
-        for (Map.Entry<Integer, ArrayList<ParameterValue>> entry : subscription.entrySet()) {
-            Integer subscriptionId = entry.getKey();
-
-            ArrayList<ParameterValue> al = entry.getValue();
-            ParameterConsumer consumer = request2ParameterConsumerMap.get(subscriptionId);
-            if (consumer == null) {
-                log.warn("subscriptionId {} appears in the delivery list, but there is no consumer for it",
-                        subscriptionId);
-            } else {
-                consumer.updateItems(subscriptionId, al);
-            }
-        }
-    }
-
-    /**
-     * adds the passed parameters to the subscription
-     * 
-     * @param subscription
-     * @param currentDelivery
-     */
-    private void updateSubscription(HashMap<Integer, ArrayList<ParameterValue>> subscription,
-            Collection<ParameterValue> currentDelivery) {
-        if (currentDelivery == null) {
-            return;
+        DeliveryContext ctx = deliveryContext.get();
+        if (ctx.inUse) {
+            // a consumer has triggered a new delivery from inside its updateItems
+            ctx = new DeliveryContext();
         }
-
-        for (Iterator<ParameterValue> it = currentDelivery.iterator(); it.hasNext();) {
-            ParameterValue pv = it.next();
-            Parameter pDef = pv.getParameter();
-            SubscriptionArray cowal = param2RequestMap.get(pDef);
-            // now walk through the requests and add this item to their delivery list
-            if (cowal == null) {
-                continue;
-            }
-
-            for (int s : cowal.getArray()) {
-                ArrayList<ParameterValue> al = subscription.get(s);
-                if (al == null) {
-                    al = new ArrayList<>();
-                    subscription.put(s, al);
+        ctx.inUse = true;
+        try {
+            for (ParameterValue pv : pvlist) {
+                SubscriberArray cowal = param2RequestMap.get(pv.getParameter());
+                if (cowal == null) {
+                    continue;
                 }
-                al.add(pv);
+                for (Subscriber subscriber : cowal.getArray()) {
+                    ctx.add(subscriber, pv);
+                }
+            }
+            for (int i = 0; i < ctx.numTouched; i++) {
+                int slot = ctx.touched[i];
+                ctx.deliver(slot);
             }
+        } finally {
+            ctx.reset();
         }
     }
 
@@ -372,9 +376,9 @@ public class ParameterRequestManager {
         for (Parameter param : param2RequestMap.keySet()) {
             sb.append(param);
             sb.append("requested by [");
-            SubscriptionArray al_req = param2RequestMap.get(param);
-            for (int id : al_req.getArray()) {
-                sb.append(id);
+            SubscriberArray al_req = param2RequestMap.get(param);
+            for (Subscriber subscriber : al_req.getArray()) {
+                sb.append(subscriber.subscriptionId);
             }
             sb.append("]\n");
         }
@@ -388,14 +392,7 @@ public class ParameterRequestManager {
      * @return
      */
     public List<ParameterValue> getValuesFromCache(Collection<Parameter> plist) {
-        List<ParameterValue> al = new ArrayList<>(plist.size());
-        for (Parameter p : plist) {
-            ParameterValue pv = lastValueCache.getValue(p);
-            if (pv != null) {
-                al.add(pv);
-            }
-        }
-        return al;
+        return lastValueCache.getValues(plist);
     }
 
     /**
@@ -407,4 +404,173 @@ public class ParameterRequestManager {
     public ParameterValue getLastValueFromCache(Parameter param) {
         return lastValueCache.getValue(param);
     }
+
+    static final class Subscriber {
+        final int subscriptionId;
+        final ParameterConsumer consumer;
+        // index of the delivery buffer in the DeliveryContext, unique among the active subscribers
+        final int slot;
+
+        Subscriber(int subscriptionId, ParameterConsumer consumer, int slot) {
+            this.subscriptionId = subscriptionId;
+            this.consumer = consumer;
+            this.slot = slot;
+        }
+    }
+
+    /**
+     * set of subscribers sorted by subscription id - copy on write
+     * <p>
+     * Same as {@link SubscriptionArray} but keeping the subscribers such that no lookup is necessary when delivering
+     * the parameters.
+     */
+    static final class SubscriberArray {
+        private static final Subscriber[] EMPTY = new Subscriber[0];
+        private volatile Subscriber[] array = EMPTY;
+        private final ReentrantLock lock = new ReentrantLock();
+
+        void add(Subscriber subscriber) {
+            lock.lock();
+            try {
+                Subscriber[] a = array;
+                int pos = search(a, subscriber.subscriptionId);
+                if (pos >= 0) {
+                    return;
+                }
+                pos = -pos - 1;
+                Subscriber[] b = new Subscriber[a.length + 1];
+                System.arraycopy(a, 0, b, 0, pos);
+                b[pos] = subscriber;
+                System.arraycopy(a, pos, b, pos + 1, a.length - pos);
+                array = b;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Remove the subscriber with the given id from the array
+         * 
+         * @return true if it has been removed or false if it was not there
+         */
+        boolean remove(int subscriptionId) {
+            lock.lock();
+            try {
+                Subscriber[] a = array;
+                int pos = search(a, subscriptionId);
+                if (pos < 0) {
+                    return false;
+                }
+                Subscriber[] b = new Subscriber[a.length - 1];
+                System.arraycopy(a, 0, b, 0, pos);
+                System.arraycopy(a, pos + 1, b, pos, a.length - pos - 1);
+                array = b;
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private static int search(Subscriber[] a, int subscriptionId) {
+            int low = 0;
+            int high = a.length - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                int midId = a[mid].subscriptionId;
+                if (midId < subscriptionId) {
+                    low = mid + 1;
+                } else if (midId > subscriptionId) {
+                    high = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return -(low + 1);
+        }
+
+        boolean isEmpty() {
+            return array.length == 0;
+        }
+
+        Subscriber[] getArray() {
+            return array;
+        }
+    }
+
+    /**
+     * Per thread state used to build the lists delivered to the subscribers.
+     * <p>
+     * The lists are indexed by the subscriber slot and are reused from one delivery to the next, such that the
+     * fan-out does not allocate anything once the lists have grown to their working size, except for the copies
+     * passed to the consumers which do not accept the reused lists.
+     */
+    static final class DeliveryContext {
+        ArrayList<ParameterValue>[] buffers = newBuffers(16, 0, null);
+        Subscriber[] owners = new Subscriber[16];
+        // slots used in the current delivery
+        int[] touched = new int[16];
+        int numTouched = 0;
+        boolean inUse = false;
+
+        void add(Subscriber subscriber, ParameterValue pv) {
+            int slot = subscriber.slot;
+            if (slot >= buffers.length) {
+                grow(slot + 1);
+            }
+            Subscriber owner = owners[slot];
+            if (owner != subscriber) {
+                if (owner == null) {
+                    if (numTouched == touched.length) {
+                        touched = Arrays.copyOf(touched, 2 * numTouched);
+                    }
+                    touched[numTouched++] = slot;
+                } else {
+                    // the slot has been released and reused by another subscriber while this delivery is running;
+                    // send what has been collected so far to the previous owner
+                    deliver(slot);
+                }
+                owners[slot] = subscriber;
+            }
+            buffers[slot].add(pv);
+        }
+
+        void deliver(int slot) {
+            ArrayList<ParameterValue> buf = buffers[slot];
+            if (!buf.isEmpty()) {
+                Subscriber subscriber = owners[slot];
+                ParameterConsumer consumer = subscriber.consumer;
+                consumer.updateItems(subscriber.subscriptionId,
+                        consumer.acceptsReusedList() ? buf : new ArrayList<>(buf));
+                buf.clear();
+            }
+        }
+
+        void reset() {
+            for (int i = 0; i < numTouched; i++) {
+                int slot = touched[i];
+                buffers[slot].clear();
+                owners[slot] = null;
+            }
+            numTouched = 0;
+            inUse = false;
+        }
+
+        private void grow(int minSize) {
+            int n = Math.max(minSize, 2 * buffers.length);
+            buffers = newBuffers(n, buffers.length, buffers);
+            owners = Arrays.copyOf(owners, n);
+        }
+
+        @SuppressWarnings("unchecked")
+        private static ArrayList<ParameterValue>[] newBuffers(int n, int k, ArrayList<ParameterValue>[] existing) {
+            ArrayList<ParameterValue>[] b = new ArrayList[n];
+            if (existing != null) {
+                System.arraycopy(existing, 0, b, 0, k);
+            }
+            for (int i = k; i < n; i++) {
+                b[i] = new ArrayList<>();
+            }
+            return b;
+        }
+    }
 }
@@ -650,6 +650,11 @@ public class ParameterRetrievalService extends AbstractYamcsService {
                 }
                 ;
             }
+
+            @Override
+            public boolean acceptsReusedList() {
+                return true;
+            }
         };
         processor.getParameterRequestManager().addRequest(params.keySet(), prmConsumer);
         processor.startAsync();
@@ -337,6 +337,11 @@ public class ParameterWithIdRequestHelper implements ParameterConsumer {
         listener.update(subscriptionId, plist);
     }
 
+    @Override
+    public boolean acceptsReusedList() {
+        return true;
+    }
+
     private void updateAllSubscription(int subscriptionId, List<ParameterValue> items) {
         List<ParameterValueWithId> plist = new ArrayList<>(items.size());
         for (ParameterValue pv : items) {
@@ -2,6 +2,7 @@ package org.yamcs.parameter;
 
 import org.yamcs.commanding.ArgumentValue;
 import org.yamcs.utils.TimeEncoding;
+import org.yamcs.utils.ValueUtility;
 
 /**
  * Abstract class storing a raw value, engineering value and a generation time.
@@ -57,7 +58,7 @@ public abstract class RawEngValue {
     }
 
     public void setRawValue(boolean b) {
-        rawValue = new BooleanValue(b);
+        rawValue = ValueUtility.getBooleanValue(b);
     }
 
     public void setRawValue(String s) {
@@ -65,11 +66,11 @@ public abstract class RawEngValue {
     }
 
     public void setRawSignedInteger(int x) {
-        rawValue = new SInt32Value(x);
+        rawValue = ValueUtility.getSint32Value(x);
     }
 
     public void setRawUnsignedInteger(int x) {
-        rawValue = new UInt32Value(x);
+        rawValue = ValueUtility.getUint32Value(x);
     }
 
     public void setRawSignedLong(long x) {
@@ -89,7 +90,7 @@ public abstract class RawEngValue {
     }
 
     public void setBooleanValue(boolean b) {
-        engValue = new BooleanValue(b);
+        engValue = ValueUtility.getBooleanValue(b);
     }
 
     public void setDoubleValue(double v) {
@@ -101,11 +102,11 @@ public abstract class RawEngValue {
     }
 
     public void setSignedIntegerValue(int v) {
-        engValue = new SInt32Value(v);
+        engValue = ValueUtility.getSint32Value(v);
     }
 
     public void setUnsignedIntegerValue(int v) {
-        engValue = new UInt32Value(v);
+        engValue = ValueUtility.getUint32Value(v);
     }
 
     public void setSignedLongValue(long v) {
@@ -95,6 +95,11 @@ abstract class AbstractArchiveFiller implements ParameterConsumer {
         processParameters(items);
     }
 
+    @Override
+    public boolean acceptsReusedList() {
+        return true;
+    }
+
     public long getNumProcessedParameters() {
         return numParams;
     }
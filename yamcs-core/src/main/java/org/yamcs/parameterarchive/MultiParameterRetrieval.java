@@ -1,10 +1,13 @@
 package org.yamcs.parameterarchive;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.PriorityQueue;
+import java.util.concurrent.Executor;
 import java.util.function.Consumer;
 
 import org.rocksdb.RocksDBException;
@@ -26,6 +29,10 @@ import org.yamcs.yarch.protobuf.Db.ParameterStatus;
  * If we imagine the parameter values as a matrix where one line corresponds to all parameters timestamped at one
  * specific time, the purpose of this class is to transform from columns (Parameter Archive representation) to rows
  * (user requested representation)
+ * <p>
+ * When the retrieval involves more than one (parameter, group) iterator and the Parameter Archive is configured with
+ * more than one retrieval thread, the segments of each iterator are read and decoded in parallel in the background
+ * while the merging is performed by the calling thread.
  *
  */
 public class MultiParameterRetrieval {
@@ -49,6 +56,7 @@ public class MultiParameterRetrieval {
         ParameterGroupIdDb pgDb = parchive.getParameterGroupIdDb();
         PriorityQueue<ParameterIterator> queue = new PriorityQueue<>(new IteratorComparator(mpvr.ascending));
         int[] parameterGroupIds = mpvr.parameterGroupIds;
+        List<IteratorSource> sources = new ArrayList<>();
 
         for (int i = 0; i < mpvr.parameterIds.length; i++) {
             ParameterId paraId = mpvr.parameterIds[i];
@@ -58,12 +66,33 @@ public class MultiParameterRetrieval {
                     .withRetrieveParameterStatus(mpvr.retrieveParamStatus).build();
 
             if (parameterGroupIds != null) {
-                queueIterator(queue, paraId, parameterGroupIds[i], req);
+                sources.add(new IteratorSource(paraId, parameterGroupIds[i], req));
             } else {
                 int pid0 = paraId.isSimple() ? paraId.getPid() : paraId.getComponents().get(0);
                 for (int pgid : pgDb.getAllGroups(pid0)) {
-                    queueIterator(queue, paraId, pgid, req);
+                    sources.add(new IteratorSource(paraId, pgid, req));
+                }
+            }
+        }
+
+        Executor executor = sources.size() > 1 ? parchive.getRetrievalExecutor() : null;
+        if (executor == null) {
+            for (IteratorSource src : sources) {
+                queueIterator(queue, src.create());
+            }
+        } else {
+            // the prefetching iterators start reading in the background as soon as they are created
+            List<ParameterIterator> iterators = new ArrayList<>(sources.size());
+            for (IteratorSource src : sources) {
+                iterators.add(new PrefetchingParameterIterator(src::create, src.paraId, src.pgid, executor));
+            }
+            try {
+                for (ParameterIterator it : iterators) {
+                    queueIterator(queue, it);
                 }
+            } catch (RuntimeException e) {
+                iterators.forEach(ParameterIterator::close);
+                throw e;
             }
         }
         log.trace("Got {} parallel iterators", queue.size());
@@ -96,14 +125,7 @@ public class MultiParameterRetrieval {
         log.trace("Retrieval finished");
     }
 
-    private void queueIterator(PriorityQueue<ParameterIterator> queue,
-            ParameterId paraId, int pgid, ParameterRetrievalOptions req) {
-        ParameterIterator it;
-        if (paraId.isSimple()) {
-            it = new SimpleParameterIterator(parchive, paraId, pgid, req);
-        } else {
-            it = new AggrrayIterator(parchive, paraId, pgid, req);
-        }
+    private void queueIterator(PriorityQueue<ParameterIterator> queue, ParameterIterator it) {
         if (it.isValid()) {
             queue.add(it);
         } else {
@@ -111,6 +133,29 @@ public class MultiParameterRetrieval {
         }
     }
 
+    /**
+     * Holds the arguments required to create the iterator for one (parameter, group)
+     */
+    class IteratorSource {
+        final ParameterId paraId;
+        final int pgid;
+        final ParameterRetrievalOptions req;
+
+        IteratorSource(ParameterId paraId, int pgid, ParameterRetrievalOptions req) {
+            this.paraId = paraId;
+            this.pgid = pgid;
+            this.req = req;
+        }
+
+        ParameterIterator create() {
+            if (paraId.isSimple()) {
+                return new SimpleParameterIterator(parchive, paraId, pgid, req);
+            } else {
+                return new AggrrayIterator(parchive, paraId, pgid, req);
+            }
+        }
+    }
+
     /**
      * Merge values from the parallel iterators taking care that parameters from the same group end up in the same list
      *
@@ -9,6 +9,9 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
 import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -115,6 +118,8 @@ public class ParameterArchive extends AbstractYamcsService {
     int maxSegmentSize;
     boolean sparseGroups;
     double minimumGroupOverlap;
+    int retrievalThreads;
+    private ForkJoinPool retrievalPool;
 
     AtomicLong coverageEnd = new AtomicLong(TimeEncoding.NEGATIVE_INFINITY);
 
@@ -133,6 +138,11 @@ public class ParameterArchive extends AbstractYamcsService {
         spec.addOption("coverageEndDelta", OptionType.INTEGER).withDefault(60)
                 .withDescription("how long in the future in seconds (compared to mission time) "
                         + "to allow data part of the coverage)");
+        spec.addOption("retrievalThreads", OptionType.INTEGER)
+                .withDefault(Math.max(1, Runtime.getRuntime().availableProcessors() / 2))
+                .withDescription("number of threads used to read and decode in parallel the segments of the different "
+                        + "parameters and groups of a multi-parameter retrieval. Set to 1 to read them sequentially "
+                        + "from the thread performing the retrieval");
 
         return spec;
     }
@@ -160,6 +170,7 @@ public class ParameterArchive extends AbstractYamcsService {
         sparseGroups = config.getBoolean("sparseGroups");
         minimumGroupOverlap = config.getDouble("minimumGroupOverlap");
         coverageEndDelta = config.getLong("coverageEndDelta") * 1000;
+        retrievalThreads = config.getInt("retrievalThreads");
 
         try {
             TablespaceRecord.Type trType = TablespaceRecord.Type.PARCHIVE_PINFO;
@@ -620,6 +631,12 @@ public class ParameterArchive extends AbstractYamcsService {
             if (realtimeFiller != null) {
                 realtimeFiller.shutDown();
             }
+            synchronized (this) {
+                if (retrievalPool != null) {
+                    retrievalPool.shutdown();
+                    retrievalPool = null;
+                }
+            }
         } catch (Exception e) {
             log.error("Error stopping realtime filler", e);
             notifyFailed(e);
@@ -628,6 +645,26 @@ public class ParameterArchive extends AbstractYamcsService {
         notifyStopped();
     }
 
+    /**
+     * Returns the executor used to read and decode in parallel the segments of a multi-parameter retrieval, or null if
+     * the retrieval should be performed sequentially.
+     * <p>
+     * The pool is created at the first usage.
+     */
+    synchronized Executor getRetrievalExecutor() {
+        if (retrievalThreads <= 1) {
+            return null;
+        }
+        if (retrievalPool == null) {
+            retrievalPool = new ForkJoinPool(retrievalThreads, pool -> {
+                ForkJoinWorkerThread t = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                t.setName("ParchiveRetrieval-" + yamcsInstance + "-" + t.getPoolIndex());
+                return t;
+            }, null, false);
+        }
+        return retrievalPool;
+    }
+
     public void printKeys(PrintStream out) throws DecodingException, RocksDBException, IOException {
         out.println("pid\t pgid\t type\tSegmentStart\tcount\tsize\tstype");
         for (Partition p : partitions) {
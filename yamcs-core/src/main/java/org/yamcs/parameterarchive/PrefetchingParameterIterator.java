@@ -0,0 +1,211 @@
+package org.yamcs.parameterarchive;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * Parameter iterator which reads and decodes the segments of an underlying iterator in a background executor.
+ * <p>
+ * The values are retrieved in chunks; at most {@link #MAX_CHUNKS} chunks are kept in memory such that a slow consumer
+ * does not cause the whole (parameter, group) time series to be loaded. At most one task per iterator is running at any
+ * given time, the underlying iterator being only used from that task.
+ * <p>
+ * The underlying iterator is created by the first task, such that the expensive initial seek and decoding of the first
+ * segment is also performed in parallel for all the iterators of a retrieval.
+ */
+class PrefetchingParameterIterator implements ParameterIterator {
+    static final int CHUNK_SIZE = 500;
+    static final int MAX_CHUNKS = 2;
+
+    final ParameterId parameterId;
+    final int parameterGroupId;
+    final Executor executor;
+
+    // accessed only from the fetch task
+    private Supplier<ParameterIterator> supplier;
+    private ParameterIterator it;
+
+    // shared state, guarded by this
+    private final ArrayDeque<List<TimedValue>> chunks = new ArrayDeque<>();
+    private boolean fetching;
+    private boolean eof;
+    private boolean closed;
+    private Throwable error;
+
+    // accessed only from the consumer thread
+    private List<TimedValue> current;
+    private int idx;
+
+    PrefetchingParameterIterator(Supplier<ParameterIterator> supplier, ParameterId parameterId, int parameterGroupId,
+            Executor executor) {
+        this.supplier = supplier;
+        this.parameterId = parameterId;
+        this.parameterGroupId = parameterGroupId;
+        this.executor = executor;
+        synchronized (this) {
+            scheduleFetch();
+        }
+    }
+
+    @Override
+    public boolean isValid() {
+        if (current != null && idx < current.size()) {
+            return true;
+        }
+        current = null;
+        idx = 0;
+        synchronized (this) {
+            if (closed) {
+                return false;
+            }
+            while (chunks.isEmpty() && !eof && error == null) {
+                if (!fetching) {
+                    scheduleFetch();
+                }
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new ParameterArchiveException("Interrupted while waiting for the parameter archive data", e);
+                }
+            }
+            if (error != null) {
+                if (error instanceof RuntimeException re) {
+                    throw re;
+                } else if (error instanceof Error err) {
+                    throw err;
+                } else {
+                    throw new ParameterArchiveException(error.toString(), error);
+                }
+            }
+            current = chunks.poll();
+            if (!fetching && !eof) {
+                scheduleFetch();
+            }
+        }
+        return current != null;
+    }
+
+    @Override
+    public TimedValue value() {
+        if (!isValid()) {
+            throw new IllegalStateException("iterator not valid");
+        }
+        return current.get(idx);
+    }
+
+    @Override
+    public void next() {
+        if (!isValid()) {
+            throw new IllegalStateException("iterator not valid");
+        }
+        idx++;
+    }
+
+    @Override
+    public ParameterId getParameterId() {
+        return parameterId;
+    }
+
+    @Override
+    public int getParameterGroupId() {
+        return parameterGroupId;
+    }
+
+    /**
+     * Closes the iterator. If a fetch task is running, the underlying iterator is closed by that task when it
+     * finishes.
+     */
+    @Override
+    public void close() {
+        ParameterIterator toClose = null;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            chunks.clear();
+            if (!fetching) {
+                toClose = it;
+                it = null;
+            }
+        }
+        current = null;
+        if (toClose != null) {
+            toClose.close();
+        }
+    }
+
+    // called with the lock held
+    private void scheduleFetch() {
+        if (closed || chunks.size() >= MAX_CHUNKS) {
+            return;
+        }
+        fetching = true;
+        try {
+            executor.execute(this::fetch);
+        } catch (RejectedExecutionException e) {
+            fetching = false;
+            error = e;
+        }
+    }
+
+    private void fetch() {
+        ParameterIterator toClose = null;
+        boolean alreadyClosed;
+        synchronized (this) {
+            alreadyClosed = closed;
+            if (alreadyClosed) {
+                fetching = false;
+                toClose = it;
+                it = null;
+            }
+        }
+        if (alreadyClosed) {
+            if (toClose != null) {
+                toClose.close();
+            }
+            return;
+        }
+        List<TimedValue> chunk = new ArrayList<>(CHUNK_SIZE);
+        Throwable err = null;
+        boolean end = false;
+        try {
+            if (it == null) {
+                it = supplier.get();
+                supplier = null;
+            }
+            while (chunk.size() < CHUNK_SIZE && it.isValid()) {
+                chunk.add(it.value());
+                it.next();
+            }
+            end = !it.isValid();
+        } catch (Throwable t) {
+            err = t;
+        }
+
+        synchronized (this) {
+            fetching = false;
+            if (err != null) {
+                error = err;
+            } else if (!chunk.isEmpty() && !closed) {
+                chunks.add(chunk);
+            }
+            eof = end;
+            if (closed || end || err != null) {
+                toClose = it;
+                it = null;
+            } else {
+                scheduleFetch();
+            }
+            notifyAll();
+        }
+        if (toClose != null) {
+            toClose.close();
+        }
+    }
+}
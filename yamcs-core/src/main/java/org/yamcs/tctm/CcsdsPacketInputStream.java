@@ -18,6 +18,8 @@ import org.yamcs.YConfiguration;
 public class CcsdsPacketInputStream implements PacketInputStream {
     protected DataInputStream dataInputStream;
     protected int maxPacketLength = 1500;
+    // the primary header is read first in this array, reused for all packets
+    private final byte[] hdr = new byte[6];
 
     @Override
     public void init(InputStream inputStream, YConfiguration args) {
@@ -27,7 +29,6 @@ public class CcsdsPacketInputStream implements PacketInputStream {
 
     @Override
     public byte[] readPacket() throws IOException {
-        byte[] hdr = new byte[6];
         dataInputStream.readFully(hdr);
         int remaining = ((hdr[4] & 0xFF) << 8) + (hdr[5] & 0xFF) + 1;
         int pktLength = remaining + hdr.length;
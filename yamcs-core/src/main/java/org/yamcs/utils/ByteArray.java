@@ -238,6 +238,14 @@ public class ByteArray {
         return s;
     }
 
+    /**
+     * Advances the position by n bytes without reading them.
+     */
+    public void skip(int n) {
+        rangeCheck(position + n);
+        position += n;
+    }
+
     public void get(byte[] bp) {
         rangeCheck(position + bp.length);
         System.arraycopy(a, position, bp, 0, bp.length);
@@ -83,7 +83,7 @@ public class TimeInterval {
      * Checks that [this.start, this.end] overlaps with [t1.start, t1.end)
      * 
      */
-    boolean overlaps1(TimeInterval t1) {
+    public boolean overlaps1(TimeInterval t1) {
         return !((t1.hasStart && hasEnd && t1.start > end) ||
                 (t1.hasEnd && hasStart && start >= t1.end));
     }
@@ -30,11 +30,34 @@ import org.yamcs.yarch.DataType;
 import com.google.protobuf.ByteString;
 
 public class ValueUtility {
+    /**
+     * Small integer values are very frequent in telemetry (flags, counters, enumeration raw values). The values are
+     * immutable so the instances for the range below are shared, similar to {@link Integer#valueOf(int)}.
+     */
+    static final int CACHE_LOW = -128;
+    static final int CACHE_HIGH = 1023;
+    private static final UInt32Value[] UINT32_CACHE = new UInt32Value[CACHE_HIGH + 1];
+    private static final SInt32Value[] SINT32_CACHE = new SInt32Value[CACHE_HIGH - CACHE_LOW + 1];
+    static {
+        for (int i = 0; i < UINT32_CACHE.length; i++) {
+            UINT32_CACHE[i] = new UInt32Value(i);
+        }
+        for (int i = 0; i < SINT32_CACHE.length; i++) {
+            SINT32_CACHE[i] = new SInt32Value(i + CACHE_LOW);
+        }
+    }
+
     public static Value getUint32Value(int x) {
+        if (x >= 0 && x <= CACHE_HIGH) {
+            return UINT32_CACHE[x];
+        }
         return new UInt32Value(x);
     }
 
     public static Value getSint32Value(int x) {
+        if (x >= CACHE_LOW && x <= CACHE_HIGH) {
+            return SINT32_CACHE[x - CACHE_LOW];
+        }
         return new SInt32Value(x);
     }
 
@@ -340,13 +363,13 @@ public class ValueUtility {
         case BINARY:
             return new BinaryValue(v.getBinaryValue().toByteArray());
         case BOOLEAN:
-            return new BooleanValue(v.getBooleanValue());
+            return getBooleanValue(v.getBooleanValue());
         case DOUBLE:
             return new DoubleValue(v.getDoubleValue());
         case FLOAT:
             return new FloatValue(v.getFloatValue());
         case SINT32:
-            return new SInt32Value(v.getSint32Value());
+            return getSint32Value(v.getSint32Value());
         case SINT64:
             return new SInt64Value(v.getSint64Value());
         case STRING:
@@ -361,7 +384,7 @@ public class ValueUtility {
             }
 
         case UINT32:
-            return new UInt32Value(v.getUint32Value());
+            return getUint32Value(v.getUint32Value());
         case UINT64:
             return new UInt64Value(v.getUint64Value());
         case ARRAY:
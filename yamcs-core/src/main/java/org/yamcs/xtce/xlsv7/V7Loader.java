@@ -2079,9 +2079,11 @@ public class V7Loader extends V7LoaderBase {
             String algorithmLanguage = getContent(cells, CN_ALGO_LANGUGAGE);
             if (!"JavaScript".equals(algorithmLanguage) && !"python".equals(algorithmLanguage)
                     && !"java".equalsIgnoreCase(algorithmLanguage)
-                    && !"java-expression".equalsIgnoreCase(algorithmLanguage)) {
+                    && !"java-expression".equalsIgnoreCase(algorithmLanguage)
+                    && !"expression".equalsIgnoreCase(algorithmLanguage)) {
                 throw new SpreadsheetLoadException(ctx, "Invalid algorithm language '" + algorithmLanguage
-                        + "' specified. Supported are 'JavaScript', 'python', 'java' and 'java-expression'");
+                        + "' specified. Supported are 'JavaScript', 'python', 'java', 'java-expression'"
+                        + " and 'expression'");
             }
 
             String algorithmText = getContent(cells, CN_ALGO_TEXT);
@@ -1,6 +1,7 @@
 package org.yamcs.yarch;
 
 import java.util.Iterator;
+import java.util.List;
 import java.util.Set;
 
 import org.yamcs.logging.Log;
@@ -29,6 +30,12 @@ public abstract class AbstractTableWalker implements TableWalker {
     //// if not null, only includes data from these partitions
     private Set<Object> partitionValueFilter;
     TimeInterval partitionTimeFilter;
+
+    // if not null, the partitions not overlapping any of these intervals are skipped
+    private List<TimeInterval> timeIntervals;
+
+    // if not null, the rows whose key does not match are skipped
+    protected CompiledKeyFilter keyFilter;
     
     final protected boolean ascending;
     final protected boolean follow;
@@ -61,18 +68,31 @@ public abstract class AbstractTableWalker implements TableWalker {
         running = true;
         Iterator<PartitionManager.Interval> partitionIterator = getIntervalIterator();
         try {
-            while (isRunning() && partitionIterator.hasNext()) {
-                PartitionManager.Interval interval = partitionIterator.next();
-                boolean endReached = walkInterval(interval, range, visitor);
-                if (endReached) {
-                    break;
-                }
-            }
+            walkIntervals(partitionIterator, range, visitor);
         } finally {
             close();
         }
     }
 
+    /**
+     * Walks the partition intervals one after the other. Subclasses may override it to read several intervals
+     * concurrently.
+     */
+    protected void walkIntervals(Iterator<PartitionManager.Interval> partitionIterator, DbRange range,
+            TableVisitor visitor) throws StreamSqlException {
+        while (isRunning() && partitionIterator.hasNext()) {
+            PartitionManager.Interval interval = partitionIterator.next();
+            if (!overlapsTimeIntervals(interval)) {
+                log.debug("Skipping partition interval {}", interval);
+                continue;
+            }
+            boolean endReached = walkInterval(interval, range, visitor);
+            if (endReached) {
+                break;
+            }
+        }
+    }
+
 
     private Iterator<PartitionManager.Interval> getIntervalIterator() {
         PartitionManager partitionManager = ydb.getPartitionManager(tableDefinition);
@@ -103,7 +123,7 @@ public abstract class AbstractTableWalker implements TableWalker {
         return partitionIterator;
     }
 
-    protected boolean iAscendingFinished(byte[] key, byte[] value, byte[] rangeEnd) {
+    protected boolean iAscendingFinished(byte[] key, byte[] rangeEnd) {
         boolean finished = false;
         if (rangeEnd != null) { // check if we have reached the end
             int c = ByteArrayUtils.compare(key, rangeEnd);
@@ -116,7 +136,7 @@ public abstract class AbstractTableWalker implements TableWalker {
         return finished;
     }
 
-    protected boolean isDescendingFinished(byte[] key, byte[] value, byte[] rangeStart) {
+    protected boolean isDescendingFinished(byte[] key, byte[] rangeStart) {
         boolean finished = false;
         if (rangeStart != null) { // check if we have reached the start
             int c = ByteArrayUtils.compare(key, rangeStart);
@@ -135,6 +155,28 @@ public abstract class AbstractTableWalker implements TableWalker {
         this.partitionTimeFilter = partitionTimeFilter;
     }
 
+    protected boolean overlapsTimeIntervals(PartitionManager.Interval interval) {
+        if (timeIntervals == null) {
+            return true;
+        }
+        for (TimeInterval ti : timeIntervals) {
+            if (ti.overlaps1(interval)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void setTimeIntervals(List<TimeInterval> intervals) {
+        this.timeIntervals = intervals;
+    }
+
+    @Override
+    public void setKeyFilter(CompiledKeyFilter keyFilter) {
+        this.keyFilter = keyFilter;
+    }
+
     @Override
     public void setPrimaryIndexRange(DbRange range) {
         if(range == null) {
@@ -40,6 +40,19 @@ public interface ColumnSerializer<T> {
      */
     T deserialize(ByteBuffer byteBuf, ColumnDefinition cd);
 
+    /**
+     * Advance the array past one column value without building the value.
+     * <p>
+     * Used when a query does not need the column. The default implementation deserializes and discards the value;
+     * the serializers of the variable size columns override it to simply jump over the data.
+     * 
+     * @param array
+     * @param cd
+     */
+    default void skip(ByteArray array, ColumnDefinition cd) {
+        deserialize(array, cd);
+    }
+
     /**
      * @param array
      * @param v
@@ -328,6 +328,12 @@ public class ColumnSerializerFactory {
             byteArray.addSizePrefixedUTF(v);
         }
 
+        @Override
+        public void skip(ByteArray byteArray, ColumnDefinition cd) {
+            int len = byteArray.getShort() & 0xFFFF;
+            byteArray.skip(len);
+        }
+
         @Override
         public void serialize(ByteBuffer byteBuf, String v) {
             int pos = byteBuf.position();
@@ -420,6 +426,14 @@ public class ColumnSerializerFactory {
             return bp;
         }
 
+        @Override
+        public void skip(ByteArray byteArray, ColumnDefinition cd) {
+            int length = byteArray.getInt();
+            if (length <= maxBinaryLength) {
+                byteArray.skip(length);
+            }
+        }
+
         @Override
         public void serialize(ByteArray byteArray, byte[] v) {
             byteArray.addInt(v.length);
@@ -478,6 +492,11 @@ public class ColumnSerializerFactory {
             return b.build();
         }
 
+        @Override
+        public void skip(ByteArray byteArray, ColumnDefinition cd) {
+            byteArray.skip(byteArray.getInt());
+        }
+
         @Override
         public void serialize(ByteArray byteArray, MessageLite v) {
             byteArray.addSizePrefixedProto(v);
@@ -0,0 +1,17 @@
+package org.yamcs.yarch;
+
+/**
+ * Filter evaluated on the serialized primary key of a table row, before the row value is read and deserialized.
+ * <p>
+ * The filter is only used to discard early the rows which cannot match a query; the query conditions are still
+ * evaluated on the deserialized tuples.
+ */
+public interface CompiledKeyFilter {
+    /**
+     * 
+     * @param key
+     *            the serialized primary key of the row
+     * @return false if the row does not match the conditions and can be skipped
+     */
+    boolean matches(byte[] key);
+}
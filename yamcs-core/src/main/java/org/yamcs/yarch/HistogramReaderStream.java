@@ -39,7 +39,7 @@ public class HistogramReaderStream extends Stream implements Runnable {
 
     @Override
     public void doStart() {
-        (new Thread(this, "HistogramReader[" + getName() + "]")).start();
+        StreamExecutor.execute("HistogramReader[" + getName() + "]", this);
     }
 
     @Override
@@ -45,7 +45,11 @@ public class InternalStream extends Stream implements StreamSubscriber {
     @Override
     public void streamClosed(Stream stream) {
         if (stream == inner) {
-            close();
+            if (stream.getError() != null) {
+                closeWithError(stream.getError());
+            } else {
+                close();
+            }
         }
     }
 }
@@ -1,21 +1,33 @@
 package org.yamcs.yarch;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Comparator;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.PriorityQueue;
-import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.yamcs.yarch.streamsql.StreamSqlException;
 
+/**
+ * Merges sorted streams into one stream sorted on the merge column.
+ * <p>
+ * The tuples of each sub-stream are handed over to the merging thread in batches of up to {@link #BATCH_SIZE} tuples;
+ * a batch is handed over earlier if the merging thread is waiting for it, such that the merge does not introduce
+ * latency when the sub-streams are slow. The merge itself is performed with a loser tree (tournament tree), requiring
+ * log2(k) comparisons per tuple for k sub-streams.
+ */
 public class MergeStream extends Stream implements StreamSubscriber, Runnable {
-    private Map<Stream, LinkedBlockingQueue<Tuple>> tupleQueues;
-    private PriorityQueue<TupleQueuePair> orderedQueue;
+    static final int BATCH_SIZE = 256;
+    // maximum number of batches buffered for each sub-stream
+    static final int MAX_BATCHES = 4;
+
+    private final Map<Stream, Input> inputs;
+    private final boolean ascending;
     Stream[] streams;
-    private Tuple queueEndMark = new Tuple(new TupleDefinition(), new ArrayList<>());
     static AtomicInteger counter = new AtomicInteger();
     private final String mergeColumn;
 
@@ -25,19 +37,13 @@ public class MergeStream extends Stream implements StreamSubscriber, Runnable {
         super(ydb, getStreamName(streams), streams[0].getDefinition());
         this.streams = streams;
         this.mergeColumn = mergeColumn;
+        this.ascending = ascending;
 
-        if (ascending) {
-            orderedQueue = new PriorityQueue<>();
-        } else {
-            orderedQueue = new PriorityQueue<>(REVERSE_COMPARATOR);
-        }
-
-        Map<Stream, LinkedBlockingQueue<Tuple>> t = new HashMap<>();
-
+        Map<Stream, Input> t = new HashMap<>();
         for (Stream s : streams) {
-            t.put(s, new LinkedBlockingQueue<Tuple>(50));
+            t.put(s, new Input());
         }
-        tupleQueues = Collections.unmodifiableMap(t);
+        inputs = Collections.unmodifiableMap(t);
 
         for (Stream s : streams) {
             s.addSubscriber(this);
@@ -56,7 +62,7 @@ public class MergeStream extends Stream implements StreamSubscriber, Runnable {
     @Override
     public void onTuple(Stream s, Tuple tuple) {
         try {
-            tupleQueues.get(s).put(tuple);
+            inputs.get(s).add(tuple);
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
             log.info("got InterruptedException when writing data to the queue");
@@ -69,13 +75,7 @@ public class MergeStream extends Stream implements StreamSubscriber, Runnable {
             return;
         }
         log.debug("Got stream closed for {}", s);
-        try {
-            tupleQueues.get(s).put(queueEndMark);
-        } catch (InterruptedException e) {
-            log.info("got InterruptedException when writing the end mark to the queue");
-            Thread.currentThread().interrupt();
-        }
-        // tupleQueues.remove(s);
+        inputs.get(s).end();
     }
 
     @Override
@@ -86,40 +86,35 @@ public class MergeStream extends Stream implements StreamSubscriber, Runnable {
             s.start();
         }
         // now start the thread that collects data from the substreams
-        new Thread(this).start();
+        StreamExecutor.execute("MergeStream[" + getName() + "]", this);
     }
 
     @Override
     public void run() {
         try {
-            // first wait for all the queues to have at least a tuple
+            // the order of the inputs is the order of the streams
+            Input[] in = new Input[streams.length];
+            for (int i = 0; i < streams.length; i++) {
+                in[i] = inputs.get(streams[i]);
+            }
+            // first wait for all the inputs to have at least a tuple
             log.debug("waiting for at least one tuple in each queue");
-            for (LinkedBlockingQueue<Tuple> q : tupleQueues.values()) {
-                Tuple t = q.take();
-                if (t == queueEndMark) {
-                    continue;// this queue is finished, ignore it
-                }
-                orderedQueue.add(new TupleQueuePair(q, t));
+            for (Input input : in) {
+                input.advance();
             }
             log.debug("got one tuple from each stream, starting the business");
 
-            // now continue publishing the first element from the priority queue till it becomes empty
-            while (orderedQueue.size() > 0) {
-                TupleQueuePair tq = orderedQueue.poll();
-                if (getState() == QUITTING) {
+            LoserTree tree = new LoserTree(in);
+            // now continue publishing the first element from the tree till all the inputs are finished
+            while (true) {
+                Input winner = tree.winner();
+                if (winner.head == null || getState() == QUITTING) {
                     break;
                 }
-                emitTuple(tq.t);
-                // get a new tuple from the queue from which the previous one has been sent
-                Tuple t = tq.q.take();
-                if (t == queueEndMark) {
-                    continue;// this queue is finished, ignore it
-                }
-                if (!t.hasColumn(mergeColumn)) {
-                    log.warn("Ignoring tuple because it does not have column {}", mergeColumn);
-                }
-
-                orderedQueue.add(new TupleQueuePair(tq.q, t));
+                emitTuple(winner.head);
+                // get a new tuple from the input from which the previous one has been sent
+                winner.advance();
+                tree.replay();
             }
             close();
         } catch (InterruptedException e) {
@@ -131,26 +126,206 @@ public class MergeStream extends Stream implements StreamSubscriber, Runnable {
 
     @Override
     protected void doClose() {
+        // unblock the substreams waiting to hand over their data
+        for (Input input : inputs.values()) {
+            input.abandon();
+        }
         for (Stream s : streams) {
             s.close();
         }
     }
 
-    private static final Comparator<TupleQueuePair> REVERSE_COMPARATOR = (o1, o2) -> -o1.compareTo(o2);
+    /**
+     * returns true if the head of the input a comes before the head of the input b
+     * <p>
+     * The finished inputs (with null head) come after all the others.
+     */
+    private boolean before(Input a, Input b) {
+        if (b.head == null) {
+            return true;
+        } else if (a.head == null) {
+            return false;
+        }
+        int c = DataType.compare(a.key, b.key);
+        return ascending ? c <= 0 : c >= 0;
+    }
+
+    /**
+     * Tournament tree where each internal node keeps the loser of the match played at that node and the root keeps
+     * the overall winner.
+     * <p>
+     * The leaf corresponding to input i is the node k+i, the internal nodes are 1 to k-1 and the children of the node n
+     * are 2n and 2n+1. After the head of the winner changes, only the matches on the path from its leaf to the root
+     * are replayed.
+     */
+    class LoserTree {
+        final Input[] in;
+        final int k;
+        final int[] losers;
+        int winner;
 
-    class TupleQueuePair implements Comparable<TupleQueuePair> {
+        LoserTree(Input[] in) {
+            this.in = in;
+            this.k = in.length;
+            this.losers = new int[k];
 
-        LinkedBlockingQueue<Tuple> q;
-        Tuple t;
+            int[] winners = new int[2 * k];
+            for (int i = 0; i < k; i++) {
+                winners[k + i] = i;
+            }
+            for (int n = k - 1; n >= 1; n--) {
+                int l = winners[2 * n];
+                int r = winners[2 * n + 1];
+                if (before(in[l], in[r])) {
+                    winners[n] = l;
+                    losers[n] = r;
+                } else {
+                    winners[n] = r;
+                    losers[n] = l;
+                }
+            }
+            winner = k == 1 ? 0 : winners[1];
+        }
 
-        TupleQueuePair(LinkedBlockingQueue<Tuple> q, Tuple t) {
-            this.q = q;
-            this.t = t;
+        Input winner() {
+            return in[winner];
         }
 
-        @Override
-        public int compareTo(TupleQueuePair o) {
-            return DataType.compare(t.getColumn(mergeColumn), o.t.getColumn(mergeColumn));
+        void replay() {
+            int w = winner;
+            for (int n = (k + w) >> 1; n >= 1; n >>= 1) {
+                int l = losers[n];
+                if (!before(in[w], in[l])) {
+                    losers[n] = w;
+                    w = l;
+                }
+            }
+            winner = w;
+        }
+    }
+
+    /**
+     * Hands over the tuples from one sub-stream to the merging thread.
+     * <p>
+     * The {@link #add(Tuple)} and {@link #end()} methods are called by the sub-stream thread, the {@link #advance()}
+     * by the merging thread.
+     */
+    class Input {
+        final ReentrantLock lock = new ReentrantLock();
+        final Condition notEmpty = lock.newCondition();
+        final Condition notFull = lock.newCondition();
+
+        // guarded by lock
+        private List<Tuple> pending = new ArrayList<>();
+        private final ArrayDeque<List<Tuple>> batches = new ArrayDeque<>();
+        private boolean ended;
+        private boolean abandoned;
+
+        // accessed only by the merging thread
+        private List<Tuple> current = Collections.emptyList();
+        private int idx;
+        Tuple head;
+        Object key;
+
+        void add(Tuple tuple) throws InterruptedException {
+            lock.lock();
+            try {
+                if (abandoned) {
+                    return;
+                }
+                pending.add(tuple);
+                if (pending.size() >= BATCH_SIZE) {
+                    while (batches.size() >= MAX_BATCHES && !abandoned) {
+                        notFull.await();
+                    }
+                    batches.add(pending);
+                    pending = new ArrayList<>(BATCH_SIZE);
+                    notEmpty.signal();
+                } else if (pending.size() == 1) {
+                    // the merging thread may be waiting for this tuple
+                    notEmpty.signal();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void end() {
+            lock.lock();
+            try {
+                ended = true;
+                notEmpty.signal();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void abandon() {
+            lock.lock();
+            try {
+                abandoned = true;
+                batches.clear();
+                pending.clear();
+                notFull.signalAll();
+                // the merging thread may be waiting for data
+                notEmpty.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Moves to the next tuple, waiting for the sub-stream if necessary. The head is set to null when the
+         * sub-stream has been closed and all its tuples have been consumed.
+         */
+        void advance() throws InterruptedException {
+            while (true) {
+                if (idx >= current.size()) {
+                    current = nextBatch();
+                    idx = 0;
+                    if (current == null) {
+                        current = Collections.emptyList();
+                        head = null;
+                        key = null;
+                        return;
+                    }
+                }
+                Tuple t = current.get(idx++);
+                Object k = t.getColumn(mergeColumn);
+                if (k == null) {
+                    log.warn("Ignoring tuple because it does not have column {}", mergeColumn);
+                    continue;
+                }
+                head = t;
+                key = k;
+                return;
+            }
+        }
+
+        // returns null if the sub-stream is finished
+        private List<Tuple> nextBatch() throws InterruptedException {
+            lock.lock();
+            try {
+                while (true) {
+                    List<Tuple> batch = batches.poll();
+                    if (batch != null) {
+                        notFull.signal();
+                        return batch;
+                    }
+                    if (!pending.isEmpty()) {
+                        // do not wait for the batch to fill up
+                        batch = pending;
+                        pending = new ArrayList<>(BATCH_SIZE);
+                        return batch;
+                    }
+                    if (ended || abandoned) {
+                        return null;
+                    }
+                    notEmpty.await();
+                }
+            } finally {
+                lock.unlock();
+            }
         }
     }
 }
@@ -118,6 +118,10 @@ public class SelectStream extends Stream implements StreamSubscriber {
 
     @Override
     public void streamClosed(Stream stream) {
+        if (stream.getError() != null) {
+            closeWithError(stream.getError());
+            return;
+        }
         if (windowProc != null) {
             for (Tuple t : windowProc.streamClosed()) {
                 processSelectList(t);
@@ -31,6 +31,8 @@ public abstract class Stream {
     private volatile AtomicLong dataCount = new AtomicLong();
     private volatile AtomicInteger subscriberCount = new AtomicInteger();
     private ExceptionHandler handler;
+    // the error which caused the stream to be closed, if any
+    private volatile Throwable error;
 
     protected Stream(YarchDatabaseInstance ydb, String name, TupleDefinition definition) {
         this.name = name;
@@ -126,6 +128,28 @@ public abstract class Stream {
         }
     }
 
+    /**
+     * Closes the stream because of an error, for example a failure to read the data it emits.
+     * <p>
+     * The error can be retrieved with {@link #getError()} by the subscribers when receiving the streamClosed signal.
+     * If the stream is already closed, do nothing.
+     */
+    protected final void closeWithError(Throwable error) {
+        if (state.get() == QUITTING) {
+            return;
+        }
+        this.error = error;
+        close();
+    }
+
+    /**
+     * Returns the error which caused the stream to be closed, or null if the stream is not closed or has been closed
+     * normally.
+     */
+    public Throwable getError() {
+        return error;
+    }
+
     protected abstract void doClose();
 
     public int getState() {
@@ -0,0 +1,88 @@
+package org.yamcs.yarch;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.yamcs.logging.Log;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Runs the producers of the streams which read data from the archive ({@link TableReaderStream},
+ * {@link MergeStream}, {@link HistogramReaderStream}).
+ * <p>
+ * These producers spend most of their time blocked: waiting for a merge queue, waiting for a slow consumer or
+ * sleeping to pace a replay. If the JVM supports virtual threads, each producer runs in its own virtual thread, such
+ * that hundreds of concurrent replays or queries do not require hundreds of platform threads. Otherwise the producers
+ * run in a shared pool of daemon threads which are reused between streams and terminated when idle.
+ * <p>
+ * The pool is not bounded because the producers of a merge stream block each other; limiting the number of threads
+ * could lead to a deadlock.
+ */
+public class StreamExecutor {
+    static final Log log = new Log(StreamExecutor.class);
+    static final long KEEP_ALIVE_SECONDS = 60;
+
+    private static final ThreadFactory virtualThreadFactory = createVirtualThreadFactory();
+    private static final ThreadPoolExecutor platformExecutor = new ThreadPoolExecutor(0, Integer.MAX_VALUE,
+            KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new SynchronousQueue<>(),
+            new ThreadFactoryBuilder().setNameFormat("YarchStream-%d").setDaemon(true).build());
+
+    private StreamExecutor() {
+    }
+
+    /**
+     * Executes the runnable in a virtual thread or in one of the pooled threads.
+     *
+     * @param name
+     *            the name of the thread (for pooled threads, the name is only set while the runnable is executing)
+     */
+    public static void execute(String name, Runnable runnable) {
+        if (virtualThreadFactory != null) {
+            Thread t = virtualThreadFactory.newThread(runnable);
+            t.setName(name);
+            t.start();
+        } else {
+            platformExecutor.execute(() -> {
+                Thread t = Thread.currentThread();
+                String oldName = t.getName();
+                t.setName(name);
+                try {
+                    runnable.run();
+                } finally {
+                    t.setName(oldName);
+                }
+            });
+        }
+    }
+
+    /**
+     *
+     * @return true if the streams are executed in virtual threads
+     */
+    public static boolean isVirtual() {
+        return virtualThreadFactory != null;
+    }
+
+    /**
+     * Virtual threads are available from Java 21; they are looked up by reflection such that Yamcs still runs on
+     * older versions.
+     */
+    private static ThreadFactory createVirtualThreadFactory() {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Method factory = Class.forName("java.lang.Thread$Builder").getMethod("factory");
+            ThreadFactory tf = (ThreadFactory) factory.invoke(builder);
+            log.debug("Using virtual threads for the stream producers");
+            return tf;
+        } catch (NoSuchMethodException | ClassNotFoundException e) {
+            return null;
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            log.warn("Cannot create virtual threads, using platform threads for the stream producers", e);
+            return null;
+        }
+    }
+}
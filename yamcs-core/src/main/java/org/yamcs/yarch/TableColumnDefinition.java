@@ -65,6 +65,10 @@ public class TableColumnDefinition extends ColumnDefinition {
         return serializer.deserialize(byteArray, this);
     }
 
+    public void skipValue(ByteArray byteArray) {
+        serializer.skip(byteArray, this);
+    }
+
     public void setEnumValues(BiMap<String, Short> enumValues) {
         this.enumValues = enumValues;
     }
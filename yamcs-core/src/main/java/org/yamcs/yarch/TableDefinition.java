@@ -3,7 +3,10 @@ package org.yamcs.yarch;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -79,6 +82,15 @@ public class TableDefinition {
     // these are the value columns which are autoincrement.
     private List<TableColumnDefinition> autoIncrementValues;
 
+    // set when rows may have been written or modified without updating the histograms (persisted)
+    private volatile boolean histogramIncomplete;
+    // number of open writers which can modify existing rows or do not update the histograms
+    private final AtomicInteger histogramUpdatingWriters = new AtomicInteger();
+    // incremented each time the histograms are marked as incomplete
+    private final AtomicInteger histogramModCount = new AtomicInteger();
+    // number of histogram rebuilds in progress
+    private final AtomicInteger histogramRebuilds = new AtomicInteger();
+
     /**
      * Used when creating an empty table via sql.
      * 
@@ -505,11 +517,34 @@ public class TableDefinition {
      * 
      */
     public byte[] serializeValue(Tuple tuple, Row sertuple) {
-        ByteArray byteArray = new ByteArray();
+        ByteArray byteArray = new ByteArray(estimateValueSize(tuple));
         serializeValue(tuple, sertuple, byteArray);
         return byteArray.toArray();
     }
 
+    /**
+     * Estimates the size of the serialized value such that the array does not have to be grown (and the large binary
+     * columns like the TM packets copied multiple times) during the serialization.
+     */
+    private static int estimateValueSize(Tuple tuple) {
+        int size = 4; // the eof marker
+        for (int i = 0; i < tuple.size(); i++) {
+            Object v = tuple.getColumn(i);
+            if (v == null) {
+                continue;
+            }
+            size += 4; // the column index
+            if (v instanceof byte[] b) {
+                size += 4 + b.length;
+            } else if (v instanceof String str) {
+                size += 4 + str.length();
+            } else {
+                size += 8;
+            }
+        }
+        return size;
+    }
+
     private void setSertupleValue(Row sertuple, String colName, Object value) {
         if (sertuple != null) {
             int idx = sertuple.getIndex(colName);
@@ -520,6 +555,19 @@ public class TableDefinition {
     }
 
     public Tuple deserialize(byte[] k, byte[] v) {
+        return deserialize(k, v, null);
+    }
+
+    /**
+     * Same as {@link #deserialize(byte[], byte[])} but only the value columns whose index is set in valueColumns are
+     * deserialized; the other ones are skipped and not part of the resulting tuple. The key columns are always
+     * deserialized.
+     * 
+     * @param valueColumns
+     *            the indices of the value columns to deserialize (as returned by {@link #getValueColumnSet(Collection)}
+     *            or null to deserialize all of them
+     */
+    public Tuple deserialize(byte[] k, byte[] v, BitSet valueColumns) {
         TupleDefinition tdef = new TupleDefinition();
         ArrayList<Object> cols = new ArrayList<>();
         ByteArray byteArray = ByteArray.wrap(k);
@@ -552,6 +600,10 @@ public class TableDefinition {
                             name, tcd.getName(), cidx, tcd.getType().getTypeId(), dt));
                 }
 
+                if (valueColumns != null && !valueColumns.get(cidx)) {
+                    tcd.skipValue(byteArray);
+                    continue;
+                }
                 Object o = tcd.deserializeValue(byteArray);
                 tdef.addColumn(tcd);
                 cols.add(o);
@@ -567,6 +619,21 @@ public class TableDefinition {
         return new Tuple(tdef, cols);
     }
 
+    /**
+     * Returns the set of indices of the value columns having the given names. The names which do not correspond to
+     * value columns (for example the key columns) are ignored.
+     */
+    public BitSet getValueColumnSet(Collection<String> columnNames) {
+        BitSet bs = new BitSet();
+        for (String name : columnNames) {
+            int idx = valueDef.getIndex(name);
+            if (idx >= 0) {
+                bs.set(idx);
+            }
+        }
+        return bs;
+    }
+
     public boolean isCompressed() {
         return compressed;
     }
@@ -670,6 +737,83 @@ public class TableDefinition {
         return histoColumns != null;
     }
 
+    /**
+     * Returns true if the histograms are known to contain all the values of the histogram columns, that is if no rows
+     * could have been written or modified without updating the histograms and no histogram rebuild is in progress.
+     * <p>
+     * Only in this case the histograms can be used to exclude data from a query; otherwise they are just an estimate.
+     */
+    public boolean isHistogramComplete() {
+        return hasHistogram() && !histogramIncomplete && histogramUpdatingWriters.get() == 0 && histogramRebuilds.get() == 0;
+    }
+
+    public boolean isHistogramIncomplete() {
+        return histogramIncomplete;
+    }
+
+    public void setHistogramIncomplete(boolean histogramIncomplete) {
+        this.histogramIncomplete = histogramIncomplete;
+    }
+
+    /**
+     * Called before writing or modifying rows without updating the histograms.
+     * <p>
+     * The flag is saved with the table definition, it is cleared by a full histogram rebuild.
+     */
+    public synchronized void markHistogramIncomplete() {
+        if (!hasHistogram()) {
+            return;
+        }
+        histogramModCount.incrementAndGet();
+        if (!histogramIncomplete) {
+            histogramIncomplete = true;
+            if (ydb != null) {
+                ydb.saveTableDefinition(this, keyDef.getList(), valueDef.getList());
+            }
+        }
+    }
+
+    /**
+     * Called when opening a writer which can modify existing rows (upsert) or which does not update the histograms
+     * (load).
+     */
+    public void histogramUpdatingWriterOpened() {
+        histogramUpdatingWriters.incrementAndGet();
+        markHistogramIncomplete();
+    }
+
+    public void histogramUpdatingWriterClosed() {
+        histogramUpdatingWriters.decrementAndGet();
+    }
+
+    /**
+     * Called when starting a histogram rebuild.
+     * 
+     * @return a token to be passed to {@link #histogramRebuildFinished(int, boolean)}
+     */
+    public int histogramRebuildStarted() {
+        histogramRebuilds.incrementAndGet();
+        return histogramModCount.get();
+    }
+
+    /**
+     * Called when a histogram rebuild has finished.
+     * 
+     * @param token
+     *            the value returned by {@link #histogramRebuildStarted()}
+     * @param complete
+     *            true if the rebuild has covered the whole table successfully
+     */
+    public synchronized void histogramRebuildFinished(int token, boolean complete) {
+        histogramRebuilds.decrementAndGet();
+        if (complete && histogramIncomplete && histogramUpdatingWriters.get() == 0 && token == histogramModCount.get()) {
+            histogramIncomplete = false;
+            if (ydb != null) {
+                ydb.saveTableDefinition(this, keyDef.getList(), valueDef.getList());
+            }
+        }
+    }
+
     public BiMap<String, Short> getEnumValues(String columnName) {
         TableColumnDefinition tcd = getColumnDefinition(columnName);
         if (tcd == null) {
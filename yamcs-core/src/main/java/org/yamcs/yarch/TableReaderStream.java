@@ -1,5 +1,6 @@
 package org.yamcs.yarch;
 
+import java.util.BitSet;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
@@ -11,7 +12,10 @@ public class TableReaderStream extends Stream implements Runnable, TableVisitor
     TableWalker tblIterator;
 
     protected TableDefinition tableDefinition;;
-    Thread thread;
+    // if not null, only these value columns are deserialized
+    private BitSet valueColumns;
+    // the thread executing the walk, null when not running; guarded by this
+    private Thread thread;
 
     public TableReaderStream(YarchDatabaseInstance ydb, TableDefinition tblDef, TableWalker iterator) {
         super(ydb, tblDef.getName() + "_" + count.getAndIncrement(),
@@ -22,19 +26,27 @@ public class TableReaderStream extends Stream implements Runnable, TableVisitor
 
     @Override
     public void doStart() {
-        thread = new Thread(this, "RdbTableReaderStream[" + getName() + "]");
-        thread.start();
+        StreamExecutor.execute("RdbTableReaderStream[" + getName() + "]", this);
     }
 
     @Override
     public void run() {
         log.debug("starting a table stream from table {} ", tableDefinition.getName());
+        synchronized (this) {
+            thread = Thread.currentThread();
+        }
         try {
             tblIterator.walk(this);
         } catch (Exception e) {
             log.error("got exception ", e);
+            closeWithError(e);
         } finally {
             close();
+            // the thread may be reused by another stream, make sure it is not interrupted from now on
+            synchronized (this) {
+                thread = null;
+            }
+            Thread.interrupted();
         }
     }
 
@@ -45,7 +57,19 @@ public class TableReaderStream extends Stream implements Runnable, TableVisitor
     }
 
     protected Tuple dataToTuple(byte[] k, byte[] v) {
-        return tableDefinition.deserialize(k, v);
+        return tableDefinition.deserialize(k, v, valueColumns);
+    }
+
+    /**
+     * Restricts the value columns which are deserialized and included in the emitted tuples. Has to be called before
+     * the stream is started.
+     * 
+     * @param valueColumns
+     *            the indices of the value columns to be included or null to include all of them
+     * @see TableDefinition#getValueColumnSet(java.util.Collection)
+     */
+    public void setValueColumns(BitSet valueColumns) {
+        this.valueColumns = valueColumns;
     }
 
     @Override
@@ -57,8 +81,10 @@ public class TableReaderStream extends Stream implements Runnable, TableVisitor
         }
         // when the thread is blocked on sending something (for example to a merge stream), if we don't call this, it
         // will be hanging forever
-        if (Thread.currentThread() != thread) {
-            thread.interrupt();
+        synchronized (this) {
+            if (thread != null && Thread.currentThread() != thread) {
+                thread.interrupt();
+            }
         }
     }
 
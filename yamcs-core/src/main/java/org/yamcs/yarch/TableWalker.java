@@ -1,5 +1,6 @@
 package org.yamcs.yarch;
 
+import java.util.List;
 import java.util.Set;
 
 import org.yamcs.utils.TimeInterval;
@@ -23,6 +24,36 @@ public interface TableWalker {
         throw new UnsupportedOperationException();
     }
     
+    /**
+     * Sets a filter evaluated on the primary key before visiting the rows. The rows rejected by the filter are not
+     * passed to the visitor.
+     * <p>
+     * The filter is an optimisation, the walkers not supporting it may ignore it.
+     */
+    default void setKeyFilter(CompiledKeyFilter keyFilter) {
+        // ignored by default
+    }
+
+    /**
+     * Restricts the walk to the partitions overlapping at least one of the given time intervals.
+     * <p>
+     * The intervals are used to skip the partitions which cannot contain matching rows; the walkers not supporting it
+     * may ignore them.
+     */
+    default void setTimeIntervals(List<TimeInterval> intervals) {
+        // ignored by default
+    }
+
+    /**
+     * Allows the walker to read up to n partitions concurrently. It can be used only if the visitor does not update or
+     * delete rows.
+     * <p>
+     * The rows are still passed to the visitor in order, from the thread calling {@link #walk(TableVisitor)}.
+     */
+    default void setParallelPartitions(int n) {
+        // ignored by default
+    }
+
     void walk(TableVisitor visitor) throws YarchException, StreamSqlException;
 
     void close();
@@ -84,10 +84,19 @@ public class HistogramRebuilder {
         while (intervalIterator.hasNext()) {
             Interval interval = intervalIterator.next();
             CompletableFuture<Void> cf1 = cf;
-            cf = cf1.thenAccept(v -> {
-                rebuildHistogramsForInterval(interval, cf1);
+            cf = cf1.thenCompose(v -> {
+                // completed exceptionally by the rebuild in case of error
+                CompletableFuture<Void> icf = new CompletableFuture<>();
+                rebuildHistogramsForInterval(interval, icf);
+                icf.complete(null);
+                return icf;
             });
         }
+        // until the rebuild finishes the histograms are incomplete and cannot be used to exclude data from queries
+        int token = tableDefinition.histogramRebuildStarted();
+        boolean wholeTable = !timeIterval.hasStart() && !timeIterval.hasEnd();
+        cf = cf.whenComplete((v, e) -> tableDefinition.histogramRebuildFinished(token, wholeTable && e == null));
+
         startCf.complete(null);
         return cf;
     }
@@ -2,16 +2,24 @@ package org.yamcs.yarch.rocksdb;
 
 import static org.yamcs.utils.ByteArrayUtils.encodeInt;
 import static org.yamcs.yarch.rocksdb.RdbBucketDatabase.TYPE_OBJ_DATA;
+import static org.yamcs.yarch.rocksdb.RdbBucketDatabase.TYPE_OBJ_DATA_CHUNK;
 import static org.yamcs.yarch.rocksdb.RdbBucketDatabase.TYPE_OBJ_METADATA;
 import static org.yamcs.yarch.rocksdb.RdbStorageEngine.TBS_INDEX_SIZE;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ReadableByteChannel;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Predicate;
 
 import org.rocksdb.RocksDBException;
@@ -22,6 +30,7 @@ import org.slf4j.LoggerFactory;
 import org.yamcs.buckets.Bucket;
 import org.yamcs.buckets.BucketLocation;
 import org.yamcs.buckets.BucketProperties;
+import org.yamcs.buckets.ObjectChannel;
 import org.yamcs.buckets.ObjectProperties;
 import org.yamcs.utils.ByteArrayUtils;
 import org.yamcs.utils.DatabaseCorruptionException;
@@ -36,8 +45,15 @@ public class RdbBucket implements Bucket {
     private static final Logger log = LoggerFactory.getLogger(RdbBucket.class);
     private static final BucketLocation LOCATION = new BucketLocation("db", "Yamcs DB");
 
+    /**
+     * Size of the chunks in which the objects uploaded as a stream are split
+     */
+    static final int DATA_CHUNK_SIZE = 1024 * 1024;
+
     final int tbsIndex;
-    org.yamcs.yarch.rocksdb.protobuf.Tablespace.BucketProperties bucketProps;
+    volatile org.yamcs.yarch.rocksdb.protobuf.Tablespace.BucketProperties bucketProps;
+    // objectId of the next streamed upload; the ids are unique in the bucket
+    final AtomicInteger nextObjectId = new AtomicInteger();
     final Tablespace tablespace;
     final String yamcsInstance;
 
@@ -163,13 +179,16 @@ public class RdbBucket implements Bucket {
 
         try (WriteBatch writeBatch = new WriteBatch();
                 WriteOptions writeOpts = new WriteOptions()) {
-            var oldProps = findObject(objectName);
+            var oldProps = findObjectProto(objectName);
 
             byte[] mk = getKey(TYPE_OBJ_METADATA, objectName);
             byte[] dk = getKey(TYPE_OBJ_DATA, objectName);
+            if (oldProps != null && oldProps.hasNumChunks()) {
+                deleteData(writeBatch, objectName, oldProps);
+            }
             writeBatch.put(mk, props.build().toByteArray());
             writeBatch.put(dk, objectData);
-            long bsize = bucketProps.getSize() + props.getSize() - ((oldProps == null) ? 0 : oldProps.size());
+            long bsize = bucketProps.getSize() + props.getSize() - ((oldProps == null) ? 0 : oldProps.getSize());
             if (bsize > bucketProps.getMaxSize()) {
                 throw new IOException("Maximum bucket size " + bucketProps.getMaxSize() + " exceeded");
             }
@@ -196,6 +215,195 @@ public class RdbBucket implements Bucket {
         }
     }
 
+    @Override
+    public CompletableFuture<Void> putObjectAsync(String objectName, String contentType,
+            Map<String, String> metadata, ReadableByteChannel data) {
+        return CompletableFuture.runAsync(() -> {
+            try {
+                putObject(objectName, contentType, metadata, data);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    /**
+     * Store an object whose data is read from the channel.
+     * <p>
+     * The data is split into chunks of {@link #DATA_CHUNK_SIZE} bytes, each chunk being written to the database as soon
+     * as it has been read. The chunks are written under a new objectId, without holding the bucket lock, such that a
+     * slow upload does not block the other operations on the bucket. The object metadata is written (and the old object
+     * data removed) only after all the chunks have been written; the chunks left behind by an upload interrupted by a
+     * crash are removed by {@link #removeIncompleteUploads()} when the bucket is next opened.
+     */
+    public void putObject(String objectName, String contentType, Map<String, String> metadata,
+            ReadableByteChannel data) throws IOException {
+        if (objectName.isEmpty()) {
+            throw new IllegalArgumentException("object name cannot be empty");
+        }
+        log.debug("Uploading object {} to bucket {} from a stream; contentType: {}", objectName,
+                bucketProps.getName(), contentType);
+        var oldProps = findObjectProto(objectName);
+        var bucketProps0 = bucketProps;
+        checkNumObjects(bucketProps0, oldProps);
+        long maxObjectSize = bucketProps0.getMaxSize() - bucketProps0.getSize()
+                + ((oldProps == null) ? 0 : oldProps.getSize());
+
+        int objectId = nextObjectId.getAndIncrement();
+        YRDB rdb = tablespace.getRdb();
+        ByteBuffer buf = ByteBuffer.allocate(DATA_CHUNK_SIZE);
+        long size = 0;
+        int numChunks = 0;
+
+        try {
+            while (true) {
+                int n = readChunk(data, buf);
+                size += n;
+                if (size > maxObjectSize) {
+                    throw new IOException("Maximum bucket size " + bucketProps0.getMaxSize() + " exceeded");
+                }
+                if (n > 0) {
+                    byte[] chunk = n == buf.capacity() ? buf.array() : Arrays.copyOf(buf.array(), n);
+                    rdb.put(getChunkKey(objectName, objectId, numChunks), chunk);
+                    numChunks++;
+                }
+                if (n < buf.capacity()) {
+                    break;
+                }
+            }
+
+            var props = org.yamcs.yarch.rocksdb.protobuf.Tablespace.ObjectProperties.newBuilder();
+            if (metadata != null) {
+                props.putAllMetadata(metadata);
+            }
+            props.setCreated(TimeEncoding.getWallclockTime());
+            props.setSize(size);
+            if (contentType != null) {
+                props.setContentType(contentType);
+            }
+            props.setObjectId(objectId);
+            props.setNumChunks(numChunks);
+            props.setChunkSize(DATA_CHUNK_SIZE);
+            publishChunkedObject(objectName, props.build());
+        } catch (IOException | RocksDBException e) {
+            // remove the chunks already written
+            try (WriteBatch writeBatch = new WriteBatch();
+                    WriteOptions writeOpts = new WriteOptions()) {
+                for (int i = 0; i < numChunks; i++) {
+                    writeBatch.delete(getChunkKey(objectName, objectId, i));
+                }
+                rdb.getDb().write(writeOpts, writeBatch);
+            } catch (RocksDBException e1) {
+                log.warn("Failed to remove the data of the failed upload of {}", objectName, e1);
+            }
+            if (e instanceof IOException ioe) {
+                throw ioe;
+            }
+            throw new IOException("Error writing object data: " + e.toString(), e);
+        }
+    }
+
+    /**
+     * Writes the metadata of an object whose chunks have been written, replacing the previous version of the object.
+     * <p>
+     * The bucket limits are checked again because other objects may have been stored while the chunks were uploaded.
+     */
+    private synchronized void publishChunkedObject(String objectName,
+            org.yamcs.yarch.rocksdb.protobuf.Tablespace.ObjectProperties props) throws IOException, RocksDBException {
+        var oldProps = findObjectProto(objectName);
+        checkNumObjects(bucketProps, oldProps);
+        long bsize = bucketProps.getSize() + props.getSize() - ((oldProps == null) ? 0 : oldProps.getSize());
+        if (bsize > bucketProps.getMaxSize()) {
+            throw new IOException("Maximum bucket size " + bucketProps.getMaxSize() + " exceeded");
+        }
+
+        try (WriteBatch writeBatch = new WriteBatch();
+                WriteOptions writeOpts = new WriteOptions()) {
+            if (oldProps != null) {
+                deleteData(writeBatch, objectName, oldProps);
+            }
+            writeBatch.put(getKey(TYPE_OBJ_METADATA, objectName), props.toByteArray());
+
+            var bucketProps1 = org.yamcs.yarch.rocksdb.protobuf.Tablespace.BucketProperties.newBuilder()
+                    .mergeFrom(bucketProps)
+                    .setNumObjects(bucketProps.getNumObjects() + ((oldProps == null) ? 1 : 0))
+                    .setSize(bsize)
+                    .build();
+            TablespaceRecord.Builder trb = TablespaceRecord.newBuilder()
+                    .setType(Type.BUCKET)
+                    .setBucketProperties(bucketProps1)
+                    .setTbsIndex(tbsIndex);
+            tablespace.writeToBatch(yamcsInstance, writeBatch, trb);
+
+            tablespace.getRdb().getDb().write(writeOpts, writeBatch);
+            bucketProps = bucketProps1;
+        }
+    }
+
+    private static void checkNumObjects(org.yamcs.yarch.rocksdb.protobuf.Tablespace.BucketProperties bucketProps,
+            org.yamcs.yarch.rocksdb.protobuf.Tablespace.ObjectProperties oldProps) throws IOException {
+        int numobj = bucketProps.getNumObjects() + ((oldProps == null) ? 1 : 0);
+        if (numobj > bucketProps.getMaxNumObjects()) {
+            throw new IOException(
+                    "Maximum number of objects in the bucket " + bucketProps.getNumObjects() + " exceeded");
+        }
+    }
+
+    /**
+     * Removes the data chunks not referenced by the metadata of their object. These are left behind by the streamed
+     * uploads interrupted by a crash.
+     * <p>
+     * Called when the bucket is opened, before any upload is started. It also determines the objectId to be used for
+     * the next streamed upload.
+     */
+    void removeIncompleteUploads() throws RocksDBException, IOException {
+        byte[] prefix = new byte[TBS_INDEX_SIZE + 1];
+        encodeInt(tbsIndex, prefix, 0);
+        prefix[TBS_INDEX_SIZE] = TYPE_OBJ_DATA_CHUNK;
+
+        YRDB rdb = tablespace.getRdb();
+        int maxObjectId = -1;
+        int numRemoved = 0;
+        try (DbIterator it = rdb.newPrefixIterator(prefix);
+                WriteBatch writeBatch = new WriteBatch();
+                WriteOptions writeOpts = new WriteOptions()) {
+            String objectName = null;
+            org.yamcs.yarch.rocksdb.protobuf.Tablespace.ObjectProperties props = null;
+            while (it.isValid()) {
+                byte[] k = it.key();
+                int nameLength = k.length - TBS_INDEX_SIZE - 9;
+                String name = new String(k, TBS_INDEX_SIZE + 1, nameLength, StandardCharsets.UTF_8);
+                int objectId = ByteArrayUtils.decodeInt(k, TBS_INDEX_SIZE + 1 + nameLength);
+                maxObjectId = Math.max(maxObjectId, objectId);
+                if (!name.equals(objectName)) {
+                    objectName = name;
+                    props = findObjectProto(name);
+                }
+                if (props == null || !props.hasNumChunks() || props.getObjectId() != objectId) {
+                    writeBatch.delete(k);
+                    numRemoved++;
+                }
+                it.next();
+            }
+            if (numRemoved > 0) {
+                log.info("Bucket {}: removing {} data chunks of incomplete uploads", bucketProps.getName(),
+                        numRemoved);
+                rdb.getDb().write(writeOpts, writeBatch);
+            }
+        }
+        nextObjectId.set(maxObjectId + 1);
+    }
+
+    private static int readChunk(ReadableByteChannel data, ByteBuffer buf) throws IOException {
+        buf.clear();
+        while (buf.hasRemaining()) {
+            if (data.read(buf) < 0) {
+                break;
+            }
+        }
+        return buf.position();
+    }
+
     @Override
     public CompletableFuture<ObjectProperties> findObjectAsync(String objectName) {
         return CompletableFuture.supplyAsync(() -> {
@@ -208,15 +416,20 @@ public class RdbBucket implements Bucket {
     }
 
     public ObjectProperties findObject(String objectName) throws IOException {
+        var proto = findObjectProto(objectName);
+        return proto == null ? null : ObjectProperties.fromYarch(proto);
+    }
+
+    private org.yamcs.yarch.rocksdb.protobuf.Tablespace.ObjectProperties findObjectProto(String objectName)
+            throws IOException {
         byte[] k = getKey(TYPE_OBJ_METADATA, objectName);
         try {
             byte[] v = tablespace.getRdb().get(k);
             if (v == null) {
                 return null;
             }
-            var proto = org.yamcs.yarch.rocksdb.protobuf.Tablespace.ObjectProperties.newBuilder()
+            return org.yamcs.yarch.rocksdb.protobuf.Tablespace.ObjectProperties.newBuilder()
                     .mergeFrom(v).setName(objectName).build();
-            return ObjectProperties.fromYarch(proto);
         } catch (InvalidProtocolBufferException e) {
             throw new DatabaseCorruptionException("Cannot decode data: " + e.toString(), e);
         } catch (RocksDBException e1) {
@@ -240,10 +453,72 @@ public class RdbBucket implements Bucket {
             byte[] k = getKey(TYPE_OBJ_DATA, objectName);
             YRDB rdb = tablespace.getRdb();
 
-            return rdb.get(k);
+            byte[] v = rdb.get(k);
+            if (v != null) {
+                return v;
+            }
         } catch (RocksDBException e) {
             throw new IOException("Failed to retrieve object: " + e.toString(), e);
         }
+        var props = findObjectProto(objectName);
+        if (props == null || !props.hasNumChunks()) {
+            return null;
+        }
+        if (props.getSize() > Integer.MAX_VALUE - 8) {
+            throw new IOException("Object " + objectName + " of size " + props.getSize()
+                    + " is too large to be retrieved in memory");
+        }
+        byte[] objectData = new byte[(int) props.getSize()];
+        try (var ch = new ChunkedObjectChannel(objectName, props, 0, objectData.length)) {
+            ByteBuffer buf = ByteBuffer.wrap(objectData);
+            while (buf.hasRemaining()) {
+                if (ch.read(buf) < 0) {
+                    break;
+                }
+            }
+        }
+        return objectData;
+    }
+
+    @Override
+    public CompletableFuture<ObjectChannel> openObjectAsync(String objectName, long offset, long length) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return openObject(objectName, offset, length);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    /**
+     * Open a channel for reading a range of the object data.
+     * <p>
+     * For the objects uploaded as a stream, the chunks are retrieved from the database one by one while reading from
+     * the channel.
+     */
+    public ObjectChannel openObject(String objectName, long offset, long length) throws IOException {
+        if (offset < 0) {
+            throw new IllegalArgumentException("Negative offset " + offset);
+        }
+        var props = findObjectProto(objectName);
+        if (props == null) {
+            return null;
+        }
+        if (props.hasNumChunks()) {
+            long start = Math.min(offset, props.getSize());
+            long end = length < 0 ? props.getSize() : Math.min(props.getSize(), start + length);
+            return new ObjectChannel(new ChunkedObjectChannel(objectName, props, start, end), props.getSize());
+        } else {
+            byte[] objectData = getObject(objectName);
+            if (objectData == null) {
+                return null;
+            }
+            int start = (int) Math.min(offset, objectData.length);
+            int end = length < 0 ? objectData.length : (int) Math.min(objectData.length, start + length);
+            return new ObjectChannel(Channels.newChannel(new ByteArrayInputStream(objectData, start, end - start)),
+                    objectData.length);
+        }
     }
 
     @Override
@@ -261,20 +536,19 @@ public class RdbBucket implements Bucket {
     public synchronized void deleteObject(String objectName) throws IOException {
         log.debug("Deleting {} from {}", objectName, bucketProps.getName());
         try {
-            var props = findObject(objectName);
+            var props = findObjectProto(objectName);
             if (props == null) {
                 throw new IOException("No object by name '" + objectName + "' found");
             }
             try (WriteBatch writeBatch = new WriteBatch();
                     WriteOptions writeOpts = new WriteOptions()) {
                 byte[] mk = getKey(TYPE_OBJ_METADATA, objectName);
-                byte[] dk = getKey(TYPE_OBJ_DATA, objectName);
                 writeBatch.delete(mk);
-                writeBatch.delete(dk);
+                deleteData(writeBatch, objectName, props);
                 var bucketProps1 = org.yamcs.yarch.rocksdb.protobuf.Tablespace.BucketProperties.newBuilder()
                         .mergeFrom(bucketProps)
                         .setNumObjects(bucketProps.getNumObjects() - 1)
-                        .setSize(bucketProps.getSize() - props.size())
+                        .setSize(bucketProps.getSize() - props.getSize())
                         .build();
                 TablespaceRecord.Builder trb = TablespaceRecord.newBuilder().setType(Type.BUCKET)
                         .setBucketProperties(bucketProps1).setTbsIndex(tbsIndex);
@@ -312,6 +586,33 @@ public class RdbBucket implements Bucket {
         return k;
     }
 
+    byte[] getChunkKey(String objectName, int objectId, int chunkIdx) {
+        byte[] a = objectName.getBytes(StandardCharsets.UTF_8);
+        byte[] k = new byte[TBS_INDEX_SIZE + 1 + a.length + 8];
+
+        encodeInt(tbsIndex, k, 0);
+        k[TBS_INDEX_SIZE] = TYPE_OBJ_DATA_CHUNK;
+        System.arraycopy(a, 0, k, TBS_INDEX_SIZE + 1, a.length);
+        encodeInt(objectId, k, TBS_INDEX_SIZE + 1 + a.length);
+        encodeInt(chunkIdx, k, TBS_INDEX_SIZE + 1 + a.length + 4);
+
+        return k;
+    }
+
+    /**
+     * Adds to the batch the removal of the data (single value or chunks) of the object with the given properties
+     */
+    private void deleteData(WriteBatch writeBatch, String objectName,
+            org.yamcs.yarch.rocksdb.protobuf.Tablespace.ObjectProperties props) throws RocksDBException {
+        if (props.hasNumChunks()) {
+            for (int i = 0; i < props.getNumChunks(); i++) {
+                writeBatch.delete(getChunkKey(objectName, props.getObjectId(), i));
+            }
+        } else {
+            writeBatch.delete(getKey(TYPE_OBJ_DATA, objectName));
+        }
+    }
+
     private void saveUpdatedBucketProperties(
             org.yamcs.yarch.rocksdb.protobuf.Tablespace.BucketProperties updatedBucketProperties)
             throws RocksDBException, IOException {
@@ -327,4 +628,67 @@ public class RdbBucket implements Bucket {
             this.bucketProps = updatedBucketProperties;
         }
     }
+
+    /**
+     * Reads a range of an object stored in chunks, retrieving the chunks from the database one at a time
+     */
+    class ChunkedObjectChannel implements ReadableByteChannel {
+        final String objectName;
+        final int objectId;
+        final int chunkSize;
+        final long end;
+        long position;
+
+        byte[] chunk;
+        int chunkIdx = -1;
+        boolean open = true;
+
+        ChunkedObjectChannel(String objectName, org.yamcs.yarch.rocksdb.protobuf.Tablespace.ObjectProperties props,
+                long start, long end) {
+            this.objectName = objectName;
+            this.objectId = props.getObjectId();
+            this.chunkSize = props.getChunkSize();
+            this.position = start;
+            this.end = end;
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            if (!open) {
+                throw new ClosedChannelException();
+            }
+            if (position >= end) {
+                return -1;
+            }
+            int idx = (int) (position / chunkSize);
+            if (idx != chunkIdx) {
+                try {
+                    chunk = tablespace.getRdb().get(getChunkKey(objectName, objectId, idx));
+                } catch (RocksDBException e) {
+                    throw new IOException("Failed to retrieve object: " + e.toString(), e);
+                }
+                if (chunk == null) {
+                    throw new IOException("Data of object " + objectName
+                            + " not found; the object has been probably modified or removed while being read");
+                }
+                chunkIdx = idx;
+            }
+            int offset = (int) (position - (long) idx * chunkSize);
+            int n = (int) Math.min(Math.min(dst.remaining(), chunk.length - offset), end - position);
+            dst.put(chunk, offset, n);
+            position += n;
+            return n;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return open;
+        }
+
+        @Override
+        public void close() {
+            open = false;
+            chunk = null;
+        }
+    }
 }
@@ -27,13 +27,22 @@ import org.yamcs.yarch.rocksdb.protobuf.Tablespace.TablespaceRecord.Type;
  * 4 bytes    1 byte             variable size
  * tbsIndex   0 = bucket info
  * tbsIndex   1 = metadata       objectName (up to 1000 bytes)
- * tbsIndex   2 = data           objectId (4 bytes)
+ * tbsIndex   2 = data           objectName
+ * tbsIndex   3 = data chunk     objectName, objectId (4 bytes), chunk index (4 bytes)
  * </pre>
  * 
+ * The objects uploaded as a stream are split into chunks, each chunk being stored under a different key. The objectId
+ * changes each time the object is overwritten such that the chunks of the new object do not overwrite the chunks of
+ * the old one until the upload is complete. The chunks whose objectId is not the one in the object metadata belong to
+ * an incomplete upload and are removed when the bucket is opened.
+ * <p>
+ * The chunked objects cannot be read by the Yamcs versions preceding their introduction.
+ * 
  * The rocksdb value is formed by:
  * <ul>
  * <li>in case of metadata: protobuf representation of ObjectProperties (contains the objectId and key,value metadata)
  * <li>in case of user object: binary user object
+ * <li>in case of data chunk: part of the binary user object
  * </ul>
  * 
  * To retrieve an object based on the bucket name and object name,
@@ -53,6 +62,7 @@ public class RdbBucketDatabase implements BucketDatabase {
     final static byte TYPE_BUCKET_INFO = 0;
     final static byte TYPE_OBJ_METADATA = 1;
     final static byte TYPE_OBJ_DATA = 2;
+    final static byte TYPE_OBJ_DATA_CHUNK = 3;
 
     final static long DEFAULT_MAX_BUCKET_SIZE = 100L * 1024 * 1024; // 100MB
     final static int DEFAULT_MAX_OBJECTS_PER_BUCKET = 1000;
@@ -65,6 +75,7 @@ public class RdbBucketDatabase implements BucketDatabase {
         List<TablespaceRecord> l = tablespace.filter(Type.BUCKET, yamcsInstance, x -> true);
         for (TablespaceRecord tr : l) {
             RdbBucket b = new RdbBucket(yamcsInstance, tablespace, tr.getTbsIndex(), tr.getBucketProperties());
+            b.removeIncompleteUploads();
             buckets.put(b.getName(), b);
         }
     }
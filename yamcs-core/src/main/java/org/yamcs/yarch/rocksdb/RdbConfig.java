@@ -115,6 +115,11 @@ public class RdbConfig {
         long targetFileSizeBase;
         final LRUCache lruCache;
 
+        // number of records accumulated by the table writers before being written in one batch; 1 means no batching
+        int writeBatchSize = 1;
+        // maximum time in milliseconds that the records are kept in a batch before being written
+        long writeBatchMaxDelay = 100;
+
         /**
          * default tablespace config containing default
          */
@@ -191,6 +196,11 @@ public class RdbConfig {
             if (tblspConfig.containsKey("allowConcurrentMemtableWrite")) {
                 dboptions.setAllowConcurrentMemtableWrite(tblspConfig.getBoolean("allowConcurrentMemtableWrite"));
             }
+            writeBatchSize = tblspConfig.getInt("writeBatchSize", writeBatchSize);
+            if (writeBatchSize < 1) {
+                throw new ConfigurationException("Invalid writeBatchSize " + writeBatchSize + ", should be at least 1");
+            }
+            writeBatchMaxDelay = tblspConfig.getLong("writeBatchMaxDelay", writeBatchMaxDelay);
 
             if (tblspConfig.containsKey(KEY_CF_CONFIG)) {
                 int count = 0;
@@ -220,6 +230,14 @@ public class RdbConfig {
         public Cache getTableCache() {
             return lruCache;
         }
+
+        public int getWriteBatchSize() {
+            return writeBatchSize;
+        }
+
+        public long getWriteBatchMaxDelay() {
+            return writeBatchMaxDelay;
+        }
     }
 
     static class CfConfig {
@@ -1,9 +1,15 @@
 package org.yamcs.yarch.rocksdb;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.rocksdb.ColumnFamilyHandle;
@@ -26,13 +32,33 @@ import org.yamcs.yarch.YarchException;
 import org.yamcs.yarch.streamsql.StreamSqlException;
 import org.yamcs.yarch.streamsql.StreamSqlException.ErrCode;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
 public class RdbTableWalker extends AbstractTableWalker {
+    // number of rows read at once by the partition readers
+    static final int CHUNK_SIZE = 1000;
+    // maximum number of chunks buffered for each partition reader
+    static final int MAX_CHUNKS = 2;
+
+    /**
+     * Pool reading the partitions for the parallel walks. The tasks never block; they read one chunk and reschedule
+     * themselves when there is space in the buffer, such that the pool can be bounded.
+     */
+    static final ThreadPoolExecutor readerExecutor;
+    static {
+        int n = Runtime.getRuntime().availableProcessors();
+        readerExecutor = new ThreadPoolExecutor(n, n, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                new ThreadFactoryBuilder().setNameFormat("RdbTableReader-%d").setDaemon(true).build());
+        readerExecutor.allowCoreThreadTimeOut(true);
+    }
+
     private final Tablespace tablespace;
     private final RdbTable table;
     static AtomicInteger count = new AtomicInteger(0);
 
     boolean batchUpdates = false;
     protected TableVisitor visitor;
+    private int parallelPartitions = 1;
 
     protected RdbTableWalker(ExecutionContext ctx, TableDefinition tableDefinition,
             boolean ascending, boolean follow) {
@@ -64,6 +90,73 @@ public class RdbTableWalker extends AbstractTableWalker {
         }
     }
 
+    /**
+     * If the walk is parallel, reads up to {@link #parallelPartitions} partition intervals concurrently while the
+     * visitor is called in the walk thread, in the order of the intervals.
+     */
+    @Override
+    protected void walkIntervals(Iterator<PartitionManager.Interval> partitionIterator, DbRange range,
+            TableVisitor visitor) throws StreamSqlException {
+        if (parallelPartitions <= 1 || follow || batchUpdates) {
+            super.walkIntervals(partitionIterator, range, visitor);
+            return;
+        }
+        ArrayDeque<IntervalReader> readers = new ArrayDeque<>();
+        try {
+            while (isRunning()) {
+                while (readers.size() < parallelPartitions && partitionIterator.hasNext()) {
+                    PartitionManager.Interval interval = partitionIterator.next();
+                    if (overlapsTimeIntervals(interval)) {
+                        readers.add(new IntervalReader(interval, range));
+                    } else {
+                        log.debug("Skipping partition interval {}", interval);
+                    }
+                }
+                IntervalReader reader = readers.poll();
+                if (reader == null) {
+                    break;
+                }
+                try {
+                    if (visitAll(reader, visitor)) {
+                        break;
+                    }
+                } finally {
+                    reader.close();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            close();
+        } finally {
+            for (IntervalReader reader : readers) {
+                reader.close();
+            }
+        }
+    }
+
+    // returns true if the end of the range has been reached
+    private boolean visitAll(IntervalReader reader, TableVisitor visitor)
+            throws InterruptedException, StreamSqlException {
+        while (isRunning()) {
+            Chunk chunk = reader.nextChunk();
+            if (chunk == null) {
+                return reader.endReached;
+            }
+            numRecordsRead += chunk.numRead;
+            for (int i = 0; i < chunk.keys.size(); i++) {
+                TableVisitor.Action action = visitor.visit(chunk.keys.get(i), chunk.values.get(i));
+                if (action.action() != TableVisitor.ActionType.NONE) {
+                    throw new IllegalStateException("The parallel walks do not support updates");
+                }
+                if (action.stop()) {
+                    close();
+                    return false;
+                }
+            }
+        }
+        return false;
+    }
+
     /**
      * runs value based partitions: the partition value is encoded as the first bytes of the key, so we have to make
      * multiple parallel iterators
@@ -95,29 +188,9 @@ public class RdbTableWalker extends AbstractTableWalker {
         var cfh = rdb.getColumnFamilyHandle(table.cfName());
 
         try {
-            List<DbIterator> itList = new ArrayList<>(interval.size());
-            // create an iterator for each partitions
-            for (Partition p : interval) {
-                p1 = (RdbPartition) p;
-                if (!ascending) {
-                    readOptions.setTotalOrderSeek(true);
-                }
-                RocksIterator rocksIt = rdb.getDb().newIterator(cfh, readOptions);
-                DbIterator it = getPartitionIterator(rocksIt, p1.tbsIndex, ascending, tableRange);
-                if (it.isValid()) {
-                    itList.add(it);
-                } else {
-                    it.close();
-                }
-            }
-
-            if (itList.size() == 0) {
+            iterator = newIntervalIterator(interval, tableRange, rdb, cfh, readOptions);
+            if (iterator == null) {
                 return false;
-            } else if (itList.size() == 1) {
-                iterator = itList.get(0);
-            } else {
-                iterator = new MergingIterator(itList,
-                        ascending ? new SuffixAscendingComparator(4) : new SuffixDescendingComparator(4));
             }
             boolean endReached;
             if (ascending) {
@@ -145,6 +218,37 @@ public class RdbTableWalker extends AbstractTableWalker {
         }
     }
 
+    /**
+     * Creates an iterator over all the partitions of the interval; returns null if there is no data in the range.
+     */
+    private DbIterator newIntervalIterator(PartitionManager.Interval interval, DbRange tableRange, YRDB rdb,
+            ColumnFamilyHandle cfh, ReadOptions readOptions) {
+        if (!ascending) {
+            readOptions.setTotalOrderSeek(true);
+        }
+        List<DbIterator> itList = new ArrayList<>(interval.size());
+        // create an iterator for each partitions
+        for (Partition p : interval) {
+            RdbPartition p1 = (RdbPartition) p;
+            RocksIterator rocksIt = rdb.getDb().newIterator(cfh, readOptions);
+            DbIterator it = getPartitionIterator(rocksIt, p1.tbsIndex, ascending, tableRange);
+            if (it.isValid()) {
+                itList.add(it);
+            } else {
+                it.close();
+            }
+        }
+
+        if (itList.size() == 0) {
+            return null;
+        } else if (itList.size() == 1) {
+            return itList.get(0);
+        } else {
+            return new MergingIterator(itList,
+                    ascending ? new SuffixAscendingComparator(4) : new SuffixDescendingComparator(4));
+        }
+    }
+
     // return true if the end condition has been reached
     boolean runAscending(YRDB rdb, ColumnFamilyHandle cfh, DbIterator iterator, WriteBatch writeBatch, byte[] rangeEnd)
             throws RocksDBException, StreamSqlException {
@@ -152,12 +256,15 @@ public class RdbTableWalker extends AbstractTableWalker {
         while (isRunning() && iterator.isValid()) {
             byte[] dbKey = iterator.key();
             byte[] key = Arrays.copyOfRange(dbKey, 4, dbKey.length);
-            byte[] value = iterator.value();
             numRecordsRead++;
 
-            if (iAscendingFinished(key, value, rangeEnd)) {
+            if (iAscendingFinished(key, rangeEnd)) {
                 return true;
             }
+            if (keyFilter != null && !keyFilter.matches(key)) {
+                iterator.next();
+                continue;
+            }
             TableVisitor.Action action = visitor.visit(key, iterator.value());
             if (writeBatch == null) {
                 executeAction(rdb, cfh, action, dbKey);
@@ -182,9 +289,13 @@ public class RdbTableWalker extends AbstractTableWalker {
             byte[] key = Arrays.copyOfRange(dbKey, 4, dbKey.length);
             numRecordsRead++;
 
-            if (isDescendingFinished(key, iterator.value(), rangeStart)) {
+            if (isDescendingFinished(key, rangeStart)) {
                 return true;
             }
+            if (keyFilter != null && !keyFilter.matches(key)) {
+                iterator.prev();
+                continue;
+            }
 
             TableVisitor.Action action = visitor.visit(key, iterator.value());
             if (writeBatch == null) {
@@ -257,6 +368,15 @@ public class RdbTableWalker extends AbstractTableWalker {
         }
     }
 
+    /**
+     * Sets the number of partition intervals read concurrently. It is used only for walks without updates and not
+     * following the table.
+     */
+    @Override
+    public void setParallelPartitions(int parallelPartitions) {
+        this.parallelPartitions = parallelPartitions;
+    }
+
     public long getNumRecordsRead() {
         return numRecordsRead;
     }
@@ -269,6 +389,190 @@ public class RdbTableWalker extends AbstractTableWalker {
         this.batchUpdates = batchUpdates;
     }
 
+    static class Chunk {
+        final List<byte[]> keys = new ArrayList<>();
+        final List<byte[]> values = new ArrayList<>();
+        // number of rows read, including the ones rejected by the key filter
+        int numRead;
+    }
+
+    /**
+     * Reads the rows of one partition interval in the background, in chunks of {@link #CHUNK_SIZE} rows.
+     * <p>
+     * At most one fetch task is running at any time and at most {@link #MAX_CHUNKS} chunks are buffered, such that a
+     * slow visitor does not cause the whole interval to be loaded in memory. The database, iterator and read options
+     * are used only from the fetch tasks; they are released by the last task or, if a task is running when the reader
+     * is closed, after that task finishes (the snapshot they use is released when the execution context is closed).
+     */
+    class IntervalReader {
+        final PartitionManager.Interval interval;
+        final DbRange tableRange;
+
+        // accessed only from the fetch tasks (or after they finished)
+        private boolean opened;
+        private YRDB rdb;
+        private ReadOptions readOptions;
+        private DbIterator iterator;
+
+        // guarded by this
+        private final ArrayDeque<Chunk> chunks = new ArrayDeque<>();
+        private boolean fetching;
+        private boolean eof;
+        private boolean closed;
+        private Throwable error;
+        volatile boolean endReached;
+
+        IntervalReader(PartitionManager.Interval interval, DbRange tableRange) {
+            this.interval = interval;
+            this.tableRange = tableRange;
+            synchronized (this) {
+                scheduleFetch();
+            }
+        }
+
+        /**
+         * Returns the next chunk, waiting for it to be read, or null if the interval has been read completely.
+         */
+        synchronized Chunk nextChunk() throws InterruptedException, StreamSqlException {
+            while (chunks.isEmpty() && !eof) {
+                wait();
+            }
+            if (error != null) {
+                if (error instanceof StreamSqlException e) {
+                    throw e;
+                } else if (error instanceof RocksDBException e) {
+                    throw new YarchException(e);
+                } else if (error instanceof RuntimeException e) {
+                    throw e;
+                } else {
+                    throw new YarchException(error);
+                }
+            }
+            Chunk chunk = chunks.poll();
+            if (!fetching && !eof) {
+                scheduleFetch();
+            }
+            return chunk;
+        }
+
+        /**
+         * Stops the reading and releases the resources, waiting for the running fetch task if any.
+         */
+        void close() {
+            boolean interrupted = false;
+            synchronized (this) {
+                closed = true;
+                chunks.clear();
+                while (fetching) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+                release();
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        // called with the lock held
+        private void scheduleFetch() {
+            if (closed || chunks.size() >= MAX_CHUNKS) {
+                return;
+            }
+            fetching = true;
+            try {
+                readerExecutor.execute(this::fetch);
+            } catch (RejectedExecutionException e) {
+                fetching = false;
+                error = e;
+                eof = true;
+            }
+        }
+
+        private void fetch() {
+            Chunk chunk = new Chunk();
+            boolean end = false;
+            Throwable err = null;
+            try {
+                if (!opened) {
+                    open();
+                }
+                while (iterator != null && iterator.isValid() && chunk.numRead < CHUNK_SIZE) {
+                    byte[] dbKey = iterator.key();
+                    byte[] key = Arrays.copyOfRange(dbKey, 4, dbKey.length);
+                    boolean finished = ascending ? iAscendingFinished(key, tableRange.rangeEnd)
+                            : isDescendingFinished(key, tableRange.rangeStart);
+                    if (finished) {
+                        endReached = true;
+                        break;
+                    }
+                    chunk.numRead++;
+                    if (keyFilter == null || keyFilter.matches(key)) {
+                        chunk.keys.add(key);
+                        chunk.values.add(iterator.value());
+                    }
+                    if (ascending) {
+                        iterator.next();
+                    } else {
+                        iterator.prev();
+                    }
+                }
+                end = endReached || iterator == null || !iterator.isValid();
+            } catch (Throwable t) {
+                err = t;
+            }
+
+            synchronized (this) {
+                fetching = false;
+                if (err != null) {
+                    error = err;
+                } else if (chunk.numRead > 0 && !closed) {
+                    chunks.add(chunk);
+                }
+                eof = end || err != null;
+                if (eof || closed) {
+                    release();
+                } else {
+                    scheduleFetch();
+                }
+                notifyAll();
+            }
+        }
+
+        private void open() {
+            opened = true;
+            RdbPartition p1 = (RdbPartition) interval.iterator().next();
+            if (p1.dir != null) {
+                log.debug("opening database {}", p1.dir);
+                rdb = tablespace.getRdb(p1.dir, false);
+            } else {
+                rdb = tablespace.getRdb();
+            }
+            readOptions = new ReadOptions();
+            readOptions.setSnapshot(ctx.getSnapshot(rdb));
+            iterator = newIntervalIterator(interval, tableRange, rdb, rdb.getColumnFamilyHandle(table.cfName()),
+                    readOptions);
+        }
+
+        private void release() {
+            if (iterator != null) {
+                iterator.close();
+                iterator = null;
+            }
+            if (readOptions != null) {
+                readOptions.close();
+                readOptions = null;
+            }
+            if (rdb != null) {
+                tablespace.dispose(rdb);
+                rdb = null;
+            }
+        }
+    }
+
     class RdbRawTuple extends RawTuple {
         RocksIterator iterator;
         byte[] partition;
@@ -5,6 +5,13 @@ import static org.yamcs.yarch.rocksdb.RdbStorageEngine.dbKey;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 import org.rocksdb.ColumnFamilyHandle;
 import org.rocksdb.RocksDBException;
@@ -13,6 +20,7 @@ import org.rocksdb.WriteOptions;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.yamcs.YamcsServer;
+import org.yamcs.utils.ByteArrayWrapper;
 import org.yamcs.utils.TimeEncoding;
 import org.yamcs.yarch.ColumnDefinition;
 import org.yamcs.yarch.DataType;
@@ -39,6 +47,12 @@ import static org.yamcs.yarch.rocksdb.RdbStorageEngine.TBS_INDEX_SIZE;;
  * 
  * <p>
  * The histograms are written by the {@link HistogramWriter}.
+ * <p>
+ * If the writeBatchSize option of the tablespace is greater than 1, in the INSERT, UPSERT and LOAD modes the records
+ * (together with their secondary index entries) are accumulated in one {@link WriteBatch} per database and written
+ * when the batch reaches writeBatchSize records or when writeBatchMaxDelay milliseconds have passed since the batch has
+ * been started, whichever comes first. This reduces considerably the cost of writing many small records at the expense
+ * of the records becoming visible to the readers with a small delay.
  *
  * 
  * @author nm
@@ -59,6 +73,12 @@ public class RdbTableWriter extends TableWriter {
     final SecondaryIndexWriter secondaryIndexWriter;
     TableDefinition tableDefinition;
 
+    int writeBatchSize;
+    long writeBatchMaxDelay;
+    // batches not yet written, one for each database
+    final Map<YRDB, PendingBatch> pendingBatches = new HashMap<>();
+    ScheduledFuture<?> flushFuture;
+
     public RdbTableWriter(YarchDatabaseInstance ydb, RdbTable table, InsertMode mode) {
         super(ydb, table, mode);
         this.tableDefinition = table.getDefinition();
@@ -73,7 +93,31 @@ public class RdbTableWriter extends TableWriter {
             wopt.setDisableWAL(true);
         }
         histoWriter = table.getHistogramWriter();
+        if (histoWriter != null && updatesHistogramPartially(mode)) {
+            tableDefinition.histogramUpdatingWriterOpened();
+        }
         secondaryIndexWriter = table.getSecondaryIndexWriter();
+
+        var tablespaceConfig = RdbConfig.getInstance().getTablespaceConfig(tablespace.getName());
+        setWriteBatch(tablespaceConfig.getWriteBatchSize(), tablespaceConfig.getWriteBatchMaxDelay());
+    }
+
+    // the histograms are not updated when loading or when an upsert modifies an existing row
+    static boolean updatesHistogramPartially(InsertMode mode) {
+        return mode == InsertMode.LOAD || mode == InsertMode.UPSERT || mode == InsertMode.UPSERT_APPEND;
+    }
+
+    /**
+     * Changes the batching options; the records already accumulated are written with the old options.
+     */
+    synchronized void setWriteBatch(int writeBatchSize, long writeBatchMaxDelay) {
+        if (mode == InsertMode.INSERT_APPEND || mode == InsertMode.UPSERT_APPEND) {
+            // the append modes read and merge the existing record under a record lock, they cannot be batched
+            this.writeBatchSize = 1;
+        } else {
+            this.writeBatchSize = writeBatchSize;
+        }
+        this.writeBatchMaxDelay = writeBatchMaxDelay;
     }
 
     @Override
@@ -97,6 +141,11 @@ public class RdbTableWriter extends TableWriter {
             YRDB rdb = tablespace.getRdb(partition.dir, false);
             var cfh = rdb.createAndGetColumnFamilyHandle(table.cfName());
 
+            if (writeBatchSize > 1 && (secondaryIndexWriter == null || rdb == tablespace.getRdb())) {
+                addToBatch(rdb, cfh, partition, t);
+                return;
+            }
+
             switch (mode) {
             case INSERT:
                 insert(rdb, cfh, partition, t);
@@ -116,9 +165,97 @@ public class RdbTableWriter extends TableWriter {
 
             tablespace.dispose(rdb);
         } catch (IOException | RocksDBException | YarchException e) {
-            log.error("failed to insert a record: ", e);
-            YamcsServer.getServer().getCrashHandler(ydb.getYamcsInstance()).handleCrash("Archive",
-                    "failed to insert a record in " + table.getName() + ": " + e);
+            handleWriteError(e);
+        }
+    }
+
+    private void handleWriteError(Exception e) {
+        log.error("failed to insert a record: ", e);
+        YamcsServer.getServer().getCrashHandler(ydb.getYamcsInstance()).handleCrash("Archive",
+                "failed to insert a record in " + table.getName() + ": " + e);
+    }
+
+    /**
+     * Adds the record to the batch of the database, writing the batch if it is full.
+     * <p>
+     * The batch keeps the reference to the database obtained by the caller, it is released when the batch is written.
+     */
+    private synchronized void addToBatch(YRDB rdb, ColumnFamilyHandle cfh, RdbPartition partition, Tuple t)
+            throws RocksDBException, IOException {
+        PendingBatch pb = pendingBatches.get(rdb);
+        if (pb == null) {
+            pb = new PendingBatch(rdb);
+            pendingBatches.put(rdb, pb);
+            if (flushFuture == null) {
+                flushFuture = tablespace.getExecutor().schedule(this::flushPendingBatches, writeBatchMaxDelay,
+                        TimeUnit.MILLISECONDS);
+            }
+        } else {
+            tablespace.dispose(rdb);
+        }
+
+        Row row = tableDefinition.generateRow(t);
+        byte[] k = dbKey(partition.tbsIndex, row.getKey());
+        ByteArrayWrapper kw = new ByteArrayWrapper(k);
+        boolean exists = false;
+        if (mode != InsertMode.LOAD) {
+            // the record may be in the database or in the batch not yet written
+            exists = pb.keys.contains(kw) || rdb.get(cfh, k) != null;
+            if (exists && mode == InsertMode.INSERT) {
+                return;
+            }
+        }
+        byte[] v = tableDefinition.serializeValue(t, row);
+        pb.writeBatch.put(cfh, k, v);
+        pb.keys.add(kw);
+        // as in the unbatched load, the secondary index and the histograms are not updated when loading
+        if (secondaryIndexWriter != null && mode != InsertMode.LOAD) {
+            secondaryIndexWriter.addTuple(pb.writeBatch, row, partition);
+        }
+        if (histoWriter != null && !exists && mode != InsertMode.LOAD) {
+            pb.histoRows.add(row);
+        }
+
+        pb.count++;
+        if (pb.count >= writeBatchSize || closed) {
+            pendingBatches.remove(rdb);
+            if (pendingBatches.isEmpty() && flushFuture != null) {
+                flushFuture.cancel(false);
+                flushFuture = null;
+            }
+            write(pb);
+        }
+    }
+
+    /**
+     * Writes all the pending batches to the database
+     */
+    synchronized void flushPendingBatches() {
+        flushFuture = null;
+        for (PendingBatch pb : pendingBatches.values()) {
+            try {
+                write(pb);
+            } catch (IOException | RocksDBException | YarchException e) {
+                handleWriteError(e);
+            }
+        }
+        pendingBatches.clear();
+    }
+
+    private void write(PendingBatch pb) throws RocksDBException, IOException {
+        try {
+            if (pb.count > 0) {
+                long t0 = System.nanoTime();
+                pb.rdb.write(wopt, pb.writeBatch);
+                tablespace.getWriteBatchStats().add(pb.count, System.nanoTime() - t0);
+                // the histograms are updated only once the records are in the database
+                for (Row row : pb.histoRows) {
+                    histoWriter.addHistogram(row);
+                }
+            }
+        } finally {
+            pb.writeBatch.close();
+            tablespace.dispose(pb.rdb);
         }
     }
 
@@ -178,6 +315,7 @@ public class RdbTableWriter extends TableWriter {
 
         boolean inserted = false;
         boolean updated = false;
+        boolean histoColumnAdded = false;
         rdb.lock(dbKey);
         try {
             byte[] v = rdb.get(cfh, dbKey);
@@ -193,6 +331,10 @@ public class RdbTableWriter extends TableWriter {
                         oldtdef.addColumn(cd);
                         cols.add(t.getColumn(cd.getName()));
                         updated = true;
+                        if (tableDefinition.hasHistogram()
+                                && tableDefinition.getHistogramColumns().contains(cd.getName())) {
+                            histoColumnAdded = true;
+                        }
                     }
                 }
                 if (updated) {
@@ -209,9 +351,11 @@ public class RdbTableWriter extends TableWriter {
             rdb.unlock(dbKey);
         }
         if (histoWriter != null) {
-            if (inserted) {
+            // the row contains the values of the merged tuple; a histogram column appended to an existing row has to
+            // be added to the histogram
+            if (inserted || histoColumnAdded) {
                 histoWriter.addHistogram(row);
-            } // else TODO
+            }
         }
     }
 
@@ -323,6 +467,15 @@ public class RdbTableWriter extends TableWriter {
             return;
         }
         closed = true;
+        synchronized (this) {
+            if (flushFuture != null) {
+                flushFuture.cancel(false);
+            }
+            flushPendingBatches();
+        }
+        if (histoWriter != null && updatesHistogramPartially(mode)) {
+            tableDefinition.histogramUpdatingWriterClosed();
+        }
     }
 
     @Override
@@ -330,4 +483,18 @@ public class RdbTableWriter extends TableWriter {
         log.debug("Stream {} closed", stream.getName());
         close();
     }
+
+    static class PendingBatch {
+        final YRDB rdb;
+        final WriteBatch writeBatch = new WriteBatch();
+        // keys of the records in the batch, used to detect duplicates before the batch is written
+        final Set<ByteArrayWrapper> keys = new HashSet<>();
+        // rows to be added to the histograms after the batch has been written
+        final List<Row> histoRows = new ArrayList<>();
+        int count;
+
+        PendingBatch(YRDB rdb) {
+            this.rdb = rdb;
+        }
+    }
 }
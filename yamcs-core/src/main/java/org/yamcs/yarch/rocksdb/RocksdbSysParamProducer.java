@@ -1,5 +1,6 @@
 package org.yamcs.yarch.rocksdb;
 
+import static org.yamcs.utils.ValueUtility.getFloatValue;
 import static org.yamcs.utils.ValueUtility.getUint64Value;
 
 import java.util.ArrayList;
@@ -21,12 +22,16 @@ import org.yamcs.xtce.UnitType;
  * Makes system parameters under /yamcs/<instance-id>/rocksdb/
  * <p>
  * One parameter for each open RocksDB database, containing statistics about the database
- * 
+ * <p>
+ * If the table writers of the tablespace are configured to write in batches, one more parameter contains statistics
+ * about the batches written since the previous update.
  */
 public class RocksdbSysParamProducer implements SystemParametersProducer {
 
     private AggregateParameterType rocksdbMemUsageAggrType;
     private Parameter rocksdbMemUsageParam;
+    private AggregateParameterType writeBatchAggrType;
+    private Parameter writeBatchParam;
 
     final Tablespace tablespace;
 
@@ -63,6 +68,33 @@ public class RocksdbSysParamProducer implements SystemParametersProducer {
                 rocksdbMemUsageAggrType,
                 "Memory usage for RocksDB databases associated to tablespace " + tablespace.getName());
 
+        if (RdbConfig.getInstance().getTablespaceConfig(tablespace.getName()).getWriteBatchSize() > 1) {
+            UnitType usunit = new UnitType("us");
+
+            Member numBatchesMember = new Member("numBatches", sysParamsService.getBasicType(Type.UINT64));
+            numBatchesMember.setShortDescription("The number of batches written");
+
+            Member avgBatchSizeMember = new Member("avgBatchSize", sysParamsService.getBasicType(Type.FLOAT));
+            avgBatchSizeMember.setShortDescription("The average number of records in one batch");
+
+            Member avgCommitLatencyMember = new Member("avgCommitLatency",
+                    sysParamsService.getBasicType(Type.UINT64, usunit));
+            avgCommitLatencyMember.setShortDescription("The average time taken to write one batch");
+
+            Member maxCommitLatencyMember = new Member("maxCommitLatency",
+                    sysParamsService.getBasicType(Type.UINT64, usunit));
+            maxCommitLatencyMember.setShortDescription("The maximum time taken to write one batch");
+
+            writeBatchAggrType = new AggregateParameterType.Builder().setName("WriteBatches")
+                    .addMember(numBatchesMember)
+                    .addMember(avgBatchSizeMember)
+                    .addMember(avgCommitLatencyMember)
+                    .addMember(maxCommitLatencyMember)
+                    .build();
+
+            writeBatchParam = sysParamsService.createSystemParameter("rocksdb/writeBatches", writeBatchAggrType,
+                    "Batches written by the table writers in the tablespace " + tablespace.getName());
+        }
     }
 
     @Override
@@ -84,6 +116,23 @@ public class RocksdbSysParamProducer implements SystemParametersProducer {
 
         pv.setExpireMillis((long) (1.9 * getFrequency() * 1000));
         pvlist.add(pv);
+
+        if (writeBatchParam != null) {
+            var stats = tablespace.getWriteBatchStats().getAndReset();
+            AggregateValue wbv = new AggregateValue(writeBatchAggrType.getMemberNames());
+            long n = stats.numBatches;
+            wbv.setMemberValue("numBatches", getUint64Value(n));
+            wbv.setMemberValue("avgBatchSize", getFloatValue(n == 0 ? 0 : (float) stats.numRecords / n));
+            wbv.setMemberValue("avgCommitLatency", getUint64Value(n == 0 ? 0 : stats.commitTimeNanos / n / 1000));
+            wbv.setMemberValue("maxCommitLatency", getUint64Value(stats.maxCommitTimeNanos / 1000));
+
+            ParameterValue wbpv = new ParameterValue(writeBatchParam);
+            wbpv.setGenerationTime(gentime);
+            wbpv.setAcquisitionTime(gentime);
+            wbpv.setEngValue(wbv);
+            wbpv.setExpireMillis((long) (1.9 * getFrequency() * 1000));
+            pvlist.add(wbpv);
+        }
         return pvlist;
     }
 
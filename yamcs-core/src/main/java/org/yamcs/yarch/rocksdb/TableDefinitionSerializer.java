@@ -37,6 +37,9 @@ class TableDefinitionSerializer {
         infob.setStorageEngine(def.getStorageEngineName());
         if (def.hasHistogram()) {
             infob.addAllHistogramColumn(def.getHistogramColumns());
+            if (def.isHistogramIncomplete()) {
+                infob.setHistogramIncomplete(true);
+            }
         }
         if (def.hasPartitioning()) {
             infob.setPartitioningInfo(toProtobuf(def.getPartitioningSpec()));
@@ -151,6 +154,7 @@ class TableDefinitionSerializer {
         try {
             if (protodef.getHistogramColumnCount() > 0) {
                 tdef.setHistogramColumns(new ArrayList<String>(protodef.getHistogramColumnList()));
+                tdef.setHistogramIncomplete(protodef.getHistogramIncomplete());
             }
             if (protodef.hasPartitioningInfo()) {
                 tdef.setPartitioningSpec(fromProtobuf(protodef.getPartitioningInfo()));
@@ -17,6 +17,7 @@ import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
+import org.rocksdb.AbstractWriteBatch;
 import org.rocksdb.ColumnFamilyHandle;
 import org.rocksdb.MemoryUsageType;
 import org.rocksdb.MemoryUtil;
@@ -131,6 +132,8 @@ public class Tablespace {
 
     Map<String, RdbSequence> sequences = new HashMap<>();
 
+    final WriteBatchStats writeBatchStats = new WriteBatchStats();
+
     public Tablespace(String name) {
         log = new Log(Tablespace.class);
         log.setContext(name);
@@ -293,8 +296,12 @@ public class Tablespace {
         return tr;
     }
 
-    TablespaceRecord writeToBatch(String yamcsInstance, WriteBatch writeBatch, TablespaceRecord.Builder trb)
-            throws IOException {
+    /**
+     * Same as {@link #updateRecord(String, TablespaceRecord.Builder)} but the record is written to the batch, such that
+     * it can be updated atomically with other data.
+     */
+    public TablespaceRecord writeToBatch(String yamcsInstance, AbstractWriteBatch writeBatch,
+            TablespaceRecord.Builder trb) throws IOException {
         if (!trb.hasType()) {
             throw new IllegalArgumentException("The type is mandatory in the TablespaceRecord");
         }
@@ -828,6 +835,49 @@ public class Tablespace {
         return memUsage;
     }
 
+    WriteBatchStats getWriteBatchStats() {
+        return writeBatchStats;
+    }
+
+    /**
+     * Statistics about the batches written by the table writers, accumulated since the last call of
+     * {@link #getAndReset()}
+     */
+    static class WriteBatchStats {
+        long numBatches;
+        long numRecords;
+        long commitTimeNanos;
+        long maxCommitTimeNanos;
+
+        synchronized void add(int numRecords, long commitTimeNanos) {
+            this.numBatches++;
+            this.numRecords += numRecords;
+            this.commitTimeNanos += commitTimeNanos;
+            if (commitTimeNanos > maxCommitTimeNanos) {
+                maxCommitTimeNanos = commitTimeNanos;
+            }
+        }
+
+        synchronized WriteBatchStats getAndReset() {
+            WriteBatchStats stats = new WriteBatchStats();
+            stats.numBatches = numBatches;
+            stats.numRecords = numRecords;
+            stats.commitTimeNanos = commitTimeNanos;
+            stats.maxCommitTimeNanos = maxCommitTimeNanos;
+            numBatches = 0;
+            numRecords = 0;
+            commitTimeNanos = 0;
+            maxCommitTimeNanos = 0;
+            return stats;
+        }
+
+        @Override
+        public String toString() {
+            return "WriteBatchStats [numBatches=" + numBatches + ", numRecords=" + numRecords + ", commitTimeNanos="
+                    + commitTimeNanos + ", maxCommitTimeNanos=" + maxCommitTimeNanos + "]";
+        }
+    }
+
     static class RocksdbMemoryUsage {
         long blockCacheMemoryUsage;
         long indexMemoryUsage;
@@ -0,0 +1,285 @@
+package org.yamcs.yarch.streamsql;
+
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.codehaus.janino.SimpleCompiler;
+import org.yamcs.logging.Log;
+import org.yamcs.yarch.CompiledKeyFilter;
+import org.yamcs.yarch.DataType;
+import org.yamcs.yarch.TableColumnDefinition;
+import org.yamcs.yarch.TableDefinition;
+import org.yamcs.yarch.streamsql.StreamSqlException.ErrCode;
+
+/**
+ * Generates a {@link CompiledKeyFilter} from the <code>column relop constant</code> conditions of a where clause which
+ * refer to the numeric columns of the primary key.
+ * <p>
+ * The generated code reads the values directly from the serialized key as primitives, such that the rows not matching
+ * are rejected without reading and deserializing their value and without boxing.
+ * <p>
+ * Only the tables in format version 3 are supported; in this format the numeric values are serialized big endian with
+ * the sign bit inverted and the strings are null terminated.
+ */
+public class KeyFilterCompiler {
+    static Log log = new Log(KeyFilterCompiler.class);
+
+    final TableDefinition tableDefinition;
+    final List<Condition> conditions = new ArrayList<>();
+
+    public KeyFilterCompiler(TableDefinition tableDefinition) {
+        this.tableDefinition = tableDefinition;
+    }
+
+    /**
+     * Adds a condition if it refers to a numeric key column, otherwise ignores it.
+     */
+    public void addCondition(String columnName, RelOp relOp, Object value) {
+        if (relOp == RelOp.OVERLAP || value == null) {
+            return;
+        }
+        List<TableColumnDefinition> keyDef = tableDefinition.getKeyDefinition();
+        for (int i = 0; i < keyDef.size(); i++) {
+            TableColumnDefinition tcd = keyDef.get(i);
+            if (!tcd.getName().equals(columnName)) {
+                continue;
+            }
+            if (!isNumeric(tcd.getType())) {
+                return;
+            }
+            Number v = toExactValue(tcd.getType(), value);
+            if (v != null) {
+                conditions.add(new Condition(i, relOp, v));
+            } // else the condition will be evaluated on the deserialized tuple
+            return;
+        }
+    }
+
+    /**
+     * Converts a literal to the type of an integer column (byte, short, int, long or timestamp) if it can be
+     * represented exactly in that type.
+     * <p>
+     * A literal with a fractional part or out of the range of the type cannot be compared on the converted value: for
+     * example <code>col &lt; 2.5</code> is not the same as <code>col &lt; 2</code>.
+     * 
+     * @return the converted value or null if the literal cannot be represented exactly
+     */
+    static Number toExactValue(DataType type, Object value) {
+        long l;
+        if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            l = ((Number) value).longValue();
+        } else if (value instanceof Double || value instanceof Float) {
+            double d = ((Number) value).doubleValue();
+            // -2^63 and 2^63 are exactly representable as doubles
+            if (d != Math.rint(d) || d < -0x1p63 || d >= 0x1p63) {
+                return null;
+            }
+            l = (long) d;
+        } else if (value instanceof Number) {
+            try {
+                l = new BigDecimal(value.toString()).longValueExact();
+            } catch (ArithmeticException | NumberFormatException e) {
+                return null;
+            }
+        } else {
+            // strings are parsed with range checking
+            try {
+                Object v = DataType.castAs(type, value);
+                return v instanceof Number ? (Number) v : null;
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        }
+
+        switch (type.val) {
+        case BYTE:
+            return l == (byte) l ? Byte.valueOf((byte) l) : null;
+        case SHORT:
+            return l == (short) l ? Short.valueOf((short) l) : null;
+        case INT:
+            return l == (int) l ? Integer.valueOf((int) l) : null;
+        case LONG:
+        case TIMESTAMP:
+            return l;
+        default:
+            return null;
+        }
+    }
+
+    /**
+     *
+     * @return the compiled filter or null if there is no condition which can be evaluated on the key
+     */
+    public CompiledKeyFilter compile() throws StreamSqlException {
+        if (conditions.isEmpty() || tableDefinition.getFormatVersion() < 3) {
+            return null;
+        }
+        int lastIdx = 0;
+        for (Condition c : conditions) {
+            lastIdx = Math.max(lastIdx, c.keyIdx);
+        }
+
+        String className = "KeyFilter_generated";
+        StringBuilder source = new StringBuilder();
+        source.append("package org.yamcs.yarch;\n")
+                .append("import org.yamcs.utils.ByteArrayUtils;\n")
+                .append("public class " + className + " implements CompiledKeyFilter {\n")
+                .append("\tpublic boolean matches(byte[] key) {\n")
+                .append("\t\tint p = 0;\n");
+
+        List<TableColumnDefinition> keyDef = tableDefinition.getKeyDefinition();
+        for (int i = 0; i <= lastIdx; i++) {
+            DataType type = keyDef.get(i).getType();
+            if (type == DataType.STRING) {
+                source.append("\t\twhile (p < key.length && key[p] != 0) {\n")
+                        .append("\t\t\tp++;\n")
+                        .append("\t\t}\n")
+                        .append("\t\tp++;\n");
+                continue;
+            }
+            int size = getSize(type);
+            if (size < 0) {
+                // the position of the next columns is not known
+                break;
+            }
+            if (hasCondition(i)) {
+                source.append("\t\tif (key.length < p + " + size + ") {\n")
+                        .append("\t\t\treturn true;\n")
+                        .append("\t\t}\n");
+                fillCode_decode(source, i, type);
+                for (Condition c : conditions) {
+                    if (c.keyIdx == i) {
+                        source.append("\t\tif (!(col" + i + " " + c.getOperator() + " " + c.getLiteral()
+                                + ")) {\n")
+                                .append("\t\t\treturn false;\n")
+                                .append("\t\t}\n");
+                    }
+                }
+            }
+            source.append("\t\tp += " + size + ";\n");
+        }
+        source.append("\t\treturn true;\n")
+                .append("\t}\n")
+                .append("}\n");
+
+        try {
+            SimpleCompiler compiler = new SimpleCompiler();
+            compiler.cook(new StringReader(source.toString()));
+            @SuppressWarnings("unchecked")
+            Class<CompiledKeyFilter> cls = (Class<CompiledKeyFilter>) compiler.getClassLoader()
+                    .loadClass("org.yamcs.yarch." + className);
+            return cls.getConstructor().newInstance();
+        } catch (Exception e) {
+            log.warn("Got exception when compiling {} ", source.toString(), e);
+            throw new StreamSqlException(ErrCode.COMPILE_ERROR, e.toString());
+        }
+    }
+
+    private boolean hasCondition(int keyIdx) {
+        for (Condition c : conditions) {
+            if (c.keyIdx == keyIdx) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void fillCode_decode(StringBuilder source, int keyIdx, DataType type) {
+        String var = "col" + keyIdx;
+        switch (type.val) {
+        case BYTE:
+            source.append("\t\tbyte " + var + " = key[p];\n");
+            break;
+        case SHORT:
+            source.append("\t\tshort " + var + " = (short) (ByteArrayUtils.decodeShort(key, p) ^ Short.MIN_VALUE);\n");
+            break;
+        case INT:
+            source.append("\t\tint " + var + " = ByteArrayUtils.decodeInt(key, p) ^ Integer.MIN_VALUE;\n");
+            break;
+        case LONG:
+        case TIMESTAMP:
+            source.append("\t\tlong " + var + " = ByteArrayUtils.decodeLong(key, p) ^ Long.MIN_VALUE;\n");
+            break;
+        default:
+            throw new IllegalStateException("Unexpected type " + type);
+        }
+    }
+
+    static boolean isNumeric(DataType type) {
+        switch (type.val) {
+        case BYTE:
+        case SHORT:
+        case INT:
+        case LONG:
+        case TIMESTAMP:
+            return true;
+        default:
+            return false;
+        }
+    }
+
+    // size of the serialized values or -1 if the size is not fixed
+    private static int getSize(DataType type) {
+        switch (type.val) {
+        case BOOLEAN:
+        case BYTE:
+            return 1;
+        case SHORT:
+        case ENUM:
+            return 2;
+        case INT:
+            return 4;
+        case LONG:
+        case TIMESTAMP:
+        case DOUBLE:
+            return 8;
+        case HRES_TIMESTAMP:
+            return 12;
+        case UUID:
+            return 16;
+        default:
+            return -1;
+        }
+    }
+
+    static class Condition {
+        final int keyIdx;
+        final RelOp relOp;
+        final Number value;
+
+        Condition(int keyIdx, RelOp relOp, Number value) {
+            this.keyIdx = keyIdx;
+            this.relOp = relOp;
+            this.value = value;
+        }
+
+        String getOperator() {
+            switch (relOp) {
+            case EQUAL:
+                return "==";
+            case NOT_EQUAL:
+                return "!=";
+            case GREATER:
+                return ">";
+            case GREATER_OR_EQUAL:
+                return ">=";
+            case LESS:
+                return "<";
+            case LESS_OR_EQUAL:
+                return "<=";
+            default:
+                throw new IllegalStateException("Unexpected operator " + relOp);
+            }
+        }
+
+        String getLiteral() {
+            if (value instanceof Long) {
+                return value + "L";
+            } else {
+                return value.toString();
+            }
+        }
+    }
+}
@@ -52,7 +52,11 @@ public class LimitedStream extends Stream implements StreamSubscriber {
     // Called when the input stream is closed
     @Override
     public void streamClosed(Stream stream) {
-        close();
+        if (stream.getError() != null) {
+            closeWithError(stream.getError());
+        } else {
+            close();
+        }
     }
 
     @Override
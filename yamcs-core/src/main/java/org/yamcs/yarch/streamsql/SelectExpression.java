@@ -2,7 +2,9 @@ package org.yamcs.yarch.streamsql;
 
 import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import org.yamcs.yarch.ColumnDefinition;
 import org.yamcs.yarch.CompiledAggregateExpression;
@@ -16,6 +18,7 @@ import org.yamcs.yarch.TupleDefinition;
 import org.yamcs.yarch.WindowProcessor;
 import org.yamcs.yarch.YarchDatabaseInstance;
 import org.yamcs.yarch.streamsql.StreamSqlException.ErrCode;
+import org.yamcs.yarch.streamsql.funct.CountExpression;
 
 import org.yamcs.utils.parser.ParseException;
 
@@ -234,6 +237,7 @@ public class SelectExpression implements StreamExpression {
             whereClause.addFilter(tupleSourceExpression);
         }
 
+        tupleSourceExpression.setRequiredColumns(getRequiredInputColumns());
         Stream stream = tupleSourceExpression.execute(c);
         CompiledExpression cWhereClause = (whereClause == null) ? null : whereClause.compile();
 
@@ -289,6 +293,42 @@ public class SelectExpression implements StreamExpression {
         }
     }
 
+    /**
+     * Returns the names of the input columns used by the where clause, the select list and the aggregates or null if
+     * all the input columns are needed.
+     */
+    Set<String> getRequiredInputColumns() {
+        if (selectStar || selectList.contains(SelectItem.STAR)) {
+            return null;
+        }
+        Set<ColumnDefinition> inputs = new HashSet<>();
+        if (whereClause != null) {
+            whereClause.collectRequiredInputs(inputs);
+        }
+        if (aggOutputDef != null) {
+            for (AggregateExpression aggExpr : aggList) {
+                if (!(aggExpr instanceof CountExpression)) {
+                    // the other aggregates may read any column of the input
+                    return null;
+                }
+            }
+            if (windowSpec.type == WindowSpecification.Type.FIELD) {
+                inputs.add(inputDef.getColumn(windowSpec.field));
+            }
+        } else {
+            for (SelectItem item : selectList) {
+                item.expr.collectRequiredInputs(inputs);
+            }
+        }
+        Set<String> names = new HashSet<>();
+        for (ColumnDefinition cd : inputs) {
+            if (cd != null) {
+                names.add(cd.getName());
+            }
+        }
+        return names;
+    }
+
     @Override
     public boolean isFinite() {
         return tupleSourceExpression.isFinite();
@@ -1,28 +1,61 @@
 package org.yamcs.yarch.streamsql;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.yamcs.logging.Log;
+import org.yamcs.utils.ByteArrayWrapper;
 import org.yamcs.utils.TimeInterval;
 import org.yamcs.yarch.ColumnDefinition;
+import org.yamcs.yarch.CompiledKeyFilter;
 import org.yamcs.yarch.DataType;
 import org.yamcs.yarch.DbRange;
 import org.yamcs.yarch.ExecutionContext;
 import org.yamcs.yarch.FilterableTarget;
+import org.yamcs.yarch.HistogramIterator;
+import org.yamcs.yarch.HistogramRecord;
 import org.yamcs.yarch.PartitioningSpec;
 import org.yamcs.yarch.TableColumnDefinition;
 import org.yamcs.yarch.TableDefinition;
 import org.yamcs.yarch.TableWalker;
 import org.yamcs.yarch.YarchDatabaseInstance;
+import org.yamcs.yarch.YarchException;
 import org.yamcs.yarch.streamsql.StreamSqlException.ErrCode;
 
 import com.google.common.collect.BiMap;
 
+/**
+ * Builds the {@link TableWalker} used to retrieve the rows of a table, pushing down the conditions of the where clause.
+ * <p>
+ * The walker is chosen based on a simple cost estimation:
+ * <ul>
+ * <li>the conditions on the first column of the primary key are converted into a primary key range;</li>
+ * <li>the conditions on the first column of the secondary index are converted into a secondary key range. The
+ * secondary index is used instead of the primary key range if its estimated cost (including the random lookups of the
+ * rows) is lower;</li>
+ * <li>when scanning the primary key, the equality and in conditions on histogram columns are used to look up in the
+ * histogram the time intervals where the values appear. The partitions not overlapping these intervals are skipped and
+ * the primary key range is restricted to their bounding interval. This is done only if the histograms are complete:
+ * not while they are being rebuilt and not if rows may have been modified without updating them (upsert, load or
+ * update statements).</li>
+ * </ul>
+ */
 public class TableWalkerBuilder implements FilterableTarget {
     static Log log = new Log(TableWalkerBuilder.class);
 
+    // estimated fraction of the rows selected by the conditions on a column
+    static final double SELECTIVITY_EQUAL = 0.01;
+    static final double SELECTIVITY_RANGE = 0.1;
+    static final double SELECTIVITY_HALF_RANGE = 0.33;
+    // cost of retrieving a row via the secondary index relative to reading it during a primary key scan
+    static final double SECONDARY_INDEX_ROW_COST = 4;
+
     final private ExecutionContext ctx;
     final private YarchDatabaseInstance ydb;
     final private TableDefinition tableDefinition;
@@ -36,6 +69,15 @@ public class TableWalkerBuilder implements FilterableTarget {
     // filter on secondary key
     private DbRange skRange;
 
+    // time interval on the first column of the primary key, if it is a timestamp
+    private final TimeInterval keyTimeInterval = new TimeInterval();
+
+    // values for the histogram columns, from the equality and in conditions
+    private final Map<String, Set<Object>> histogramFilter = new HashMap<>();
+
+    // filter evaluated on the serialized primary key
+    private final KeyFilterCompiler keyFilterCompiler;
+
     private boolean ascending = true;
     private boolean follow = false;
 
@@ -43,51 +85,34 @@ public class TableWalkerBuilder implements FilterableTarget {
         this.ctx = ctx;
         this.ydb = ctx.getDb();
         this.tableDefinition = tableDefinition;
+        this.keyFilterCompiler = new KeyFilterCompiler(tableDefinition);
     }
 
     @Override
     public void addRelOpFilter(ColumnExpression cexpr, RelOp relOp, Object value) throws StreamSqlException {
         String columnName = cexpr.getName();
+        keyFilterCompiler.addCondition(columnName, relOp, value);
 
         TableColumnDefinition col0 = tableDefinition.getKeyDefinition().get(0);
         if (col0.getName().equals(columnName)) {
-            byte[] val = null;
-            Object columnValue = null;
-            try {
-                columnValue = DataType.castAs(col0.getType(), value);
-                val = col0.getSerializer().toByteArray(columnValue);
-            } catch (IllegalArgumentException e) {
-                throw new StreamSqlException(ErrCode.ERROR, e.getMessage());
-            }
-            if (pkRange == null) {
-                pkRange = new DbRange();
-            }
-            addToRange(pkRange, relOp, val);
-
-            if (tableDefinition.isPartitionedByTime()) {
-                addPartitionTimeFilter(relOp, (Long) columnValue);
+            // a literal out of the range of the column is only evaluated by the where clause
+            if (fitsInRange(col0.getType(), value)) {
+                addPrimaryKeyFilter(col0, relOp, value);
             }
         } else {
             List<String> sidx = tableDefinition.getSecondaryIndex();
             if (sidx != null && sidx.get(0).equals(columnName)) {
                 TableColumnDefinition tcd = tableDefinition.getColumnDefinition(columnName);
-                byte[] val = null;
-                try {
-                    Object columnValue = DataType.castAs(tcd.getType(), value);
-                    val = tcd.getSerializer().toByteArray(columnValue);
-                } catch (IllegalArgumentException e) {
-                    throw new StreamSqlException(ErrCode.ERROR, e.getMessage());
-                }
-                if (skRange == null) {
-                    skRange = new DbRange();
+                if (fitsInRange(tcd.getType(), value)) {
+                    addSecondaryKeyFilter(tcd, relOp, value);
                 }
-                byte[] b = new byte[val.length+1];
-                b[0] = (byte)(0x70|tcd.getType().getTypeId());
-                System.arraycopy(val, 0, b, 1, val.length);
-                addToRange(skRange, relOp, b);
             }
         }
 
+        if (relOp == RelOp.EQUAL) {
+            addHistogramFilter(columnName, Collections.singleton(value));
+        }
+
         if ((relOp == RelOp.EQUAL) && tableDefinition.hasPartitioning()) {
             PartitioningSpec pspec = tableDefinition.getPartitioningSpec();
             if (cexpr.getName().equals(pspec.valueColumn)) {
@@ -103,19 +128,77 @@ public class TableWalkerBuilder implements FilterableTarget {
         }
     }
 
-    private void addPartitionTimeFilter(RelOp relOp, long time) {
+    private void addPrimaryKeyFilter(TableColumnDefinition col0, RelOp relOp, Object value)
+            throws StreamSqlException {
+        byte[] val = null;
+        Object columnValue = null;
+        try {
+            columnValue = DataType.castAs(col0.getType(), value);
+            val = col0.getSerializer().toByteArray(columnValue);
+        } catch (IllegalArgumentException e) {
+            throw new StreamSqlException(ErrCode.ERROR, e.getMessage());
+        }
+        if (pkRange == null) {
+            pkRange = new DbRange();
+        }
+        addToRange(pkRange, relOp, val);
+
+        if (col0.getType() == DataType.TIMESTAMP) {
+            addTimeFilter(keyTimeInterval, relOp, (Long) columnValue);
+        }
+        if (tableDefinition.isPartitionedByTime()) {
+            addTimeFilter(partitionTimeFilter, relOp, (Long) columnValue);
+        }
+    }
+
+    private void addSecondaryKeyFilter(TableColumnDefinition tcd, RelOp relOp, Object value)
+            throws StreamSqlException {
+        byte[] val = null;
+        try {
+            Object columnValue = DataType.castAs(tcd.getType(), value);
+            val = tcd.getSerializer().toByteArray(columnValue);
+        } catch (IllegalArgumentException e) {
+            throw new StreamSqlException(ErrCode.ERROR, e.getMessage());
+        }
+        if (skRange == null) {
+            skRange = new DbRange();
+        }
+        byte[] b = new byte[val.length+1];
+        b[0] = (byte)(0x70|tcd.getType().getTypeId());
+        System.arraycopy(val, 0, b, 1, val.length);
+        addToRange(skRange, relOp, b);
+    }
+
+    /**
+     * Returns false if the value is a number out of the range of an integer column; its conversion would wrap around.
+     * <p>
+     * A fractional value is truncated towards zero by the conversion. This is fine for the ranges, which are inclusive:
+     * for example <code>col &lt; 2.5</code> gives the range <code>col &lt;= 2</code>.
+     */
+    private static boolean fitsInRange(DataType type, Object value) {
+        if (!KeyFilterCompiler.isNumeric(type) || !(value instanceof Number)) {
+            return true;
+        }
+        if (value instanceof Double || value instanceof Float) {
+            double d = ((Number) value).doubleValue();
+            return KeyFilterCompiler.toExactValue(type, d < 0 ? Math.ceil(d) : Math.floor(d)) != null;
+        }
+        return KeyFilterCompiler.toExactValue(type, value) != null;
+    }
+
+    private void addTimeFilter(TimeInterval interval, RelOp relOp, long time) {
         switch (relOp) {
         case GREATER:
         case GREATER_OR_EQUAL:
-            partitionTimeFilter.setStart(time);
+            interval.setStart(time);
             break;
         case LESS:
         case LESS_OR_EQUAL:
-            partitionTimeFilter.setEnd(time);
+            interval.setEnd(time);
             break;
         case EQUAL:
-            partitionTimeFilter.setStart(time);
-            partitionTimeFilter.setEnd(time);
+            interval.setStart(time);
+            interval.setEnd(time);
             break;
         case NOT_EQUAL:
             // TODO support multiple ranges
@@ -149,11 +232,26 @@ public class TableWalkerBuilder implements FilterableTarget {
         }
     }
 
+    private void addHistogramFilter(String columnName, Set<Object> values) {
+        if (!tableDefinition.hasHistogram() || !tableDefinition.getHistogramColumns().contains(columnName)) {
+            return;
+        }
+        Set<Object> s = histogramFilter.get(columnName);
+        if (s == null) {
+            histogramFilter.put(columnName, new HashSet<>(values));
+        } else {
+            s.retainAll(values);
+        }
+    }
+
     /**
-     * currently adds only filters on value based partitions
+     * currently adds only filters on value based partitions and histogram columns
      */
     @Override
     public void addInFilter(ColumnExpression cexpr, boolean negation, Set<Object> values) throws StreamSqlException {
+        if (!negation) {
+            addHistogramFilter(cexpr.getName(), values);
+        }
         if (!tableDefinition.hasPartitioning()) {
             return;
         }
@@ -218,9 +316,20 @@ public class TableWalkerBuilder implements FilterableTarget {
             follow = false;
         }
         TableWalker tw;
-        if (skRange == null) {
+        if (!useSecondaryIndex()) {
+            List<TimeInterval> histoIntervals = follow ? null : getHistogramIntervals();
+            if (histoIntervals != null && !tableDefinition.isHistogramComplete()) {
+                // a rebuild has started during the lookup
+                histoIntervals = null;
+            }
+            if (histoIntervals != null) {
+                restrictKeyTime(histoIntervals);
+            }
             tw = ydb.getStorageEngine(tableDefinition).newTableWalker(ctx, tableDefinition, ascending, follow);
             tw.setPartitionFilter(partitionTimeFilter, partitionValueFilter);
+            if (histoIntervals != null) {
+                tw.setTimeIntervals(histoIntervals);
+            }
         } else {
             tw = ydb.getStorageEngine(tableDefinition).newSecondaryIndexTableWalker(ydb, tableDefinition, ascending,
                     follow);
@@ -233,6 +342,145 @@ public class TableWalkerBuilder implements FilterableTarget {
         return tw;
     }
 
+    /**
+     * Compiles the conditions on the primary key columns into a filter which can be passed to
+     * {@link TableWalker#setKeyFilter(CompiledKeyFilter)}.
+     * 
+     * @return the compiled filter or null if there is no condition applicable to the serialized key
+     */
+    public CompiledKeyFilter compileKeyFilter() throws StreamSqlException {
+        return keyFilterCompiler.compile();
+    }
+
+    /**
+     * Decides if the secondary index is used instead of scanning the primary key.
+     * <p>
+     * The secondary index walker retrieves the rows in the order of the secondary key so it cannot be used for
+     * descending queries.
+     */
+    boolean useSecondaryIndex() {
+        if (skRange == null || !ascending) {
+            return false;
+        }
+        if (pkRange == null) {
+            return true;
+        }
+        return SECONDARY_INDEX_ROW_COST * selectivity(skRange) < selectivity(pkRange);
+    }
+
+    static double selectivity(DbRange range) {
+        if (range.rangeStart != null && range.rangeEnd != null) {
+            return Arrays.equals(range.rangeStart, range.rangeEnd) ? SELECTIVITY_EQUAL : SELECTIVITY_RANGE;
+        } else if (range.rangeStart != null || range.rangeEnd != null) {
+            return SELECTIVITY_HALF_RANGE;
+        } else {
+            return 1;
+        }
+    }
+
+    /**
+     * Looks up in the histogram the time intervals containing the values of one histogram column.
+     * 
+     * <p>
+     * The histograms are used only if they are known to be complete (see {@link TableDefinition#isHistogramComplete()}),
+     * otherwise the rows missing from the histograms would be silently excluded from the result.
+     * 
+     * @return the sorted list of intervals or null if there is no histogram condition or the histogram cannot be used
+     */
+    List<TimeInterval> getHistogramIntervals() {
+        if (histogramFilter.isEmpty()) {
+            return null;
+        }
+        if (!tableDefinition.isHistogramComplete()) {
+            log.debug("The histograms of {} are incomplete, not using them", tableDefinition.getName());
+            return null;
+        }
+        // any column will do, the most selective one is likely the one with the fewest values
+        String columnName = null;
+        for (Map.Entry<String, Set<Object>> me : histogramFilter.entrySet()) {
+            if (columnName == null || me.getValue().size() < histogramFilter.get(columnName).size()) {
+                columnName = me.getKey();
+            }
+        }
+        TableColumnDefinition tcd = tableDefinition.getColumnDefinition(columnName);
+        Set<ByteArrayWrapper> values = new HashSet<>();
+        for (Object o : histogramFilter.get(columnName)) {
+            try {
+                Object v = DataType.castAs(tcd.getType(), o);
+                if (tcd.getType() == DataType.ENUM && tcd.getEnumIndex((String) v) == null) {
+                    // the value does not appear in the table
+                    continue;
+                }
+                values.add(new ByteArrayWrapper(tcd.getSerializer().toByteArray(v)));
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        }
+
+        List<TimeInterval> result = new ArrayList<>();
+        if (values.isEmpty()) {
+            return result;
+        }
+        // the histogram iterator skips the records ending at the start of the interval
+        TimeInterval interval = new TimeInterval(keyTimeInterval);
+        if (interval.hasStart()) {
+            interval.setStart(interval.getStart() - 1);
+        }
+        try (HistogramIterator it = ydb.getStorageEngine(tableDefinition).getHistogramIterator(ydb,
+                tableDefinition, columnName, interval)) {
+            while (it.hasNext()) {
+                HistogramRecord r = it.next();
+                if (values.contains(new ByteArrayWrapper(r.getColumnv()))) {
+                    result.add(new TimeInterval(r.getStart(), r.getStop()));
+                }
+            }
+        } catch (YarchException e) {
+            log.warn("Cannot read the histogram of {}.{}", tableDefinition.getName(), columnName, e);
+            return null;
+        }
+        result.sort((a, b) -> Long.compare(a.getStart(), b.getStart()));
+
+        // merge the overlapping intervals (the records of different values may overlap)
+        List<TimeInterval> merged = new ArrayList<>();
+        TimeInterval last = null;
+        for (TimeInterval ti : result) {
+            if (last != null && ti.getStart() <= last.getEnd()) {
+                last.setEnd(Math.max(last.getEnd(), ti.getEnd()));
+            } else {
+                last = ti;
+                merged.add(ti);
+            }
+        }
+        log.debug("Histogram lookup on {}.{} returned {} intervals", tableDefinition.getName(), columnName,
+                merged.size());
+        return merged;
+    }
+
+    // restricts the primary key and partition time range to the bounding interval of the histogram intervals
+    private void restrictKeyTime(List<TimeInterval> intervals) {
+        if (intervals.isEmpty()) {
+            return;
+        }
+        long start = intervals.get(0).getStart();
+        long end = intervals.get(intervals.size() - 1).getEnd();
+        TableColumnDefinition col0 = tableDefinition.getKeyDefinition().get(0);
+        if (pkRange == null) {
+            pkRange = new DbRange();
+        }
+        if (!keyTimeInterval.hasStart() || keyTimeInterval.getStart() < start) {
+            addToRange(pkRange, RelOp.GREATER_OR_EQUAL, col0.getSerializer().toByteArray(start));
+            if (tableDefinition.isPartitionedByTime()) {
+                partitionTimeFilter.setStart(start);
+            }
+        }
+        if (!keyTimeInterval.hasEnd() || keyTimeInterval.getEnd() > end) {
+            addToRange(pkRange, RelOp.LESS_OR_EQUAL, col0.getSerializer().toByteArray(end));
+            if (tableDefinition.isPartitionedByTime()) {
+                partitionTimeFilter.setEnd(end);
+            }
+        }
+    }
+
     public void setAscending(boolean ascending) {
         this.ascending = ascending;
     }
@@ -30,6 +30,8 @@ import org.yamcs.yarch.streamsql.StreamSqlException.ErrCode;
  */
 public class TupleSourceExpression implements FilterableTarget {
     static Log log = new Log(TupleSourceExpression.class);
+    // number of table partitions read concurrently
+    static final int PARALLEL_PARTITIONS = Math.min(4, Runtime.getRuntime().availableProcessors());
 
     String objectName = null;
     StreamExpression streamExpression = null;
@@ -44,6 +46,8 @@ public class TupleSourceExpression implements FilterableTarget {
 
     boolean ascending = true;
     boolean follow = false;
+    // if not null, only these columns are required from the table
+    Set<String> requiredColumns;
 
     // after binding
     TupleDefinition definition;
@@ -159,7 +163,14 @@ public class TupleSourceExpression implements FilterableTarget {
             break;
         case TABLE:
             TableWalker tblit = tableWalkerBuilder.build();
-            stream = new TableReaderStream(ydb, tableWalkerBuilder.getTableDefinition(), tblit);
+            tblit.setKeyFilter(tableWalkerBuilder.compileKeyFilter());
+            tblit.setParallelPartitions(PARALLEL_PARTITIONS);
+            TableDefinition tblDef = tableWalkerBuilder.getTableDefinition();
+            TableReaderStream trs = new TableReaderStream(ydb, tblDef, tblit);
+            if (requiredColumns != null) {
+                trs.setValueColumns(tblDef.getValueColumnSet(requiredColumns));
+            }
+            stream = trs;
             break;
         case TABLE_HISTOGRAM:
             HistogramReaderStream histoStream = histogramStreamBuilder.build();
@@ -177,6 +188,17 @@ public class TupleSourceExpression implements FilterableTarget {
         histogramMergeTime = mergeTime;
     }
 
+    /**
+     * Sets the columns which are used by the query; when reading from a table, the other columns are not
+     * deserialized.
+     * 
+     * @param requiredColumns
+     *            the column names or null if all the columns are required
+     */
+    public void setRequiredColumns(Set<String> requiredColumns) {
+        this.requiredColumns = requiredColumns;
+    }
+
     public void setAscending(boolean ascending) {
         this.ascending = ascending;
     }
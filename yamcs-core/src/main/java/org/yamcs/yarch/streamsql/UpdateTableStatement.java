@@ -34,6 +34,8 @@ public class UpdateTableStatement extends SimpleStreamSqlStatement {
     CompiledExpression cwhere = null;
     TableDefinition tableDefinition;
     boolean updateKey = false;
+    // true if the update modifies a key or histogram column
+    boolean updateHistogram = false;
 
     public UpdateTableStatement(String tableName, List<UpdateItem> updateList, Expression whereClause, long limit) {
         this.tableName = tableName;
@@ -48,6 +50,10 @@ public class UpdateTableStatement extends SimpleStreamSqlStatement {
 
         AtomicLong updated = new AtomicLong();
         AtomicLong inspected = new AtomicLong();
+        if (updateHistogram) {
+            // the histograms are not updated, they cannot be used anymore to exclude data from queries
+            tableDefinition.markHistogramIncomplete();
+        }
         try {
             TableWalkerBuilder twb = new TableWalkerBuilder(context, tableDefinition);
             if (whereClause != null) {
@@ -135,6 +141,10 @@ public class UpdateTableStatement extends SimpleStreamSqlStatement {
                 if (tableDefinition.hasKey(ui.colName)) {
                     updateKey = true;
                 }
+                if (tableDefinition.hasHistogram() && (tableDefinition.isIndexedByKey(ui.colName)
+                        || tableDefinition.getHistogramColumns().contains(ui.colName))) {
+                    updateHistogram = true;
+                }
 
 
                 boolean isNull = ui.value instanceof NullExpression
@@ -81,6 +81,15 @@ public class ValueExpression extends Expression {
             code.append(constantValue.toString());
         } else if (constantValue instanceof Long) {
             code.append(constantValue.toString()).append("l");
+        } else if (constantValue instanceof Double) {
+            double d = (Double) constantValue;
+            if (Double.isNaN(d)) {
+                code.append("Double.NaN");
+            } else if (Double.isInfinite(d)) {
+                code.append(d > 0 ? "Double.POSITIVE_INFINITY" : "Double.NEGATIVE_INFINITY");
+            } else {
+                code.append(Double.toString(d));
+            }
         } else if (constantValue instanceof String) {
             code.append('"');
             escapeJavaString((String) constantValue, code);
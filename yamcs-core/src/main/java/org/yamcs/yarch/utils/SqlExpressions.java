@@ -77,13 +77,36 @@ public class SqlExpressions {
 
 
     private static int compareNumbers(Number v1, Number v2) {
-        if ((v1 instanceof Float || v1 instanceof Double) && (v2 instanceof Float || v2 instanceof Double)) {
+        boolean fp1 = v1 instanceof Float || v1 instanceof Double;
+        boolean fp2 = v2 instanceof Float || v2 instanceof Double;
+        if (fp1 && fp2) {
             return Double.compare(v1.doubleValue(), v2.doubleValue());
+        } else if (fp1) {
+            return -compareLongDouble(v2.longValue(), v1.doubleValue());
+        } else if (fp2) {
+            return compareLongDouble(v1.longValue(), v2.doubleValue());
         } else {
             return Long.compare(v1.longValue(), v2.longValue());
         }
     }
 
+    // compares exactly, without truncating the double or rounding the long; NaN is greater than any value
+    private static int compareLongDouble(long l, double d) {
+        if (Double.isNaN(d) || d >= 0x1p63) {
+            return -1;
+        }
+        if (d < -0x1p63) {
+            return 1;
+        }
+        long dl = (long) d;
+        int c = Long.compare(l, dl);
+        if (c != 0) {
+            return c;
+        }
+        double frac = d - dl;
+        return frac > 0 ? -1 : (frac < 0 ? 1 : 0);
+    }
+
     public static Object AND(Object... values) {
         boolean r = true;
         for (Object o : values) {
@@ -0,0 +1,91 @@
+package org.yamcs.algorithms;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+public class ExpressionCompilerTest {
+
+    private static double[] eval(String text, double... input) throws AlgorithmException {
+        ExpressionEvaluator evaluator = new ExpressionCompiler(text, Arrays.asList("a", "b"), Arrays.asList("x", "y"))
+                .compile();
+        double[] output = new double[2];
+        evaluator.evaluate(input, output);
+        return output;
+    }
+
+    @Test
+    public void testArithmetic() throws AlgorithmException {
+        double[] out = eval("x = (a + b) * 2 - -1; y = a % 3 / 2", 7, 3);
+        assertEquals(21, out[0]);
+        assertEquals(0.5, out[1]);
+    }
+
+    @Test
+    public void testConditions() throws AlgorithmException {
+        String text = "big = a > 10 && !(b == 0)\n"
+                + "x = big ? max(a, b, 100) : min(a, b)\n"
+                + "y = big || isNaN(b)";
+        assertEquals(100, eval(text, 11, 1)[0]);
+        assertEquals(1, eval(text, 11, 1)[1]);
+        assertEquals(0, eval(text, 11, 0)[1]);
+        assertEquals(5, eval(text, 5, 7)[0]);
+        assertEquals(1, eval(text, 5, Double.NaN)[1]);
+    }
+
+    @Test
+    public void testTables() throws AlgorithmException {
+        String text = "x = lookup(a, 1, 10, 2, 20, -1)\n"
+                + "y = interpolate(b,\n"
+                + "   -10, 0, // comment\n"
+                + "   0, 100,\n"
+                + "   10, 120)";
+        assertEquals(20, eval(text, 2, 0)[0]);
+        assertEquals(-1, eval(text, 3, 0)[0]);
+        assertEquals(50, eval(text, 0, -5)[1]);
+        assertEquals(110, eval(text, 0, 5)[1]);
+        assertEquals(0, eval(text, 0, -20)[1]);
+        assertEquals(120, eval(text, 0, 20)[1]);
+    }
+
+    @Test
+    public void testNonFiniteLiterals() throws AlgorithmException {
+        double[] out = eval("x = 1e400; y = -1e400", 0, 0);
+        assertEquals(Double.POSITIVE_INFINITY, out[0]);
+        assertEquals(Double.NEGATIVE_INFINITY, out[1]);
+        out = eval("x = interpolate(a, -1e400, 0, 0, 1, 1e400, 2); y = -(-1e400)", 1e300, 0);
+        assertEquals(1, out[0]);
+        assertEquals(Double.POSITIVE_INFINITY, out[1]);
+    }
+
+    @Test
+    public void testRound() throws AlgorithmException {
+        double[] out = eval("x = round(a); y = round(b)", 2.5, -2.5);
+        assertEquals(3, out[0]);
+        assertEquals(-2, out[1]);
+        out = eval("x = round(a); y = round(b)", 0.49999999999999994, Double.NaN);
+        assertEquals(0, out[0]);
+        assertTrue(Double.isNaN(out[1]));
+    }
+
+    @Test
+    public void testErrors() {
+        assertError("x = a +; y = 1", "line 1, column 8");
+        assertError("x = a; y = c", "Unknown name 'c'");
+        assertError("x = a; y = x + true", "expects a number");
+        assertError("x = a\ny = a ? 1 : 2", "line 2");
+        assertError("x = a", "Output 'y' is not assigned");
+        assertError("a = 1; x = 1; y = 1", "Cannot assign the input 'a'");
+        assertError("x = sqrt(a, b); y = 1", "expects one argument");
+        assertError("x = interpolate(a, 1, 1, 0, 2); y = 1", "sorted");
+    }
+
+    private static void assertError(String text, String msg) {
+        AlgorithmException e = assertThrows(AlgorithmException.class, () -> eval(text, 1, 2));
+        assertTrue(e.getMessage().contains(msg), e.getMessage());
+    }
+}
@@ -70,4 +70,25 @@ public class XtceAlgorithmTest {
         pv = params.get(0);
         assertEquals(0.6d, pv.getEngValue().getFloatValue(), 1e-5);
     }
+
+    @Test
+    public void testExpression() {
+        Parameter bv = mdb.getParameter("/BogusSAT/SC001/BusElectronics/Battery_Voltage");
+        Parameter bsce = mdb.getParameter("/BogusSAT/SC001/BusElectronics/Battery_State_Of_Charge_Expression");
+        final ArrayList<ParameterValue> params = new ArrayList<>();
+
+        prm.addRequest(bsce, (ParameterConsumer) (subscriptionId, items) -> params.addAll(items));
+        ParameterValue pv = new ParameterValue(bv);
+        pv.setEngValue(ValueUtility.getFloatValue(12.6f));
+        ppm.process(ProcessingContext.createForTestTm(pv));
+        assertEquals(1, params.size());
+        assertEquals(80d, params.get(0).getEngValue().getFloatValue(), 1e-3);
+
+        // the output evaluated to NaN is not produced
+        params.clear();
+        pv = new ParameterValue(bv);
+        pv.setEngValue(ValueUtility.getFloatValue(-1f));
+        ppm.process(ProcessingContext.createForTestTm(pv));
+        assertEquals(0, params.size());
+    }
 }
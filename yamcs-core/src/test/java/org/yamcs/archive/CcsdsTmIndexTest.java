@@ -2,18 +2,37 @@ package org.yamcs.archive;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
+import org.yamcs.StandardTupleDefinitions;
 import org.yamcs.YConfiguration;
 import org.yamcs.archive.CcsdsTmIndex.CcsdsIndexIterator;
+import org.yamcs.archive.CcsdsTmIndexRebuilder.IntervalRebuilder;
+import org.yamcs.utils.TimeEncoding;
+import org.yamcs.utils.TimeInterval;
+import org.yamcs.yarch.DataType;
+import org.yamcs.yarch.Stream;
+import org.yamcs.yarch.TableDefinition;
+import org.yamcs.yarch.TableWriter;
+import org.yamcs.yarch.TableWriter.InsertMode;
+import org.yamcs.yarch.Tuple;
+import org.yamcs.yarch.TupleDefinition;
+import org.yamcs.yarch.YarchDatabaseInstance;
 import org.yamcs.yarch.YarchTestCase;
+import org.yamcs.yarch.rocksdb.protobuf.Tablespace.TmIndexRebuildInterval;
 
 public class CcsdsTmIndexTest extends YarchTestCase {
 
@@ -98,6 +117,121 @@ public class CcsdsTmIndexTest extends YarchTestCase {
         // tmindex.printApidDb();
     }
 
+    @Test
+    public void testRebuild() throws Exception {
+        ydb.execute("create table " + XtceTmRecorder.TABLE_NAME
+                + "(gentime timestamp, seqNum int, packet binary, primary key(gentime, seqNum))"
+                + " partition by time(gentime('YYYY'))");
+        TableDefinition tblDef = ydb.getTable(XtceTmRecorder.TABLE_NAME);
+        TableWriter tw = ydb.getStorageEngine(tblDef).newTableWriter(ydb, tblDef, InsertMode.INSERT);
+        // apid 100 has a contiguous sequence crossing the boundary between the 2020 and 2021 partitions
+        long t0 = TimeEncoding.parse("2020-12-31T23:59:55");
+        for (int i = 0; i < 10; i++) {
+            tw.onTuple(null, new Tuple(tblDef.getTupleDefinition(),
+                    new Object[] { t0 + i * 1000, i, packet(100, i) }));
+        }
+        // apid 200 has a gap in the sequence count
+        long t1 = TimeEncoding.parse("2022-06-01T00:00:00");
+        for (int i = 0; i < 10; i++) {
+            int seq = i < 5 ? i : i + 1;
+            tw.onTuple(null, new Tuple(tblDef.getTupleDefinition(),
+                    new Object[] { t1 + i * 1000, 100 + i, packet(200, seq) }));
+        }
+        tw.close();
+
+        CcsdsTmIndex tmindex = new CcsdsTmIndex();
+        tmindex.init(ydb.getName(), "test", YConfiguration.wrap(config));
+        tmindex.rebuild(new TimeInterval()).get();
+        verifyRebuild(tmindex, t0, t1);
+        assertNull(tmindex.getRebuildProgress());
+        assertEquals(0, tmindex.tmIndexRecord.getTmIndexRebuildCount());
+
+        // the interval is extended such that the records crossing its limits are rebuilt entirely
+        tmindex.rebuild(new TimeInterval(t0 + 2000, t1 + 2000)).get();
+        verifyRebuild(tmindex, t0, t1);
+
+        // simulate a rebuild interrupted after removing the records, it should be resumed at start
+        tmindex.deleteRecords(t0 - 1000, t1 + 100_000);
+        tmindex.tablespace.updateRecord(ydb.getName(), tmindex.tmIndexRecord.toBuilder()
+                .addTmIndexRebuild(TmIndexRebuildInterval.newBuilder().setEnd(t1 - 1000))
+                .addTmIndexRebuild(TmIndexRebuildInterval.newBuilder().setStart(t1 - 1000)));
+
+        CcsdsTmIndex tmindex1 = new CcsdsTmIndex();
+        tmindex1.init(ydb.getName(), "test1", YConfiguration.wrap(config));
+        tmindex1.startAsync().awaitRunning();
+        CcsdsTmIndexRebuilder rebuilder = tmindex1.rebuilder;
+        if (rebuilder != null) {
+            rebuilder.cf.get();
+        }
+        verifyRebuild(tmindex1, t0, t1);
+        assertEquals(0, tmindex1.tmIndexRecord.getTmIndexRebuildCount());
+        tmindex1.stopAsync().awaitTerminated();
+    }
+
+    @Test
+    public void testRebuildReadError() throws Exception {
+        CcsdsTmIndex tmindex = new CcsdsTmIndex();
+        tmindex.init(ydb.getName(), "test", YConfiguration.wrap(config));
+
+        TupleDefinition tdef = new TupleDefinition();
+        tdef.addColumn(StandardTupleDefinitions.GENTIME_COLUMN, DataType.TIMESTAMP);
+        FailingStream input = new FailingStream(ydb, tdef);
+        ydb.addStream(input);
+        // read the input through a select, as the rebuilder reads the tm table
+        ydb.execute("create stream failing_out as select * from failing_in where gentime >= 0");
+
+        TmIndexRebuildInterval interval = TmIndexRebuildInterval.newBuilder().setStart(0).build();
+        CcsdsTmIndexRebuilder rebuilder = new CcsdsTmIndexRebuilder(tmindex, ydb, List.of(interval));
+        IntervalRebuilder ir = rebuilder.new IntervalRebuilder(interval, ydb.getStream("failing_out"));
+        ir.stream.addSubscriber(ir);
+        ir.stream.start();
+        ir.addPacket((short) 100, 1000, (short) 1);
+
+        input.fail(new IOException("simulated read error"));
+        ExecutionException e = assertThrows(ExecutionException.class, () -> rebuilder.cf.get(10, TimeUnit.SECONDS));
+        assertEquals("simulated read error", e.getCause().getMessage());
+
+        // the partial records of the interval have not been written
+        CcsdsIndexIterator it = tmindex.new CcsdsIndexIterator((short) -1, -1L, -1L);
+        assertNull(it.getNextRecord());
+        it.close();
+    }
+
+    static class FailingStream extends Stream {
+        FailingStream(YarchDatabaseInstance ydb, TupleDefinition tdef) {
+            super(ydb, "failing_in", tdef);
+        }
+
+        void fail(Exception e) {
+            closeWithError(e);
+        }
+
+        @Override
+        public void doStart() {
+        }
+
+        @Override
+        protected void doClose() {
+        }
+    }
+
+    private void verifyRebuild(CcsdsTmIndex tmindex, long t0, long t1) {
+        CcsdsIndexIterator it = tmindex.new CcsdsIndexIterator((short) -1, -1L, -1L);
+        assertEqual(it.getNextRecord(), t0, t0 + 9000, 10);
+        assertEqual(it.getNextRecord(), t1, t1 + 4000, 5);
+        assertEqual(it.getNextRecord(), t1 + 5000, t1 + 9000, 5);
+        assertNull(it.getNextRecord());
+        it.close();
+    }
+
+    private static byte[] packet(int apid, int seq) {
+        ByteBuffer bb = ByteBuffer.allocate(7);
+        bb.putShort((short) (0x0800 | apid));
+        bb.putShort((short) (0xC000 | seq));
+        bb.putShort((short) 0);
+        return bb.array();
+    }
+
     @Test
     @Disabled
     public void testApidIndexSameTimeAndWraparound() throws Exception {
@@ -5,10 +5,15 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.List;
 
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.python.bouncycastle.util.Arrays;
 import org.yamcs.cfdp.pdu.FileDataPacket;
 import org.yamcs.cfdp.pdu.SegmentRequest;
@@ -142,6 +147,65 @@ public class DataFileTest {
         verify(df);
     }
 
+    @Test
+    public void testChecksum() {
+        DataFile df = new DataFile(n);
+        df.addSegment(getSegment(10, 10));
+        df.addSegment(getSegment(5, 20));
+        df.addSegment(getSegment(0, 7));
+        df.addSegment(getSegment(50, 50));
+        df.addSegment(getSegment(23, 30));
+        df.addSegment(getSegment(23, 30));
+
+        assertTrue(df.isComplete());
+        assertEquals(n, df.getReceivedSize());
+        assertEquals(ChecksumCalculator.calculateChecksum(data), df.getChecksum());
+    }
+
+    @Test
+    public void testOnDisk(@TempDir Path tempDir) throws IOException {
+        DataFile df = new DataFile(-1, tempDir, 30);
+        df.addSegment(getSegment(0, 10));
+        df.addSegment(getSegment(20, 10));
+        assertFalse(df.isOnDisk());
+
+        df.addSegment(getSegment(40, 20));
+        assertTrue(df.isOnDisk());
+        df.setSize(n);
+
+        List<SegmentRequest> lmissing = df.getMissingChunks();
+        assertEquals(3, lmissing.size());
+        verifyEquals(10, 20, lmissing.get(0));
+        verifyEquals(30, 40, lmissing.get(1));
+        verifyEquals(60, n, lmissing.get(2));
+        verify(df);
+
+        df.addSegment(getSegment(5, 40));
+        df.addSegment(getSegment(60, n - 60));
+        assertTrue(df.isComplete());
+        assertEquals(ChecksumCalculator.calculateChecksum(data), df.getChecksum());
+        assertArrayEquals(data, df.getData());
+        assertArrayEquals(data, Channels.newInputStream(df.getDataChannel()).readAllBytes());
+
+        df.close();
+        try (var files = Files.list(tempDir)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    public void testOnDiskMissingEnd(@TempDir Path tempDir) throws IOException {
+        DataFile df = new DataFile(n, tempDir, 0);
+        assertTrue(df.isOnDisk());
+        df.addSegment(getSegment(10, 20));
+
+        byte[] expected = new byte[n];
+        System.arraycopy(data, 10, expected, 10, 20);
+        assertArrayEquals(expected, Channels.newInputStream(df.getDataChannel()).readAllBytes());
+        assertArrayEquals(expected, df.getData());
+        df.close();
+    }
+
     private FileDataPacket getSegment(int offset, int length) {
         return new FileDataPacket(Arrays.copyOfRange(data, offset, offset + length), offset, null);
     }
@@ -154,7 +218,7 @@ public class DataFileTest {
     private void verify(DataFile df) {
         byte[] data1 = df.getData();
 
-        for (DataFile.Segment dfs : df.dataFileSegments) {
+        for (DataFile.Segment dfs : df.dataFileSegments.values()) {
             for (int i = (int) dfs.start; i < dfs.end; i++) {
                 assertEquals(data[i], data1[i]);
             }
@@ -0,0 +1,28 @@
+package org.yamcs.http;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+public class HttpUtilsTest {
+
+    @Test
+    public void testParseByteRange() throws Exception {
+        assertArrayEquals(new long[] { 0, 100 }, HttpUtils.parseByteRange("bytes=0-99", 1000));
+        assertArrayEquals(new long[] { 500, 1000 }, HttpUtils.parseByteRange("bytes=500-", 1000));
+        assertArrayEquals(new long[] { 900, 1000 }, HttpUtils.parseByteRange("bytes=-100", 1000));
+        assertArrayEquals(new long[] { 0, 1000 }, HttpUtils.parseByteRange("bytes=-2000", 1000));
+        assertArrayEquals(new long[] { 990, 1000 }, HttpUtils.parseByteRange("bytes=990-2000", 1000));
+
+        // not supported, the complete resource is sent
+        assertNull(HttpUtils.parseByteRange("bytes=0-10,20-30", 1000));
+        assertNull(HttpUtils.parseByteRange("bytes=x-10", 1000));
+        assertNull(HttpUtils.parseByteRange("bytes=20-10", 1000));
+        assertNull(HttpUtils.parseByteRange("items=0-10", 1000));
+
+        assertThrows(RangeNotSatisfiableException.class, () -> HttpUtils.parseByteRange("bytes=1000-", 1000));
+        assertThrows(RangeNotSatisfiableException.class, () -> HttpUtils.parseByteRange("bytes=0-10", 0));
+    }
+}
@@ -0,0 +1,142 @@
+package org.yamcs.http;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+import org.yamcs.protobuf.Pvalue.AcquisitionStatus;
+import org.yamcs.protobuf.Pvalue.ParameterValue;
+import org.yamcs.protobuf.ServerMessage;
+import org.yamcs.protobuf.SubscribeParametersData;
+import org.yamcs.protobuf.SubscribedParameterInfo;
+import org.yamcs.protobuf.Yamcs.AggregateValue;
+import org.yamcs.protobuf.Yamcs.ArchiveRecord;
+import org.yamcs.protobuf.Yamcs.NamedObjectId;
+import org.yamcs.protobuf.Yamcs.Value;
+import org.yamcs.protobuf.Yamcs.Value.Type;
+
+import com.google.gson.JsonParser;
+import com.google.protobuf.Any;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.Duration;
+import com.google.protobuf.Int32Value;
+import com.google.protobuf.Message;
+import com.google.protobuf.StringValue;
+import com.google.protobuf.Timestamp;
+import com.google.protobuf.util.JsonFormat;
+import com.google.protobuf.util.JsonFormat.TypeRegistry;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.UnpooledByteBufAllocator;
+
+public class JsonEncoderTest {
+    TypeRegistry typeRegistry = TypeRegistry.newBuilder()
+            .add(SubscribeParametersData.getDescriptor())
+            .add(Int32Value.getDescriptor())
+            .build();
+    JsonFormat.Printer printer = JsonFormat.printer().usingTypeRegistry(typeRegistry);
+    JsonEncoder encoder = new JsonEncoder(printer);
+
+    @Test
+    public void testValues() throws Exception {
+        verify(Value.newBuilder().setType(Type.FLOAT).setFloatValue(3.14f).build());
+        verify(Value.newBuilder().setType(Type.FLOAT).setFloatValue(Float.NaN).build());
+        verify(Value.newBuilder().setType(Type.DOUBLE).setDoubleValue(Double.NEGATIVE_INFINITY).build());
+        verify(Value.newBuilder().setType(Type.DOUBLE).setDoubleValue(1e-300).build());
+        verify(Value.newBuilder().setType(Type.UINT32).setUint32Value(0xFFFFFFF0).build());
+        verify(Value.newBuilder().setType(Type.SINT32).setSint32Value(-5).build());
+        verify(Value.newBuilder().setType(Type.UINT64).setUint64Value(-2L).build());
+        verify(Value.newBuilder().setType(Type.SINT64).setSint64Value(Long.MIN_VALUE).build());
+        verify(Value.newBuilder().setType(Type.BINARY).setBinaryValue(ByteString.copyFrom(new byte[] { 0, 1, -1 }))
+                .build());
+        verify(Value.newBuilder().setType(Type.BOOLEAN).setBooleanValue(false).build());
+        verify(Value.newBuilder().setType(Type.STRING)
+                .setStringValue("quote \" backslash \\ newline \n tab \t ctrl \u0001 unicode é ")
+                .build());
+        verify(Value.newBuilder().setType(Type.AGGREGATE).setAggregateValue(AggregateValue.newBuilder()
+                .addName("a").addValue(Value.newBuilder().setType(Type.UINT32).setUint32Value(1))
+                .addName("b").addValue(Value.newBuilder().setType(Type.STRING).setStringValue("x")))
+                .build());
+        verify(Value.newBuilder().setType(Type.ARRAY)
+                .addArrayValue(Value.newBuilder().setType(Type.UINT32).setUint32Value(1))
+                .addArrayValue(Value.newBuilder().setType(Type.UINT32).setUint32Value(2))
+                .build());
+        verify(Value.getDefaultInstance());
+    }
+
+    @Test
+    public void testMessages() throws Exception {
+        ParameterValue pv = ParameterValue.newBuilder()
+                .setId(NamedObjectId.newBuilder().setName("/a/b"))
+                .setEngValue(Value.newBuilder().setType(Type.DOUBLE).setDoubleValue(2.5))
+                .setGenerationTime(Timestamp.newBuilder().setSeconds(1700000000).setNanos(123000000))
+                .setAcquisitionStatus(AcquisitionStatus.EXPIRED)
+                .setExpireMillis(1500)
+                .setNumericId(7)
+                .build();
+        verify(pv);
+
+        SubscribeParametersData data = SubscribeParametersData.newBuilder()
+                .putMapping(1, NamedObjectId.newBuilder().setName("/a/b").build())
+                .putMapping(2, NamedObjectId.newBuilder().setName("c").setNamespace("ns").build())
+                .putInfo(1, SubscribedParameterInfo.newBuilder().setParameter("/a/b").setUnits("m").build())
+                .addInvalid(NamedObjectId.newBuilder().setName("x"))
+                .addValues(pv)
+                .build();
+        verify(data);
+
+        verify(ArchiveRecord.newBuilder().setNum(3).putExtra("k\"", "v").build());
+    }
+
+    @Test
+    public void testWellKnownTypes() throws Exception {
+        verify(Timestamp.newBuilder().setSeconds(-1).build());
+        verify(Int32Value.of(0));
+        verify(StringValue.of("s"));
+        verify(Duration.newBuilder().setSeconds(5).build());
+        verify(Any.pack(Int32Value.of(3)));
+        verify(Any.pack(SubscribeParametersData.getDefaultInstance()));
+    }
+
+    @Test
+    public void testServerMessage() throws Exception {
+        SubscribeParametersData data = SubscribeParametersData.newBuilder()
+                .addValues(ParameterValue.newBuilder().setNumericId(3)
+                        .setEngValue(Value.newBuilder().setType(Type.UINT32).setUint32Value(1)))
+                .build();
+        verifyServerMessage(new PreEncodedServerMessage("parameters", 5, 10, PreEncodedMessage.of(data)));
+        verifyServerMessage(new PreEncodedServerMessage("reply", 0, 0,
+                PreEncodedMessage.of(SubscribeParametersData.getDefaultInstance())));
+        verifyServerMessage(new PreEncodedServerMessage("time", 2, 1, PreEncodedMessage.of(Int32Value.of(4))));
+    }
+
+    private void verifyServerMessage(PreEncodedServerMessage msg) throws Exception {
+        Message data = ((WrappedMessage) msg.data()).message;
+        ServerMessage expected = ServerMessage.newBuilder()
+                .setType(msg.type())
+                .setCall(msg.call())
+                .setSeq(msg.seq())
+                .setData(Any.pack(data, HttpServer.TYPE_URL_PREFIX))
+                .build();
+
+        ByteBuf buf = WebSocketServerMessageHandler.encodeProtobuf(UnpooledByteBufAllocator.DEFAULT, msg);
+        byte[] b = new byte[buf.readableBytes()];
+        buf.readBytes(b);
+        buf.release();
+        assertEquals(expected.toByteString(), ByteString.copyFrom(b));
+
+        String json = WebSocketServerMessageHandler.encodeJson(msg, encoder).toString();
+        assertEquals(JsonParser.parseString(printer.print(expected)), JsonParser.parseString(json));
+        ServerMessage.Builder parsed = ServerMessage.newBuilder();
+        JsonFormat.parser().usingTypeRegistry(typeRegistry).merge(json, parsed);
+        assertEquals(expected, parsed.build());
+    }
+
+    private void verify(Message msg) throws Exception {
+        String json = encoder.encode(msg);
+        assertEquals(JsonParser.parseString(printer.print(msg)), JsonParser.parseString(json), json);
+
+        Message.Builder parsed = msg.newBuilderForType();
+        JsonFormat.parser().usingTypeRegistry(typeRegistry).merge(json, parsed);
+        assertEquals(msg, parsed.buildPartial());
+    }
+}
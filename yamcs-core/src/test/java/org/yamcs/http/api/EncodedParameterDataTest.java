@@ -0,0 +1,90 @@
+package org.yamcs.http.api;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.yamcs.http.JsonEncoder;
+import org.yamcs.http.api.ParameterEncodingCache.EncodedParameterValue;
+import org.yamcs.parameter.ParameterValue;
+import org.yamcs.protobuf.Pvalue.AcquisitionStatus;
+import org.yamcs.protobuf.SubscribeParametersData;
+import org.yamcs.utils.TimeEncoding;
+import org.yamcs.utils.ValueUtility;
+
+import com.google.protobuf.util.JsonFormat;
+
+public class EncodedParameterDataTest {
+
+    @BeforeAll
+    public static void beforeClass() {
+        TimeEncoding.setUp();
+    }
+
+    @Test
+    public void testEncoding() throws Exception {
+        ParameterValue pv1 = new ParameterValue("p1");
+        pv1.setRawValue(ValueUtility.getUint32Value(3));
+        pv1.setEngValue(ValueUtility.getFloatValue(3.14f));
+        pv1.setGenerationTime(1000);
+        pv1.setAcquisitionTime(2000);
+
+        ParameterValue pv2 = new ParameterValue("p2");
+        pv2.setEngValue(ValueUtility.getStringValue("a \"quoted\" string"));
+        pv2.setGenerationTime(1000);
+
+        ParameterEncodingCache cache = new ParameterEncodingCache();
+        EncodedParameterData data = new EncodedParameterData();
+        data.add(cache.get(pv1), 1);
+        data.add(cache.get(pv2), 300);
+        data.add(cache.get(pv1), 70000);
+
+        SubscribeParametersData expected = SubscribeParametersData.newBuilder()
+                .addValues(pv1.toGpb(1))
+                .addValues(pv2.toGpb(300))
+                .addValues(pv1.toGpb(70000))
+                .build();
+
+        assertEquals(expected, SubscribeParametersData.parseFrom(data.toByteString()));
+
+        SubscribeParametersData.Builder fromJson = SubscribeParametersData.newBuilder();
+        JsonFormat.parser().merge(toJson(data), fromJson);
+        assertEquals(expected, fromJson.build());
+    }
+
+    @Test
+    public void testEmpty() throws Exception {
+        EncodedParameterData data = new EncodedParameterData();
+        assertEquals(0, data.toByteString().size());
+
+        SubscribeParametersData.Builder fromJson = SubscribeParametersData.newBuilder();
+        JsonFormat.parser().merge(toJson(data), fromJson);
+        assertEquals(SubscribeParametersData.getDefaultInstance(), fromJson.build());
+    }
+
+    @Test
+    public void testCache() throws Exception {
+        ParameterValue pv = new ParameterValue("p1");
+        pv.setEngValue(ValueUtility.getDoubleValue(1));
+        pv.setGenerationTime(1000);
+
+        ParameterEncodingCache cache = new ParameterEncodingCache();
+        EncodedParameterValue epv = cache.get(pv);
+        assertSame(epv, cache.get(pv));
+
+        // the same value object is delivered again when it expires
+        pv.setExpired();
+        EncodedParameterValue epv1 = cache.get(pv);
+        assertNotSame(epv, epv1);
+        assertEquals(AcquisitionStatus.EXPIRED,
+                org.yamcs.protobuf.Pvalue.ParameterValue.parseFrom(epv1.getProtobuf()).getAcquisitionStatus());
+    }
+
+    static String toJson(EncodedParameterData data) throws Exception {
+        StringBuilder sb = new StringBuilder("{");
+        data.writeJsonFields(new JsonEncoder(JsonFormat.printer()), sb, true);
+        return sb.append('}').toString();
+    }
+}
@@ -2,7 +2,10 @@ package org.yamcs.mdb;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
@@ -10,6 +13,7 @@ import java.util.Map;
 
 import org.junit.jupiter.api.Test;
 import org.yamcs.YConfiguration;
+import org.yamcs.xtce.BooleanParameterType;
 import org.yamcs.xtce.Parameter;
 import org.yamcs.xtce.SequenceContainer;
 import org.yamcs.xtce.SpaceSystem;
@@ -66,4 +70,53 @@ public class MdbFactoryTest {
         assertNotNull(rr);
         assertEquals("/REFMDB/SUBSYS1/IntegerPara1_1", rr.getNameDescription().getQualifiedName());
     }
+
+    @Test
+    public void testLeafSnapshot() throws Exception {
+        YConfiguration.setupTest("refmdb");
+        MdbFactory.LoaderTree lt = new MdbFactory.LoaderTree(
+                new XtceLoader("src/test/resources/xtce/BogusSAT-1.xml"));
+
+        List<SpaceSystem> ssList = lt.load(false, true).ssList;
+        assertEquals(1, ssList.size());
+        SpaceSystem ss = ssList.get(0);
+        // the references within the file have been resolved before saving the snapshot
+        assertTrue(ss.getSubsystem("SC001").getUnresolvedReferences().isEmpty());
+
+        // the unresolved references are not serialized: null means that the space system comes from the snapshot
+        List<SpaceSystem> ssList1 = lt.load(true, false).ssList;
+        assertEquals(1, ssList1.size());
+        SpaceSystem ss1 = ssList1.get(0);
+        assertNull(ss1.getUnresolvedReferences());
+        assertEquals(ss.getName(), ss1.getName());
+        SpaceSystem bus = ss1.getSubsystem("SC001").getSubsystem("BusElectronics");
+        assertEquals(ss.getSubsystem("SC001").getSubsystem("BusElectronics").getParameters().size(),
+                bus.getParameters().size());
+    }
+
+    @Test
+    public void testParallelLoad() throws Exception {
+        YConfiguration.setupTest("refmdb");
+        MdbFactory.reset();
+
+        List<YConfiguration> mdbConfigs = new ArrayList<>();
+        for (String f : Arrays.asList("refsolver1.xml", "refsolver2.xml", "refsolver3.xml", "BogusSAT-1.xml")) {
+            Map<String, Object> m = new HashMap<>();
+            m.put("type", "xtce");
+            m.put("spec", "src/test/resources/xtce/" + f);
+            mdbConfigs.add(YConfiguration.wrap(m));
+        }
+        Mdb mdb = MdbFactory.createInstance(mdbConfigs, false, false);
+
+        // the space systems are added in the order of the configuration
+        List<String> names = new ArrayList<>();
+        for (SpaceSystem ss : mdb.getRootSpaceSystem().getSubSystems()) {
+            names.add(ss.getName());
+        }
+        assertEquals(Arrays.asList("refsolver1", "refsolver2", "refsolver3", "BogusSAT", "yamcs"), names);
+
+        // the references between the space systems loaded in parallel are resolved
+        Parameter para = mdb.getParameter("/refsolver1/bool1");
+        assertEquals(12, ((BooleanParameterType) para.getParameterType()).getEncoding().getSizeInBits());
+    }
 }
@@ -0,0 +1,81 @@
+package org.yamcs.mdb;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.yamcs.YConfiguration;
+import org.yamcs.xtce.Parameter;
+
+public class MdbSnapshotTest {
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeAll
+    public static void beforeClass() {
+        YConfiguration.setupTest(null);
+    }
+
+    @Test
+    public void testWriteRead() throws Exception {
+        Mdb mdb = MdbFactory.createInstanceByConfig("refmdb", false);
+        File f = tempDir.resolve("refmdb.serialized").toFile();
+        MdbSnapshot.write(mdb, f);
+
+        Mdb mdb1 = (Mdb) MdbSnapshot.read(f);
+        assertEquals(mdb.getParameterNames().size(), mdb1.getParameterNames().size());
+        assertEquals(mdb.getSequenceContainers().size(), mdb1.getSequenceContainers().size());
+        assertEquals(mdb.getMetaCommands().size(), mdb1.getMetaCommands().size());
+
+        Parameter p = mdb1.getParameter("/REFMDB/SUBSYS1/IntegerPara1_1");
+        assertNotNull(p);
+        assertSame(p, mdb1.getParameter("/REFMDB/SUBSYS1", "IntegerPara1_1"));
+        assertEquals(mdb.getParameter("/REFMDB/SUBSYS1/IntegerPara1_1").getParameterType().getName(),
+                p.getParameterType().getName());
+    }
+
+    @Test
+    public void testStringInterning() throws Exception {
+        String s1 = new String("/REFMDB/SUBSYS1");
+        String s2 = new String("/REFMDB/SUBSYS1");
+
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new MdbSnapshot.SnapshotOutputStream(bout)) {
+            out.writeObject(new String[] { s1, s2 });
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bout.toByteArray()))) {
+            String[] a = (String[]) in.readObject();
+            assertEquals(s1, a[0]);
+            assertSame(a[0], a[1]);
+        }
+    }
+
+    @Test
+    public void testRejectPlainSerialization() throws Exception {
+        Mdb mdb = MdbFactory.createInstanceByConfig("refmdb", false);
+        File f = tempDir.resolve("old.serialized").toFile();
+        try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(f))) {
+            out.writeObject(mdb);
+        }
+        assertThrows(InvalidClassException.class, () -> MdbSnapshot.read(f));
+
+        // the rejected file is replaced by a snapshot
+        MdbSnapshot.write(mdb, f);
+        Mdb mdb1 = (Mdb) MdbSnapshot.read(f);
+        assertEquals(mdb.getParameterNames().size(), mdb1.getParameterNames().size());
+    }
+}
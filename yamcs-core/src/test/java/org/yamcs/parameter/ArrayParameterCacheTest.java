@@ -198,6 +198,56 @@ public class ArrayParameterCacheTest {
 
     }
 
+    @Test
+    public void testOffHeap() {
+        ParameterCacheConfig pcc = new ParameterCacheConfig(true, true, 1000, 4096, true);
+        ArrayParameterCache pcache = new ArrayParameterCache("test", pcc);
+
+        List<ParameterValue> expectedPVlist = new ArrayList<>();
+        // the first 16 values fill the table, the values 16 to 22 overwrite the oldest ones because they are more than
+        // one second apart and the following ones double the capacity while the head of the circular buffer is not 0
+        for (int i = 0; i < 100; i++) {
+            long t = i <= 16 ? i * 100L : 1600 + i;
+            ParameterValue pv1 = getDoubleParameterValue(p1, t);
+            ParameterValue pv2 = getBooleanParameterValue(p2, t);
+            expectedPVlist.add(pv1);
+            pcache.update(Arrays.asList(pv1, pv2));
+        }
+
+        List<ParameterValue> pvlist = pcache.getAllValues(p1);
+        assertEquals(93, pvlist.size());
+        for (int i = 0; i < 93; i++) {
+            TestUtils.checkEquals(expectedPVlist.get(99 - i), pvlist.get(i));
+        }
+
+        pvlist = pcache.getAllValues(p2, 1620, 1650);
+        assertEquals(30, pvlist.size());
+        for (int i = 0; i < 30; i++) {
+            TestUtils.checkEquals(getBooleanParameterValue(p2, 1650 - i), pvlist.get(i));
+        }
+    }
+
+    @Test
+    public void testUnorderedRetrieval() {
+        ParameterCacheConfig pcc = new ParameterCacheConfig(true, true, 10000, 4096);
+        ArrayParameterCache pcache = new ArrayParameterCache("test", pcc);
+
+        for (int i = 0; i < 50; i++) {
+            pcache.update(Arrays.asList(getUint64ParameterValue(p1, i * 10L)));
+        }
+        List<ParameterValue> pvlist = pcache.getAllValues(p1, 100, 200);
+        assertEquals(10, pvlist.size());
+        TestUtils.checkEquals(getUint64ParameterValue(p1, 200), pvlist.get(0));
+        TestUtils.checkEquals(getUint64ParameterValue(p1, 110), pvlist.get(9));
+
+        // adding a value older than the newest one means the table cannot be binary searched anymore
+        pcache.update(Arrays.asList(getUint64ParameterValue(p1, 155)));
+        pvlist = pcache.getAllValues(p1, 100, 200);
+        assertEquals(11, pvlist.size());
+        TestUtils.checkEquals(getUint64ParameterValue(p1, 155), pvlist.get(0));
+        TestUtils.checkEquals(getUint64ParameterValue(p1, 200), pvlist.get(1));
+    }
+
     ParameterValue getUint64ParameterValue(Parameter p, long t) {
         ParameterValue pv = new ParameterValue(p);
         pv.setGenerationTime(t);
@@ -206,6 +256,22 @@ public class ArrayParameterCacheTest {
         return pv;
     }
 
+    ParameterValue getDoubleParameterValue(Parameter p, long t) {
+        ParameterValue pv = new ParameterValue(p);
+        pv.setGenerationTime(t);
+        pv.setAcquisitionTime(t + 5);
+        pv.setRawValue(ValueUtility.getUint32Value((int) t));
+        pv.setEngineeringValue(ValueUtility.getDoubleValue(t / 10.0));
+        return pv;
+    }
+
+    ParameterValue getBooleanParameterValue(Parameter p, long t) {
+        ParameterValue pv = new ParameterValue(p);
+        pv.setGenerationTime(t);
+        pv.setEngineeringValue(ValueUtility.getBooleanValue(t % 3 == 0));
+        return pv;
+    }
+
     ParameterValue getFloatParameterValue(Parameter p, long t) {
         ParameterValue pv = new ParameterValue(p);
         pv.setGenerationTime(t);
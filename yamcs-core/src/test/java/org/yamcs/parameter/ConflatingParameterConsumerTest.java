@@ -0,0 +1,173 @@
+package org.yamcs.parameter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.yamcs.protobuf.Yamcs.NamedObjectId;
+
+public class ConflatingParameterConsumerTest {
+    ScheduledThreadPoolExecutor timer;
+    List<List<ParameterValueWithId>> received = new ArrayList<>();
+    List<Integer> receivedSubscriptionIds = new ArrayList<>();
+    ConflatingParameterConsumer conflator;
+
+    @BeforeEach
+    public void before() {
+        timer = new ScheduledThreadPoolExecutor(1);
+        // the period is long enough for the test to flush manually
+        conflator = new ConflatingParameterConsumer((subscriptionId, params) -> {
+            received.add(params);
+            receivedSubscriptionIds.add(subscriptionId);
+        }, timer, 3600_000);
+    }
+
+    @AfterEach
+    public void after() {
+        conflator.quit();
+        timer.shutdown();
+    }
+
+    @Test
+    public void testLatestWins() {
+        ParameterValueWithId a1 = pvwi("a");
+        ParameterValueWithId b1 = pvwi("b");
+        ParameterValueWithId a2 = pvwi("a");
+        ParameterValueWithId c1 = pvwi("c");
+        ParameterValueWithId a3 = pvwi("a");
+
+        conflator.update(1, Arrays.asList(a1, b1));
+        conflator.update(1, Arrays.asList(a2, c1));
+        conflator.update(1, Arrays.asList(a3));
+        conflator.flush();
+
+        assertEquals(1, received.size());
+        List<ParameterValueWithId> l = received.get(0);
+        assertEquals(3, l.size());
+        assertSame(a3, l.get(0));
+        assertSame(b1, l.get(1));
+        assertSame(c1, l.get(2));
+
+        // nothing pending
+        conflator.flush();
+        assertEquals(1, received.size());
+
+        ParameterValueWithId b2 = pvwi("b");
+        conflator.update(1, Arrays.asList(b2));
+        conflator.flush();
+        assertEquals(2, received.size());
+        assertEquals(Arrays.asList(b2), received.get(1));
+    }
+
+    @Test
+    public void testManyIds() {
+        List<ParameterValueWithId> l = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            l.add(pvwi("p" + i));
+        }
+        conflator.update(1, l);
+        conflator.update(1, l);
+        conflator.flush();
+
+        assertEquals(1, received.size());
+        assertEquals(l, received.get(0));
+    }
+
+    @Test
+    public void testRemove() {
+        ParameterValueWithId a1 = pvwi("a");
+        ParameterValueWithId b1 = pvwi("b");
+        ParameterValueWithId c1 = pvwi("c");
+        conflator.update(1, Arrays.asList(a1, b1, c1));
+        conflator.remove(Arrays.asList(id("b")));
+        conflator.flush();
+        assertEquals(Arrays.asList(a1, c1), received.get(0));
+
+        // the slots of the removed ids are reused
+        for (int i = 0; i < 100; i++) {
+            ParameterValueWithId pvwi = pvwi("p" + i);
+            conflator.update(1, Arrays.asList(pvwi));
+            conflator.remove(Arrays.asList(pvwi.getId()));
+        }
+        assertEquals(3, conflator.getNumSlots());
+
+        conflator.update(1, Arrays.asList(pvwi("d"), pvwi("e")));
+        conflator.retain(Arrays.asList(id("a"), id("e")));
+        conflator.flush();
+        assertEquals(1, received.get(1).size());
+        assertEquals(id("e"), received.get(1).get(0).getId());
+        assertEquals(4, conflator.getNumSlots());
+    }
+
+    @Test
+    public void testSubscriptionIds() {
+        ParameterValueWithId a1 = pvwi("a");
+        ParameterValueWithId b1 = pvwi("b");
+        ParameterValueWithId c1 = pvwi("c");
+        conflator.update(1, Arrays.asList(a1));
+        conflator.update(2, Arrays.asList(b1, c1));
+        conflator.flush();
+
+        assertEquals(Arrays.asList(1, 2), receivedSubscriptionIds);
+        assertEquals(Arrays.asList(a1), received.get(0));
+        assertEquals(Arrays.asList(b1, c1), received.get(1));
+    }
+
+    @Test
+    public void testQuit() {
+        ParameterValueWithId a1 = pvwi("a");
+        conflator.update(1, Arrays.asList(a1));
+        conflator.quit();
+        assertEquals(Arrays.asList(Arrays.asList(a1)), received);
+
+        // the updates after quit are ignored
+        conflator.update(1, Arrays.asList(pvwi("b")));
+        conflator.flush();
+        assertEquals(1, received.size());
+    }
+
+    @Test
+    public void testCancel() {
+        conflator.update(1, Arrays.asList(pvwi("a")));
+        conflator.cancel();
+        conflator.flush();
+        assertTrue(received.isEmpty());
+    }
+
+    @Test
+    public void testPeriodic() throws Exception {
+        List<ParameterValueWithId> l = new ArrayList<>();
+        ConflatingParameterConsumer c = new ConflatingParameterConsumer((subscriptionId, params) -> {
+            synchronized (l) {
+                l.addAll(params);
+                l.notify();
+            }
+        }, timer, 10);
+        ParameterValueWithId a = pvwi("a");
+        c.update(1, Arrays.asList(a));
+        synchronized (l) {
+            if (l.isEmpty()) {
+                l.wait(10_000);
+            }
+        }
+        c.quit();
+        assertEquals(Arrays.asList(a), l);
+    }
+
+    static ParameterValueWithId pvwi(String name) {
+        ParameterValue pv = new ParameterValue(name);
+        return new ParameterValueWithId(pv, id(name));
+    }
+
+    static NamedObjectId id(String name) {
+        return NamedObjectId.newBuilder().setName(name).build();
+    }
+}
@@ -3,8 +3,17 @@ package org.yamcs.parameter;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.util.AbstractCollection;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
@@ -112,4 +121,146 @@ public class LastValueCacheTest {
         assertEquals(p1v1, lvc.getValueFromEnd(p1, 2));
         assertEquals(p1v0, lvc.getValueFromEnd(p1, 3));
     }
+
+    @Test
+    public void testGetValues() {
+        Parameter p2 = new Parameter("p2");
+        LastValueCache lvc = new LastValueCache(Arrays.asList(p0v0));
+        lvc.enableBuffering(p1, 2);
+        lvc.add(p1v0);
+        lvc.add(p1v1);
+
+        assertEquals(Arrays.asList(p0v0, p1v1), lvc.getValues(Arrays.asList(p0, p1, p2)));
+        ParameterValue p2v0 = new ParameterValue(p2);
+        lvc.add(p2v0);
+        assertEquals(Arrays.asList(p1v1, p2v0), lvc.getValues(Arrays.asList(p1, p2)));
+        assertEquals(2, lvc.getValues().size());
+    }
+
+    @Test
+    public void testConcurrentUpdates() throws Exception {
+        int numThreads = 4;
+        int n = 10000;
+        Parameter[] params = new Parameter[numThreads];
+        for (int i = 0; i < numThreads; i++) {
+            params[i] = new Parameter("pc" + i);
+        }
+        LastValueCache lvc = new LastValueCache();
+        lvc.enableBuffering(params[0], 5);
+
+        Thread[] threads = new Thread[numThreads];
+        for (int i = 0; i < numThreads; i++) {
+            Parameter p = params[i];
+            threads[i] = new Thread(() -> {
+                for (int k = 0; k < n; k++) {
+                    ParameterValue pv = new ParameterValue(p);
+                    pv.setGenerationTime(k);
+                    lvc.add(pv);
+                    if (k == n / 2) {
+                        lvc.enableBuffering(p, 10);
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        for (Parameter p : params) {
+            assertEquals(n - 1, lvc.getValue(p).getGenerationTime());
+            assertEquals(n - 10, lvc.getValueFromEnd(p, 9).getGenerationTime());
+        }
+    }
+
+    @Test
+    public void testConsistentBatches() throws Exception {
+        Parameter pa = new Parameter("pa");
+        Parameter pb = new Parameter("pb");
+        LastValueCache lvc = new LastValueCache();
+        int n = 20000;
+
+        Thread writer = new Thread(() -> {
+            for (int k = 0; k < n; k++) {
+                ParameterValue pva = new ParameterValue(pa);
+                pva.setGenerationTime(k);
+                ParameterValue pvb = new ParameterValue(pb);
+                pvb.setGenerationTime(k);
+                lvc.addAll(Arrays.asList(pva, pvb));
+            }
+        });
+        writer.start();
+        while (writer.isAlive()) {
+            List<ParameterValue> l = lvc.getValues(Arrays.asList(pa, pb));
+            if (l.size() == 2) {
+                assertEquals(l.get(0).getGenerationTime(), l.get(1).getGenerationTime());
+            }
+        }
+        writer.join();
+        assertEquals(n - 1, lvc.getValue(pb).getGenerationTime());
+    }
+
+    @Test
+    public void testAddAllNotBlockedByReader() throws Exception {
+        Parameter pa = new Parameter("pa");
+        Parameter pb = new Parameter("pb");
+        LastValueCache lvc = new LastValueCache();
+        lvc.addAll(Arrays.asList(pvWithTime(pa, 0), pvWithTime(pb, 0)));
+
+        // the first iteration of the reader stops after having read pa, until released
+        CountDownLatch reading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger iterations = new AtomicInteger();
+        Collection<Parameter> plist = new AbstractCollection<>() {
+            @Override
+            public Iterator<Parameter> iterator() {
+                boolean first = iterations.getAndIncrement() == 0;
+                Iterator<Parameter> it = Arrays.asList(pa, pb).iterator();
+                return new Iterator<>() {
+                    int k = 0;
+
+                    @Override
+                    public boolean hasNext() {
+                        return it.hasNext();
+                    }
+
+                    @Override
+                    public Parameter next() {
+                        if (first && k++ == 1) {
+                            reading.countDown();
+                            try {
+                                release.await();
+                            } catch (InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                            }
+                        }
+                        return it.next();
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return 2;
+            }
+        };
+
+        CompletableFuture<List<ParameterValue>> reader = CompletableFuture.supplyAsync(() -> lvc.getValues(plist));
+        assertTrue(reading.await(10, TimeUnit.SECONDS));
+
+        CompletableFuture.runAsync(() -> lvc.addAll(Arrays.asList(pvWithTime(pa, 1), pvWithTime(pb, 1))))
+                .get(10, TimeUnit.SECONDS);
+
+        release.countDown();
+        List<ParameterValue> l = reader.get(10, TimeUnit.SECONDS);
+        // the read has been retried and sees the whole second batch
+        assertEquals(2, iterations.get());
+        assertEquals(1, l.get(0).getGenerationTime());
+        assertEquals(1, l.get(1).getGenerationTime());
+    }
+
+    static ParameterValue pvWithTime(Parameter p, long t) {
+        ParameterValue pv = new ParameterValue(p);
+        pv.setGenerationTime(t);
+        return pv;
+    }
 }
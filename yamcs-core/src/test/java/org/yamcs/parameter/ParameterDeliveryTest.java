@@ -0,0 +1,137 @@
+package org.yamcs.parameter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.yamcs.parameter.ParameterRequestManager.DeliveryContext;
+import org.yamcs.parameter.ParameterRequestManager.Subscriber;
+import org.yamcs.parameter.ParameterRequestManager.SubscriberArray;
+
+public class ParameterDeliveryTest {
+
+    @Test
+    public void testSubscriberArray() {
+        Subscriber s1 = new Subscriber(1, null, 0);
+        Subscriber s2 = new Subscriber(2, null, 1);
+        Subscriber s3 = new Subscriber(3, null, 2);
+
+        SubscriberArray sa = new SubscriberArray();
+        sa.add(s3);
+        sa.add(s1);
+        sa.add(s1);
+        sa.add(s2);
+        assertEquals(3, sa.getArray().length);
+        assertEquals(s1, sa.getArray()[0]);
+        assertEquals(s2, sa.getArray()[1]);
+        assertEquals(s3, sa.getArray()[2]);
+
+        assertTrue(sa.remove(2));
+        assertFalse(sa.remove(2));
+        assertEquals(2, sa.getArray().length);
+        assertEquals(s3, sa.getArray()[1]);
+
+        assertTrue(sa.remove(1));
+        assertTrue(sa.remove(3));
+        assertTrue(sa.isEmpty());
+    }
+
+    @Test
+    public void testDelivery() {
+        List<String> received = new ArrayList<>();
+        ParameterConsumer consumer = (id, items) -> items
+                .forEach(pv -> received.add(id + ":" + pv.getParameterQualifiedName()));
+
+        Subscriber s1 = new Subscriber(1, consumer, 0);
+        Subscriber s2 = new Subscriber(2, consumer, 40); // forces the buffers to grow
+
+        DeliveryContext ctx = new DeliveryContext();
+        ctx.add(s1, new ParameterValue("/a"));
+        ctx.add(s2, new ParameterValue("/a"));
+        ctx.add(s1, new ParameterValue("/b"));
+        assertEquals(2, ctx.numTouched);
+
+        for (int i = 0; i < ctx.numTouched; i++) {
+            ctx.deliver(ctx.touched[i]);
+        }
+        ctx.reset();
+        assertEquals(List.of("1:/a", "1:/b", "2:/a"), received);
+
+        // the second delivery reuses the buffers
+        received.clear();
+        ctx.add(s2, new ParameterValue("/c"));
+        for (int i = 0; i < ctx.numTouched; i++) {
+            ctx.deliver(ctx.touched[i]);
+        }
+        ctx.reset();
+        assertEquals(List.of("2:/c"), received);
+    }
+
+    @Test
+    public void testSlotReuse() {
+        List<String> received = new ArrayList<>();
+        ParameterConsumer consumer = (id, items) -> items
+                .forEach(pv -> received.add(id + ":" + pv.getParameterQualifiedName()));
+
+        Subscriber s1 = new Subscriber(1, consumer, 0);
+        // s1 has been removed and s2 took its slot during the delivery
+        Subscriber s2 = new Subscriber(2, consumer, 0);
+
+        DeliveryContext ctx = new DeliveryContext();
+        ctx.add(s1, new ParameterValue("/a"));
+        ctx.add(s2, new ParameterValue("/b"));
+        assertEquals(List.of("1:/a"), received);
+
+        for (int i = 0; i < ctx.numTouched; i++) {
+            ctx.deliver(ctx.touched[i]);
+        }
+        ctx.reset();
+        assertEquals(List.of("1:/a", "2:/b"), received);
+    }
+
+    @Test
+    public void testListOwnership() {
+        List<List<ParameterValue>> kept = new ArrayList<>();
+        ParameterConsumer owning = (id, items) -> kept.add(items);
+        List<List<ParameterValue>> reused = new ArrayList<>();
+        ParameterConsumer reusing = new ParameterConsumer() {
+            @Override
+            public void updateItems(int subscriptionId, List<ParameterValue> items) {
+                reused.add(items);
+            }
+
+            @Override
+            public boolean acceptsReusedList() {
+                return true;
+            }
+        };
+
+        Subscriber s1 = new Subscriber(1, owning, 0);
+        Subscriber s2 = new Subscriber(2, reusing, 1);
+        DeliveryContext ctx = new DeliveryContext();
+        for (String name : List.of("/a", "/b")) {
+            ctx.add(s1, new ParameterValue(name));
+            ctx.add(s2, new ParameterValue(name));
+            for (int i = 0; i < ctx.numTouched; i++) {
+                ctx.deliver(ctx.touched[i]);
+            }
+            ctx.reset();
+        }
+
+        // the consumer not accepting the reused lists keeps what it has received
+        assertEquals(2, kept.size());
+        assertEquals("/a", kept.get(0).get(0).getParameterQualifiedName());
+        assertEquals("/b", kept.get(1).get(0).getParameterQualifiedName());
+        assertNotSame(kept.get(0), kept.get(1));
+
+        // the other one receives the same buffer each time
+        assertEquals(2, reused.size());
+        assertSame(reused.get(0), reused.get(1));
+    }
+}
@@ -1,8 +1,13 @@
 package org.yamcs.parameter;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
 import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
 import org.yamcs.protobuf.Yamcs.Value.Type;
+import org.yamcs.utils.ValueUtility;
 
 public class ValueTest {
     int n = 10000000;
@@ -59,4 +64,19 @@ public class ValueTest {
         testOldV();
         testNewV();
     }
+
+    @Test
+    public void testSmallIntegerCache() {
+        assertSame(ValueUtility.getUint32Value(0), ValueUtility.getUint32Value(0));
+        assertSame(ValueUtility.getUint32Value(1023), ValueUtility.getUint32Value(1023));
+        assertSame(ValueUtility.getSint32Value(-128), ValueUtility.getSint32Value(-128));
+        assertNotSame(ValueUtility.getUint32Value(1024), ValueUtility.getUint32Value(1024));
+        assertNotSame(ValueUtility.getSint32Value(-129), ValueUtility.getSint32Value(-129));
+
+        assertEquals(-1, ValueUtility.getUint32Value(-1).getUint32Value());
+        assertEquals(Type.UINT32, ValueUtility.getUint32Value(5).getType());
+        assertEquals(5, ValueUtility.getUint32Value(5).getUint32Value());
+        assertEquals(Type.SINT32, ValueUtility.getSint32Value(-5).getType());
+        assertEquals(-5, ValueUtility.getSint32Value(-5).getSint32Value());
+    }
 }
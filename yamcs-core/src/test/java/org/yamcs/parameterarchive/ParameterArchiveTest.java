@@ -18,6 +18,7 @@ import java.util.Map;
 
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.ValueSource;
 import org.yamcs.YConfiguration;
@@ -599,6 +600,61 @@ public class ParameterArchiveTest extends BaseParchiveTest {
         checkEquals(l2a.get(0), 100, pv1_0, pv1_1);
     }
 
+    @Test
+    public void testParallelRetrieval() throws Exception {
+        openDb("none");
+        Parameter[] params = { p1, p2, p3 };
+        int[] pids = new int[params.length];
+        int[] pgids = new int[params.length];
+        for (int i = 0; i < params.length; i++) {
+            pids[i] = parchive.getParameterIdDb().createAndGet(params[i].getQualifiedName(), Type.STRING);
+            pgids[i] = parchive.getParameterGroupIdDb().getGroup(IntArray.wrap(pids[i])).id;
+        }
+
+        // 4 segments (in 4 different intervals) of 400 values for each parameter, with the parameters sharing some
+        // timestamps
+        for (int i = 0; i < params.length; i++) {
+            for (int k = 0; k < 4; k++) {
+                long interval = (k + 1) * ParameterArchive.getIntervalDuration();
+                PGSegment pgs = new PGSegment(pgids[i], interval);
+                for (int j = 0; j < 400; j++) {
+                    long t = interval + 1000 * j + (j % 2 == 0 ? 0 : i);
+                    pgs.addRecord(t, IntArray.wrap(pids[i]),
+                            Arrays.asList(getParameterValue(params[i], t, params[i].getName() + "_" + t)));
+                }
+                parchive.writeToArchive(pgs);
+            }
+        }
+
+        for (boolean ascending : new boolean[] { true, false }) {
+            parchive.retrievalThreads = 1;
+            List<ParameterIdValueList> l1 = retrieveMultipleParameters(0, TimeEncoding.MAX_INSTANT, pids, pgids,
+                    ascending);
+            parchive.retrievalThreads = 4;
+            List<ParameterIdValueList> l2 = retrieveMultipleParameters(0, TimeEncoding.MAX_INSTANT, pids, pgids,
+                    ascending);
+
+            // the parameters are in different groups, so one list is sent for each value
+            assertEquals(3 * 1600, l1.size());
+            assertEquals(l1.size(), l2.size());
+            for (int i = 0; i < l1.size(); i++) {
+                assertEquals(l1.get(i).time(), l2.get(i).time());
+                assertEquals(l1.get(i).getPids(), l2.get(i).getPids());
+                for (int j = 0; j < l1.get(i).size(); j++) {
+                    assertEquals(l1.get(i).getValues().get(j).getEngValue(),
+                            l2.get(i).getValues().get(j).getEngValue());
+                }
+            }
+
+            List<ParameterIdValueList> l3 = retrieveMultipleParameters(0, TimeEncoding.MAX_INSTANT, pids, pgids,
+                    ascending, 100);
+            assertEquals(100, l3.size());
+            for (int i = 0; i < l3.size(); i++) {
+                assertEquals(l1.get(i).time(), l3.get(i).time());
+            }
+        }
+    }
+
     public static YConfiguration backFillerDisabledConfig() {
         Map<String, Object> pam = new HashMap<>();
         Map<String, Object> bfm = new HashMap<>();
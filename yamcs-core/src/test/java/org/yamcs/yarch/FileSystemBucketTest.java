@@ -1,19 +1,29 @@
 package org.yamcs.yarch;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Random;
 
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.yamcs.buckets.FileSystemBucket;
+import org.yamcs.buckets.ObjectChannel;
 import org.yamcs.utils.FileUtils;
 
 public class FileSystemBucketTest {
@@ -67,6 +77,39 @@ public class FileSystemBucketTest {
         }
     }
 
+    @Test
+    public void testStreaming() throws IOException {
+        var bucket = new FileSystemBucket("bucket", testDir.resolve("bucket"));
+        Files.createDirectory(bucket.getBucketRoot());
+
+        byte[] objectData = new byte[200_000];
+        new Random().nextBytes(objectData);
+        bucket.putObject("dir/obj1", null, Map.of(), Channels.newChannel(new ByteArrayInputStream(objectData)));
+        assertArrayEquals(objectData, bucket.getObject("dir/obj1"));
+
+        try (ReadableByteChannel ch = bucket.openObject("dir/obj1", 1000, -1).channel()) {
+            // until the end of the file, a file channel allowing zero-copy transfers is returned
+            assertTrue(ch instanceof FileChannel);
+            assertArrayEquals(Arrays.copyOfRange(objectData, 1000, objectData.length),
+                    Channels.newInputStream(ch).readAllBytes());
+        }
+        ObjectChannel oc = bucket.openObject("dir/obj1", 1000, 70_000);
+        assertEquals(objectData.length, oc.objectSize());
+        try (ReadableByteChannel ch = oc.channel()) {
+            assertArrayEquals(Arrays.copyOfRange(objectData, 1000, 71_000),
+                    Channels.newInputStream(ch).readAllBytes());
+        }
+        assertNull(bucket.openObject("dir/obj2", 0, -1));
+
+        bucket.setMaxSize(300_000);
+        assertThrows(IOException.class, () -> bucket.putObject("obj2", null, Map.of(),
+                Channels.newChannel(new ByteArrayInputStream(objectData))));
+        // the failed upload does not leave anything behind
+        try (var files = Files.walk(bucket.getBucketRoot())) {
+            assertEquals(1, files.filter(Files::isRegularFile).count());
+        }
+    }
+
     @AfterEach
     public void afterEach() throws IOException {
         FileUtils.deleteRecursivelyIfExists(testDir);
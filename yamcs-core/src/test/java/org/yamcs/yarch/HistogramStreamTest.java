@@ -139,6 +139,26 @@ public class HistogramStreamTest extends YarchTestCase {
         execute("drop table test1");
     }
 
+    @Test
+    public void testHistogramPushdown() throws Exception {
+        populate("test5", 2, 20, true);
+
+        execute("create stream test5_out1 as select * from test5 where name = 'histotest1' and gentime >= 40001");
+        List<Tuple> tuples = fetchAll("test5_out1");
+        assertEquals(20, tuples.size());
+        assertEquals(40001L, tuples.get(0).getLongColumn("gentime"));
+        assertEquals(59001L, tuples.get(19).getLongColumn("gentime"));
+
+        execute("create stream test5_out2 as select * from test5 where name in ('histotest0', 'histotest1m')");
+        tuples = fetchAll("test5_out2");
+        assertEquals(41, tuples.size());
+        assertEquals("histotest1m", tuples.get(40).getColumn("name"));
+
+        execute("create stream test5_out3 as select * from test5 where name = 'histotest2' order desc");
+        assertEquals(0, fetchAll("test5_out3").size());
+        execute("drop table test5");
+    }
+
     void verifyEquals(String value, long start, long stop, int num, Tuple t) {
         assertEquals(4, t.size());
         assertEquals(value, (String) t.getColumn(0));
@@ -52,6 +52,27 @@ public class SecondaryIndexTest extends YarchTestCase {
         assertFalse(res.hasNext());
     }
 
+    @Test
+    public void testDescending() throws Exception {
+        populate("test_desc");
+        StreamSqlResult res = ydb.execute("select * from test_desc where c=3 order desc");
+        for (int a = 3; a >= 0; a--) {
+            assertTrue(res.hasNext());
+            Tuple t = res.next();
+            assertEquals(a, (int) t.getColumn("a"));
+            assertEquals(3, (int) t.getColumn("c"));
+        }
+        assertFalse(res.hasNext());
+
+        // the primary key range is more selective than the secondary key range
+        res = ydb.execute("select * from test_desc where a=2 and c>0");
+        for (int b = 0; b < 10; b++) {
+            assertTrue(res.hasNext());
+            assertEquals(b, (int) res.next().getColumn("b"));
+        }
+        assertFalse(res.hasNext());
+    }
+
     @Test
     public void testDbReload() throws Exception {
         ydb.execute("create table test_reload(a int, b int, primary key(a), index(b))");
@@ -1,8 +1,11 @@
 package org.yamcs.yarch;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.nio.ByteBuffer;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -157,6 +160,106 @@ public class StreamMergeTest extends YarchTestCase {
         execute("drop table tm3");
     }
 
+    @Test
+    public void testTableMergeDesc() throws Exception {
+        int k = 5;
+        StringBuilder sb = new StringBuilder("create stream tm_out as merge ");
+        for (int j = 0; j < k; j++) {
+            populate("tm" + j, j, 1000, k, 1000 * (j + 1));
+            sb.append(j == 0 ? "" : ", ").append("(select * from tm" + j + " order desc)");
+        }
+        sb.append(" using \"time\" order desc");
+        ydb.execute(sb.toString());
+
+        AtomicInteger ai = new AtomicInteger(999);
+        Semaphore semaphore = new Semaphore(0);
+        Stream s = ydb.getStream("tm_out");
+        s.addSubscriber(new StreamSubscriber() {
+            @Override
+            public void streamClosed(Stream stream) {
+                semaphore.release();
+            }
+
+            @Override
+            public void onTuple(Stream stream, Tuple tuple) {
+                int i = ai.getAndDecrement();
+                assertEquals(1000l * i, (Long) tuple.getColumn(0));
+                assertEquals(1000 * (i % k + 1), (Integer) tuple.getColumn(1));
+            }
+        });
+        s.start();
+        assertTrue(semaphore.tryAcquire(30, TimeUnit.SECONDS));
+        assertEquals(-1, ai.get());
+        for (int j = 0; j < k; j++) {
+            execute("drop table tm" + j);
+        }
+    }
+
+    @Test
+    public void testConcurrentMerges() throws Exception {
+        populate("tm1", 0, 1000, 2, 1000);
+        populate("tm2", 1, 1000, 4, 2000);
+        populate("tm3", 3, 1000, 4, 3000);
+
+        int n = 20;
+        Semaphore semaphore = new Semaphore(0);
+        AtomicInteger[] counts = new AtomicInteger[n];
+        for (int k = 0; k < n; k++) {
+            AtomicInteger count = counts[k] = new AtomicInteger();
+            ydb.execute("create stream tm_out" + k + " as merge tm1,tm2,tm3 using \"time\"");
+            Stream s = ydb.getStream("tm_out" + k);
+            s.addSubscriber(new StreamSubscriber() {
+                @Override
+                public void streamClosed(Stream stream) {
+                    semaphore.release();
+                }
+
+                @Override
+                public void onTuple(Stream stream, Tuple tuple) {
+                    assertEquals(1000l * count.getAndIncrement(), (Long) tuple.getColumn(0));
+                }
+            });
+        }
+        // all the producers and merge streams are running at the same time
+        for (int k = 0; k < n; k++) {
+            ydb.getStream("tm_out" + k).start();
+        }
+        assertTrue(semaphore.tryAcquire(n, 60, TimeUnit.SECONDS));
+        for (int k = 0; k < n; k++) {
+            assertEquals(1000, counts[k].get());
+        }
+        execute("drop table tm1");
+        execute("drop table tm2");
+        execute("drop table tm3");
+    }
+
+    @Test
+    public void testCloseWithIdleSubStream() throws Exception {
+        ydb.execute("create stream in1(\"time\" timestamp, apidSeqCount int)");
+        ydb.execute("create stream in2(\"time\" timestamp, apidSeqCount int)");
+        Stream in1 = ydb.getStream("in1");
+        Stream in2 = ydb.getStream("in2");
+
+        CountDownLatch finished = new CountDownLatch(1);
+        MergeStream merge = new MergeStream(ydb, new Stream[] { in1, in2 }, "time", true) {
+            @Override
+            public void run() {
+                try {
+                    super.run();
+                } finally {
+                    finished.countDown();
+                }
+            }
+        };
+        merge.start();
+        in1.emitTuple(new Tuple(in1.getDefinition(), new Object[] { 1000L, 1 }));
+        // the merging thread waits for a tuple from in2 which never comes
+        assertFalse(finished.await(200, TimeUnit.MILLISECONDS));
+
+        merge.close();
+        assertTrue(finished.await(10, TimeUnit.SECONDS));
+    }
+
     interface Checker {
         public void check(int i, long time, int apidSeqCount);
     }
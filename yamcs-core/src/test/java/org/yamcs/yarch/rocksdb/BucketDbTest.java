@@ -6,16 +6,27 @@ import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
 import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.yamcs.buckets.ObjectChannel;
 import org.yamcs.buckets.ObjectProperties;
 import org.yamcs.utils.FileUtils;
 import org.yamcs.utils.TimeEncoding;
@@ -179,6 +190,146 @@ public class BucketDbTest {
         bucketDb.getTablespace().close();
     }
 
+    @Test
+    public void testStreaming() throws Exception {
+        RdbBucketDatabase bucketDb = createDb(5);
+        RdbBucket b = bucketDb.createBucket("bucket1");
+
+        byte[] objectData = new byte[3 * RdbBucket.DATA_CHUNK_SIZE + 1000];
+        random.nextBytes(objectData);
+        b.putObject("obj1", "application/octet-stream", null,
+                Channels.newChannel(new ByteArrayInputStream(objectData)));
+        assertEquals(objectData.length, b.findObject("obj1").size());
+        assertEquals(objectData.length, b.getProperties().size());
+        assertArrayEquals(objectData, b.getObject("obj1"));
+
+        // range spanning over multiple chunks
+        int offset = RdbBucket.DATA_CHUNK_SIZE - 10;
+        int length = RdbBucket.DATA_CHUNK_SIZE + 20;
+        try (ReadableByteChannel ch = b.openObject("obj1", offset, length).channel()) {
+            assertArrayEquals(Arrays.copyOfRange(objectData, offset, offset + length),
+                    Channels.newInputStream(ch).readAllBytes());
+        }
+        try (ReadableByteChannel ch = b.openObject("obj1", objectData.length - 5, -1).channel()) {
+            assertEquals(5, Channels.newInputStream(ch).readAllBytes().length);
+        }
+        assertNull(b.openObject("obj2", 0, -1));
+
+        // an upload exceeding the bucket size does not affect the existing object
+        Exception e = null;
+        try {
+            b.putObject("obj1", null, null, Channels.newChannel(
+                    new ByteArrayInputStream(new byte[(int) RdbBucketDatabase.DEFAULT_MAX_BUCKET_SIZE + 1])));
+        } catch (IOException e1) {
+            e = e1;
+        }
+        assertNotNull(e);
+        assertArrayEquals(objectData, b.getObject("obj1"));
+
+        // overwrite with a non-chunked object
+        b.putObject("obj1", null, null, new byte[10]);
+        assertEquals(10, b.getProperties().size());
+        ObjectChannel oc = b.openObject("obj1", 2, 5);
+        assertEquals(10, oc.objectSize());
+        try (ReadableByteChannel ch = oc.channel()) {
+            assertEquals(5, Channels.newInputStream(ch).readAllBytes().length);
+        }
+
+        // overwrite again with a chunked object and delete it
+        b.putObject("obj1", null, null, Channels.newChannel(new ByteArrayInputStream(objectData)));
+        assertArrayEquals(objectData, b.getObject("obj1"));
+        b.deleteObject("obj1");
+        assertEquals(0, b.getProperties().size());
+        assertEquals(0, b.getProperties().numObjects());
+
+        bucketDb.getTablespace().close();
+    }
+
+    @Test
+    public void testStreamingDoesNotBlockBucket() throws Exception {
+        RdbBucketDatabase bucketDb = createDb(6);
+        RdbBucket b = bucketDb.createBucket("bucket1");
+
+        CountDownLatch reading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ReadableByteChannel slowChannel = new ReadableByteChannel() {
+            boolean done;
+
+            @Override
+            public int read(ByteBuffer dst) throws IOException {
+                if (done) {
+                    return -1;
+                }
+                reading.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+                done = true;
+                dst.put((byte) 1);
+                return 1;
+            }
+
+            @Override
+            public boolean isOpen() {
+                return true;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        CompletableFuture<Void> upload = b.putObjectAsync("slow", null, null, slowChannel);
+        assertTrue(reading.await(10, TimeUnit.SECONDS));
+
+        // the other operations proceed while the upload is in progress
+        CompletableFuture.runAsync(() -> {
+            try {
+                b.putObject("fast", null, null, new byte[10]);
+                b.deleteObject("fast");
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }).get(10, TimeUnit.SECONDS);
+
+        release.countDown();
+        upload.get(10, TimeUnit.SECONDS);
+        assertArrayEquals(new byte[] { 1 }, b.getObject("slow"));
+        assertEquals(1, b.getProperties().numObjects());
+
+        bucketDb.getTablespace().close();
+    }
+
+    @Test
+    public void testIncompleteUploadRemoved() throws Exception {
+        RdbBucketDatabase bucketDb = createDb(7);
+        RdbBucket b = bucketDb.createBucket("bucket1");
+        byte[] objectData = new byte[RdbBucket.DATA_CHUNK_SIZE + 10];
+        random.nextBytes(objectData);
+        b.putObject("obj1", null, null, Channels.newChannel(new ByteArrayInputStream(objectData)));
+        int objectId = b.nextObjectId.get();
+
+        // chunks left behind by uploads interrupted by a crash
+        YRDB rdb = bucketDb.getTablespace().getRdb();
+        byte[] orphan1 = b.getChunkKey("obj1", objectId + 5, 0);
+        byte[] orphan2 = b.getChunkKey("obj2", objectId + 6, 0);
+        rdb.put(orphan1, new byte[10]);
+        rdb.put(orphan2, new byte[10]);
+        bucketDb.getTablespace().close();
+
+        bucketDb = createDb(7);
+        b = bucketDb.getBucket("bucket1");
+        rdb = bucketDb.getTablespace().getRdb();
+        assertNull(rdb.get(orphan1));
+        assertNull(rdb.get(orphan2));
+        assertEquals(objectId + 7, b.nextObjectId.get());
+        assertArrayEquals(objectData, b.getObject("obj1"));
+        assertEquals(objectData.length, b.getProperties().size());
+
+        bucketDb.getTablespace().close();
+    }
+
     private RdbBucketDatabase createDb(int n) throws Exception {
         String dir = testDir + File.separator + "tablespace" + n;
         Tablespace tablespace = new Tablespace("tablespace" + n);
@@ -2,6 +2,7 @@ package org.yamcs.yarch.rocksdb;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
@@ -27,6 +28,7 @@ import org.yamcs.yarch.TableWriter.InsertMode;
 import org.yamcs.yarch.Tuple;
 import org.yamcs.yarch.YarchTestCase;
 import org.yamcs.yarch.streamsql.StreamSqlException;
+import org.yamcs.yarch.streamsql.StreamSqlResult;
 
 public class HistogramRebuilderTest extends YarchTestCase {
     String tblName = "HistogramRebuilderTest";
@@ -108,6 +110,74 @@ public class HistogramRebuilderTest extends YarchTestCase {
         iter.close();
     }
 
+    @Test
+    public void testQueryDuringRebuild() throws Exception {
+        populate(true);
+        assertTrue(tblDef.isHistogramComplete());
+        Tablespace tablespace = rse.getTablespace(ydb.getName());
+
+        List<Integer> counts = new ArrayList<>();
+        HistogramRebuilder rebuilder = new HistogramRebuilder(tablespace, ydb, tblName) {
+            @Override
+            boolean deleteHistograms(PartitionManager.Interval interval, CompletableFuture<Void> cf) {
+                boolean r = super.deleteHistograms(interval, cf);
+                // the histograms of the interval are deleted and not yet rebuilt
+                assertFalse(tblDef.isHistogramComplete());
+                try {
+                    counts.add(count("select * from " + tblName + " where name = 'p1'"));
+                } catch (StreamSqlException | ParseException e) {
+                    cf.completeExceptionally(e);
+                }
+                return r;
+            }
+        };
+        rebuilder.rebuild().get();
+        assertEquals(List.of(2, 2), counts);
+        assertTrue(tblDef.isHistogramComplete());
+    }
+
+    @Test
+    public void testUpdate() throws Exception {
+        populate(true);
+        ydb.execute("update " + tblName + " set name = 'p3' where seqNum = 10");
+        assertFalse(tblDef.isHistogramComplete());
+        assertEquals(1, count("select * from " + tblName + " where name = 'p3'"));
+
+        Tablespace tablespace = rse.getTablespace(ydb.getName());
+        new HistogramRebuilder(tablespace, ydb, tblName).rebuild().get();
+        assertTrue(tblDef.isHistogramComplete());
+        assertEquals(1, count("select * from " + tblName + " where name = 'p3'"));
+    }
+
+    @Test
+    public void testUpsertWriter() throws Exception {
+        populate(true);
+        TableWriter tw = rse.newTableWriter(ydb, tblDef, InsertMode.UPSERT);
+        tw.onTuple(null, new Tuple(tblDef.getTupleDefinition(), new Object[] { 1000L, 10, "p3" }));
+        assertFalse(tblDef.isHistogramComplete());
+        assertEquals(1, count("select * from " + tblName + " where name = 'p3'"));
+
+        // the writer can still modify rows so the rebuild does not make the histogram complete
+        Tablespace tablespace = rse.getTablespace(ydb.getName());
+        new HistogramRebuilder(tablespace, ydb, tblName).rebuild().get();
+        assertFalse(tblDef.isHistogramComplete());
+
+        tw.close();
+        new HistogramRebuilder(tablespace, ydb, tblName).rebuild().get();
+        assertTrue(tblDef.isHistogramComplete());
+    }
+
+    int count(String query) throws StreamSqlException, ParseException {
+        StreamSqlResult res = ydb.execute(query);
+        int n = 0;
+        while (res.hasNext()) {
+            res.next();
+            n++;
+        }
+        res.close();
+        return n;
+    }
+
     Thread startWriter(int n, int m, int seqStart, String p, Semaphore semaphore) {
         Thread thread = new Thread(() -> {
             int seq = seqStart;
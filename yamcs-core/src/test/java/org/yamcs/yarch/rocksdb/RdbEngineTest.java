@@ -1,5 +1,6 @@
 package org.yamcs.yarch.rocksdb;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -20,6 +21,7 @@ import org.yamcs.yarch.TableWriter.InsertMode;
 import org.yamcs.yarch.Tuple;
 import org.yamcs.yarch.TupleDefinition;
 import org.yamcs.yarch.YarchTestCase;
+import org.yamcs.yarch.streamsql.StreamSqlResult;
 
 public class RdbEngineTest extends YarchTestCase {
     @Test
@@ -78,6 +80,81 @@ public class RdbEngineTest extends YarchTestCase {
         assertTrue(tblList.isEmpty());
     }
 
+    @Test
+    public void testWriteBatch() throws Exception {
+        execute("create table table2(gentime timestamp, seqNum int, name string, primary key(gentime, seqNum)) "
+                + "histogram(name) partition by time(gentime) engine rocksdb2");
+        TableDefinition tblDef = ydb.getTable("table2");
+        TupleDefinition tdef = tblDef.getTupleDefinition();
+        RdbStorageEngine rse = (RdbStorageEngine) ydb.getStorageEngine(tblDef);
+        Tablespace tablespace = rse.getTablespace(ydb);
+        tablespace.getWriteBatchStats().getAndReset();
+
+        RdbTableWriter tw = rse.newTableWriter(ydb, tblDef, InsertMode.INSERT);
+        tw.setWriteBatch(3, 60_000);
+        tw.onTuple(null, new Tuple(tdef, new Object[] { 1000L, 1, "p1" }));
+        tw.onTuple(null, new Tuple(tdef, new Object[] { 2000L, 2, "p1" }));
+        // duplicate of a record not yet written, should be ignored
+        tw.onTuple(null, new Tuple(tdef, new Object[] { 1000L, 1, "p2" }));
+        assertEquals(0, fetchAllFromTable("table2").size());
+
+        tw.onTuple(null, new Tuple(tdef, new Object[] { 3000L, 3, "p2" }));
+        List<Tuple> tlist = fetchAllFromTable("table2");
+        assertEquals(3, tlist.size());
+        assertEquals("p1", tlist.get(0).getColumn("name"));
+
+        // the delay expires before the batch is full
+        tw.setWriteBatch(100, 10);
+        tw.onTuple(null, new Tuple(tdef, new Object[] { 4000L, 4, "p2" }));
+        for (int i = 0; i < 100 && tlist.size() < 4; i++) {
+            Thread.sleep(10);
+            tlist = fetchAllFromTable("table2");
+        }
+        assertEquals(4, tlist.size());
+
+        // closing the writer writes the pending batch
+        tw.setWriteBatch(100, 60_000);
+        tw.onTuple(null, new Tuple(tdef, new Object[] { 5000L, 5, "p2" }));
+        tw.close();
+        assertEquals(5, fetchAllFromTable("table2").size());
+
+        var stats = tablespace.getWriteBatchStats().getAndReset();
+        assertEquals(3, stats.numBatches);
+        assertEquals(5, stats.numRecords);
+    }
+
+    @Test
+    public void testLoadWriteBatch() throws Exception {
+        // the batched load has to write the same entries as the unbatched one
+        for (int batchSize : new int[] { 1, 10 }) {
+            String tblName = "table_load" + batchSize;
+            execute("create table " + tblName + "(a int, b int, primary key(a), index(b)) engine rocksdb2");
+            TableDefinition tblDef = ydb.getTable(tblName);
+            RdbStorageEngine rse = (RdbStorageEngine) ydb.getStorageEngine(tblDef);
+            RdbTableWriter tw = rse.newTableWriter(ydb, tblDef, InsertMode.LOAD);
+            tw.setWriteBatch(batchSize, 60_000);
+            for (int i = 0; i < 3; i++) {
+                tw.onTuple(null, new Tuple(tblDef.getTupleDefinition(), new Object[] { i, 100 + i }));
+            }
+            tw.close();
+        }
+        assertEquals(3, fetchAllFromTable("table_load1").size());
+        assertEquals(3, fetchAllFromTable("table_load10").size());
+        assertEquals(count("select * from table_load1 where b = 101"),
+                count("select * from table_load10 where b = 101"));
+    }
+
+    private int count(String query) throws Exception {
+        StreamSqlResult res = ydb.execute(query);
+        int n = 0;
+        while (res.hasNext()) {
+            res.next();
+            n++;
+        }
+        res.close();
+        return n;
+    }
+
     private void checkNoReaderStreamPossible(RdbStorageEngine rse, TableDefinition tblDef) {
         IllegalArgumentException iae = null;
         try (ExecutionContext ctx = new ExecutionContext(ydb)) {
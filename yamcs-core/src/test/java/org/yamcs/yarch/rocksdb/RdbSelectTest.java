@@ -1,7 +1,10 @@
 package org.yamcs.yarch.rocksdb;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -15,11 +18,17 @@ import org.junit.jupiter.api.Test;
 import org.yamcs.utils.TimeEncoding;
 import org.yamcs.utils.parser.ParseException;
 import org.yamcs.yarch.ColumnDefinition;
+import org.yamcs.yarch.CompiledKeyFilter;
 import org.yamcs.yarch.DataType;
+import org.yamcs.yarch.DbRange;
+import org.yamcs.yarch.ExecutionContext;
 import org.yamcs.yarch.PartitioningSpec;
+import org.yamcs.yarch.Row;
 import org.yamcs.yarch.Stream;
 import org.yamcs.yarch.StreamSubscriber;
 import org.yamcs.yarch.TableDefinition;
+import org.yamcs.yarch.TableVisitor;
+import org.yamcs.yarch.TableWalker;
 import org.yamcs.yarch.TableWriter;
 import org.yamcs.yarch.TableWriter.InsertMode;
 import org.yamcs.yarch.Tuple;
@@ -27,7 +36,10 @@ import org.yamcs.yarch.TupleDefinition;
 import org.yamcs.yarch.YarchDatabase;
 import org.yamcs.yarch.YarchException;
 import org.yamcs.yarch.YarchTestCase;
+import org.yamcs.yarch.streamsql.KeyFilterCompiler;
+import org.yamcs.yarch.streamsql.RelOp;
 import org.yamcs.yarch.streamsql.StreamSqlException;
+import org.yamcs.yarch.streamsql.StreamSqlResult;
 
 public class RdbSelectTest extends YarchTestCase {
 
@@ -239,6 +251,151 @@ public class RdbSelectTest extends YarchTestCase {
         assertEquals(tableSize, tuples.size());
     }
 
+    @Test
+    public void testProjection() throws Exception {
+        TupleDefinition tdef2 = tdef.copy();
+        tdef2.addColumn(new ColumnDefinition("blob", DataType.BINARY));
+        tw.onTuple(null, new Tuple(tdef2, new Object[] { 4000L, 40, 4, new byte[1000] }));
+
+        execute("create stream s1 as select gentime, col3 from RdbSelectTest where packetid > 10");
+        List<Tuple> tuples = fetchTuples(ydb.getStream("s1"));
+        assertEquals(3, tuples.size());
+        assertEquals(2000L, tuples.get(0).getLongColumn("gentime"));
+        assertEquals(2, tuples.get(0).getIntColumn("col3"));
+        assertEquals(4000L, tuples.get(2).getLongColumn("gentime"));
+        assertEquals(4, tuples.get(2).getIntColumn("col3"));
+        assertEquals(2, tuples.get(2).size());
+
+        execute("create stream s2 as select count(*) from RdbSelectTest");
+        tuples = fetchTuples(ydb.getStream("s2"));
+        assertEquals(4L, tuples.get(tuples.size() - 1).getColumn(0));
+
+        // the skipped columns are not part of the deserialized tuple
+        TableDefinition tblDef = ydb.getTable("RdbSelectTest");
+        Tuple t = new Tuple(tdef2, new Object[] { 5000L, 50, 5, new byte[] { 1, 2 } });
+        Row row = tblDef.generateRow(t);
+        byte[] k = row.getKey();
+        byte[] v = tblDef.serializeValue(t, row);
+        Tuple t1 = tblDef.deserialize(k, v, tblDef.getValueColumnSet(Arrays.asList("gentime", "col3")));
+        assertEquals(2, t1.size());
+        assertEquals(5000L, t1.getLongColumn("gentime"));
+        assertEquals(5, t1.getIntColumn("col3"));
+        assertEquals(4, tblDef.deserialize(k, v).size());
+    }
+
+    @Test
+    public void testKeyFilter() throws Exception {
+        execute("create table RdbSelectTest2(gentime timestamp, name string, seq int, v int, "
+                + "primary key(gentime, name, seq))");
+        TableDefinition tblDef = ydb.getTable("RdbSelectTest2");
+        TupleDefinition tdef2 = tblDef.getTupleDefinition();
+        RdbStorageEngine rse = (RdbStorageEngine) ydb.getStorageEngine(tblDef);
+        TableWriter tw2 = rse.newTableWriter(ydb, tblDef, InsertMode.INSERT);
+        for (int i = 0; i < 10; i++) {
+            tw2.onTuple(null, new Tuple(tdef2, new Object[] { 1000L * (i % 3), "n" + i, i - 5, i }));
+        }
+
+        execute("create stream s1 as select * from RdbSelectTest2 where seq > -2 and gentime != 1000 and seq <= 3");
+        List<Tuple> tuples = fetchTuples(ydb.getStream("s1"));
+        assertEquals(Arrays.asList(6, 5, 8), tuples.stream().map(t -> t.getIntColumn("v")).toList());
+
+        KeyFilterCompiler kfc = new KeyFilterCompiler(tblDef);
+        kfc.addCondition("seq", RelOp.EQUAL, 2);
+        kfc.addCondition("gentime", RelOp.LESS, 2000L);
+        kfc.addCondition("name", RelOp.EQUAL, "n1");
+        CompiledKeyFilter filter = kfc.compile();
+        assertTrue(filter.matches(tblDef.generateRow(new Tuple(tdef2, new Object[] { 1000L, "abc", 2, 0 })).getKey()));
+        assertFalse(filter.matches(tblDef.generateRow(new Tuple(tdef2, new Object[] { 1000L, "abc", 3, 0 })).getKey()));
+        assertFalse(filter.matches(tblDef.generateRow(new Tuple(tdef2, new Object[] { 2000L, "", 2, 0 })).getKey()));
+
+        ydb.dropTable("RdbSelectTest2");
+    }
+
+    @Test
+    public void testParallelWalk() throws Exception {
+        for (int year = 2001; year < 2006; year++) {
+            long t0 = TimeEncoding.parse(year + "-01-01T00:00:00");
+            int n = year == 2003 ? 2500 : 10;
+            for (int i = 0; i < n; i++) {
+                tw.onTuple(null, new Tuple(tdef, new Object[] { t0 + i, 10 * (i % 3), i }));
+            }
+        }
+        TableDefinition tblDef = ydb.getTable("RdbSelectTest");
+        DbRange range = new DbRange();
+        range.rangeStart = tblDef.getKeyDefinition().get(0).getSerializer()
+                .toByteArray(TimeEncoding.parse("2002-01-01T00:00:00"));
+
+        for (boolean ascending : new boolean[] { true, false }) {
+            List<Long> expected = walk(tblDef, ascending, 1, null);
+            assertEquals(2543, expected.size());
+            assertEquals(expected, walk(tblDef, ascending, 3, null));
+
+            expected = walk(tblDef, ascending, 1, range);
+            assertEquals(2530, expected.size());
+            assertEquals(expected, walk(tblDef, ascending, 4, range));
+        }
+    }
+
+    private List<Long> walk(TableDefinition tblDef, boolean ascending, int parallelPartitions, DbRange range)
+            throws Exception {
+        List<Long> times = new ArrayList<>();
+        try (ExecutionContext ctx = new ExecutionContext(ydb)) {
+            TableWalker walker = ydb.getStorageEngine(tblDef).newTableWalker(ctx, tblDef, ascending, false);
+            walker.setParallelPartitions(parallelPartitions);
+            if (range != null) {
+                walker.setPrimaryIndexRange(range);
+            }
+            walker.walk((key, value) -> {
+                times.add(tblDef.deserialize(key, value).getLongColumn("gentime"));
+                return TableVisitor.ACTION_CONTINUE;
+            });
+        }
+        return times;
+    }
+
+    @Test
+    public void testKeyFilterInexactLiteral() throws Exception {
+        execute("create table RdbSelectTest3(a int, seq int, v int, primary key(a, seq))");
+        TableDefinition tblDef = ydb.getTable("RdbSelectTest3");
+        TupleDefinition tdef3 = tblDef.getTupleDefinition();
+        RdbStorageEngine rse = (RdbStorageEngine) ydb.getStorageEngine(tblDef);
+        TableWriter tw3 = rse.newTableWriter(ydb, tblDef, InsertMode.INSERT);
+        for (int i = 0; i < 5; i++) {
+            tw3.onTuple(null, new Tuple(tdef3, new Object[] { i - 2, i, i }));
+        }
+
+        // fractional literals
+        assertEquals(Arrays.asList(0, 1, 2), selectV("select * from RdbSelectTest3 where seq < 2.5"));
+        assertEquals(Arrays.asList(0, 1, 2, 3, 4), selectV("select * from RdbSelectTest3 where seq != 2.5"));
+        assertEquals(Arrays.asList(), selectV("select * from RdbSelectTest3 where seq = 2.5"));
+        assertEquals(Arrays.asList(0, 1), selectV("select * from RdbSelectTest3 where a < -0.5"));
+        assertEquals(Arrays.asList(2, 3, 4), selectV("select * from RdbSelectTest3 where a > -0.5"));
+
+        // literals out of the range of the int columns
+        assertEquals(Arrays.asList(0, 1, 2, 3, 4), selectV("select * from RdbSelectTest3 where seq < 3000000000"));
+        assertEquals(Arrays.asList(), selectV("select * from RdbSelectTest3 where seq > 3000000000"));
+        assertEquals(Arrays.asList(0, 1, 2, 3, 4), selectV("select * from RdbSelectTest3 where a > -3000000000"));
+        assertEquals(Arrays.asList(0, 1, 2, 3, 4), selectV("select * from RdbSelectTest3 where a < 4294967296"));
+
+        KeyFilterCompiler kfc = new KeyFilterCompiler(tblDef);
+        kfc.addCondition("seq", RelOp.LESS, 2.5);
+        kfc.addCondition("seq", RelOp.NOT_EQUAL, 2.5);
+        kfc.addCondition("seq", RelOp.GREATER, 3_000_000_000L);
+        assertNull(kfc.compile());
+
+        ydb.dropTable("RdbSelectTest3");
+    }
+
+    private List<Integer> selectV(String query) throws Exception {
+        StreamSqlResult res = ydb.execute(query);
+        List<Integer> l = new ArrayList<>();
+        while (res.hasNext()) {
+            l.add(res.next().getIntColumn("v"));
+        }
+        res.close();
+        return l;
+    }
+
     private List<Tuple> fetchTuples(Stream s) throws InterruptedException {
         List<Tuple> tuples = new ArrayList<>();
         Semaphore semaphore = new Semaphore(0);
@@ -59,6 +59,7 @@ export interface SubscribeParametersRequest {
   updateOnExpiration: boolean;
   sendFromCache: boolean;
   maxBytes?: number;
+  updatePeriod?: number;
   action: 'REPLACE' | 'ADD' | 'REMOVE';
 }
 
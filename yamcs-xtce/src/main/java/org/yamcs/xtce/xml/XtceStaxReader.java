@@ -4079,9 +4079,10 @@ public class XtceStaxReader extends AbstractStaxReader {
         String language = readMandatoryAttribute("language", startElement);
         if (!"JavaScript".equals(language) && !"python".equals(language)
                 && !"java".equalsIgnoreCase(language)
-                && !"java-expression".equalsIgnoreCase(language)) {
+                && !"java-expression".equalsIgnoreCase(language)
+                && !"expression".equalsIgnoreCase(language)) {
             throw new XtceLoadException(fileName, xmlEvent.getLocation(), "Invalid algorithm language '" + language
-                    + "'. Supported are 'JavaScript', 'python', 'java' and 'java-expression'");
+                    + "'. Supported are 'JavaScript', 'python', 'java', 'java-expression' and 'expression'");
         }
         algo.setLanguage(language);
 